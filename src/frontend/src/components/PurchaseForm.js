@@ -1,6 +1,9 @@
-import { useState } from "react";
+import { useEffect, useState } from "react";
 import axios from "axios";
 import { Card, Button, Form } from "react-bootstrap";
+import { quoteOffer } from "../offers";
+
+const API_URL = "http://localhost:8080/api/purchase";
 
 export default function PurchaseForm() {
     const [personalId, setPersonalId] = useState("");
@@ -9,6 +12,29 @@ export default function PurchaseForm() {
     const [decision, setDecision] = useState(null);
     const [error, setError] = useState(null);
     const [validationErrors, setValidationErrors] = useState({});
+    const [offers, setOffers] = useState(null);
+
+    // One request per personal ID; the browser revalidates it with the ETag, and quotes are computed locally
+    useEffect(() => {
+        setOffers(null);
+        if (!/^\d{11}$/.test(personalId)) {
+            return;
+        }
+
+        let cancelled = false;
+        axios.get(`${API_URL}/offers/${personalId}`)
+            .then((response) => !cancelled && setOffers(response.data))
+            .catch(() => !cancelled && setOffers(null));
+        return () => {
+            cancelled = true;
+        };
+    }, [personalId]);
+
+    const amount = parseFloat(requestedAmount);
+    const period = parseInt(paymentPeriodMonths, 10);
+    const quote = offers && amount > 0 && period >= offers.minPeriod && period <= offers.maxPeriod
+        ? quoteOffer(offers, amount, period)
+        : null;
 
     const validateForm = () => {
         let errors = {};
@@ -29,6 +55,8 @@ export default function PurchaseForm() {
             errors.paymentPeriodMonths = "Payment Period is required";
         } else if (isNaN(paymentPeriodMonths) || paymentPeriodMonths <= 0) {
             errors.paymentPeriodMonths = "Payment Period must be a positive number";
+        } else if (offers && (paymentPeriodMonths < offers.minPeriod || paymentPeriodMonths > offers.maxPeriod)) {
+            errors.paymentPeriodMonths = `Payment Period must be between ${offers.minPeriod} and ${offers.maxPeriod} months`;
         }
 
         setValidationErrors(errors);
@@ -45,7 +73,7 @@ export default function PurchaseForm() {
         }
 
         try {
-            const response = await axios.post("http://localhost:8080/api/purchase/apply", {
+            const response = await axios.post(`${API_URL}/apply`, {
                 personalId,
                 requestedAmount: parseFloat(requestedAmount),
                 paymentPeriodMonths: parseInt(paymentPeriodMonths, 10),
@@ -107,6 +135,14 @@ export default function PurchaseForm() {
                     </Button>
                 </Form>
 
+                {quote && !decision && (
+                    <p className="text-muted mt-3">
+                        {quote.approved
+                            ? `Estimated offer: €${quote.approvedAmount} over ${quote.paymentPeriodMonths} months`
+                            : "Estimated offer: not approvable"}
+                    </p>
+                )}
+
                 {error && <p className="text-danger mt-3">{error}</p>}
                 {decision && (
                     <div className="mt-3 p-3 border rounded">
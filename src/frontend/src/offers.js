@@ -0,0 +1,52 @@
+// Reproduces the backend decision from an offer matrix (GET /api/purchase/offers/{personalId}), so quotes can be
+// shown while the customer types without calling the backend. Amounts are compared in cents to avoid float rounding.
+const toCents = (amount) => Math.round(Number(amount) * 100);
+
+const REJECTED = { approved: false, approvedAmount: 0 };
+
+export function quoteOffer(offers, requestedAmount, paymentPeriodMonths) {
+    const minCents = toCents(offers.minAmount);
+    const maxCents = toCents(offers.maxAmount);
+    const stepCents = toCents(offers.amountStep);
+    const limits = offers.maxApprovedAmounts.map(toCents);
+    const limitFor = (period) => limits[period - offers.minPeriod];
+
+    const requestedCents = toCents(requestedAmount);
+    if (requestedCents < minCents) {
+        return REJECTED;
+    }
+
+    const fromPeriod = Math.max(paymentPeriodMonths, offers.minPeriod);
+    const shortestPeriod = (cents) => {
+        for (let period = fromPeriod; period <= offers.maxPeriod; period++) {
+            if (cents <= limitFor(period)) {
+                return period;
+            }
+        }
+        return -1;
+    };
+
+    // Start from requested amount but do not exceed max limit
+    const cappedAtMax = requestedCents > maxCents;
+    const amountCents = Math.min(requestedCents, maxCents);
+
+    const period = shortestPeriod(amountCents);
+    if (period > 0) {
+        // Raised along the amount grid only if the request was lower than possible approval
+        const approvedCents = cappedAtMax
+            ? amountCents
+            : amountCents + Math.floor((limitFor(period) - amountCents) / stepCents) * stepCents;
+        return { approved: true, approvedAmount: approvedCents / 100, paymentPeriodMonths: period };
+    }
+
+    if (fromPeriod > offers.maxPeriod) {
+        return REJECTED;
+    }
+
+    const shortfall = amountCents - limitFor(offers.maxPeriod);
+    const reducedCents = amountCents - Math.ceil(shortfall / stepCents) * stepCents;
+    if (reducedCents < minCents) {
+        return REJECTED;
+    }
+    return { approved: true, approvedAmount: reducedCents / 100, paymentPeriodMonths: shortestPeriod(reducedCents) };
+}
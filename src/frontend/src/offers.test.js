@@ -0,0 +1,28 @@
+import { quoteOffer } from './offers';
+
+// Offer matrix of the seeded customer 12345678945 (capacity factor 100)
+const offers = {
+  minAmount: 200,
+  maxAmount: 5000,
+  amountStep: 100,
+  minPeriod: 6,
+  maxPeriod: 24,
+  maxApprovedAmounts: [600.00, 700.00, 800.00, 899.99, 1000.00, 1099.99, 1199.99, 1299.99, 1399.99, 1500.00, 1600.00,
+    1699.99, 1800.00, 1899.99, 2000.00, 2099.99, 2200.00, 2300.00, 2400.00],
+};
+
+test('raises a low request along the amount grid', () => {
+  expect(quoteOffer(offers, 500, 12)).toEqual({ approved: true, approvedAmount: 1100, paymentPeriodMonths: 12 });
+});
+
+test('extends the period before reducing the amount', () => {
+  expect(quoteOffer(offers, 1500, 12)).toEqual({ approved: true, approvedAmount: 1500, paymentPeriodMonths: 15 });
+});
+
+test('reduces a request no period can approve', () => {
+  expect(quoteOffer(offers, 6000, 12)).toEqual({ approved: true, approvedAmount: 2400, paymentPeriodMonths: 24 });
+});
+
+test('rejects a request below the minimum', () => {
+  expect(quoteOffer(offers, 100, 12)).toEqual({ approved: false, approvedAmount: 0 });
+});
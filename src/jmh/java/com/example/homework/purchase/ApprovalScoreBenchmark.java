@@ -0,0 +1,62 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.ScoringRuleProperties;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a single approval score check: BigDecimal score, fixed-point cross-multiplication, the default scoring rule
+ * compiled from configuration and the same rule written by hand in {@code double}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ApprovalScoreBenchmark {
+
+    @Param({"40", "378"})
+    private int financialFactor;
+
+    @Param({"12", "24"})
+    private int period;
+
+    private BigDecimal amount = BigDecimal.valueOf(1000);
+    private double amountValue = 1000;
+    private long amountCents = 100_000;
+
+    private ScoringRule scoringRule;
+
+    @Setup
+    public void setUp() {
+        ScoringRuleProperties properties = new ScoringRuleProperties();
+        scoringRule = ScoringRule.compile(properties.getScore(), properties.getThreshold());
+    }
+
+    @Benchmark
+    public BigDecimal calculateApprovalScore() {
+        return BigDecimalApprovalSolver.calculateApprovalScore(financialFactor, amount, period);
+    }
+
+    @Benchmark
+    public boolean isApprovedBigDecimal() {
+        return BigDecimalApprovalSolver.calculateApprovalScore(financialFactor, amount, period)
+                .compareTo(BigDecimalApprovalSolver.APPROVAL_THRESHOLD) >= 0;
+    }
+
+    @Benchmark
+    public boolean isApprovedFixedPoint() {
+        return amountCents <= FixedPointApprovalSolver.maxApprovedCents(financialFactor, period);
+    }
+
+    @Benchmark
+    public boolean isApprovedScoringRule() {
+        return scoringRule.score(financialFactor, amountValue, period)
+                >= scoringRule.threshold(financialFactor, amountValue, period);
+    }
+
+    @Benchmark
+    public boolean isApprovedHandWritten() {
+        return ScoringRule.round(financialFactor / amountValue, 1e10) * period >= 1;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.homework.purchase;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson cost of the /api/purchase/apply request and response bodies.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonSerializationBenchmark {
+
+    private ObjectReader requestReader;
+    private ObjectWriter requestWriter;
+    private ObjectReader decisionReader;
+    private ObjectWriter decisionWriter;
+
+    private PurchaseApplicationRequest request;
+    private ApprovalDecision decision;
+    private byte[] requestJson;
+    private byte[] decisionJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Same modules as the Spring Boot ObjectMapper, parameter names are needed to read ApprovalDecision
+        JsonMapper objectMapper = JsonMapper.builder().findAndAddModules().build();
+        requestReader = objectMapper.readerFor(PurchaseApplicationRequest.class);
+        requestWriter = objectMapper.writerFor(PurchaseApplicationRequest.class);
+        decisionReader = objectMapper.readerFor(ApprovalDecision.class);
+        decisionWriter = objectMapper.writerFor(ApprovalDecision.class);
+
+        request = new PurchaseApplicationRequest("12345678934", BigDecimal.valueOf(4500), 12);
+        decision = ApprovalDecision.approve(BigDecimal.valueOf(4500));
+        requestJson = requestWriter.writeValueAsBytes(request);
+        decisionJson = decisionWriter.writeValueAsBytes(decision);
+    }
+
+    @Benchmark
+    public byte[] serializeRequest() throws IOException {
+        return requestWriter.writeValueAsBytes(request);
+    }
+
+    @Benchmark
+    public PurchaseApplicationRequest deserializeRequest() throws IOException {
+        return requestReader.readValue(requestJson);
+    }
+
+    @Benchmark
+    public byte[] serializeDecision() throws IOException {
+        return decisionWriter.writeValueAsBytes(decision);
+    }
+
+    @Benchmark
+    public ApprovalDecision deserializeDecision() throws IOException {
+        return decisionReader.readValue(decisionJson);
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the limits of the product an application names: the catalog lookup decisions use, against building
+ * them from the configuration properties on every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductResolutionBenchmark {
+
+    @Param({"1", "48"})
+    private int products;
+
+    private PurchaseProperties purchaseProperties;
+    private PurchasePolicy purchasePolicy;
+    private String productCode;
+
+    @Setup
+    public void setUp() {
+        purchaseProperties = new PurchaseProperties();
+        for (int i = 0; i < products; i++) {
+            PurchaseProperties.Product product = new PurchaseProperties.Product();
+            product.setMaxPeriod(12 + i);
+            purchaseProperties.getProducts().put("product-" + i, product);
+        }
+        purchasePolicy = new PurchasePolicy(purchaseProperties, event -> { });
+        productCode = "product-" + (products - 1);
+    }
+
+    @Benchmark
+    public PurchaseLimits resolveFromCatalog() {
+        return purchasePolicy.product(productCode).limits();
+    }
+
+    @Benchmark
+    public PurchaseLimits buildFromProperties() {
+        return PurchaseLimits.of(purchaseProperties.getProducts().get(productCode),
+                PurchaseLimits.of(purchaseProperties));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.DecisionTableProperties;
+import com.example.homework.config.DecisionTraceProperties;
+import com.example.homework.config.ProfileCacheProperties;
+import com.example.homework.config.PurchaseProperties;
+import com.example.homework.config.ScoringRuleProperties;
+import com.example.homework.config.StatisticsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end decision cost for every sample profile, per scoring engine and with or without decision tables.
+ * Profiles are served from the {@link FinancialProfileService} cache, as they are for repeat customers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PurchaseServiceBenchmark {
+
+    private static final Map<String, Integer> SAMPLE_PROFILES = Map.of(
+            "12345678901", -1,
+            "99999999999", 8,
+            "12345678923", 10,
+            "12345678999", 40,
+            "12345678912", 50,
+            "12345678956", 378,
+            "12345678934", 500,
+            "12345678945", 100
+    );
+
+    @Param({"12345678901", "99999999999", "12345678923", "12345678999",
+            "12345678912", "12345678956", "12345678934", "12345678945"})
+    private String personalId;
+
+    @Param({"500", "2000", "6000"})
+    private String requestedAmount;
+
+    @Param({"big-decimal", "fixed-point", "rules"})
+    private String scoringEngine;
+
+    @Param({"false", "true"})
+    private boolean decisionTables;
+
+    private PurchaseService purchaseService;
+    private BigDecimal amount;
+
+    @Setup
+    public void setUp() {
+        ApprovalSolver approvalSolver = switch (scoringEngine) {
+            case "fixed-point" -> new FixedPointApprovalSolver();
+            case "rules" -> new RuleBasedApprovalSolver(new ScoringRuleProperties());
+            default -> new BigDecimalApprovalSolver();
+        };
+
+        DecisionTableProperties decisionTableProperties = new DecisionTableProperties();
+        decisionTableProperties.setEnabled(decisionTables);
+        DecisionTableCache decisionTableCache =
+                new DecisionTableCache(approvalSolver, decisionTableProperties, Runnable::run);
+
+        FinancialProfileService financialProfileService = new FinancialProfileService(
+                SAMPLE_PROFILES::get, new ProfileCacheProperties());
+
+        PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> { });
+        purchaseService = new PurchaseService(financialProfileService, purchasePolicy, decisionTableCache, entry -> { },
+                new ApprovalMetrics(new SimpleMeterRegistry()), new DecisionTracer(new DecisionTraceProperties()),
+                new ApprovalStatistics(purchasePolicy, new StatisticsProperties()));
+        amount = new BigDecimal(requestedAmount);
+
+        // Caches the profile and builds its decision table before measuring
+        purchaseService.findMaxApprovedAmount(personalId, amount, 12);
+    }
+
+    @Benchmark
+    public Optional<ApprovalDecision> findMaxApprovedAmount() {
+        return purchaseService.findMaxApprovedAmount(personalId, amount, 12);
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.homework.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Closed-loop load generator for {@code POST /api/purchase/apply}: keeps a fixed number of requests in flight, each
+ * on its own connection, and reports throughput and latency percentiles for a running instance.
+ * <p>
+ * Start the application in the mode under test, then run {@code ./gradlew loadTest -PloadTestLabel=<mode>}. Results
+ * are appended to a CSV file so the platform-thread and virtual-thread runs can be compared side by side. Requests
+ * shed by admission control ({@code 503}) are counted apart from other failures; like them, they are left out of the
+ * latency percentiles.
+ */
+public final class ApprovalLoadTest {
+
+    private static final String[] PERSONAL_IDS = {
+            "12345678912", "12345678923", "12345678934", "12345678945", "12345678956", "12345678999"
+    };
+    private static final int[] AMOUNTS = {500, 1000, 2000, 4500, 6000};
+
+    // Latency histogram with 100 µs buckets up to 60 s; slower responses land in the last bucket
+    private static final long BUCKET_NANOS = 100_000;
+    private static final int BUCKETS = 600_000;
+
+    private final HttpClient client;
+    private final URI uri;
+    private final AtomicLongArray latencies = new AtomicLongArray(BUCKETS);
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong shed = new AtomicLong();
+
+    private volatile boolean measuring;
+
+    private ApprovalLoadTest(URI uri) {
+        this.uri = uri;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(30))
+                .build();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 5) {
+            System.err.println("Usage: ApprovalLoadTest <url> <connections> <warmup-seconds> <seconds> <label> [results.csv]");
+            System.exit(2);
+        }
+
+        URI uri = URI.create(args[0]);
+        int connections = Integer.parseInt(args[1]);
+        Duration warmup = Duration.ofSeconds(Long.parseLong(args[2]));
+        Duration duration = Duration.ofSeconds(Long.parseLong(args[3]));
+        String label = args[4];
+
+        ApprovalLoadTest loadTest = new ApprovalLoadTest(uri);
+        String summary = loadTest.run(connections, warmup, duration, label);
+        System.out.println(summary);
+        if (args.length > 5) {
+            appendResult(Path.of(args[5]), summary);
+        }
+    }
+
+    private String run(int connections, Duration warmup, Duration duration, String label) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(connections);
+        long warmupEnd = System.nanoTime() + warmup.toNanos();
+        long end = warmupEnd + duration.toNanos();
+        long sent = 0;
+
+        while (System.nanoTime() < end) {
+            if (!measuring && System.nanoTime() >= warmupEnd) {
+                measuring = true;
+            }
+            inFlight.acquire();
+            send(sent++).whenComplete((ignored, error) -> inFlight.release());
+        }
+        measuring = false;
+        inFlight.acquire(connections);
+
+        long requests = completed.get();
+        double seconds = duration.toNanos() / 1e9;
+        return String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%.1f,%.2f,%.2f,%.2f,%d", Instant.now(), label, connections,
+                requests, failed.get(), requests / seconds, percentile(0.50), percentile(0.99), percentile(0.999),
+                shed.get());
+    }
+
+    private CompletableFuture<HttpResponse<Void>> send(long sequence) {
+        String body = "{\"personalId\":\"" + PERSONAL_IDS[(int) (sequence % PERSONAL_IDS.length)]
+                + "\",\"requestedAmount\":" + AMOUNTS[(int) (sequence % AMOUNTS.length)]
+                + ",\"paymentPeriodMonths\":12}";
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+
+        long started = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> record(started, error == null ? response.statusCode() : 0));
+    }
+
+    private void record(long started, int status) {
+        if (!measuring) {
+            return;
+        }
+        if (status == 503) {
+            shed.incrementAndGet();
+            return;
+        }
+        if (status != 200) {
+            failed.incrementAndGet();
+            return;
+        }
+        completed.incrementAndGet();
+        long bucket = (System.nanoTime() - started) / BUCKET_NANOS;
+        latencies.incrementAndGet((int) Math.min(bucket, BUCKETS - 1));
+    }
+
+    /**
+     * @return the latency in milliseconds below which the given fraction of successful requests completed
+     */
+    private double percentile(double fraction) {
+        long target = (long) Math.ceil(completed.get() * fraction);
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += latencies.get(bucket);
+            if (seen >= target && seen > 0) {
+                return (bucket + 1) * BUCKET_NANOS / 1e6;
+            }
+        }
+        return Double.NaN;
+    }
+
+    private static void appendResult(Path results, String summary) {
+        try {
+            Files.createDirectories(results.toAbsolutePath().getParent());
+            if (Files.notExists(results)) {
+                Files.writeString(results, "timestamp,label,connections,requests,failed,requests_per_second,"
+                        + "p50_ms,p99_ms,p999_ms,shed\n");
+            }
+            Files.writeString(results, summary + "\n", StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + results, e);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.homework.loadtest;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold-start benchmark: launches the application command repeatedly and measures the time from process start to the
+ * first {@code 200} answer of {@code POST /api/purchase/apply}, polling every {@link #POLL_MILLIS} ms. Each instance
+ * is stopped once it has answered, and the minimum, median and maximum over all runs are appended to a CSV file.
+ * <p>
+ * Run it with {@code ./gradlew startupBenchmark}, which builds the jar and passes the command to start it.
+ */
+public final class StartupBenchmark {
+
+    private static final long POLL_MILLIS = 10;
+    private static final Duration STARTUP_TIMEOUT = Duration.ofMinutes(2);
+    private static final String APPLICATION = "{\"personalId\":\"12345678945\",\"requestedAmount\":500,"
+            + "\"paymentPeriodMonths\":12}";
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+    private final HttpRequest request;
+
+    private StartupBenchmark(URI uri) {
+        this.request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofSeconds(10))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(APPLICATION))
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 5) {
+            System.err.println("Usage: StartupBenchmark <url> <runs> <label> <results.csv> <command...>");
+            System.exit(2);
+        }
+
+        URI uri = URI.create(args[0]);
+        int runs = Integer.parseInt(args[1]);
+        String label = args[2];
+        Path results = Path.of(args[3]);
+        List<String> command = List.of(args).subList(4, args.length);
+
+        StartupBenchmark benchmark = new StartupBenchmark(uri);
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            millis[run] = benchmark.timeToFirstApproval(command);
+            System.out.printf(Locale.ROOT, "run %d: %d ms%n", run + 1, millis[run]);
+        }
+
+        Arrays.sort(millis);
+        String summary = String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d", Instant.now(), label, runs, millis[0],
+                millis[runs / 2], millis[runs - 1]);
+        System.out.println(summary);
+        appendResult(results, summary);
+    }
+
+    private long timeToFirstApproval(List<String> command) throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        Process application = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            long deadline = started + STARTUP_TIMEOUT.toNanos();
+            while (System.nanoTime() < deadline) {
+                if (!application.isAlive()) {
+                    throw new IllegalStateException("Application exited with " + application.exitValue()
+                            + " before answering; run the command by hand to see why: " + String.join(" ", command));
+                }
+                if (approved()) {
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+                }
+                Thread.sleep(POLL_MILLIS);
+            }
+            throw new IllegalStateException("No answer within " + STARTUP_TIMEOUT);
+        } finally {
+            application.destroy();
+            if (!application.waitFor(30, TimeUnit.SECONDS)) {
+                application.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    private boolean approved() throws InterruptedException {
+        try {
+            return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (IOException e) {
+            // Not listening yet
+            return false;
+        }
+    }
+
+    private static void appendResult(Path results, String summary) {
+        try {
+            Files.createDirectories(results.toAbsolutePath().getParent());
+            if (Files.notExists(results)) {
+                Files.writeString(results, "timestamp,label,runs,min_ms,median_ms,max_ms\n");
+            }
+            Files.writeString(results, summary + "\n", StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write " + results, e);
+        }
+    }
+}
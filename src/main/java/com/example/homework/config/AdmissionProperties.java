@@ -0,0 +1,45 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.admission")
+public class AdmissionProperties {
+
+    @Getter
+    @Setter
+    public static class Budget {
+        private int initialLimit;
+        private int minLimit;
+        private int maxLimit;
+        /**
+         * Whether the limit follows the observed latency between {@code min-limit} and {@code max-limit}, or stays at
+         * {@code initial-limit}.
+         */
+        private boolean adaptive;
+
+        public Budget() {
+        }
+
+        Budget(int initialLimit, int minLimit, int maxLimit, boolean adaptive) {
+            this.initialLimit = initialLimit;
+            this.minLimit = minLimit;
+            this.maxLimit = maxLimit;
+            this.adaptive = adaptive;
+        }
+    }
+
+    private boolean enabled = true;
+    private Duration retryAfter = Duration.ofSeconds(1);
+    private Budget interactive = new Budget(100, 20, 1000, true);
+    // A batch holds its permit while it streams, for as long as the partner keeps sending; its latency says little
+    private Budget batch = new Budget(4, 1, 4, false);
+
+}
@@ -0,0 +1,33 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.audit")
+public class AuditProperties {
+
+    public enum OverflowPolicy {
+        /**
+         * Discard the decision and count it in {@code purchase.audit.dropped}.
+         */
+        DROP,
+        /**
+         * Insert the decision on the calling thread, slowing callers down to the speed of the database.
+         */
+        CALLER_RUNS
+    }
+
+    private boolean enabled = true;
+    private int queueCapacity = 10_000;
+    private int batchSize = 200;
+    private Duration flushInterval = Duration.ofMillis(500);
+    private OverflowPolicy overflowPolicy = OverflowPolicy.CALLER_RUNS;
+
+}
@@ -0,0 +1,25 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.math.BigDecimal;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.backtest")
+public class BacktestProperties {
+
+    private int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int pageSize = 10_000;
+    private int leafSize = 1_000;
+    private BigDecimal amountBucket = BigDecimal.valueOf(500);
+    /**
+     * Largest number of amount buckets and of payment periods a backtested candidate may need.
+     */
+    private int maxBuckets = 1_000;
+
+}
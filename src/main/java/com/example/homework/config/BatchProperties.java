@@ -0,0 +1,21 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.batch")
+public class BatchProperties {
+
+    private int chunkSize = 256;
+    /**
+     * Profile lookups of a chunk running at a time, shared by all batches in progress: the size of the lookup pool, or
+     * with virtual threads the lookups allowed to read the profile store at once.
+     */
+    private int lookupThreads = 16;
+
+}
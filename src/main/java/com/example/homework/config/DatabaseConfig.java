@@ -1,11 +1,10 @@
 package com.example.homework.config;
 
+import com.zaxxer.hikari.HikariDataSource;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.datasource.DriverManagerDataSource;
-
-import javax.sql.DataSource;
 
 @Configuration
 public class DatabaseConfig {
@@ -19,13 +18,21 @@ public class DatabaseConfig {
     @Value("${spring.datasource.password}")
     private String databasePassword;
 
+    @Value("${spring.datasource.driver-class-name}")
+    private String driverClassName;
+
+    /**
+     * Pooled connections, tuned with {@code spring.datasource.hikari.*}. Size the pool for the request threads that
+     * miss the profile cache plus one connection for the audit flusher.
+     */
     @Bean
-    public DataSource dataSource() {
-        DriverManagerDataSource dataSource = new DriverManagerDataSource();
-        dataSource.setUrl(databaseUrl);
+    @ConfigurationProperties(prefix = "spring.datasource.hikari")
+    public HikariDataSource dataSource() {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(databaseUrl);
         dataSource.setUsername(databaseUsername);
         dataSource.setPassword(databasePassword);
-        dataSource.setDriverClassName("org.postgresql.Driver");
+        dataSource.setDriverClassName(driverClassName);
         return dataSource;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,18 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.decision-table")
+public class DecisionTableProperties {
+
+    private boolean enabled = true;
+    private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+}
@@ -0,0 +1,19 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.trace")
+public class DecisionTraceProperties {
+
+    /**
+     * Share of decisions, between 0 and 1, logged with their score evaluations.
+     */
+    private double sampleRate = 0.01;
+
+}
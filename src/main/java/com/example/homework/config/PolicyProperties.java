@@ -0,0 +1,22 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.policy")
+public class PolicyProperties {
+
+    /**
+     * Properties file with {@code min-amount}, {@code max-amount}, {@code min-period} and {@code max-period}, applied at
+     * startup and whenever it changes. Keys it leaves out keep their current value.
+     */
+    private Path file;
+
+}
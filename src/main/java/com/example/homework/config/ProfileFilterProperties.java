@@ -0,0 +1,25 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.profile-filter")
+public class ProfileFilterProperties {
+
+    private boolean enabled = true;
+    private double falsePositiveRate = 0.01;
+    private Duration rebuildInterval = Duration.ofMinutes(10);
+    /**
+     * How often the number of stored profiles is compared with the one the filter was built from. Bounds how long a
+     * profile inserted into the store directly is answered as unknown.
+     */
+    private Duration changeCheckInterval = Duration.ofSeconds(10);
+
+}
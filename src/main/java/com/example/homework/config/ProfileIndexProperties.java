@@ -0,0 +1,34 @@
+package com.example.homework.config;
+
+import com.example.homework.purchase.ProfileIndex;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.profile-index")
+public class ProfileIndexProperties {
+
+    /**
+     * Bulk export of {@code personalId,capacityFactor} lines, or a snapshot written by a previous load.
+     */
+    private Path source;
+
+    /**
+     * Where to write a snapshot after building the index from a bulk export, for mapping on the next start.
+     */
+    private Path snapshot;
+
+    private ProfileIndex.Storage storage = ProfileIndex.Storage.HEAP;
+
+    /**
+     * Reload the index when the source file is replaced. Replace it by moving a complete file into place.
+     */
+    private boolean watch;
+
+}
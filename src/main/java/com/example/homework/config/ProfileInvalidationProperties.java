@@ -0,0 +1,30 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.profile-invalidation")
+public class ProfileInvalidationProperties {
+
+    /**
+     * Longest time a changed profile waits before it is sent to the other nodes.
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    private int maxBatchSize = 500;
+
+    /**
+     * Postgres notification channel shared by all nodes; a lower-case SQL identifier.
+     */
+    private String channel = "profile_invalidation";
+
+    private Duration reconnectDelay = Duration.ofSeconds(1);
+
+}
@@ -0,0 +1,26 @@
+package com.example.homework.config;
+
+import java.math.BigDecimal;
+
+/**
+ * Immutable set of purchase limits of one product: the snapshot a decision is made against. See
+ * {@code PurchasePolicy}.
+ */
+public record PurchaseLimits(BigDecimal minAmount, BigDecimal maxAmount, int minPeriod, int maxPeriod) {
+
+    public static PurchaseLimits of(PurchaseProperties properties) {
+        return new PurchaseLimits(properties.getMinAmount(), properties.getMaxAmount(),
+                properties.getMinPeriod(), properties.getMaxPeriod());
+    }
+
+    /**
+     * The limits of a configured product, taking every limit it leaves out from {@code defaults}.
+     */
+    public static PurchaseLimits of(PurchaseProperties.Product product, PurchaseLimits defaults) {
+        return new PurchaseLimits(
+                product.getMinAmount() == null ? defaults.minAmount() : product.getMinAmount(),
+                product.getMaxAmount() == null ? defaults.maxAmount() : product.getMaxAmount(),
+                product.getMinPeriod() == null ? defaults.minPeriod() : product.getMinPeriod(),
+                product.getMaxPeriod() == null ? defaults.maxPeriod() : product.getMaxPeriod());
+    }
+}
@@ -6,6 +6,8 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
 import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @Getter
 @Setter
@@ -18,4 +20,19 @@ public class PurchaseProperties {
     private int minPeriod = 6;
     private int maxPeriod = 24;
 
+    /**
+     * Products besides the default one, by product code. Limits a product leaves out are those above.
+     */
+    private Map<String, Product> products = new LinkedHashMap<>();
+
+    @Getter
+    @Setter
+    public static class Product {
+
+        private BigDecimal minAmount;
+        private BigDecimal maxAmount;
+        private Integer minPeriod;
+        private Integer maxPeriod;
+
+    }
 }
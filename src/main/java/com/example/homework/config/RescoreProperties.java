@@ -0,0 +1,22 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Path;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.rescore")
+public class RescoreProperties {
+
+    private Path input;
+    private Path output;
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+}
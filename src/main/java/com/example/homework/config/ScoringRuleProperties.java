@@ -0,0 +1,24 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.scoring-rule")
+public class ScoringRuleProperties {
+
+    /**
+     * Approval score of an amount for a period; the built-in formula, including its 10-digit rounding.
+     */
+    private String score = "round(factor / amount, 10) * period";
+
+    /**
+     * Score an amount must reach to be approved for a period.
+     */
+    private String threshold = "1";
+
+}
@@ -0,0 +1,28 @@
+package com.example.homework.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.sql.init.AbstractScriptDatabaseInitializer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.orm.jpa.EntityManagerFactoryInfo;
+
+@Configuration
+public class StartupConfig {
+
+    /**
+     * With {@code spring.main.lazy-initialization}, keeps Hibernate and the database initialization eager while the
+     * approval path reads profiles through JPA or audits decisions, so the first application does not pay for them and
+     * the embedded sample data is loaded. With the profile index and the audit off, nothing on the approval path needs
+     * the database and JPA is not configured at all (see {@link UnusedPersistenceEnvironmentPostProcessor}).
+     */
+    @Bean
+    static LazyInitializationExcludeFilter eagerPersistenceWhenUsed(Environment environment) {
+        boolean databaseUsed = UnusedPersistenceEnvironmentPostProcessor.isDatabaseUsed(environment);
+        return (beanName, beanDefinition, beanType) -> databaseUsed
+                && (EntityManagerFactory.class.isAssignableFrom(beanType)
+                || EntityManagerFactoryInfo.class.isAssignableFrom(beanType)
+                || AbstractScriptDatabaseInitializer.class.isAssignableFrom(beanType));
+    }
+}
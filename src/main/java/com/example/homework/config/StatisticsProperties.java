@@ -0,0 +1,40 @@
+package com.example.homework.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "purchase.statistics")
+public class StatisticsProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Time kept in one-minute windows; rounded down to whole minutes.
+     */
+    private Duration window = Duration.ofHours(1);
+
+    /**
+     * Equal-width buckets of approved amounts between the configured minimum and maximum amount.
+     */
+    private int amountBuckets = 20;
+
+    /**
+     * Most buckets of payment periods between the configured minimum and maximum period; one month wide while the
+     * periods fit, otherwise as many whole months as it takes.
+     */
+    private int periodBuckets = 60;
+
+    /**
+     * Lower bounds of the capacity factor buckets, ascending.
+     */
+    private List<Integer> capacityFactorBounds = List.of(-1, 0, 10, 25, 50, 100, 250, 500, 1000);
+
+}
@@ -0,0 +1,45 @@
+package com.example.homework.config;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.util.StringUtils;
+
+import java.util.Map;
+
+/**
+ * Leaves JPA out when nothing uses the database: with {@code purchase.profile-store=index} and
+ * {@code purchase.audit.enabled=false}, Hibernate and the repositories are not auto-configured at all.
+ * <p>
+ * Lazy initialization alone cannot keep them from starting, because the entity manager factory is initialized before
+ * all other beans so it can register class transformers.
+ */
+public class UnusedPersistenceEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    static final String EXCLUDE = "spring.autoconfigure.exclude";
+    static final String JPA_AUTO_CONFIGURATIONS =
+            "org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration,"
+                    + "org.springframework.boot.autoconfigure.data.jpa.JpaRepositoriesAutoConfiguration";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (isDatabaseUsed(environment)) {
+            return;
+        }
+        String excluded = environment.getProperty(EXCLUDE);
+        String exclude = StringUtils.hasText(excluded) ? excluded + "," + JPA_AUTO_CONFIGURATIONS
+                : JPA_AUTO_CONFIGURATIONS;
+        environment.getPropertySources().addFirst(
+                new MapPropertySource("unusedPersistence", Map.of(EXCLUDE, exclude)));
+    }
+
+    /**
+     * Whether the approval path reads profiles through JPA or audits decisions.
+     */
+    static boolean isDatabaseUsed(Environment environment) {
+        return "jpa".equals(environment.getProperty("purchase.profile-store", "jpa"))
+                || environment.getProperty("purchase.audit.enabled", Boolean.class, true);
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.homework.config;
+
+import com.example.homework.purchase.ApprovalWireMessageConverter;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    // Appended after the JSON converters; as a converter bean it would come first and answer clients that accept any
+    // media type with the binary format
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(new ApprovalWireMessageConverter());
+    }
+}
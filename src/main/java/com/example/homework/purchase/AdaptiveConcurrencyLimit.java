@@ -0,0 +1,157 @@
+package com.example.homework.purchase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit that adapts to latency, after the gradient algorithm of Netflix's concurrency-limits.
+ * <p>
+ * Requests hold a permit while they are served, and the round-trip times of every {@link #WINDOW_SAMPLES} completed
+ * requests are averaged into one sample, so a single stalled request does not move the limit. The limit follows the
+ * ratio of the long-term average to the latest sample. While latency stays within {@link #RTT_TOLERANCE} times the
+ * average the limit grows by a small queue allowance per sample. Once requests take longer, the limit shrinks, down to
+ * half per sample, until queueing stops. The long-term average follows only samples no slower than itself, so
+ * sustained overload does not become the usual latency and the limit settles where latency meets the tolerance. Slower
+ * samples move it only once the limit is at its minimum: a backend that got slower shrinks the limit that far, and the
+ * limit grows again once the average has caught up. Samples taken while less than half the limit is in use say
+ * nothing about capacity and do not raise the limit.
+ * <p>
+ * Acquiring and releasing a permit is a compare-and-set on the in-flight count. Round-trip times are added to
+ * {@link LongAdder}s without a lock and folded into the estimate by whichever thread gets the update lock without
+ * waiting, once a window is complete; a thread that misses the lock leaves its sample to the holder, which looks again
+ * after unlocking. So no sample is lost and the request path never blocks on the limiter. A sample racing with a fold
+ * may have its time counted in one window and itself in the next. A non-adaptive limit stays at its initial value.
+ */
+final class AdaptiveConcurrencyLimit {
+
+    static final double RTT_TOLERANCE = 1.5;
+    private static final double SMOOTHING = 0.2;
+    private static final int LONG_WINDOW = 600;
+    private static final int WARMUP_SAMPLES = 10;
+    static final int WINDOW_SAMPLES = 10;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final boolean adaptive;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder windowRttNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final LongAccumulator windowMaxInFlight = new LongAccumulator(Math::max, 0);
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile int limit;
+    private double estimatedLimit;
+    private double longRtt;
+    private int samples;
+    private long recordedRtts;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, boolean adaptive) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Concurrency limits must satisfy 1 <= min <= initial <= max: "
+                    + minLimit + " <= " + initialLimit + " <= " + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.adaptive = adaptive;
+        this.limit = initialLimit;
+        this.estimatedLimit = initialLimit;
+    }
+
+    /**
+     * @return whether a permit was taken; if so, {@link #release(long)} must be called once the request completes
+     */
+    boolean tryAcquire() {
+        int current = inFlight.get();
+        while (current < limit) {
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+            current = inFlight.get();
+        }
+        return false;
+    }
+
+    /**
+     * Returns a permit and records how long the request held it.
+     */
+    void release(long rttNanos) {
+        int inFlightBeforeRelease = inFlight.getAndDecrement();
+        if (!adaptive || rttNanos <= 0) {
+            return;
+        }
+
+        // The time first, so a fold that counts this sample also has its time
+        windowRttNanos.add(rttNanos);
+        windowMaxInFlight.accumulate(inFlightBeforeRelease);
+        windowSamples.increment();
+        while (windowSamples.sum() >= WINDOW_SAMPLES && updateLock.tryLock()) {
+            try {
+                fold();
+            } finally {
+                updateLock.unlock();
+            }
+        }
+    }
+
+    int limit() {
+        return limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the round-trip times folded into the estimate so far
+     */
+    long recordedRtts() {
+        updateLock.lock();
+        try {
+            return recordedRtts;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Folds the window into the estimate; only the holder of the update lock resets the window.
+     */
+    private void fold() {
+        if (windowSamples.sum() < WINDOW_SAMPLES) {
+            return;
+        }
+        long count = windowSamples.sumThenReset();
+        long rttNanos = windowRttNanos.sumThenReset();
+        int maxInFlight = (int) windowMaxInFlight.getThenReset();
+        recordedRtts += count;
+        sample((double) rttNanos / count, maxInFlight);
+    }
+
+    private void sample(double shortRtt, int inFlightAtSample) {
+        if (samples < WARMUP_SAMPLES) {
+            samples++;
+            longRtt += (shortRtt - longRtt) / samples;
+            return;
+        }
+        if (shortRtt <= longRtt || estimatedLimit <= minLimit) {
+            longRtt += (shortRtt - longRtt) * 2 / (LONG_WINDOW + 1);
+        }
+
+        // A long-term average far above the latest samples means the load has dropped; let it catch up faster
+        if (longRtt / shortRtt > 2) {
+            longRtt *= 0.95;
+        }
+        if (inFlightAtSample < estimatedLimit / 2) {
+            return;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, RTT_TOLERANCE * longRtt / shortRtt));
+        // The queue allowance only while latency is within the tolerance, or it would hold the limit above capacity
+        double next = gradient < 1.0 ? estimatedLimit * gradient : estimatedLimit + Math.sqrt(estimatedLimit);
+        next = estimatedLimit * (1 - SMOOTHING) + next * SMOOTHING;
+        estimatedLimit = Math.max(minLimit, Math.min(maxLimit, next));
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.ErrorResponseException;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.Instant;
+import java.util.SortedMap;
+
+import static org.springframework.http.ResponseEntity.*;
+
+/**
+ * Operational endpoints for switching the purchase policy and the profile dataset at runtime and reading live approval
+ * statistics. {@code /policy} reads and replaces the limits of the default product, {@code /products} those of every
+ * product. They are not authenticated, so they are only mapped with {@code purchase.admin.enabled=true}, for
+ * deployments that expose them on an internal network only.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@ConditionalOnProperty(name = "purchase.admin.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class AdminController {
+    private final PurchasePolicy purchasePolicy;
+    private final FinancialProfileService financialProfileService;
+    private final PolicyBacktester policyBacktester;
+    private final ApprovalStatistics approvalStatistics;
+
+    @GetMapping("/policy")
+    public PurchaseLimits getPolicy() {
+        return purchasePolicy.current();
+    }
+
+    /**
+     * Replaces the limits of the default product; applications decided from now on use them.
+     */
+    @PutMapping("/policy")
+    public ResponseEntity<PurchaseLimits> updatePolicy(@RequestBody PurchaseLimits limits) {
+        try {
+            return ok(purchasePolicy.update(limits));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.of(invalidPolicy(e)).build();
+        }
+    }
+
+    @GetMapping("/products")
+    public SortedMap<String, PurchaseLimits> getProducts() {
+        return purchasePolicy.products();
+    }
+
+    /**
+     * Adds a product or replaces its limits; applications decided from now on use them.
+     */
+    @PutMapping("/products/{code}")
+    public ResponseEntity<PurchaseLimits> updateProduct(@PathVariable String code, @RequestBody PurchaseLimits limits) {
+        try {
+            return ok(purchasePolicy.update(code, limits));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.of(invalidPolicy(e)).build();
+        }
+    }
+
+    /**
+     * Removes a product; applications for it are rejected as an unknown product from now on.
+     */
+    @DeleteMapping("/products/{code}")
+    public ResponseEntity<Void> removeProduct(@PathVariable String code) {
+        try {
+            return purchasePolicy.remove(code) ? noContent().build() : notFound().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.of(invalidPolicy(e)).build();
+        }
+    }
+
+    /**
+     * Scores the stored applications for a product decided in {@code [from, to)} against candidate limits for it
+     * without putting them in force; without {@code product} the default product is backtested. The totals so far are
+     * streamed as newline-delimited JSON while the applications are scored; the last line is the complete result.
+     */
+    @PostMapping("/policy/backtest")
+    public ResponseEntity<StreamingResponseBody> backtestPolicy(@RequestBody PurchaseLimits candidate,
+                                                                @RequestParam(required = false) Instant from,
+                                                                @RequestParam(required = false) Instant to,
+                                                                @RequestParam(name = "product", required = false)
+                                                                String productCode) {
+        try {
+            policyBacktester.validate(candidate);
+        } catch (IllegalArgumentException e) {
+            throw new ErrorResponseException(HttpStatus.BAD_REQUEST, invalidPolicy(e), e);
+        }
+        if (policyBacktester.isRunning()) {
+            ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.SERVICE_UNAVAILABLE,
+                    "A backtest is already running, retry when it has finished");
+            problem.setTitle("Backtest in progress");
+            throw new ErrorResponseException(HttpStatus.SERVICE_UNAVAILABLE, problem, null);
+        }
+
+        StreamingResponseBody reports = output -> policyBacktester.stream(productCode, candidate, from, to, output);
+        return ok().contentType(MediaType.APPLICATION_NDJSON).body(reports);
+    }
+
+    /**
+     * Loads the profile dataset again and swaps it in; lookups keep being answered from the previous one meanwhile.
+     */
+    @PostMapping("/profiles/reload")
+    public ResponseEntity<Void> reloadProfiles() {
+        financialProfileService.reloadProfiles();
+        return noContent().build();
+    }
+
+    /**
+     * Approval statistics of the last {@code minutes} minutes, by minute and in total; the whole window by default.
+     */
+    @GetMapping("/statistics")
+    public ApprovalStatistics.ApprovalStatisticsReport getStatistics(@RequestParam(required = false) Integer minutes) {
+        return approvalStatistics.report(minutes == null ? approvalStatistics.windowMinutes() : minutes);
+    }
+
+    /**
+     * Answers a backtest refused before it started; a streamed response cannot carry the problem as its body.
+     */
+    @ExceptionHandler(ErrorResponseException.class)
+    public ResponseEntity<Void> backtestRefused(ErrorResponseException e) {
+        return ResponseEntity.of(e.getBody()).build();
+    }
+
+    private static ProblemDetail invalidPolicy(IllegalArgumentException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+        problem.setTitle("Invalid purchase policy");
+        return problem;
+    }
+}
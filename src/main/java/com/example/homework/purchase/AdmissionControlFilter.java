@@ -0,0 +1,179 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.AdmissionProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits applications while fewer than the limit of their budget are in progress and answers the rest at once with
+ * {@code 503 Service Unavailable} and {@code Retry-After}, so that a traffic spike is shed at the door instead of
+ * queueing until every caller times out.
+ * <p>
+ * {@code /api/purchase/apply/batch} draws on the partner batch budget, other applications and offers on the
+ * interactive one, so a burst of either kind cannot take the capacity of the other. The interactive limit adapts to
+ * the latency of the requests it admits (see {@link AdaptiveConcurrencyLimit}). A streamed batch holds its permit until
+ * the response completes.
+ * <p>
+ * Decisions are published as {@code purchase.admission.requests}, tagged by budget and outcome, and the current limit
+ * and requests in progress of each budget as the {@code purchase.admission.limit} and
+ * {@code purchase.admission.in.flight} gauges.
+ */
+@Component
+public class AdmissionControlFilter extends OncePerRequestFilter implements MeterBinder {
+
+    static final String APPLY_PATH = "/api/purchase/apply";
+    static final String BATCH_PATH = "/api/purchase/apply/batch";
+    static final String OFFERS_PATH = "/api/purchase/offers/";
+
+    private static final byte[] REJECTION = ("{\"type\":\"about:blank\",\"title\":\"Service Unavailable\","
+            + "\"status\":503,\"detail\":\"Too many applications in progress, retry later\"}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final AdmissionProperties admissionProperties;
+    private final String retryAfterSeconds;
+    private final Budget interactive;
+    private final Budget batch;
+
+    public AdmissionControlFilter(AdmissionProperties admissionProperties) {
+        this.admissionProperties = admissionProperties;
+        this.retryAfterSeconds = Long.toString(Math.max(1, admissionProperties.getRetryAfter().toSeconds()));
+        this.interactive = new Budget("interactive", admissionProperties.getInteractive());
+        this.batch = new Budget("batch", admissionProperties.getBatch());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !admissionProperties.isEnabled() || budget(request) == null;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        Budget budget = budget(request);
+        if (!budget.limit.tryAcquire()) {
+            budget.rejected.increment();
+            reject(response);
+            return;
+        }
+        budget.accepted.increment();
+
+        long started = System.nanoTime();
+        boolean released = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnComplete(budget.limit, started));
+                released = true;
+            }
+        } finally {
+            if (!released) {
+                budget.limit.release(System.nanoTime() - started);
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        interactive.bindTo(registry);
+        batch.bindTo(registry);
+    }
+
+    AdaptiveConcurrencyLimit interactiveLimit() {
+        return interactive.limit;
+    }
+
+    AdaptiveConcurrencyLimit batchLimit() {
+        return batch.limit;
+    }
+
+    private Budget budget(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (path.equals(BATCH_PATH)) {
+            return batch;
+        }
+        if (path.equals(APPLY_PATH) || path.startsWith(OFFERS_PATH)) {
+            return interactive;
+        }
+        return null;
+    }
+
+    private void reject(HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+        response.setContentType(MediaType.APPLICATION_PROBLEM_JSON_VALUE);
+        response.setContentLength(REJECTION.length);
+        response.getOutputStream().write(REJECTION);
+    }
+
+    private static final class Budget {
+        private final String name;
+        private final AdaptiveConcurrencyLimit limit;
+        private final LongAdder accepted = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+
+        private Budget(String name, AdmissionProperties.Budget properties) {
+            this.name = name;
+            this.limit = new AdaptiveConcurrencyLimit(properties.getInitialLimit(), properties.getMinLimit(),
+                    properties.getMaxLimit(), properties.isAdaptive());
+        }
+
+        private void bindTo(MeterRegistry registry) {
+            FunctionCounter.builder("purchase.admission.requests", accepted, LongAdder::sum)
+                    .description("Requests admitted or shed by admission control")
+                    .tags("budget", name, "outcome", "accepted")
+                    .register(registry);
+            FunctionCounter.builder("purchase.admission.requests", rejected, LongAdder::sum)
+                    .description("Requests admitted or shed by admission control")
+                    .tags("budget", name, "outcome", "rejected")
+                    .register(registry);
+            Gauge.builder("purchase.admission.limit", limit, AdaptiveConcurrencyLimit::limit)
+                    .description("Requests admitted concurrently")
+                    .tag("budget", name)
+                    .register(registry);
+            Gauge.builder("purchase.admission.in.flight", limit, AdaptiveConcurrencyLimit::inFlight)
+                    .description("Admitted requests in progress")
+                    .tag("budget", name)
+                    .register(registry);
+        }
+    }
+
+    private record ReleaseOnComplete(AdaptiveConcurrencyLimit limit, long started) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limit.release(System.nanoTime() - started);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            // Followed by onComplete
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            // Followed by onComplete
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // A streamed response is a single async cycle
+        }
+    }
+}
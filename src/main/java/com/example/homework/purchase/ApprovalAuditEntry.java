@@ -0,0 +1,70 @@
+package com.example.homework.purchase;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One approval decision as stored in {@code approval_audit}. Rows are inserted with JDBC batches by
+ * {@link WriteBehindApprovalAuditLog}; the entity only defines the table.
+ */
+@Entity
+@Table(name = "approval_audit")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ApprovalAuditEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Not limited to 11 characters: rejections below the minimum amount are stored before the ID is looked up
+    @Column(nullable = false)
+    private String personalId;
+
+    /**
+     * {@code null} in rows stored before the product was recorded, which were all decided for the default product.
+     */
+    private String productCode;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal requestedAmount;
+
+    @Column(nullable = false)
+    private int paymentPeriod;
+
+    /**
+     * {@code null} when the request was rejected before the profile was looked up.
+     */
+    private Integer capacityFactor;
+
+    @Column(nullable = false)
+    private boolean approved;
+
+    @Column(precision = 19, scale = 2, nullable = false)
+    private BigDecimal approvedAmount;
+
+    @Column(nullable = false)
+    private Instant decidedAt;
+
+    public ApprovalAuditEntry(String personalId, String productCode, BigDecimal requestedAmount, int paymentPeriod,
+                              Integer capacityFactor, ApprovalDecision decision, Instant decidedAt) {
+        this.personalId = personalId;
+        this.productCode = productCode;
+        this.requestedAmount = requestedAmount;
+        this.paymentPeriod = paymentPeriod;
+        this.capacityFactor = capacityFactor;
+        this.approved = decision.isApproved();
+        this.approvedAmount = decision.getApprovedAmount();
+        this.decidedAt = decidedAt;
+    }
+}
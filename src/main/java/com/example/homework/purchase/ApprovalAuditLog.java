@@ -0,0 +1,11 @@
+package com.example.homework.purchase;
+
+/**
+ * Receives every decision made by {@link PurchaseService}. Implementations must not block the request path on the
+ * database.
+ */
+@FunctionalInterface
+public interface ApprovalAuditLog {
+
+    void record(ApprovalAuditEntry entry);
+}
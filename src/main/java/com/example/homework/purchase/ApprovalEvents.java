@@ -0,0 +1,163 @@
+package com.example.homework.purchase;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events of the approval pipeline, so that a GC pause or lock stall in a recording can be matched
+ * to the lookups and decisions on the same thread at the same time.
+ * <p>
+ * Events carry primitive fields only and no personal ID. Callers set the fields only once {@code shouldCommit()} says
+ * the event is recorded; while no recording is running an event is an allocation that never escapes, which the JIT
+ * compiler removes. Stack traces are off by default and can be switched on per event in the recording settings.
+ */
+final class ApprovalEvents {
+
+    static final String CATEGORY = "Purchase Approval";
+
+    private ApprovalEvents() {
+    }
+
+    @Name("com.example.homework.purchase.ProfileLookup")
+    @Label("Profile Lookup")
+    @Category(CATEGORY)
+    @Description("Lookup of a customer's financial capacity factor")
+    @StackTrace(false)
+    static final class ProfileLookup extends Event {
+
+        @Label("Found")
+        boolean found;
+
+        @Label("Capacity Factor")
+        int capacityFactor;
+
+        @Label("In-Memory Index")
+        boolean indexed;
+    }
+
+    @Name("com.example.homework.purchase.PeriodScan")
+    @Label("Period Scan")
+    @Category(CATEGORY)
+    @Description("Search for the shortest payment period that approves an amount")
+    @StackTrace(false)
+    static final class PeriodScan extends Event {
+
+        @Label("Capacity Factor")
+        int capacityFactor;
+
+        @Label("Amount")
+        double amount;
+
+        @Label("From Period")
+        int fromPeriod;
+
+        @Label("Maximum Period")
+        int maxPeriod;
+
+        @Label("Period")
+        @Description("Shortest approving period, or -1 if no period up to the maximum approves the amount")
+        int period;
+    }
+
+    @Name("com.example.homework.purchase.AmountReduction")
+    @Label("Amount Reduction")
+    @Category(CATEGORY)
+    @Description("Search for the largest amount below the requested one that the maximum period approves")
+    @StackTrace(false)
+    static final class AmountReduction extends Event {
+
+        @Label("Capacity Factor")
+        int capacityFactor;
+
+        @Label("Amount")
+        double amount;
+
+        @Label("Reduced Amount")
+        @Description("Largest approved amount, or 0 if every amount down to the minimum is rejected")
+        double reducedAmount;
+
+        @Label("Maximum Period")
+        int maxPeriod;
+    }
+
+    @Name("com.example.homework.purchase.AmountIncrease")
+    @Label("Amount Increase")
+    @Category(CATEGORY)
+    @Description("Raise of an approved amount as far as the period and the maximum amount allow")
+    @StackTrace(false)
+    static final class AmountIncrease extends Event {
+
+        @Label("Capacity Factor")
+        int capacityFactor;
+
+        @Label("Amount")
+        double amount;
+
+        @Label("Increased Amount")
+        double increasedAmount;
+
+        @Label("Period")
+        int period;
+    }
+
+    @Name("com.example.homework.purchase.Decision")
+    @Label("Approval Decision")
+    @Category(CATEGORY)
+    @Description("Decision on one application, from its start, including the profile lookup, until the audit entry "
+            + "and metrics are recorded")
+    @StackTrace(false)
+    static final class Decision extends Event {
+
+        @Label("Approved")
+        boolean approved;
+
+        @Label("Requested Amount")
+        double requestedAmount;
+
+        @Label("Requested Period")
+        int requestedPeriod;
+
+        @Label("Approved Amount")
+        double approvedAmount;
+
+        @Label("Payment Period")
+        int paymentPeriod;
+
+        @Label("Capacity Factor")
+        @Description("Capacity factor of the customer, or Integer.MIN_VALUE if rejected before the lookup")
+        int capacityFactor;
+    }
+
+    @Name("com.example.homework.purchase.SharedDecision")
+    @Label("Shared Decision")
+    @Category(CATEGORY)
+    @Description("Application answered with the decision of an identical application, in flight or cached, instead "
+            + "of being decided, audited and counted in the statistics")
+    @StackTrace(false)
+    static final class SharedDecision extends Event {
+
+        @Label("Found")
+        @Description("Whether the customer has a profile; an application without one is not approved")
+        boolean found;
+
+        @Label("Approved")
+        boolean approved;
+
+        @Label("Requested Amount")
+        double requestedAmount;
+
+        @Label("Requested Period")
+        int requestedPeriod;
+
+        @Label("Approved Amount")
+        double approvedAmount;
+
+        @Label("In Flight")
+        @Description("Whether the decision was still being made when the application arrived")
+        boolean inFlight;
+    }
+}
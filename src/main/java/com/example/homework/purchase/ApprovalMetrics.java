@@ -0,0 +1,169 @@
+package com.example.homework.purchase;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters of the decision path, all registered up front so that recording a decision is a plain field access and an
+ * atomic update, without looking up meters or building tags per request.
+ * <ul>
+ *     <li>{@code purchase.approval.decision}: decision latency with percentile histograms, tagged by outcome</li>
+ *     <li>{@code purchase.approval.rejections}: rejections tagged by reason</li>
+ *     <li>{@code purchase.approval.score.evaluations}: approval scores the engine calculated for a decision, 0 for
+ *     decisions answered from a decision table</li>
+ *     <li>{@code purchase.approval.amount.raises}: decisions that searched for an amount above the request</li>
+ *     <li>{@code purchase.approval.amount.adjustments}: approved amounts raised above or reduced below the request</li>
+ *     <li>{@code purchase.approval.shared}: applications answered with the decision of an identical application, which
+ *     are not counted as decisions, tagged by outcome and by whether the decision was in flight or cached</li>
+ * </ul>
+ */
+@Component
+public class ApprovalMetrics {
+
+    static final String DECISION_TIMER = "purchase.approval.decision";
+    static final String REJECTIONS = "purchase.approval.rejections";
+    static final String SCORE_EVALUATIONS = "purchase.approval.score.evaluations";
+    static final String AMOUNT_RAISES = "purchase.approval.amount.raises";
+    static final String AMOUNT_ADJUSTMENTS = "purchase.approval.amount.adjustments";
+    static final String SHARED = "purchase.approval.shared";
+
+    private final Timer approvedTimer;
+    private final Timer rejectedTimer;
+    private final Counter belowMinimum;
+    private final Counter ineligible;
+    private final Counter unknownProfile;
+    private final Counter insufficientCapacity;
+    private final DistributionSummary scoreEvaluations;
+    private final Counter amountRaises;
+    private final Counter amountIncreased;
+    private final Counter amountReduced;
+    private final Counter sharedApprovedInFlight;
+    private final Counter sharedApprovedCached;
+    private final Counter sharedRejectedInFlight;
+    private final Counter sharedRejectedCached;
+    private final Counter sharedUnknownInFlight;
+    private final Counter sharedUnknownCached;
+
+    public ApprovalMetrics(MeterRegistry registry) {
+        this.approvedTimer = decisionTimer(registry, "approved");
+        this.rejectedTimer = decisionTimer(registry, "rejected");
+        this.belowMinimum = rejections(registry, "below_minimum");
+        this.ineligible = rejections(registry, "ineligible");
+        this.unknownProfile = rejections(registry, "unknown_profile");
+        this.insufficientCapacity = rejections(registry, "insufficient_capacity");
+        this.scoreEvaluations = DistributionSummary.builder(SCORE_EVALUATIONS)
+                .description("Approval scores calculated per decision")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.amountRaises = Counter.builder(AMOUNT_RAISES)
+                .description("Decisions that searched for an amount above the request")
+                .register(registry);
+        this.amountIncreased = amountAdjustments(registry, "increased");
+        this.amountReduced = amountAdjustments(registry, "reduced");
+        this.sharedApprovedInFlight = shared(registry, "approved", "in_flight");
+        this.sharedApprovedCached = shared(registry, "approved", "cached");
+        this.sharedRejectedInFlight = shared(registry, "rejected", "in_flight");
+        this.sharedRejectedCached = shared(registry, "rejected", "cached");
+        this.sharedUnknownInFlight = shared(registry, "unknown_profile", "in_flight");
+        this.sharedUnknownCached = shared(registry, "unknown_profile", "cached");
+    }
+
+    private static Timer decisionTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder(DECISION_TIMER)
+                .description("Time to decide a purchase application")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder(REJECTIONS)
+                .description("Rejected purchase applications")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static Counter amountAdjustments(MeterRegistry registry, String direction) {
+        return Counter.builder(AMOUNT_ADJUSTMENTS)
+                .description("Approved amounts that differ from the requested amount")
+                .tag("direction", direction)
+                .register(registry);
+    }
+
+    private static Counter shared(MeterRegistry registry, String outcome, String source) {
+        return Counter.builder(SHARED)
+                .description("Applications answered with the decision of an identical application")
+                .tag("outcome", outcome)
+                .tag("source", source)
+                .register(registry);
+    }
+
+    void recordDecision(boolean approved, long startedNanos) {
+        (approved ? approvedTimer : rejectedTimer).record(System.nanoTime() - startedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records an application answered with the decision of an identical one instead of being decided.
+     *
+     * @param decision the shared decision, empty if the customer has no profile
+     * @param inFlight whether the decision was still being made when the application arrived
+     */
+    void recordShared(Optional<ApprovalDecision> decision, boolean inFlight) {
+        Counter counter;
+        if (decision.isEmpty()) {
+            counter = inFlight ? sharedUnknownInFlight : sharedUnknownCached;
+        } else if (decision.get().isApproved()) {
+            counter = inFlight ? sharedApprovedInFlight : sharedApprovedCached;
+        } else {
+            counter = inFlight ? sharedRejectedInFlight : sharedRejectedCached;
+        }
+        counter.increment();
+    }
+
+    void recordBelowMinimum() {
+        belowMinimum.increment();
+    }
+
+    void recordIneligible() {
+        ineligible.increment();
+    }
+
+    void recordUnknownProfile() {
+        unknownProfile.increment();
+    }
+
+    void recordInsufficientCapacity() {
+        insufficientCapacity.increment();
+    }
+
+    /**
+     * Records the search behind a decision that reached the engine.
+     * <p>
+     * Every engine searches for a higher amount exactly when it approves the requested amount itself; a request over
+     * the maximum or reduced to fit is approved below the request. So an approved amount at or above the request counts
+     * one run of that search, whether or not it found a higher amount.
+     *
+     * @param evaluations             the steps of the decision's {@link DecisionTrace}
+     * @param amountComparedToRequest the approved amount compared to the requested one
+     */
+    void recordSearch(int evaluations, boolean approved, int amountComparedToRequest) {
+        scoreEvaluations.record(evaluations);
+        if (!approved) {
+            return;
+        }
+        if (amountComparedToRequest >= 0) {
+            amountRaises.increment();
+        }
+        if (amountComparedToRequest > 0) {
+            amountIncreased.increment();
+        } else if (amountComparedToRequest < 0) {
+            amountReduced.increment();
+        }
+    }
+}
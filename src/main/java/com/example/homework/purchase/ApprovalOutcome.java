@@ -0,0 +1,19 @@
+package com.example.homework.purchase;
+
+import java.math.BigDecimal;
+
+/**
+ * Result of an approval search: the approved amount together with the payment period it was approved for.
+ */
+record ApprovalOutcome(boolean approved, BigDecimal approvedAmount, int paymentPeriod) {
+
+    static final ApprovalOutcome REJECTED = new ApprovalOutcome(false, BigDecimal.ZERO, 0);
+
+    static ApprovalOutcome approved(BigDecimal approvedAmount, int paymentPeriod) {
+        return new ApprovalOutcome(true, approvedAmount, paymentPeriod);
+    }
+
+    ApprovalDecision toDecision() {
+        return approved ? ApprovalDecision.approve(approvedAmount) : ApprovalDecision.reject();
+    }
+}
@@ -0,0 +1,26 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+
+import java.math.BigDecimal;
+
+/**
+ * Finds the maximum approvable amount for a customer and the payment period it is approved for.
+ * <p>
+ * The implementation is selected with {@code purchase.scoring-engine}; all of them must produce the same
+ * {@link ApprovalDecision} for the same input, except {@link RuleBasedApprovalSolver} with a scoring rule other than
+ * the default. The limits are passed in with every call, so a decision is made against
+ * one {@link PurchasePolicy} snapshot from start to finish.
+ */
+interface ApprovalSolver {
+
+    ApprovalOutcome solve(PurchaseLimits limits, int financialFactor, BigDecimal requestedAmount, int initialPeriod);
+
+    /**
+     * Whether an {@link OfferMatrix}, which is computed from the built-in formula, reproduces the decisions of this
+     * engine.
+     */
+    default boolean supportsOffers() {
+        return true;
+    }
+}
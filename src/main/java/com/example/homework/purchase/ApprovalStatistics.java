@@ -0,0 +1,479 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.StatisticsProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live approval statistics by minute, fed by every decision of {@link PurchaseService}: approval rate, average approved
+ * amount and the distributions of approved amounts, chosen payment periods and capacity factors.
+ * <p>
+ * Decisions are counted in a ring of one-minute slots covering {@code purchase.statistics.window}. Every count is a
+ * {@link LongAdder}, so concurrent decisions add to cells of their own instead of contending for one value, and
+ * recording a decision neither locks nor allocates, except to open the first minute after a policy change. The slot of
+ * the next minute is cleared by the first decision that sees the current minute, before any decision is counted in it;
+ * after a minute without decisions, the first decision of a minute clears its slot itself, and decisions that find it
+ * being cleared are not counted.
+ * <p>
+ * Approved amounts are counted in {@code amount-buckets} equal buckets between the lowest minimum and the highest
+ * maximum amount of the products in force, periods in at most {@code period-buckets} buckets of whole months between
+ * their lowest minimum and highest maximum period, and capacity factors in the buckets starting at
+ * {@code capacity-factor-bounds}. The amount and period buckets are
+ * laid out again on every {@link PurchasePolicyChangedEvent}. Each minute keeps the layout it was opened with, so only
+ * the minute of the change and the next one, which is opened ahead of time, count values outside their ranges in the
+ * first or last bucket. Each bucket is keyed by its lower bound, and a report over minutes of different layouts lists
+ * the buckets of each.
+ * <p>
+ * The decisions, approval rate and average approved amount of the whole window are published as
+ * {@code purchase.statistics.*} gauges. A scrape reads them one after the other, so their totals are summed once and
+ * shared for a second.
+ */
+@Component
+public class ApprovalStatistics implements MeterBinder {
+
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final long CLEARING = Long.MIN_VALUE;
+    private static final long GAUGE_TOTALS_MAX_AGE_MILLIS = 1_000;
+
+    private final boolean enabled;
+    private final Clock clock;
+    private final PurchasePolicy purchasePolicy;
+    private final int amountBuckets;
+    private final int periodBuckets;
+    private final Slot[] ring;
+    private final int[] capacityFactorBounds;
+
+    private volatile Layout layout;
+    private volatile WindowTotals gaugeTotals;
+
+    @Autowired
+    public ApprovalStatistics(PurchasePolicy purchasePolicy, StatisticsProperties statisticsProperties) {
+        this(purchasePolicy, statisticsProperties, Clock.systemUTC());
+    }
+
+    ApprovalStatistics(PurchasePolicy purchasePolicy, StatisticsProperties statisticsProperties, Clock clock) {
+        long windowMinutes = statisticsProperties.getWindow().toMinutes();
+        int amountBuckets = statisticsProperties.getAmountBuckets();
+        int periodBuckets = statisticsProperties.getPeriodBuckets();
+        int[] bounds = statisticsProperties.getCapacityFactorBounds().stream().mapToInt(Integer::intValue).toArray();
+        if (windowMinutes < 1 || windowMinutes > 24 * 60) {
+            throw new IllegalArgumentException("Statistics window must be between one minute and one day: "
+                    + statisticsProperties.getWindow());
+        }
+        if (amountBuckets < 1) {
+            throw new IllegalArgumentException("At least one amount bucket is required: " + amountBuckets);
+        }
+        if (periodBuckets < 1) {
+            throw new IllegalArgumentException("At least one period bucket is required: " + periodBuckets);
+        }
+        if (bounds.length == 0 || !isAscending(bounds)) {
+            throw new IllegalArgumentException("Capacity factor bounds must be ascending: " + Arrays.toString(bounds));
+        }
+
+        this.enabled = statisticsProperties.isEnabled();
+        this.clock = clock;
+        this.purchasePolicy = purchasePolicy;
+        this.amountBuckets = amountBuckets;
+        this.periodBuckets = periodBuckets;
+        this.capacityFactorBounds = bounds;
+        this.layout = Layout.of(purchasePolicy.products().values(), amountBuckets, periodBuckets);
+
+        // One slot more than the window: the slot of the next minute is cleared while the current one fills
+        this.ring = new Slot[(int) windowMinutes + 1];
+        for (int i = 0; i < ring.length; i++) {
+            ring[i] = new Slot(layout, bounds.length);
+        }
+    }
+
+    /**
+     * Lays the amount and period buckets out over the products now in force, for the minutes opened from now on.
+     */
+    @EventListener(PurchasePolicyChangedEvent.class)
+    void policyChanged() {
+        layout = Layout.of(purchasePolicy.products().values(), amountBuckets, periodBuckets);
+    }
+
+    /**
+     * Counts one decision in the current minute.
+     *
+     * @param capacityFactor the factor the decision was made with, or {@code null} if rejected before the lookup
+     */
+    void record(boolean approved, BigDecimal approvedAmount, int paymentPeriod, Integer capacityFactor) {
+        if (!enabled) {
+            return;
+        }
+        Slot slot = slotFor(clock.millis() / MINUTE_MILLIS);
+        if (slot == null) {
+            return;
+        }
+
+        Counts counts = slot.counts;
+        counts.decisions.increment();
+        if (approved) {
+            double amount = approvedAmount.doubleValue();
+            Layout countsLayout = counts.layout;
+            counts.approved.increment();
+            counts.approvedCents.add(Math.round(amount * 100));
+            counts.amounts[bucket((amount - countsLayout.minAmountValue()) / countsLayout.amountBucketWidthValue(),
+                    counts.amounts.length)].increment();
+            int periodOffset = paymentPeriod - countsLayout.minPeriod();
+            counts.periods[bucket((double) periodOffset / countsLayout.periodBucketWidth(), counts.periods.length)]
+                    .increment();
+        }
+        if (capacityFactor != null) {
+            counts.capacityFactors[capacityFactorBucket(capacityFactor)].increment();
+        }
+    }
+
+    private Slot slotFor(long minute) {
+        Slot slot = ring[index(minute)];
+        long slotMinute = slot.minute.get();
+        if (slotMinute != minute
+                && (slotMinute == CLEARING || slotMinute > minute || !slot.open(slotMinute, minute, layout))) {
+            // Being cleared by another decision, or the clock went back
+            return null;
+        }
+
+        Slot next = ring[index(minute + 1)];
+        long nextMinute = next.minute.get();
+        if (nextMinute != CLEARING && nextMinute < minute + 1) {
+            next.open(nextMinute, minute + 1, layout);
+        }
+        return slot;
+    }
+
+    private int index(long minute) {
+        return (int) Math.floorMod(minute, (long) ring.length);
+    }
+
+    private static int bucket(double offset, int buckets) {
+        return (int) Math.max(0, Math.min(buckets - 1, offset));
+    }
+
+    private int capacityFactorBucket(int capacityFactor) {
+        int position = Arrays.binarySearch(capacityFactorBounds, capacityFactor);
+        // Below the first bound counts in the first bucket
+        return position >= 0 ? position : Math.max(0, -position - 2);
+    }
+
+    /**
+     * Statistics of the last {@code minutes} minutes up to the current one, each minute on its own and all of them
+     * together. Minutes without decisions are included with zero counts.
+     *
+     * @param minutes minutes to report, at most the configured window
+     */
+    public ApprovalStatisticsReport report(int minutes) {
+        long now = clock.millis() / MINUTE_MILLIS;
+        int reported = Math.max(1, Math.min(minutes, ring.length - 1));
+
+        Tally total = new Tally();
+        List<MinuteStatistics> byMinute = new ArrayList<>(reported);
+        for (long minute = now - reported + 1; minute <= now; minute++) {
+            Tally tally = new Tally();
+            tally.add(ring[index(minute)], minute);
+            total.merge(tally);
+            byMinute.add(tally.statistics(minute, minute + 1));
+        }
+        return new ApprovalStatisticsReport(total.statistics(now - reported + 1, now + 1), byMinute);
+    }
+
+    public int windowMinutes() {
+        return ring.length - 1;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("purchase.statistics.decisions", this, statistics -> statistics.gaugeTotals().decisions())
+                .description("Decisions within the statistics window")
+                .register(registry);
+        Gauge.builder("purchase.statistics.approval.rate", this,
+                        statistics -> statistics.gaugeTotals().approvalRate())
+                .description("Share of decisions approved within the statistics window")
+                .register(registry);
+        Gauge.builder("purchase.statistics.approved.amount.average", this,
+                        statistics -> statistics.gaugeTotals().averageApprovedAmount())
+                .description("Average approved amount within the statistics window")
+                .register(registry);
+    }
+
+    /**
+     * Totals of the whole window without any buckets, summed again once they are a second old.
+     */
+    private WindowTotals gaugeTotals() {
+        long now = clock.millis();
+        WindowTotals totals = gaugeTotals;
+        if (totals != null && now >= totals.computedAt() && now - totals.computedAt() < GAUGE_TOTALS_MAX_AGE_MILLIS) {
+            return totals;
+        }
+
+        long currentMinute = now / MINUTE_MILLIS;
+        long decisions = 0;
+        long approved = 0;
+        long approvedCents = 0;
+        for (long minute = currentMinute - windowMinutes() + 1; minute <= currentMinute; minute++) {
+            Slot slot = ring[index(minute)];
+            if (slot.minute.get() != minute) {
+                continue;
+            }
+            Counts counts = slot.counts;
+            long slotDecisions = counts.decisions.sum();
+            long slotApproved = counts.approved.sum();
+            long slotApprovedCents = counts.approvedCents.sum();
+            if (slot.minute.get() == minute) {
+                decisions += slotDecisions;
+                approved += slotApproved;
+                approvedCents += slotApprovedCents;
+            }
+        }
+        totals = new WindowTotals(now, decisions, approved, approvedCents);
+        gaugeTotals = totals;
+        return totals;
+    }
+
+    private static boolean isAscending(int[] values) {
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] <= values[i - 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Totals from {@code start} to {@code end}; {@code averageApprovedAmount} is zero without approvals.
+     */
+    public record MinuteStatistics(Instant start, Instant end, long decisions, long approved, double approvalRate,
+                                   BigDecimal averageApprovedAmount, SortedMap<BigDecimal, Long> approvedAmounts,
+                                   SortedMap<Integer, Long> paymentPeriods, SortedMap<Integer, Long> capacityFactors) {
+    }
+
+    public record ApprovalStatisticsReport(MinuteStatistics total, List<MinuteStatistics> minutes) {
+    }
+
+    private record WindowTotals(long computedAt, long decisions, long approved, long approvedCents) {
+
+        double approvalRate() {
+            return decisions == 0 ? 0 : (double) approved / decisions;
+        }
+
+        double averageApprovedAmount() {
+            return approved == 0 ? 0 : approvedCents / (approved * 100.0);
+        }
+    }
+
+    /**
+     * Amount and period buckets over the limits of every product.
+     */
+    private record Layout(BigDecimal minAmount, BigDecimal amountBucketWidth, double minAmountValue,
+                          double amountBucketWidthValue, int minPeriod, int periodBucketWidth, int amountBuckets,
+                          int periods) {
+
+        static Layout of(Collection<PurchaseLimits> products, int amountBuckets, int periodBuckets) {
+            BigDecimal minAmount = null;
+            BigDecimal maxAmount = null;
+            int minPeriod = Integer.MAX_VALUE;
+            int maxPeriod = Integer.MIN_VALUE;
+            for (PurchaseLimits limits : products) {
+                minAmount = minAmount == null ? limits.minAmount() : minAmount.min(limits.minAmount());
+                maxAmount = maxAmount == null ? limits.maxAmount() : maxAmount.max(limits.maxAmount());
+                minPeriod = Math.min(minPeriod, limits.minPeriod());
+                maxPeriod = Math.max(maxPeriod, limits.maxPeriod());
+            }
+            BigDecimal amountBucketWidth = maxAmount.subtract(minAmount)
+                    .divide(BigDecimal.valueOf(amountBuckets), 2, RoundingMode.UP)
+                    .max(new BigDecimal("0.01"));
+            int periodRange = Math.max(1, maxPeriod - minPeriod + 1);
+            int periodBucketWidth = -Math.floorDiv(-periodRange, periodBuckets);
+            return new Layout(minAmount, amountBucketWidth, minAmount.doubleValue(), amountBucketWidth.doubleValue(),
+                    minPeriod, periodBucketWidth, amountBuckets, -Math.floorDiv(-periodRange, periodBucketWidth));
+        }
+
+        BigDecimal amountBucket(int index) {
+            return minAmount.add(amountBucketWidth.multiply(BigDecimal.valueOf(index)));
+        }
+
+        int periodBucket(int index) {
+            return minPeriod + index * periodBucketWidth;
+        }
+    }
+
+    private static final class Slot {
+
+        private final AtomicLong minute = new AtomicLong(-1);
+        private volatile Counts counts;
+
+        Slot(Layout layout, int capacityFactorBuckets) {
+            this.counts = new Counts(layout, capacityFactorBuckets);
+        }
+
+        /**
+         * Clears the counts of minute {@code expected} and opens the slot for {@code next} with the given layout,
+         * unless another decision got there first.
+         */
+        boolean open(long expected, long next, Layout layout) {
+            if (!minute.compareAndSet(expected, CLEARING)) {
+                return false;
+            }
+            Counts current = counts;
+            if (current.layout.equals(layout)) {
+                current.reset();
+            } else {
+                counts = new Counts(layout, current.capacityFactors.length);
+            }
+            minute.set(next);
+            return true;
+        }
+    }
+
+    private static final class Counts {
+
+        private final Layout layout;
+        private final LongAdder decisions = new LongAdder();
+        private final LongAdder approved = new LongAdder();
+        private final LongAdder approvedCents = new LongAdder();
+        private final LongAdder[] amounts;
+        private final LongAdder[] periods;
+        private final LongAdder[] capacityFactors;
+
+        Counts(Layout layout, int capacityFactorBuckets) {
+            this.layout = layout;
+            this.amounts = adders(layout.amountBuckets());
+            this.periods = adders(layout.periods());
+            this.capacityFactors = adders(capacityFactorBuckets);
+        }
+
+        void reset() {
+            decisions.reset();
+            approved.reset();
+            approvedCents.reset();
+            reset(amounts);
+            reset(periods);
+            reset(capacityFactors);
+        }
+
+        private static LongAdder[] adders(int count) {
+            LongAdder[] adders = new LongAdder[count];
+            for (int i = 0; i < count; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+
+        private static void reset(LongAdder[] adders) {
+            for (LongAdder adder : adders) {
+                adder.reset();
+            }
+        }
+    }
+
+    /**
+     * Totals of a range of minutes, with every bucket of the current layout listed even without decisions.
+     */
+    private final class Tally {
+
+        private final SortedMap<BigDecimal, Long> amounts = new TreeMap<>();
+        private final SortedMap<Integer, Long> periods = new TreeMap<>();
+        private final long[] capacityFactors = new long[capacityFactorBounds.length];
+        private long decisions;
+        private long approved;
+        private long approvedCents;
+
+        Tally() {
+            Layout current = layout;
+            for (int i = 0; i < current.amountBuckets(); i++) {
+                amounts.put(current.amountBucket(i), 0L);
+            }
+            for (int i = 0; i < current.periods(); i++) {
+                periods.put(current.periodBucket(i), 0L);
+            }
+        }
+
+        /**
+         * Adds the counts of a slot if it holds the given minute and was not cleared while it was read.
+         */
+        void add(Slot slot, long minute) {
+            if (slot.minute.get() != minute) {
+                return;
+            }
+            Counts counts = slot.counts;
+            long slotDecisions = counts.decisions.sum();
+            long slotApproved = counts.approved.sum();
+            long slotApprovedCents = counts.approvedCents.sum();
+            long[] slotAmounts = sums(counts.amounts);
+            long[] slotPeriods = sums(counts.periods);
+            long[] slotCapacityFactors = sums(counts.capacityFactors);
+            if (slot.minute.get() != minute) {
+                return;
+            }
+
+            decisions += slotDecisions;
+            approved += slotApproved;
+            approvedCents += slotApprovedCents;
+            for (int i = 0; i < slotAmounts.length; i++) {
+                amounts.merge(counts.layout.amountBucket(i), slotAmounts[i], Long::sum);
+            }
+            for (int i = 0; i < slotPeriods.length; i++) {
+                periods.merge(counts.layout.periodBucket(i), slotPeriods[i], Long::sum);
+            }
+            add(capacityFactors, slotCapacityFactors);
+        }
+
+        void merge(Tally other) {
+            decisions += other.decisions;
+            approved += other.approved;
+            approvedCents += other.approvedCents;
+            other.amounts.forEach((bucket, count) -> amounts.merge(bucket, count, Long::sum));
+            other.periods.forEach((period, count) -> periods.merge(period, count, Long::sum));
+            add(capacityFactors, other.capacityFactors);
+        }
+
+        MinuteStatistics statistics(long fromMinute, long toMinute) {
+            BigDecimal averageApprovedAmount = approved == 0
+                    ? BigDecimal.ZERO
+                    : BigDecimal.valueOf(approvedCents).divide(BigDecimal.valueOf(approved * 100), 2,
+                    RoundingMode.HALF_UP);
+
+            SortedMap<Integer, Long> capacityFactorCounts = new TreeMap<>();
+            for (int i = 0; i < capacityFactors.length; i++) {
+                capacityFactorCounts.put(capacityFactorBounds[i], capacityFactors[i]);
+            }
+
+            return new MinuteStatistics(Instant.ofEpochMilli(fromMinute * MINUTE_MILLIS),
+                    Instant.ofEpochMilli(toMinute * MINUTE_MILLIS), decisions, approved,
+                    decisions == 0 ? 0 : (double) approved / decisions, averageApprovedAmount, new TreeMap<>(amounts),
+                    new TreeMap<>(periods), capacityFactorCounts);
+        }
+
+        private static long[] sums(LongAdder[] adders) {
+            long[] sums = new long[adders.length];
+            for (int i = 0; i < adders.length; i++) {
+                sums[i] = adders[i].sum();
+            }
+            return sums;
+        }
+
+        private static void add(long[] target, long[] counts) {
+            for (int i = 0; i < target.length; i++) {
+                target[i] += counts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.homework.purchase;
+
+import org.springframework.http.MediaType;
+
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size binary encoding of {@link PurchaseApplicationRequest} and {@link ApprovalDecision}, the
+ * {@value #MEDIA_TYPE_VALUE} alternative to JSON for high-volume callers of {@code /api/purchase/apply}.
+ * <p>
+ * All fields are big-endian. Amounts are longs in cents, the fixed-point form {@link FixedPointApprovalSolver} works
+ * in, so an amount with fractions of a cent cannot be encoded. A request names no product: binary applications are
+ * always decided for the default product, and a request for any other product cannot be encoded.
+ * <pre>
+ * request  (20 bytes): personal ID (long, the 11 digits) | requested amount (long, cents) | payment period (int)
+ * decision  (9 bytes): status (byte, 1 approved, 0 denied) | approved amount (long, cents)
+ * </pre>
+ * Messages are encoded into and decoded from buffers supplied by the caller, which can be reused for every message;
+ * the only allocations are the decoded objects.
+ */
+public final class ApprovalWireFormat {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-purchase-approval";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    public static final int REQUEST_BYTES = Long.BYTES + Long.BYTES + Integer.BYTES;
+    public static final int DECISION_BYTES = Byte.BYTES + Long.BYTES;
+    static final int MAX_MESSAGE_BYTES = Math.max(REQUEST_BYTES, DECISION_BYTES);
+
+    private static final int PERSONAL_ID_DIGITS = 11;
+    private static final byte DENIED = 0;
+    private static final byte APPROVED = 1;
+
+    private ApprovalWireFormat() {
+    }
+
+    /**
+     * @return the encoded size of a message of the given type, or -1 if the type has no binary form
+     */
+    public static int size(Class<?> type) {
+        if (type == PurchaseApplicationRequest.class) {
+            return REQUEST_BYTES;
+        }
+        if (type == ApprovalDecision.class) {
+            return DECISION_BYTES;
+        }
+        return -1;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the personal ID is not 11 digits, the amount is not a whole number of cents
+     *                                  or the request is for a product other than the default one
+     */
+    public static void writeRequest(PurchaseApplicationRequest request, ByteBuffer buffer) {
+        if (request.productCode() != null && !ProductPolicy.DEFAULT_CODE.equals(request.productCode())) {
+            throw new IllegalArgumentException("Only applications for the default product have a binary form");
+        }
+        buffer.putLong(personalIdToLong(request.personalId()))
+                .putLong(toCents(request.requestedAmount()))
+                .putInt(request.paymentPeriodMonths());
+    }
+
+    public static PurchaseApplicationRequest readRequest(ByteBuffer buffer) {
+        try {
+            return new PurchaseApplicationRequest(personalIdToString(buffer.getLong()), toAmount(buffer.getLong()),
+                    buffer.getInt());
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Purchase application must be " + REQUEST_BYTES + " bytes", e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the approved amount is not a whole number of cents
+     */
+    public static void writeDecision(ApprovalDecision decision, ByteBuffer buffer) {
+        buffer.put(decision.isApproved() ? APPROVED : DENIED)
+                .putLong(toCents(decision.getApprovedAmount()));
+    }
+
+    public static ApprovalDecision readDecision(ByteBuffer buffer) {
+        try {
+            byte status = buffer.get();
+            BigDecimal approvedAmount = toAmount(buffer.getLong());
+            return switch (status) {
+                case APPROVED -> ApprovalDecision.approve(approvedAmount);
+                case DENIED -> ApprovalDecision.reject();
+                default -> throw new IllegalArgumentException("Unknown decision status " + status);
+            };
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Approval decision must be " + DECISION_BYTES + " bytes", e);
+        }
+    }
+
+    private static long personalIdToLong(String personalId) {
+        if (personalId == null || personalId.length() != PERSONAL_ID_DIGITS) {
+            throw new IllegalArgumentException("Personal ID must be " + PERSONAL_ID_DIGITS + " digits");
+        }
+        long value = 0;
+        for (int i = 0; i < PERSONAL_ID_DIGITS; i++) {
+            char digit = personalId.charAt(i);
+            if (digit < '0' || digit > '9') {
+                throw new IllegalArgumentException("Personal ID must be " + PERSONAL_ID_DIGITS + " digits");
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    private static String personalIdToString(long value) {
+        if (value < 0 || value > 99_999_999_999L) {
+            throw new IllegalArgumentException("Personal ID " + value + " is not " + PERSONAL_ID_DIGITS + " digits");
+        }
+        // Leading zeros are part of the ID
+        char[] digits = new char[PERSONAL_ID_DIGITS];
+        for (int i = PERSONAL_ID_DIGITS - 1; i >= 0; i--) {
+            digits[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return new String(digits);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            throw new IllegalArgumentException("Amount is required");
+        }
+        try {
+            return amount.movePointRight(2).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Amount " + amount + " is not a whole number of cents", e);
+        }
+    }
+
+    /**
+     * Whole amounts are decoded without a fraction, as JSON clients send and receive them.
+     */
+    private static BigDecimal toAmount(long cents) {
+        return cents % 100 == 0 ? BigDecimal.valueOf(cents / 100) : BigDecimal.valueOf(cents, 2);
+    }
+}
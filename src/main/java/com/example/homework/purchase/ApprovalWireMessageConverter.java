@@ -0,0 +1,85 @@
+package com.example.homework.purchase;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Reads and writes {@link ApprovalWireFormat} messages for requests and responses negotiated as
+ * {@value ApprovalWireFormat#MEDIA_TYPE_VALUE}, through {@code Content-Type} and {@code Accept}.
+ * <p>
+ * Messages go through buffers taken from a {@link BoundedPool}, so a message costs no buffer allocation on platform or
+ * virtual request threads alike.
+ * The converter must come after the JSON converters, so that clients accepting any media type still get JSON.
+ */
+public class ApprovalWireMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private static final BoundedPool<ByteBuffer> BUFFERS =
+            new BoundedPool<>(() -> ByteBuffer.allocate(ApprovalWireFormat.MAX_MESSAGE_BYTES));
+
+    public ApprovalWireMessageConverter() {
+        super(ApprovalWireFormat.MEDIA_TYPE);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return ApprovalWireFormat.size(clazz) > 0;
+    }
+
+    @Override
+    protected Long getContentLength(Object message, MediaType contentType) {
+        return (long) ApprovalWireFormat.size(message.getClass());
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        int size = ApprovalWireFormat.size(clazz);
+        ByteBuffer buffer = BUFFERS.take();
+        try {
+            buffer.clear().limit(size);
+            InputStream body = inputMessage.getBody();
+            if (body.readNBytes(buffer.array(), 0, size) < size || body.read() != -1) {
+                throw new HttpMessageNotReadableException(
+                        clazz.getSimpleName() + " must be " + size + " bytes in " + ApprovalWireFormat.MEDIA_TYPE_VALUE,
+                        inputMessage);
+            }
+
+            try {
+                return clazz == PurchaseApplicationRequest.class
+                        ? ApprovalWireFormat.readRequest(buffer)
+                        : ApprovalWireFormat.readDecision(buffer);
+            } catch (IllegalArgumentException e) {
+                throw new HttpMessageNotReadableException(e.getMessage(), e, inputMessage);
+            }
+        } finally {
+            BUFFERS.giveBack(buffer);
+        }
+    }
+
+    @Override
+    protected void writeInternal(Object message, HttpOutputMessage outputMessage) throws IOException {
+        ByteBuffer buffer = BUFFERS.take();
+        try {
+            buffer.clear();
+            try {
+                if (message instanceof ApprovalDecision decision) {
+                    ApprovalWireFormat.writeDecision(decision, buffer);
+                } else {
+                    ApprovalWireFormat.writeRequest((PurchaseApplicationRequest) message, buffer);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new HttpMessageNotWritableException(e.getMessage(), e);
+            }
+            outputMessage.getBody().write(buffer.array(), 0, buffer.position());
+        } finally {
+            BUFFERS.giveBack(buffer);
+        }
+    }
+}
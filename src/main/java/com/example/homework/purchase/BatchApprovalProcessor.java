@@ -0,0 +1,247 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.BatchProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decides a stream of newline-delimited {@link PurchaseApplicationRequest}s and writes one result line per request,
+ * in input order.
+ * <p>
+ * Requests are read in chunks of {@code purchase.batch.chunk-size}, so memory use does not depend on the batch size.
+ * Within a chunk every personal ID is looked up once, at most {@code purchase.batch.lookup-threads} at a time, and the
+ * decisions are evaluated in parallel; the results of a chunk are written and flushed before the next chunk is read.
+ * With {@code spring.threads.virtual.enabled} every lookup runs on a virtual thread of its own, otherwise on a pool of
+ * platform threads kept for these lookups. The lookups do not run on the application task executor: batches are
+ * streamed from that executor and wait for their lookups, so once all of its threads streamed batches, lookups queued
+ * behind them would never run.
+ * <p>
+ * Each request is decided for the product it names, or the default product; a request for a product that is not in
+ * the catalog gets an error line. So does a line that is not a JSON application or lacks the personal ID or the
+ * requested amount: error lines carry the 1-based number of the input line, and the lines after it are still decided.
+ * Blank lines are skipped but counted.
+ */
+@Component
+public class BatchApprovalProcessor {
+
+    private static final int UNKNOWN_PROFILE = Integer.MIN_VALUE;
+    private static final long LOOKUP_THREAD_KEEP_ALIVE_SECONDS = 30;
+
+    private final PurchaseService purchaseService;
+    private final FinancialProfileService financialProfileService;
+    private final BatchProperties batchProperties;
+    private final ObjectMapper objectMapper;
+    private final ApprovalMetrics approvalMetrics;
+    private final Executor lookupExecutor;
+
+    public BatchApprovalProcessor(PurchaseService purchaseService, FinancialProfileService financialProfileService,
+                                  BatchProperties batchProperties, ObjectMapper objectMapper,
+                                  ApprovalMetrics approvalMetrics, Environment environment) {
+        this.purchaseService = purchaseService;
+        this.financialProfileService = financialProfileService;
+        this.batchProperties = batchProperties;
+        this.objectMapper = objectMapper;
+        this.approvalMetrics = approvalMetrics;
+        this.lookupExecutor = Threading.VIRTUAL.isActive(environment)
+                ? virtualLookupExecutor(batchProperties.getLookupThreads())
+                : lookupExecutor(batchProperties.getLookupThreads());
+    }
+
+    /**
+     * A virtual thread per lookup, of which only as many as there are permits read the profile store at a time.
+     */
+    private static Executor virtualLookupExecutor(int threads) {
+        VirtualThreadTaskExecutor virtualThreads = new VirtualThreadTaskExecutor("batch-lookup-");
+        Semaphore permits = new Semaphore(threads);
+        return lookup -> virtualThreads.execute(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                lookup.run();
+            } finally {
+                permits.release();
+            }
+        });
+    }
+
+    /**
+     * Daemon threads that end after being idle for a while, so the executor needs no shutdown.
+     */
+    private static Executor lookupExecutor(int threads) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, LOOKUP_THREAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "batch-lookup-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    public void process(InputStream input, OutputStream output) throws IOException {
+        int chunkSize = batchProperties.getChunkSize();
+        List<BatchLine> chunk = new ArrayList<>(chunkSize);
+        ObjectReader requestReader = objectMapper.readerFor(PurchaseApplicationRequest.class);
+
+        try (BufferedReader lines = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+             JsonGenerator results = objectMapper.getFactory().createGenerator(output)) {
+            results.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            results.setRootValueSeparator(null);
+
+            int lineNumber = 0;
+            String line;
+            while ((line = lines.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                chunk.add(parse(requestReader, lineNumber, line));
+                if (chunk.size() == chunkSize) {
+                    writeChunk(chunk, results);
+                }
+            }
+            writeChunk(chunk, results);
+        }
+    }
+
+    /**
+     * A line that cannot be decided is kept with its error, so its result line stays in input order.
+     */
+    private static BatchLine parse(ObjectReader requestReader, int lineNumber, String line) {
+        PurchaseApplicationRequest request;
+        try {
+            request = requestReader.readValue(line);
+        } catch (JsonProcessingException e) {
+            return BatchLine.failed(lineNumber, "Malformed application: " + e.getOriginalMessage());
+        }
+        if (request == null) {
+            return BatchLine.failed(lineNumber, "Malformed application: null");
+        }
+        try {
+            PurchaseService.validateApplication(request.personalId(), request.requestedAmount());
+        } catch (InvalidApplicationException e) {
+            return BatchLine.failed(lineNumber, e.getMessage());
+        }
+        return new BatchLine(lineNumber, request, null);
+    }
+
+    private void writeChunk(List<BatchLine> chunk, JsonGenerator results) throws IOException {
+        if (chunk.isEmpty()) {
+            return;
+        }
+
+        // One catalog snapshot per chunk, so the lookups skipped below the minimum match the decisions
+        ProductCatalog catalog = purchaseService.currentCatalog();
+        Map<String, Integer> factors = lookUpFactors(catalog, chunk);
+        List<Object> decisions = chunk.parallelStream()
+                .map(line -> line.error() != null
+                        ? new BatchError(line.number(), line.error())
+                        : decide(catalog, line, factors.get(line.request().personalId())))
+                .toList();
+
+        for (Object decision : decisions) {
+            results.writeObject(decision);
+            results.writeRaw('\n');
+        }
+        results.flush();
+        chunk.clear();
+    }
+
+    private Map<String, Integer> lookUpFactors(ProductCatalog catalog, List<BatchLine> chunk) {
+        Set<String> personalIds = new LinkedHashSet<>();
+        for (BatchLine line : chunk) {
+            PurchaseApplicationRequest request = line.request();
+            if (request == null) {
+                continue;
+            }
+            ProductPolicy product = catalog.resolve(request.productCode());
+            if (product != null && !PurchaseService.isBelowMinimumAmount(product.limits(), request.requestedAmount())) {
+                personalIds.add(request.personalId());
+            }
+        }
+
+        // Lookups may block on the profile store, so they run on the lookup threads rather than the common pool
+        Map<String, CompletableFuture<Integer>> lookups = new HashMap<>();
+        for (String personalId : personalIds) {
+            lookups.put(personalId, CompletableFuture.supplyAsync(() -> lookUpFactor(personalId), lookupExecutor));
+        }
+
+        Map<String, Integer> factors = new HashMap<>();
+        lookups.forEach((personalId, lookup) -> factors.put(personalId, lookup.join()));
+        return factors;
+    }
+
+    private int lookUpFactor(String personalId) {
+        OptionalInt financialCapacityFactor = financialProfileService.findFinancialCapacityFactor(personalId);
+        if (financialCapacityFactor.isEmpty()) {
+            approvalMetrics.recordUnknownProfile();
+            return UNKNOWN_PROFILE;
+        }
+        return financialCapacityFactor.getAsInt();
+    }
+
+    private Object decide(ProductCatalog catalog, BatchLine line, Integer financialCapacityFactor) {
+        PurchaseApplicationRequest request = line.request();
+        ProductPolicy product = catalog.resolve(request.productCode());
+        if (product == null) {
+            return new BatchError(line.number(), "Unknown product code: " + request.productCode());
+        }
+        if (PurchaseService.isBelowMinimumAmount(product.limits(), request.requestedAmount())) {
+            // Rejected without looking up the profile
+            return purchaseService.rejectBelowMinimum(product, request.personalId(), request.requestedAmount(),
+                    request.paymentPeriodMonths());
+        }
+        if (financialCapacityFactor == UNKNOWN_PROFILE) {
+            // Worded and masked like the 404 of /apply
+            return new BatchError(line.number(), "No financial profile for personal ID "
+                    + DecisionTracer.maskPersonalId(request.personalId()));
+        }
+        return purchaseService.findMaxApprovedAmount(product, request.personalId(), request.requestedAmount(),
+                request.paymentPeriodMonths(), financialCapacityFactor);
+    }
+
+    /**
+     * An input line with its request, or the reason it has none.
+     */
+    private record BatchLine(int number, PurchaseApplicationRequest request, String error) {
+
+        static BatchLine failed(int number, String error) {
+            return new BatchLine(number, null, error);
+        }
+    }
+
+    /**
+     * Result line for a request that could not be decided.
+     *
+     * @param line the 1-based number of the input line
+     */
+    record BatchError(int line, String error) {
+    }
+}
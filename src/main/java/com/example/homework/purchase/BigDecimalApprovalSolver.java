@@ -0,0 +1,187 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+import static java.math.BigDecimal.ONE;
+import static java.math.BigDecimal.valueOf;
+
+/**
+ * Finds the maximum approvable amount and the payment period for it without stepping through the search space.
+ * <p>
+ * The approval score {@code factor / amount * period} grows with the period and shrinks with the amount, so every
+ * phase of the search (longer period, lower amount, higher amount) has a single boundary that can be estimated from
+ * {@code factor * period}. The estimate is then confirmed with the exact score, including its 10-digit HALF_UP
+ * rounding, which takes at most a few score evaluations per phase.
+ * <p>
+ * Each phase is recorded as an {@link ApprovalEvents} event in a running flight recording.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.scoring-engine", havingValue = "big-decimal", matchIfMissing = true)
+public class BigDecimalApprovalSolver implements ApprovalSolver {
+
+    static final BigDecimal APPROVAL_THRESHOLD = ONE;
+    static final long AMOUNT_STEP = 100;
+
+    @Override
+    public ApprovalOutcome solve(PurchaseLimits limits, int financialFactor, BigDecimal requestedAmount, int initialPeriod) {
+        DecisionTrace trace = DecisionTrace.current();
+        int maxPeriod = limits.maxPeriod();
+
+        // Start from requested amount but do not exceed max limit
+        BigDecimal currentAmount = requestedAmount.min(limits.maxAmount());
+
+        int period = findShortestApprovedPeriod(trace, financialFactor, currentAmount, initialPeriod, maxPeriod);
+        if (period > 0) {
+            // Try increasing the amount **ONLY IF the request was lower than possible approval**
+            BigDecimal approvedAmount = currentAmount.compareTo(requestedAmount) >= 0
+                    ? increaseApprovedAmount(trace, financialFactor, currentAmount, period, limits.maxAmount())
+                    : currentAmount;
+            return ApprovalOutcome.approved(approvedAmount, period);
+        }
+
+        if (initialPeriod > maxPeriod) {
+            return ApprovalOutcome.REJECTED;
+        }
+
+        BigDecimal reducedAmount = reduceAmount(trace, financialFactor, currentAmount, maxPeriod, limits.minAmount());
+        if (reducedAmount == null) {
+            return ApprovalOutcome.REJECTED;
+        }
+        return ApprovalOutcome.approved(reducedAmount,
+                findShortestApprovedPeriod(trace, financialFactor, reducedAmount, initialPeriod, maxPeriod));
+    }
+
+    /**
+     * Returns the shortest period in {@code [fromPeriod, maxPeriod]} that approves the amount, or {@code -1}.
+     */
+    private static int findShortestApprovedPeriod(DecisionTrace trace, int financialFactor, BigDecimal amount,
+                                                  int fromPeriod, int maxPeriod) {
+        ApprovalEvents.PeriodScan event = new ApprovalEvents.PeriodScan();
+        event.begin();
+        int period = scanPeriods(trace, financialFactor, amount, fromPeriod, maxPeriod);
+        if (event.shouldCommit()) {
+            event.capacityFactor = financialFactor;
+            event.amount = amount.doubleValue();
+            event.fromPeriod = fromPeriod;
+            event.maxPeriod = maxPeriod;
+            event.period = period;
+            event.commit();
+        }
+        return period;
+    }
+
+    private static int scanPeriods(DecisionTrace trace, int financialFactor, BigDecimal amount, int fromPeriod,
+                                   int maxPeriod) {
+        if (fromPeriod > maxPeriod || !isApproved(trace, financialFactor, amount, maxPeriod)) {
+            return -1;
+        }
+
+        int period = (int) Math.max(fromPeriod, Math.min(maxPeriod, Math.ceil(amount.doubleValue() / financialFactor)));
+        while (period > fromPeriod && isApproved(trace, financialFactor, amount, period - 1)) {
+            period--;
+        }
+        while (!isApproved(trace, financialFactor, amount, period)) {
+            period++;
+        }
+        return period;
+    }
+
+    /**
+     * Returns the largest amount on the 100-unit grid below {@code currentAmount} that is approved for the longest
+     * period, or {@code null} if every such amount falls below the minimum.
+     */
+    private static BigDecimal reduceAmount(DecisionTrace trace, int financialFactor, BigDecimal currentAmount,
+                                           int maxPeriod, BigDecimal minAmount) {
+        ApprovalEvents.AmountReduction event = new ApprovalEvents.AmountReduction();
+        event.begin();
+        BigDecimal reducedAmount = searchReducedAmount(trace, financialFactor, currentAmount, maxPeriod, minAmount);
+        if (event.shouldCommit()) {
+            event.capacityFactor = financialFactor;
+            event.amount = currentAmount.doubleValue();
+            event.reducedAmount = reducedAmount == null ? 0 : reducedAmount.doubleValue();
+            event.maxPeriod = maxPeriod;
+            event.commit();
+        }
+        return reducedAmount;
+    }
+
+    private static BigDecimal searchReducedAmount(DecisionTrace trace, int financialFactor, BigDecimal currentAmount,
+                                                  int maxPeriod, BigDecimal minAmount) {
+        double shortfall = currentAmount.doubleValue() - (double) financialFactor * maxPeriod;
+        long steps = Math.max(1, (long) Math.ceil(shortfall / AMOUNT_STEP));
+        if (currentAmount.subtract(stepsOf(steps)).compareTo(minAmount) < 0) {
+            steps = Math.max(1, currentAmount.subtract(minAmount).divideToIntegralValue(valueOf(AMOUNT_STEP)).longValue());
+        }
+
+        while (steps > 1 && isApproved(trace, financialFactor, currentAmount.subtract(stepsOf(steps - 1)), maxPeriod)) {
+            steps--;
+        }
+        BigDecimal amount = currentAmount.subtract(stepsOf(steps));
+        while (amount.compareTo(minAmount) >= 0 && !isApproved(trace, financialFactor, amount, maxPeriod)) {
+            amount = amount.subtract(valueOf(AMOUNT_STEP));
+        }
+        return amount.compareTo(minAmount) >= 0 ? amount : null;
+    }
+
+    /**
+     * Raises an approved amount along the 100-unit grid as far as the period and the maximum amount allow.
+     */
+    private static BigDecimal increaseApprovedAmount(DecisionTrace trace, int financialFactor,
+                                                     BigDecimal approvedAmount, int period, BigDecimal maxAmount) {
+        ApprovalEvents.AmountIncrease event = new ApprovalEvents.AmountIncrease();
+        event.begin();
+        BigDecimal increasedAmount = searchIncreasedAmount(trace, financialFactor, approvedAmount, period, maxAmount);
+        if (event.shouldCommit()) {
+            event.capacityFactor = financialFactor;
+            event.amount = approvedAmount.doubleValue();
+            event.increasedAmount = increasedAmount.doubleValue();
+            event.period = period;
+            event.commit();
+        }
+        return increasedAmount;
+    }
+
+    private static BigDecimal searchIncreasedAmount(DecisionTrace trace, int financialFactor,
+                                                    BigDecimal approvedAmount, int period, BigDecimal maxAmount) {
+        long maxSteps = maxAmount.subtract(approvedAmount)
+                .divideToIntegralValue(valueOf(AMOUNT_STEP)).longValue();
+        if (maxSteps <= 0) {
+            return approvedAmount;
+        }
+
+        double headroom = (double) financialFactor * period - approvedAmount.doubleValue();
+        long steps = Math.min(maxSteps, Math.max(0, (long) Math.floor(headroom / AMOUNT_STEP)));
+        while (steps < maxSteps && isApproved(trace, financialFactor, approvedAmount.add(stepsOf(steps + 1)), period)) {
+            steps++;
+        }
+        while (steps > 0 && !isApproved(trace, financialFactor, approvedAmount.add(stepsOf(steps)), period)) {
+            steps--;
+        }
+        return steps == 0 ? approvedAmount : approvedAmount.add(stepsOf(steps));
+    }
+
+    private static BigDecimal stepsOf(long steps) {
+        return valueOf(steps * AMOUNT_STEP);
+    }
+
+    private static boolean isApproved(DecisionTrace trace, int financialFactor, BigDecimal amount, int period) {
+        BigDecimal score = calculateApprovalScore(financialFactor, amount, period);
+        trace.step(amount.doubleValue(), period, score.doubleValue());
+        return score.compareTo(APPROVAL_THRESHOLD) >= 0;
+    }
+
+    static BigDecimal calculateApprovalScore(int financialFactor, BigDecimal amount, int period) {
+        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than zero for approval score calculation.");
+        }
+
+        return BigDecimal.valueOf(financialFactor)
+                .divide(amount, 10, RoundingMode.HALF_UP)
+                .multiply(BigDecimal.valueOf(period));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.homework.purchase;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * Reusable buffers shared by all threads, taken and given back without locks.
+ * <p>
+ * Buffers kept per thread are allocated again by every virtual thread, which lives for one request only. The pool keeps
+ * a few buffers per processor instead: taking from an empty pool creates a new buffer, and a buffer given back to a
+ * full pool is dropped, so the pool bounds the memory kept between uses rather than the buffers in use.
+ */
+final class BoundedPool<T> {
+
+    private final AtomicReferenceArray<T> slots;
+    private final Supplier<T> factory;
+
+    BoundedPool(Supplier<T> factory) {
+        this(4 * Runtime.getRuntime().availableProcessors(), factory);
+    }
+
+    BoundedPool(int size, Supplier<T> factory) {
+        this.slots = new AtomicReferenceArray<>(size);
+        this.factory = factory;
+    }
+
+    /**
+     * Takes a pooled buffer, looking from a random slot onwards so concurrent callers rarely race for the same one.
+     */
+    T take() {
+        int size = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            T pooled = slots.get(index);
+            if (pooled != null && slots.compareAndSet(index, pooled, null)) {
+                return pooled;
+            }
+        }
+        return factory.get();
+    }
+
+    void giveBack(T buffer) {
+        int size = slots.length();
+        int start = ThreadLocalRandom.current().nextInt(size);
+        for (int i = 0; i < size; i++) {
+            int index = (start + i) % size;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, buffer)) {
+                return;
+            }
+        }
+    }
+}
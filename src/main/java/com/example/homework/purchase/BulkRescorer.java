@@ -0,0 +1,478 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.RescoreProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Re-scores a file of past {@link PurchaseApplicationRequest}s with the current capacity factors and limits.
+ * <p>
+ * Started with {@code purchase.rescore.input} and {@code purchase.rescore.output} set, usually together with the
+ * {@code rescore} profile, which runs the application without a web server and exits when the file is done. Each line
+ * of the input is either CSV ({@code personalId,requestedAmount,paymentPeriodMonths}, with an optional header naming
+ * those columns) or a JSON object, as accepted by {@code /apply}; a line for a product that is not in the catalog is
+ * invalid. The header and blank lines are skipped and counted as such; any other line is scored or counted invalid.
+ * <p>
+ * The input is split at line boundaries into segments of {@code segment-size} bytes. The segments are memory-mapped
+ * and scored in parallel on a fork/join pool of {@code parallelism} threads, each writing its results to its own part
+ * file, which are concatenated in input order at the end. Only one line and one output buffer per thread are held on
+ * the heap, so memory use does not depend on the size of the input. Every line yields one output line
+ * {@code personalId,requestedAmount,paymentPeriodMonths,status,approvedAmount,paymentPeriod}; the totals and the
+ * throughput are written to {@code <output>.summary.json}. The part files are deleted even when a segment fails.
+ * <p>
+ * Decisions follow {@link PurchaseService} but are not audited, traced or counted in the decision metrics.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.rescore.input")
+@RequiredArgsConstructor
+public class BulkRescorer implements ApplicationRunner {
+
+    static final String HEADER = "personalId,requestedAmount,paymentPeriodMonths,status,approvedAmount,paymentPeriod\n";
+
+    private static final String[] INPUT_COLUMNS = {"personalId", "requestedAmount", "paymentPeriodMonths"};
+
+    private static final Logger logger = LoggerFactory.getLogger(BulkRescorer.class);
+
+    private static final int MAX_LINE_LENGTH = 4096;
+    private static final int BOUNDARY_SCAN_SIZE = 8192;
+    private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+    private final PurchaseService purchaseService;
+    private final FinancialProfileService financialProfileService;
+    private final RescoreProperties rescoreProperties;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public void run(ApplicationArguments args) throws IOException {
+        Path output = rescoreProperties.getOutput();
+        if (output == null) {
+            throw new IllegalStateException("purchase.rescore.output must be set together with purchase.rescore.input");
+        }
+        rescore(rescoreProperties.getInput(), output);
+    }
+
+    public RescoreSummary rescore(Path input, Path output) throws IOException {
+        long started = System.nanoTime();
+        List<Segment> segments = split(input, rescoreProperties.getSegmentSize().toBytes());
+        ObjectReader requestReader = objectMapper.readerFor(PurchaseApplicationRequest.class);
+        // The whole run is scored against one catalog snapshot, even if the policy is reloaded meanwhile
+        ProductCatalog catalog = purchaseService.currentCatalog();
+
+        ForkJoinPool pool = new ForkJoinPool(rescoreProperties.getParallelism());
+        Tally tally;
+        try {
+            tally = pool.invoke(new RescoreTask(input, output, segments, 0, segments.size(), requestReader, catalog));
+            concatenate(output, segments.size());
+        } finally {
+            pool.shutdownNow();
+            deleteParts(output, segments.size());
+        }
+
+        RescoreSummary summary = tally.summarize(System.nanoTime() - started);
+        objectMapper.writerWithDefaultPrettyPrinter().writeValue(summaryFile(output).toFile(), summary);
+        logger.info("Re-scored {} applications from {} in {} ms ({} records/s): {} approved, {} denied, "
+                        + "{} unknown profiles, {} invalid, {} lines skipped", summary.records(), input,
+                summary.elapsedMillis(), summary.recordsPerSecond(), summary.approved(), summary.denied(),
+                summary.unknownProfile(), summary.invalid(), summary.skipped());
+        return summary;
+    }
+
+    /**
+     * Splits the file into segments of about {@code segmentSize} bytes that each end after a line break.
+     */
+    static List<Segment> split(Path input, long segmentSize) throws IOException {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Segment size must be between 1 byte and 2 GB: " + segmentSize);
+        }
+
+        List<Segment> segments = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer scan = ByteBuffer.allocate(BOUNDARY_SCAN_SIZE);
+            long start = 0;
+            while (start < size) {
+                long end = start + segmentSize >= size ? size : nextLineStart(channel, start + segmentSize, scan);
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Line longer than 2 GB at offset " + start + " in " + input);
+                }
+                segments.add(new Segment(segments.size(), start, (int) (end - start)));
+                start = end;
+            }
+        }
+        return segments;
+    }
+
+    private static long nextLineStart(FileChannel channel, long position, ByteBuffer scan) throws IOException {
+        long size = channel.size();
+        while (position < size) {
+            scan.clear();
+            int read = channel.read(scan, position);
+            for (int i = 0; i < read; i++) {
+                if (scan.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private void concatenate(Path output, int parts) throws IOException {
+        try (FileChannel target = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            target.write(ByteBuffer.wrap(HEADER.getBytes(StandardCharsets.US_ASCII)));
+            for (int index = 0; index < parts; index++) {
+                Path part = partFile(output, index);
+                try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ)) {
+                    long size = source.size();
+                    long transferred = 0;
+                    while (transferred < size) {
+                        transferred += source.transferTo(transferred, size - transferred, target);
+                    }
+                }
+                Files.delete(part);
+            }
+        }
+    }
+
+    /**
+     * Deletes the part files left when a segment failed; after a complete run they are gone already.
+     */
+    private static void deleteParts(Path output, int parts) {
+        for (int index = 0; index < parts; index++) {
+            Path part = partFile(output, index);
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException e) {
+                logger.warn("Could not delete {}", part, e);
+            }
+        }
+    }
+
+    static Path partFile(Path output, int index) {
+        return output.resolveSibling(output.getFileName() + ".part-" + index);
+    }
+
+    static Path summaryFile(Path output) {
+        return output.resolveSibling(output.getFileName() + ".summary.json");
+    }
+
+    /**
+     * Scores one segment: maps it, reads it line by line and writes the results to the segment's part file.
+     */
+    private Tally rescoreSegment(Path input, Path output, Segment segment, ObjectReader requestReader,
+                                 ProductCatalog catalog) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, segment.start(), segment.length());
+        }
+
+        SegmentScorer scorer = new SegmentScorer(requestReader, catalog);
+        try (BufferedWriter results = new BufferedWriter(new OutputStreamWriter(
+                Files.newOutputStream(partFile(output, segment.index())), StandardCharsets.UTF_8), WRITE_BUFFER_SIZE)) {
+            int lineStart = 0;
+            int limit = mapped.limit();
+            for (int position = 0; position < limit; position++) {
+                if (mapped.get(position) == '\n') {
+                    scorer.score(mapped, lineStart, position, segment.start() == 0 && lineStart == 0, results);
+                    lineStart = position + 1;
+                }
+            }
+            if (lineStart < limit) {
+                scorer.score(mapped, lineStart, limit, segment.start() == 0 && lineStart == 0, results);
+            }
+        }
+        if (scorer.tally.invalid > 0) {
+            logger.warn("{} invalid lines in bytes {}-{} of {}, first at offset {}", scorer.tally.invalid,
+                    segment.start(), segment.start() + segment.length(), input, segment.start() + scorer.firstInvalid);
+        }
+        return scorer.tally;
+    }
+
+    record Segment(int index, long start, int length) {
+    }
+
+    /**
+     * Totals of a re-scoring run, written to {@code <output>.summary.json}. {@code skipped} counts the header and blank
+     * lines, which are not records.
+     */
+    public record RescoreSummary(long records, long approved, long denied, long unknownProfile, long invalid,
+                                 long skipped, BigDecimal approvedAmount, long elapsedMillis, long recordsPerSecond) {
+    }
+
+    private final class RescoreTask extends RecursiveTask<Tally> {
+
+        private final Path input;
+        private final Path output;
+        private final List<Segment> segments;
+        private final int from;
+        private final int to;
+        private final ObjectReader requestReader;
+        private final ProductCatalog catalog;
+
+        RescoreTask(Path input, Path output, List<Segment> segments, int from, int to, ObjectReader requestReader,
+                    ProductCatalog catalog) {
+            this.input = input;
+            this.output = output;
+            this.segments = segments;
+            this.from = from;
+            this.to = to;
+            this.requestReader = requestReader;
+            this.catalog = catalog;
+        }
+
+        @Override
+        protected Tally compute() {
+            if (to - from == 0) {
+                return new Tally();
+            }
+            if (to - from == 1) {
+                try {
+                    return rescoreSegment(input, output, segments.get(from), requestReader, catalog);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            int middle = (from + to) >>> 1;
+            RescoreTask left = new RescoreTask(input, output, segments, from, middle, requestReader, catalog);
+            left.fork();
+            Tally right;
+            try {
+                right = new RescoreTask(input, output, segments, middle, to, requestReader, catalog).compute();
+            } catch (RuntimeException e) {
+                // Wait for the other half, so no segment is still writing its part file when the parts are deleted
+                left.quietlyJoin();
+                throw e;
+            }
+            return left.join().merge(right);
+        }
+    }
+
+    /**
+     * Parses and scores the lines of one segment, reusing its line buffers for every line.
+     */
+    private final class SegmentScorer {
+
+        private final ObjectReader requestReader;
+        private final ProductCatalog catalog;
+        private final Tally tally = new Tally();
+        private final byte[] line = new byte[MAX_LINE_LENGTH];
+        private final char[] chars = new char[MAX_LINE_LENGTH];
+        private final StringBuilder result = new StringBuilder(128);
+        private int firstInvalid = -1;
+
+        SegmentScorer(ObjectReader requestReader, ProductCatalog catalog) {
+            this.requestReader = requestReader;
+            this.catalog = catalog;
+        }
+
+        void score(MappedByteBuffer mapped, int start, int end, boolean firstLineOfFile, BufferedWriter results)
+                throws IOException {
+            int length = end - start;
+            if (length > 0 && mapped.get(end - 1) == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                tally.skipped++;
+                return;
+            }
+
+            PurchaseApplicationRequest request = null;
+            if (length <= MAX_LINE_LENGTH) {
+                mapped.get(start, line, 0, length);
+                if (firstLineOfFile && isCsvHeader(length)) {
+                    tally.skipped++;
+                    return;
+                }
+                request = parse(length);
+            }
+
+            result.setLength(0);
+            if (request == null) {
+                tally.invalid++;
+                if (firstInvalid < 0) {
+                    firstInvalid = start;
+                }
+                result.append(",,,INVALID,,");
+            } else {
+                appendDecision(request);
+            }
+            tally.records++;
+            results.append(result).append('\n');
+        }
+
+        private void appendDecision(PurchaseApplicationRequest request) {
+            result.append(request.personalId()).append(',')
+                    .append(request.requestedAmount().toPlainString()).append(',')
+                    .append(request.paymentPeriodMonths()).append(',');
+
+            ProductPolicy product = catalog.resolve(request.productCode());
+            ApprovalOutcome outcome;
+            if (PurchaseService.isBelowMinimumAmount(product.limits(), request.requestedAmount())) {
+                // Rejected without looking up the profile
+                outcome = ApprovalOutcome.REJECTED;
+            } else {
+                OptionalInt financialCapacityFactor =
+                        financialProfileService.findFinancialCapacityFactor(request.personalId());
+                if (financialCapacityFactor.isEmpty()) {
+                    tally.unknownProfile++;
+                    result.append("UNKNOWN_PROFILE,,");
+                    return;
+                }
+                outcome = purchaseService.score(product, request.requestedAmount(), request.paymentPeriodMonths(),
+                        financialCapacityFactor.getAsInt());
+            }
+
+            if (outcome.approved()) {
+                tally.approved++;
+                tally.approvedAmount = tally.approvedAmount.add(outcome.approvedAmount());
+                result.append("APPROVED,").append(outcome.approvedAmount().toPlainString()).append(',')
+                        .append(outcome.paymentPeriod());
+            } else {
+                tally.denied++;
+                result.append("DENIED,0,");
+            }
+        }
+
+        /**
+         * @return whether the line names the input columns, in any case and with blanks around the commas
+         */
+        private boolean isCsvHeader(int length) {
+            String[] columns = new String(line, 0, length, StandardCharsets.US_ASCII).split(",", -1);
+            if (columns.length != INPUT_COLUMNS.length) {
+                return false;
+            }
+            for (int i = 0; i < columns.length; i++) {
+                if (!columns[i].strip().equalsIgnoreCase(INPUT_COLUMNS[i])) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the request on the line, or {@code null} if the line is not a valid request
+         */
+        private PurchaseApplicationRequest parse(int length) {
+            PurchaseApplicationRequest request = line[0] == '{' ? parseJson(length) : parseCsv(length);
+            if (request == null || request.personalId() == null || request.personalId().isBlank()
+                    || request.requestedAmount() == null || request.paymentPeriodMonths() <= 0
+                    || catalog.resolve(request.productCode()) == null) {
+                return null;
+            }
+            return request;
+        }
+
+        private PurchaseApplicationRequest parseJson(int length) {
+            try {
+                return requestReader.readValue(line, 0, length);
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private PurchaseApplicationRequest parseCsv(int length) {
+            int firstComma = indexOf(',', 0, length);
+            int secondComma = indexOf(',', firstComma + 1, length);
+            if (firstComma < 0 || secondComma < 0 || indexOf(',', secondComma + 1, length) >= 0) {
+                return null;
+            }
+
+            try {
+                String personalId = new String(line, 0, firstComma, StandardCharsets.US_ASCII).trim();
+                BigDecimal requestedAmount = parseDecimal(firstComma + 1, secondComma);
+                int paymentPeriodMonths = parsePositiveInt(secondComma + 1, length);
+                return new PurchaseApplicationRequest(personalId, requestedAmount, paymentPeriodMonths);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        private BigDecimal parseDecimal(int from, int to) {
+            int length = to - from;
+            for (int i = 0; i < length; i++) {
+                chars[i] = (char) (line[from + i] & 0xFF);
+            }
+            return new BigDecimal(chars, 0, length);
+        }
+
+        private int parsePositiveInt(int from, int to) {
+            if (from >= to || to - from > 9) {
+                throw new NumberFormatException("Not a payment period");
+            }
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = line[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new NumberFormatException("Not a payment period");
+                }
+                value = value * 10 + digit;
+            }
+            return value;
+        }
+
+        private int indexOf(char character, int from, int to) {
+            for (int i = from; i < to; i++) {
+                if (line[i] == character) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static final class Tally {
+
+        private long records;
+        private long approved;
+        private long denied;
+        private long unknownProfile;
+        private long invalid;
+        private long skipped;
+        private BigDecimal approvedAmount = BigDecimal.ZERO;
+
+        Tally merge(Tally other) {
+            records += other.records;
+            approved += other.approved;
+            denied += other.denied;
+            unknownProfile += other.unknownProfile;
+            invalid += other.invalid;
+            skipped += other.skipped;
+            approvedAmount = approvedAmount.add(other.approvedAmount);
+            return this;
+        }
+
+        RescoreSummary summarize(long elapsedNanos) {
+            long elapsedMillis = elapsedNanos / 1_000_000;
+            long recordsPerSecond = elapsedNanos == 0 ? 0 : (long) (records * 1e9 / elapsedNanos);
+            return new RescoreSummary(records, approved, denied, unknownProfile, invalid, skipped, approvedAmount,
+                    elapsedMillis, recordsPerSecond);
+        }
+    }
+}
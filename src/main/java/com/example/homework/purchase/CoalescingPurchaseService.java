@@ -0,0 +1,149 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.DecisionCacheProperties;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Shares one decision between identical applications that arrive close together.
+ * <p>
+ * Applications with the same personal ID, requested amount, payment period and product that arrive while one of them
+ * is being decided wait for that decision instead of looking up the profile and searching again. Completed decisions
+ * are kept for {@code purchase.decision-cache.time-to-live}, so retries are answered from memory. The cache holds at
+ * most {@code maximum-size} applications; Caffeine stripes its table and access buffers, so lookups of different
+ * applications do not contend. Hits and misses are published as {@code cache.*} metrics under the name
+ * {@code approvalDecisions}, where a hit is an application that shared a decision.
+ * <p>
+ * Only the decision that was made is audited and counted in the statistics and decision metrics. An application that
+ * shares it is counted in {@code purchase.approval.shared} instead and recorded as an
+ * {@link ApprovalEvents.SharedDecision} event, both telling a decision still in flight from a cached one.
+ * <p>
+ * Decisions of a customer are dropped when a {@link FinancialProfileChangedEvent} is published for them, and all
+ * decisions are dropped when the policy changes or the profile dataset is reloaded.
+ */
+@Service
+public class CoalescingPurchaseService implements MeterBinder {
+
+    static final String CACHE_NAME = "approvalDecisions";
+
+    private final PurchaseService purchaseService;
+    private final DecisionCacheProperties decisionCacheProperties;
+    private final ApprovalMetrics approvalMetrics;
+    private final AsyncCache<Application, Optional<ApprovalDecision>> decisions;
+
+    public CoalescingPurchaseService(PurchaseService purchaseService, DecisionCacheProperties decisionCacheProperties,
+                                     ApprovalMetrics approvalMetrics) {
+        this.purchaseService = purchaseService;
+        this.decisionCacheProperties = decisionCacheProperties;
+        this.approvalMetrics = approvalMetrics;
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(decisionCacheProperties.getMaximumSize())
+                .expireAfterWrite(decisionCacheProperties.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+    }
+
+    /**
+     * @see PurchaseService#findMaxApprovedAmount(String, BigDecimal, int)
+     */
+    public Optional<ApprovalDecision> findMaxApprovedAmount(String personalId, BigDecimal requestedAmount,
+                                                            int initialPaymentPeriod) {
+        return findMaxApprovedAmount(personalId, requestedAmount, initialPaymentPeriod, null);
+    }
+
+    /**
+     * @see PurchaseService#findMaxApprovedAmount(String, BigDecimal, int, String)
+     */
+    public Optional<ApprovalDecision> findMaxApprovedAmount(String personalId, BigDecimal requestedAmount,
+                                                            int initialPaymentPeriod, String productCode) {
+        if (!decisionCacheProperties.isEnabled()) {
+            return decide(personalId, requestedAmount, initialPaymentPeriod, productCode);
+        }
+
+        CompletableFuture<Optional<ApprovalDecision>> pending = new CompletableFuture<>();
+        CompletableFuture<Optional<ApprovalDecision>> decision = decisions.get(
+                new Application(personalId, requestedAmount, initialPaymentPeriod, productCode),
+                (application, executor) -> pending);
+        if (decision != pending) {
+            ApprovalEvents.SharedDecision event = new ApprovalEvents.SharedDecision();
+            event.begin();
+            boolean inFlight = !decision.isDone();
+            Optional<ApprovalDecision> shared = await(decision);
+            approvalMetrics.recordShared(shared, inFlight);
+            recordEvent(event, requestedAmount, initialPaymentPeriod, shared, inFlight);
+            return shared;
+        }
+
+        // Decided on the calling thread; a failed decision is removed from the cache by Caffeine
+        try {
+            Optional<ApprovalDecision> result = decide(personalId, requestedAmount, initialPaymentPeriod, productCode);
+            pending.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    @EventListener
+    public void onFinancialProfileChanged(FinancialProfileChangedEvent event) {
+        decisions.synchronous().asMap().keySet()
+                .removeIf(application -> Objects.equals(application.personalId(), event.personalId()));
+    }
+
+    @EventListener({PurchasePolicyChangedEvent.class, FinancialProfilesReloadedEvent.class})
+    public void dropAllDecisions() {
+        decisions.synchronous().invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, decisions, CACHE_NAME);
+    }
+
+    private Optional<ApprovalDecision> decide(String personalId, BigDecimal requestedAmount, int initialPaymentPeriod,
+                                              String productCode) {
+        if (productCode == null) {
+            return purchaseService.findMaxApprovedAmount(personalId, requestedAmount, initialPaymentPeriod);
+        }
+        return purchaseService.findMaxApprovedAmount(personalId, requestedAmount, initialPaymentPeriod, productCode);
+    }
+
+    private static void recordEvent(ApprovalEvents.SharedDecision event, BigDecimal requestedAmount,
+                                    int initialPaymentPeriod, Optional<ApprovalDecision> decision, boolean inFlight) {
+        if (event.shouldCommit()) {
+            event.found = decision.isPresent();
+            event.approved = decision.map(ApprovalDecision::isApproved).orElse(false);
+            event.requestedAmount = requestedAmount.doubleValue();
+            event.requestedPeriod = initialPaymentPeriod;
+            event.approvedAmount = decision.map(shared -> shared.getApprovedAmount().doubleValue()).orElse(0.0);
+            event.inFlight = inFlight;
+            event.commit();
+        }
+    }
+
+    private static Optional<ApprovalDecision> await(CompletableFuture<Optional<ApprovalDecision>> decision) {
+        try {
+            return decision.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private record Application(String personalId, BigDecimal requestedAmount, int paymentPeriod, String productCode) {
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+
+import java.math.BigDecimal;
+
+/**
+ * Every decision for one capacity factor, indexed by whole requested amount and initial payment period.
+ * <p>
+ * Each entry packs the approved amount and the chosen period into one {@code int}; {@code 0} means rejected.
+ */
+final class DecisionTable {
+
+    private static final int PERIOD_BITS = 8;
+    private static final int PERIOD_MASK = (1 << PERIOD_BITS) - 1;
+
+    static final int MAX_PERIOD = PERIOD_MASK;
+    static final int MAX_AMOUNT = Integer.MAX_VALUE >>> PERIOD_BITS;
+    static final long MAX_ENTRIES = 16 * 1024 * 1024;
+
+    private final int minAmount;
+    private final int maxAmount;
+    private final int minPeriod;
+    private final int periods;
+    private final int[] entries;
+
+    private volatile long lastAccess;
+
+    private DecisionTable(int minAmount, int maxAmount, int minPeriod, int maxPeriod) {
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+        this.minPeriod = minPeriod;
+        this.periods = maxPeriod - minPeriod + 1;
+        this.entries = new int[Math.toIntExact(entryCount(minAmount, maxAmount, minPeriod, maxPeriod))];
+    }
+
+    static long entryCount(int minAmount, int maxAmount, int minPeriod, int maxPeriod) {
+        return ((long) maxAmount - minAmount + 1) * ((long) maxPeriod - minPeriod + 1);
+    }
+
+    static DecisionTable build(ApprovalSolver solver, PurchaseLimits limits, int financialFactor,
+                               int minAmount, int maxAmount) {
+        int minPeriod = limits.minPeriod();
+        int maxPeriod = limits.maxPeriod();
+        DecisionTable table = new DecisionTable(minAmount, maxAmount, minPeriod, maxPeriod);
+        for (int amount = minAmount; amount <= maxAmount; amount++) {
+            BigDecimal requestedAmount = BigDecimal.valueOf(amount);
+            for (int period = minPeriod; period <= maxPeriod; period++) {
+                ApprovalOutcome outcome = solver.solve(limits, financialFactor, requestedAmount, period);
+                table.entries[table.indexOf(amount, period)] = outcome.approved()
+                        ? outcome.approvedAmount().intValueExact() << PERIOD_BITS | outcome.paymentPeriod()
+                        : 0;
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Looks up the decision for a whole requested amount; amounts above the maximum decide as the maximum does.
+     */
+    ApprovalOutcome lookup(int requestedAmount, int initialPeriod) {
+        int entry = entries[indexOf(Math.min(requestedAmount, maxAmount), initialPeriod)];
+        if (entry == 0) {
+            return ApprovalOutcome.REJECTED;
+        }
+        return ApprovalOutcome.approved(BigDecimal.valueOf(entry >>> PERIOD_BITS), entry & PERIOD_MASK);
+    }
+
+    boolean covers(int initialPeriod) {
+        return initialPeriod >= minPeriod && initialPeriod < minPeriod + periods;
+    }
+
+    long sizeInBytes() {
+        return sizeInBytes(entries.length);
+    }
+
+    static long sizeInBytes(long entryCount) {
+        return 16L + 4L * entryCount;
+    }
+
+    void touch(long now) {
+        lastAccess = now;
+    }
+
+    long lastAccess() {
+        return lastAccess;
+    }
+
+    private int indexOf(int amount, int period) {
+        return (amount - minAmount) * periods + (period - minPeriod);
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.DecisionTableProperties;
+import com.example.homework.config.PurchaseLimits;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Answers repeat decisions from a precomputed {@link DecisionTable} per product and capacity factor.
+ * <p>
+ * A table is built in the background the first time a factor is seen for a product; until it is ready, and for
+ * requests the tables do not cover (fractional amounts, periods outside the configured range), decisions come from the
+ * {@link ApprovalSolver}. Least recently used tables of all products are evicted once the tables exceed
+ * {@code purchase.decision-table.max-memory}; recency is recorded on a sample of the hits, so the hits on a hot table
+ * do not all write to one shared field. A product whose tables would each exceed the bound on their own is decided by
+ * the solver alone rather than built and evicted again on every miss. When {@link PurchasePolicy} changes the limits
+ * of a product, the product's tables are rebuilt for the new limits before the change is published; decisions still
+ * holding the previous {@link ProductPolicy} are answered by the solver meanwhile. The share of decisions answered from
+ * a table is published as {@code purchase.cache.hit.ratio}.
+ */
+@Component
+public class DecisionTableCache implements MeterBinder, ProductPrecomputation {
+
+    static final String HIT_RATIO_GAUGE = "purchase.cache.hit.ratio";
+
+    // One hit in 16 records the access time of its table
+    private static final int TOUCH_SAMPLE_MASK = 15;
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionTableCache.class);
+
+    private final ApprovalSolver approvalSolver;
+    private final DecisionTableProperties decisionTableProperties;
+    private final Executor buildExecutor;
+    private final ReentrantLock generationLock = new ReentrantLock();
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder tableHits = new LongAdder();
+
+    private final Map<String, Generation> generations = new ConcurrentHashMap<>();
+
+    @Autowired
+    public DecisionTableCache(ApprovalSolver approvalSolver, DecisionTableProperties decisionTableProperties) {
+        this(approvalSolver, decisionTableProperties, ForkJoinPool.commonPool());
+    }
+
+    DecisionTableCache(ApprovalSolver approvalSolver, DecisionTableProperties decisionTableProperties,
+                       Executor buildExecutor) {
+        this.approvalSolver = approvalSolver;
+        this.decisionTableProperties = decisionTableProperties;
+        this.buildExecutor = buildExecutor;
+    }
+
+    /**
+     * Decides for the default product with the given limits.
+     */
+    public ApprovalOutcome solve(PurchaseLimits limits, int financialFactor, BigDecimal requestedAmount,
+                                 int initialPeriod) {
+        return solve(ProductPolicy.DEFAULT_CODE, limits, 0, financialFactor, requestedAmount, initialPeriod);
+    }
+
+    public ApprovalOutcome solve(ProductPolicy product, int financialFactor, BigDecimal requestedAmount,
+                                 int initialPeriod) {
+        return solve(product.code(), product.limits(), product.version(), financialFactor, requestedAmount,
+                initialPeriod);
+    }
+
+    private ApprovalOutcome solve(String code, PurchaseLimits limits, long version, int financialFactor,
+                                  BigDecimal requestedAmount, int initialPeriod) {
+        if (!decisionTableProperties.isEnabled()) {
+            return approvalSolver.solve(limits, financialFactor, requestedAmount, initialPeriod);
+        }
+
+        lookups.increment();
+        Generation current = generationFor(code, limits, version);
+        if (current == null || !current.tabulated || !covers(current, requestedAmount)) {
+            return approvalSolver.solve(limits, financialFactor, requestedAmount, initialPeriod);
+        }
+
+        DecisionTable table = current.tables.get(financialFactor);
+        if (table == null) {
+            scheduleBuild(current, financialFactor);
+            return approvalSolver.solve(limits, financialFactor, requestedAmount, initialPeriod);
+        }
+        if (!table.covers(initialPeriod)) {
+            return approvalSolver.solve(limits, financialFactor, requestedAmount, initialPeriod);
+        }
+
+        if ((ThreadLocalRandom.current().nextInt() & TOUCH_SAMPLE_MASK) == 0) {
+            table.touch(System.nanoTime());
+        }
+        tableHits.increment();
+        DecisionTrace.fromTable();
+        int amount = requestedAmount.compareTo(current.limits.maxAmount()) > 0 ? current.maxAmount : requestedAmount.intValue();
+        return table.lookup(amount, initialPeriod);
+    }
+
+    /**
+     * Starts rebuilding the tables of a product for its new limits, so they are ready soon after it is published.
+     */
+    @Override
+    public void precompute(ProductPolicy product) {
+        if (decisionTableProperties.isEnabled()) {
+            generationFor(product.code(), product.limits(), product.version());
+        }
+    }
+
+    @Override
+    public void discard(String productCode) {
+        generationLock.lock();
+        try {
+            generations.remove(productCode);
+        } finally {
+            generationLock.unlock();
+        }
+    }
+
+    int tableCount() {
+        int count = 0;
+        for (Generation generation : generations.values()) {
+            count += generation.tables.size();
+        }
+        return count;
+    }
+
+    long memoryUsage() {
+        long bytes = 0;
+        for (Generation generation : generations.values()) {
+            bytes += generation.bytes.get();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the share of decisions answered from a table since startup, or {@code NaN} before the first one
+     */
+    double hitRatio() {
+        long total = lookups.sum();
+        return total == 0 ? Double.NaN : (double) tableHits.sum() / total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder(HIT_RATIO_GAUGE, this, DecisionTableCache::hitRatio)
+                .description("Share of lookups answered from the cache")
+                .tag("cache", "decisionTables")
+                .register(registry);
+        Gauge.builder("purchase.decision.tables", this, DecisionTableCache::tableCount)
+                .description("Decision tables held in memory")
+                .register(registry);
+    }
+
+    private static boolean covers(Generation generation, BigDecimal requestedAmount) {
+        if (requestedAmount.compareTo(generation.limits.maxAmount()) > 0) {
+            return true;
+        }
+        return requestedAmount.scale() == 0 && requestedAmount.compareTo(generation.limits.minAmount()) >= 0;
+    }
+
+    /**
+     * @return the generation for the limits, or {@code null} if they are older than the product's current tables
+     */
+    private Generation generationFor(String code, PurchaseLimits limits, long version) {
+        Generation current = generations.get(code);
+        if (current != null && current.isFor(limits)) {
+            return current;
+        }
+
+        generationLock.lock();
+        try {
+            Generation previous = generations.get(code);
+            if (previous != null && previous.isFor(limits)) {
+                return previous;
+            }
+            // A decision that started before the limits changed: leave the new tables alone and let the solver answer
+            if (previous != null && version < previous.version) {
+                return null;
+            }
+
+            Generation next = new Generation(code, limits, version, decisionTableProperties.getMaxMemory().toBytes());
+            if (next.isOverBudget()) {
+                logger.warn("A decision table of product {} would take {} bytes, over the {} of "
+                                + "purchase.decision-table.max-memory; its decisions are left to the solver", code,
+                        next.tableBytes, decisionTableProperties.getMaxMemory());
+            }
+            generations.put(code, next);
+            if (previous != null) {
+                logger.info("Purchase limits of product {} changed, rebuilding {} decision tables", code,
+                        previous.tables.size());
+                previous.tables.keySet().forEach(factor -> scheduleBuild(next, factor));
+            }
+            return next;
+        } finally {
+            generationLock.unlock();
+        }
+    }
+
+    private void scheduleBuild(Generation target, int financialFactor) {
+        if (!target.tabulated || !target.building.add(financialFactor)) {
+            return;
+        }
+        buildExecutor.execute(() -> {
+            try {
+                build(target, financialFactor);
+            } finally {
+                target.building.remove(financialFactor);
+            }
+        });
+    }
+
+    private void build(Generation target, int financialFactor) {
+        DecisionTable table = DecisionTable.build(approvalSolver, target.limits, financialFactor,
+                target.minAmount, target.maxAmount);
+
+        // Limits changed while building: the table is correct for its generation, but nothing reads that any more
+        if (generations.get(target.code) != target) {
+            return;
+        }
+
+        table.touch(System.nanoTime());
+        target.tables.put(financialFactor, table);
+        target.bytes.addAndGet(table.sizeInBytes());
+        evictIfNeeded();
+    }
+
+    private void evictIfNeeded() {
+        long maxBytes = decisionTableProperties.getMaxMemory().toBytes();
+        while (memoryUsage() > maxBytes) {
+            Generation owner = null;
+            Map.Entry<Integer, DecisionTable> coldest = null;
+            for (Generation generation : generations.values()) {
+                for (Map.Entry<Integer, DecisionTable> entry : generation.tables.entrySet()) {
+                    if (coldest == null || entry.getValue().lastAccess() < coldest.getValue().lastAccess()) {
+                        owner = generation;
+                        coldest = entry;
+                    }
+                }
+            }
+            if (coldest == null) {
+                return;
+            }
+            if (owner.tables.remove(coldest.getKey(), coldest.getValue())) {
+                owner.bytes.addAndGet(-coldest.getValue().sizeInBytes());
+                logger.debug("Evicted decision table of product {} for factor {}", owner.code, coldest.getKey());
+            }
+        }
+    }
+
+    /**
+     * The tables built for one product's limits.
+     */
+    private static final class Generation {
+        private final String code;
+        private final long version;
+        private final PurchaseLimits limits;
+        private final boolean tabulated;
+        private final long tableBytes;
+        private final int minAmount;
+        private final int maxAmount;
+        private final Map<Integer, DecisionTable> tables = new ConcurrentHashMap<>();
+        private final Set<Integer> building = ConcurrentHashMap.newKeySet();
+        private final AtomicLong bytes = new AtomicLong();
+
+        private Generation(String code, PurchaseLimits limits, long version, long maxBytes) {
+            this.code = code;
+            this.version = version;
+            this.limits = limits;
+            boolean tabulable = isTabulable(limits);
+            this.minAmount = tabulable ? limits.minAmount().intValueExact() : 0;
+            this.maxAmount = tabulable ? limits.maxAmount().intValueExact() : 0;
+            this.tableBytes = tabulable ? DecisionTable.sizeInBytes(DecisionTable.entryCount(minAmount, maxAmount,
+                    limits.minPeriod(), limits.maxPeriod())) : 0;
+            this.tabulated = tabulable && tableBytes <= maxBytes;
+        }
+
+        private boolean isFor(PurchaseLimits limits) {
+            return this.limits == limits || this.limits.equals(limits);
+        }
+
+        /**
+         * @return whether the limits could be tabulated, but one table would not fit in the memory bound
+         */
+        private boolean isOverBudget() {
+            return tableBytes > 0 && !tabulated;
+        }
+
+        /**
+         * Tables hold whole amounts with scale 0, so the limits must be whole numbers that fit in an entry.
+         */
+        private static boolean isTabulable(PurchaseLimits limits) {
+            BigDecimal minAmount = limits.minAmount();
+            BigDecimal maxAmount = limits.maxAmount();
+            return minAmount.signum() > 0
+                    && minAmount.stripTrailingZeros().scale() <= 0
+                    && maxAmount.scale() == 0
+                    && maxAmount.compareTo(minAmount) >= 0
+                    && maxAmount.compareTo(BigDecimal.valueOf(DecisionTable.MAX_AMOUNT)) <= 0
+                    && limits.minPeriod() > 0
+                    && limits.maxPeriod() <= DecisionTable.MAX_PERIOD
+                    && limits.maxPeriod() >= limits.minPeriod()
+                    && DecisionTable.entryCount(minAmount.intValue(), maxAmount.intValue(),
+                    limits.minPeriod(), limits.maxPeriod()) <= DecisionTable.MAX_ENTRIES;
+        }
+    }
+}
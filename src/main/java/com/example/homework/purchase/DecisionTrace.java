@@ -0,0 +1,129 @@
+package com.example.homework.purchase;
+
+import java.util.Locale;
+
+/**
+ * Ring buffer of the score evaluations made while deciding one application, reached through the deciding thread.
+ * <p>
+ * Every step of a decision is stored as primitives, so a failed decision can always be written out with the steps that
+ * led to it. Only the last {@link #CAPACITY} steps are kept, and they are only formatted when {@link DecisionTracer}
+ * writes them out. Whether a successful decision is written out with its steps is settled when it begins.
+ * <p>
+ * The arrays are not owned by threads, which in the virtual-thread mode live for one request only, but taken from a
+ * {@link BoundedPool} when a decision begins and given back when it ends. Steps of solver calls made outside a
+ * decision, such as re-scoring, are only counted.
+ * <p>
+ * The trace belongs to the thread deciding, so the decisions of a batch or of a coalesced application, which are made
+ * on other threads than the request's, are never written out with their steps on request.
+ */
+final class DecisionTrace {
+
+    static final int CAPACITY = 64;
+
+    private static final ThreadLocal<DecisionTrace> CURRENT = ThreadLocal.withInitial(DecisionTrace::new);
+    private static final BoundedPool<Ring> RINGS = new BoundedPool<>(Ring::new);
+
+    private Ring ring;
+    private int steps;
+    private boolean fromTable;
+    private boolean sampled;
+    private boolean requested;
+
+    private DecisionTrace() {
+    }
+
+    static DecisionTrace current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Records one evaluation of the approval score.
+     */
+    void step(double amount, int period, double score) {
+        int slot = steps++ & (CAPACITY - 1);
+        if (ring != null) {
+            ring.amounts[slot] = amount;
+            ring.periods[slot] = period;
+            ring.scores[slot] = score;
+        }
+    }
+
+    /**
+     * Marks the current decision as answered from a precomputed decision table.
+     */
+    static void fromTable() {
+        CURRENT.get().fromTable = true;
+    }
+
+    /**
+     * Starts a decision with a ring from the pool.
+     *
+     * @param sampled whether the decision is written out with its steps even if it succeeds
+     */
+    void begin(boolean sampled) {
+        if (ring == null) {
+            ring = RINGS.take();
+        }
+        steps = 0;
+        fromTable = false;
+        this.sampled = sampled;
+    }
+
+    /**
+     * Ends the decision and gives its ring back to the pool; its steps can no longer be written out.
+     */
+    void end() {
+        if (ring != null) {
+            RINGS.giveBack(ring);
+            ring = null;
+        }
+    }
+
+    boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * Asks for the decisions made on this thread to be traced regardless of sampling, until cleared.
+     */
+    void setRequested(boolean requested) {
+        this.requested = requested;
+    }
+
+    boolean isRequested() {
+        return requested;
+    }
+
+    int steps() {
+        return steps;
+    }
+
+    boolean isFromTable() {
+        return fromTable;
+    }
+
+    /**
+     * Appends the kept steps, oldest first, as {@code amount/period/score} separated by spaces.
+     */
+    void appendSteps(StringBuilder line) {
+        if (ring == null) {
+            return;
+        }
+        int kept = Math.min(steps, CAPACITY);
+        for (int i = steps - kept; i < steps; i++) {
+            int slot = i & (CAPACITY - 1);
+            if (i > steps - kept) {
+                line.append(' ');
+            }
+            line.append(String.format(Locale.ROOT, "%.2f/%d/%.4f",
+                    ring.amounts[slot], ring.periods[slot], ring.scores[slot]));
+        }
+    }
+
+    private static final class Ring {
+
+        private final double[] amounts = new double[CAPACITY];
+        private final int[] periods = new int[CAPACITY];
+        private final double[] scores = new double[CAPACITY];
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.homework.purchase;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Traces every decision made on the request thread when the request carries {@code X-Decision-Trace: true}.
+ * <p>
+ * Only the request thread is marked: batch decisions and applications coalesced onto another request are decided on
+ * other threads and are traced only when sampled or failed.
+ */
+@Component
+public class DecisionTraceFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (!Boolean.parseBoolean(request.getHeader(DecisionTracer.TRACE_HEADER))) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        DecisionTrace trace = DecisionTrace.current();
+        trace.setRequested(true);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            trace.setRequested(false);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.DecisionTraceProperties;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Writes one structured line per decision, with the personal ID masked.
+ * <p>
+ * The score evaluations are collected in the thread's {@link DecisionTrace} and added to the line of every failed
+ * decision. A successful decision carries them only if it is sampled ({@code purchase.trace.sample-rate}) or its
+ * request has the {@value #TRACE_HEADER} header, which is settled when the decision begins. Writing the line ends the
+ * decision and gives its trace buffer back.
+ */
+@Component
+@RequiredArgsConstructor
+public class DecisionTracer {
+
+    public static final String TRACE_HEADER = "X-Decision-Trace";
+
+    private static final int VISIBLE_ID_DIGITS = 4;
+
+    private static final Logger logger = LoggerFactory.getLogger(DecisionTracer.class);
+
+    private final DecisionTraceProperties decisionTraceProperties;
+
+    /**
+     * Starts a decision made on the current thread, collecting its score evaluations until it is decided or failed.
+     */
+    DecisionTrace begin() {
+        DecisionTrace trace = DecisionTrace.current();
+        trace.begin(trace.isRequested() || isSampled());
+        return trace;
+    }
+
+    void decided(DecisionTrace trace, String personalId, BigDecimal requestedAmount, int initialPaymentPeriod,
+                 Integer financialCapacityFactor, ApprovalDecision decision, int approvedPeriod, long started) {
+        try {
+            if (!logger.isInfoEnabled()) {
+                return;
+            }
+
+            StringBuilder line = summary(trace, personalId, requestedAmount, initialPaymentPeriod,
+                    financialCapacityFactor, started)
+                    .append(" outcome=").append(decision.isApproved() ? "approved" : "rejected")
+                    .append(" approvedAmount=").append(decision.getApprovedAmount().toPlainString())
+                    .append(" approvedPeriod=").append(approvedPeriod);
+            if (trace.isSampled()) {
+                appendTrace(line, trace);
+            }
+            logger.info(line.toString());
+        } finally {
+            trace.end();
+        }
+    }
+
+    void failed(DecisionTrace trace, String personalId, BigDecimal requestedAmount, int initialPaymentPeriod,
+                Integer financialCapacityFactor, RuntimeException error, long started) {
+        try {
+            StringBuilder line = summary(trace, personalId, requestedAmount, initialPaymentPeriod,
+                    financialCapacityFactor, started)
+                    .append(" outcome=error error=\"").append(error.getMessage()).append('"');
+            appendTrace(line, trace);
+            logger.warn(line.toString());
+        } finally {
+            trace.end();
+        }
+    }
+
+    private static StringBuilder summary(DecisionTrace trace, String personalId, BigDecimal requestedAmount,
+                                         int initialPaymentPeriod, Integer financialCapacityFactor, long started) {
+        return new StringBuilder(160)
+                .append("decision personalId=").append(maskPersonalId(personalId))
+                .append(" requestedAmount=").append(requestedAmount == null ? "null" : requestedAmount.toPlainString())
+                .append(" paymentPeriod=").append(initialPaymentPeriod)
+                .append(" factor=").append(financialCapacityFactor)
+                .append(" source=").append(trace.isFromTable() ? "table" : "solver")
+                .append(" steps=").append(trace.steps())
+                .append(" durationMicros=").append((System.nanoTime() - started) / 1_000);
+    }
+
+    private static void appendTrace(StringBuilder line, DecisionTrace trace) {
+        line.append(" trace=\"");
+        trace.appendSteps(line);
+        line.append('"');
+    }
+
+    private boolean isSampled() {
+        double sampleRate = decisionTraceProperties.getSampleRate();
+        return sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    }
+
+    /**
+     * Keeps the last {@value #VISIBLE_ID_DIGITS} characters of the personal ID.
+     */
+    static String maskPersonalId(String personalId) {
+        if (personalId == null) {
+            return "null";
+        }
+        int visibleFrom = Math.max(0, personalId.length() - VISIBLE_ID_DIGITS);
+        return "*".repeat(visibleFrom) + personalId.substring(visibleFrom);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.homework.purchase;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.ColumnDefault;
+
+@Entity
+@Table(name = "financial_profile")
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+public class FinancialProfile {
+
+    @Id
+    @Column(length = 11)
+    private String personalId;
+
+    @Column(nullable = false)
+    private int capacityFactor;
+
+    // Raised by every update, so the nodes caching the factor can tell a newer change from a late one
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private long version;
+}
@@ -0,0 +1,7 @@
+package com.example.homework.purchase;
+
+/**
+ * Published when the financial profile of a customer was saved, so that anything derived from it can be dropped.
+ */
+public record FinancialProfileChangedEvent(String personalId) {
+}
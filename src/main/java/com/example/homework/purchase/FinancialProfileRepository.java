@@ -0,0 +1,23 @@
+package com.example.homework.purchase;
+
+import jakarta.persistence.QueryHint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface FinancialProfileRepository extends JpaRepository<FinancialProfile, String> {
+
+    @Query("select p.capacityFactor from FinancialProfile p where p.personalId = :personalId")
+    Optional<Integer> findCapacityFactorByPersonalId(String personalId);
+
+    @Query("select new com.example.homework.purchase.VersionedCapacityFactor(p.capacityFactor, p.version) "
+            + "from FinancialProfile p where p.personalId = :personalId")
+    Optional<VersionedCapacityFactor> findVersionedCapacityFactorByPersonalId(String personalId);
+
+    @Query("select p.personalId from FinancialProfile p")
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "10000"))
+    Stream<String> streamPersonalIds();
+}
@@ -1,28 +1,334 @@
 package com.example.homework.purchase;
 
+import com.example.homework.config.ProfileCacheProperties;
+import com.example.homework.config.ProfileFilterProperties;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.util.Map;
+import java.util.OptionalInt;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Read-through cache of financial capacity factors in front of the {@link FinancialProfileStore}.
+ * <p>
+ * Entries are refreshed in the background once they are older than {@code refresh-after-write}, so customers that
+ * keep coming back are served from memory while their factor is reloaded, and dropped after
+ * {@code expire-after-write} without access. Concurrent misses for the same personal ID share one store query.
+ * Hits, misses and load times are published as {@code cache.*} metrics under the name {@code financialProfiles}.
+ * Background refreshes run on the application task executor, which uses virtual threads when
+ * {@code spring.threads.virtual.enabled} is set.
+ * <p>
+ * Personal IDs without a profile are answered by a {@link ProfileMembershipFilter} of all stored IDs before they reach
+ * the cache or the store, so scans of random IDs neither query the database nor evict real customers from the cache.
+ * The filter is built once the application is ready and rebuilt in the background every {@code rebuild-interval};
+ * profiles saved in between are added through {@link #evict(String)}. Until the first build completes every lookup
+ * goes to the cache. Profiles written to the store directly, without {@link #evict(String)}, are noticed by comparing
+ * the number of stored profiles with the number the filter was built from every {@code change-check-interval}. Once
+ * they differ, the filter is rebuilt and absent IDs go to the cache until it is, so such a profile is answered as
+ * unknown for at most about one check interval. A profile added and another removed within the same interval leave
+ * the number unchanged and wait for the next rebuild.
+ * <p>
+ * An {@link IndexedFinancialProfileStore} already answers from memory without allocating, so it is queried directly.
+ * <p>
+ * On a cluster, {@link #evict(String)} and {@link #update(FinancialProfile)} reach the cache of every node through the
+ * {@link ProfileInvalidationBroadcaster}. Cached factors carry the version of their profile, so of two changes of a
+ * profile the later one wins on every node, whichever arrives first.
+ * <p>
+ * {@link #reloadProfiles()} switches to a new dataset without pausing lookups; see there. Every lookup is recorded as
+ * an {@link ApprovalEvents.ProfileLookup} event in a running flight recording.
+ */
 @Service
-public class FinancialProfileService {
-
-    private static final Map<String, Integer> FINANCIAL_PROFILE = Map.of(
-            "12345678901", -1,   //  Ineligible customer
-            "99999999999", 8,    // Low capacity, cannot approve high requests
-            "12345678923", 10,   // Low capacity, cannot approve high requests
-            "12345678999", 40,   //  Lower than requested, but still approvable
-            "12345678912", 50,   // Profile with moderate capacity
-            "12345678956", 378,  // Strong profile, large approvals
-            "12345678934", 500,  //  Strong profile, large approvals
-            "12345678945", 100 //  Can approve higher than requested amounts
-    );
-
-    public Integer getFinancialCapacityFactor(String personalId) {
-        Integer financialCapacityFactor = FINANCIAL_PROFILE.get(personalId);
-        if (financialCapacityFactor == null) {
-            throw new IllegalArgumentException("Financial profile not found for personal ID: " + personalId);
+public class FinancialProfileService implements MeterBinder {
+
+    static final String CACHE_NAME = "financialProfiles";
+    static final String FILTERED_LOOKUPS = "purchase.profile.filter.rejections";
+
+    private static final Logger logger = LoggerFactory.getLogger(FinancialProfileService.class);
+
+    private final FinancialProfileStore financialProfileStore;
+    private final ProfileFilterProperties profileFilterProperties;
+    private final Executor applicationTaskExecutor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final IndexedFinancialProfileStore indexedStore;
+    private final ProfileInvalidationBroadcaster invalidationBroadcaster;
+    private final LoadingCache<String, VersionedCapacityFactor> financialProfiles;
+    private final LongAdder filteredLookups = new LongAdder();
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean checkingChanges = new AtomicBoolean();
+    private final AtomicLong datasetGeneration = new AtomicLong();
+    private final Queue<String> addedDuringRebuild = new ConcurrentLinkedQueue<>();
+
+    private volatile ProfileMembershipFilter membershipFilter;
+    private volatile long membershipFilterAttemptedAt = System.nanoTime();
+    // Profiles in the store when the filter was read from it; -1 if the store cannot count them
+    private volatile long filteredProfileCount = -1;
+    private volatile boolean membershipFilterStale;
+    private volatile long changesCheckedAt = System.nanoTime();
+
+    @Autowired
+    public FinancialProfileService(FinancialProfileStore financialProfileStore, ProfileCacheProperties profileCacheProperties,
+                                   ProfileFilterProperties profileFilterProperties, Executor applicationTaskExecutor,
+                                   ApplicationEventPublisher eventPublisher,
+                                   ProfileInvalidationBroadcaster invalidationBroadcaster) {
+        this.financialProfileStore = financialProfileStore;
+        this.profileFilterProperties = profileFilterProperties;
+        this.applicationTaskExecutor = applicationTaskExecutor;
+        this.eventPublisher = eventPublisher;
+        this.invalidationBroadcaster = invalidationBroadcaster;
+        this.indexedStore = financialProfileStore instanceof IndexedFinancialProfileStore indexed ? indexed : null;
+        this.financialProfiles = Caffeine.newBuilder()
+                .maximumSize(profileCacheProperties.getMaximumSize())
+                .expireAfterWrite(profileCacheProperties.getExpireAfterWrite())
+                .refreshAfterWrite(profileCacheProperties.getRefreshAfterWrite())
+                .executor(applicationTaskExecutor)
+                .recordStats()
+                .build(financialProfileStore::findVersionedCapacityFactor);
+        invalidationBroadcaster.onReceive(this::apply, this::refreshCachedProfiles);
+    }
+
+    FinancialProfileService(FinancialProfileStore financialProfileStore, ProfileCacheProperties profileCacheProperties,
+                            ProfileFilterProperties profileFilterProperties, Executor applicationTaskExecutor,
+                            ApplicationEventPublisher eventPublisher) {
+        this(financialProfileStore, profileCacheProperties, profileFilterProperties, applicationTaskExecutor,
+                eventPublisher, ProfileInvalidationBroadcaster.local());
+    }
+
+    FinancialProfileService(FinancialProfileStore financialProfileStore, ProfileCacheProperties profileCacheProperties) {
+        this(financialProfileStore, profileCacheProperties, new ProfileFilterProperties(), ForkJoinPool.commonPool(),
+                event -> { });
+    }
+
+    /**
+     * @return the capacity factor of the customer, or empty if there is no profile for the personal ID
+     */
+    public OptionalInt findFinancialCapacityFactor(String personalId) {
+        ApprovalEvents.ProfileLookup event = new ApprovalEvents.ProfileLookup();
+        event.begin();
+        OptionalInt financialCapacityFactor = lookUpFinancialCapacityFactor(personalId);
+        if (event.shouldCommit()) {
+            event.found = financialCapacityFactor.isPresent();
+            event.capacityFactor = financialCapacityFactor.orElse(IndexedFinancialProfileStore.NOT_FOUND);
+            event.indexed = indexedStore != null;
+            event.commit();
         }
         return financialCapacityFactor;
     }
+
+    private OptionalInt lookUpFinancialCapacityFactor(String personalId) {
+        if (indexedStore != null) {
+            int financialCapacityFactor = indexedStore.capacityFactor(personalId);
+            return financialCapacityFactor == IndexedFinancialProfileStore.NOT_FOUND
+                    ? OptionalInt.empty()
+                    : OptionalInt.of(financialCapacityFactor);
+        }
+
+        long now = System.nanoTime();
+        if (now - membershipFilterAttemptedAt > profileFilterProperties.getRebuildInterval().toNanos()) {
+            scheduleFilterRebuild();
+        }
+        if (now - changesCheckedAt > profileFilterProperties.getChangeCheckInterval().toNanos()) {
+            scheduleChangeCheck();
+        }
+        // Stale flag first: a rebuild swaps in the filter before it clears the flag
+        boolean stale = membershipFilterStale;
+        ProfileMembershipFilter filter = membershipFilter;
+        if (filter != null && !stale && !filter.mightContain(personalId)) {
+            filteredLookups.increment();
+            return OptionalInt.empty();
+        }
+
+        VersionedCapacityFactor financialCapacityFactor = financialProfiles.get(personalId);
+        return financialCapacityFactor == null
+                ? OptionalInt.empty()
+                : OptionalInt.of(financialCapacityFactor.capacityFactor());
+    }
+
+    /**
+     * Drops the cached factor of a customer whose profile was saved, on this node and the other nodes, lets the
+     * membership filter know about it and publishes a {@link FinancialProfileChangedEvent}.
+     */
+    public void evict(String personalId) {
+        ProfileInvalidation invalidation = ProfileInvalidation.evicted(personalId);
+        apply(invalidation);
+        invalidationBroadcaster.broadcast(invalidation);
+    }
+
+    /**
+     * Replaces the cached factor of a customer with the one of a profile that was saved, on this node and the other
+     * nodes, without querying the store. Call once the transaction that saved it has committed. A node that has
+     * already cached a later version of the profile keeps it.
+     */
+    public void update(FinancialProfile profile) {
+        ProfileInvalidation invalidation = ProfileInvalidation.changed(profile.getPersonalId(),
+                profile.getCapacityFactor(), profile.getVersion());
+        apply(invalidation);
+        invalidationBroadcaster.broadcast(invalidation);
+    }
+
+    /**
+     * Applies a profile change made on this or another node. A changed factor replaces only a cached factor of an
+     * older version, so a change that arrives late cannot bring back a factor that was already replaced; a profile that
+     * is not cached is read from the store on its next lookup.
+     */
+    void apply(ProfileInvalidation invalidation) {
+        String personalId = invalidation.personalId();
+        if (invalidation.isEviction()) {
+            financialProfiles.invalidate(personalId);
+        } else {
+            VersionedCapacityFactor changed =
+                    new VersionedCapacityFactor(invalidation.capacityFactor(), invalidation.version());
+            financialProfiles.asMap().computeIfPresent(personalId,
+                    (id, cached) -> cached.version() < changed.version() ? changed : cached);
+        }
+        ProfileMembershipFilter filter = membershipFilter;
+        if (filter != null) {
+            filter.put(personalId);
+        }
+        if (rebuilding.get()) {
+            addedDuringRebuild.add(personalId);
+        }
+        eventPublisher.publishEvent(new FinancialProfileChangedEvent(personalId));
+    }
+
+    /**
+     * Reads every cached factor again in the background, answering with the cached values until the new ones arrive.
+     */
+    private void refreshCachedProfiles() {
+        financialProfiles.refreshAll(financialProfiles.asMap().keySet());
+    }
+
+    /**
+     * Switches to the current profile dataset. An indexed store loads its source into a new index and swaps it in.
+     * Otherwise the store is the database, so cached factors are refreshed in the background, answering with the
+     * previous values until the new ones arrive, and the membership filter is dropped and rebuilt; until the rebuild
+     * completes, lookups go to the cache. Publishes a {@link FinancialProfilesReloadedEvent} afterwards.
+     */
+    public void reloadProfiles() {
+        if (indexedStore != null) {
+            indexedStore.reload();
+        } else {
+            datasetGeneration.incrementAndGet();
+            membershipFilter = null;
+            scheduleFilterRebuild();
+            refreshCachedProfiles();
+        }
+        eventPublisher.publishEvent(new FinancialProfilesReloadedEvent());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleFilterRebuild();
+    }
+
+    private void scheduleFilterRebuild() {
+        if (indexedStore != null || !profileFilterProperties.isEnabled() || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            applicationTaskExecutor.execute(this::rebuildMembershipFilter);
+        } catch (RuntimeException e) {
+            rebuilding.set(false);
+            logger.warn("Could not schedule a rebuild of the profile membership filter", e);
+        }
+    }
+
+    private void scheduleChangeCheck() {
+        if (membershipFilter == null || !checkingChanges.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            applicationTaskExecutor.execute(this::checkForChanges);
+        } catch (RuntimeException e) {
+            checkingChanges.set(false);
+            logger.warn("Could not schedule a check of the profile store for changes", e);
+        }
+    }
+
+    /**
+     * Compares the number of stored profiles with the number the membership filter was built from. If they differ,
+     * profiles were written to the store directly, so the filter no longer answers absent IDs until it is rebuilt.
+     */
+    void checkForChanges() {
+        try {
+            long profileCount = financialProfileStore.countProfiles();
+            if (profileCount >= 0 && profileCount != filteredProfileCount) {
+                membershipFilterStale = true;
+                scheduleFilterRebuild();
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Could not check the profile store for changes", e);
+        } finally {
+            changesCheckedAt = System.nanoTime();
+            checkingChanges.set(false);
+        }
+    }
+
+    /**
+     * Builds a new membership filter from the store and swaps it in. Profiles saved while the store was being read are
+     * added to the new filter both before and after the swap, so none of them is missed by either filter. A filter read
+     * before the dataset was reloaded is discarded and built again.
+     */
+    void rebuildMembershipFilter() {
+        long generation = datasetGeneration.get();
+        try {
+            long started = System.nanoTime();
+            // Counted first: profiles written while the filter is read make the next check rebuild it again
+            long profileCount = financialProfileStore.countProfiles();
+            ProfileMembershipFilter filter =
+                    financialProfileStore.loadMembershipFilter(profileFilterProperties.getFalsePositiveRate());
+            if (filter == null) {
+                return;
+            }
+            addedDuringRebuild.forEach(filter::put);
+            if (datasetGeneration.get() != generation) {
+                return;
+            }
+            membershipFilter = filter;
+            filteredProfileCount = profileCount;
+            membershipFilterStale = false;
+            addedDuringRebuild.forEach(filter::put);
+            logger.info("Built profile membership filter for {} personal IDs ({} bytes) in {} ms",
+                    filter.expectedInsertions(), filter.sizeInBytes(), (System.nanoTime() - started) / 1_000_000);
+        } catch (RuntimeException e) {
+            // Keep answering with the previous filter, or from the cache alone, until the next attempt
+            logger.warn("Could not build the profile membership filter", e);
+        } finally {
+            addedDuringRebuild.clear();
+            membershipFilterAttemptedAt = System.nanoTime();
+            rebuilding.set(false);
+        }
+        if (datasetGeneration.get() != generation) {
+            scheduleFilterRebuild();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, financialProfiles, CACHE_NAME);
+        Gauge.builder(DecisionTableCache.HIT_RATIO_GAUGE, financialProfiles, cache -> cache.stats().hitRate())
+                .description("Share of lookups answered from the cache")
+                .tag("cache", CACHE_NAME)
+                .register(registry);
+        FunctionCounter.builder(FILTERED_LOOKUPS, filteredLookups, LongAdder::sum)
+                .description("Lookups of unknown personal IDs answered by the membership filter")
+                .register(registry);
+    }
 }
@@ -0,0 +1,41 @@
+package com.example.homework.purchase;
+
+/**
+ * Source of truth for financial capacity factors, read through the cache in {@link FinancialProfileService}.
+ */
+@FunctionalInterface
+public interface FinancialProfileStore {
+
+    /**
+     * @return the capacity factor of the customer, or {@code null} if there is no profile for the personal ID
+     */
+    Integer findCapacityFactor(String personalId);
+
+    /**
+     * @return the capacity factor of the customer with the version of its profile, or {@code null} if there is no
+     * profile for the personal ID; version 0 unless the store keeps versions
+     */
+    default VersionedCapacityFactor findVersionedCapacityFactor(String personalId) {
+        Integer capacityFactor = findCapacityFactor(personalId);
+        return capacityFactor == null ? null : new VersionedCapacityFactor(capacityFactor, 0);
+    }
+
+    /**
+     * Builds a membership filter of every personal ID currently in the store, sized for the given false positive rate.
+     *
+     * @return the filter, or {@code null} if the store cannot list its personal IDs
+     */
+    default ProfileMembershipFilter loadMembershipFilter(double falsePositiveRate) {
+        return null;
+    }
+
+    /**
+     * Counts the profiles in the store, so that profiles added or removed without {@link FinancialProfileService}
+     * being told are noticed.
+     *
+     * @return the number of profiles, or {@code -1} if the store cannot count them
+     */
+    default long countProfiles() {
+        return -1;
+    }
+}
@@ -0,0 +1,7 @@
+package com.example.homework.purchase;
+
+/**
+ * Published when the whole profile dataset was switched, so that anything derived from any profile can be dropped.
+ */
+public record FinancialProfilesReloadedEvent() {
+}
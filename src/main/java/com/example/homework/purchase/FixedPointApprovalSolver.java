@@ -0,0 +1,211 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Variant of {@link BigDecimalApprovalSolver} that works on amounts in cents.
+ * <p>
+ * {@code round(factor / amount, 10) * period >= 1} is equivalent to
+ * {@code 2 * factor * 10^12 >= (2 * ceil(10^10 / period) - 1) * amountInCents}, so the largest approvable amount for a
+ * period is a single integer division and the search reduces to comparing longs. Only the returned amount is
+ * converted back to {@link BigDecimal}, keeping the scale the BigDecimal arithmetic would have produced. A search
+ * allocates its outcome and, when it differs from the request, the approved amount; nothing else for whole amounts.
+ * <p>
+ * Inputs outside the exact range of this arithmetic (sub-cent amounts, non-positive limits, extreme factors or
+ * periods) are delegated to {@link BigDecimalApprovalSolver}.
+ * <p>
+ * The limits of every product are converted to cents when {@link PurchasePolicy} publishes them, so decisions for
+ * different products do not keep replacing each other's conversion.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.scoring-engine", havingValue = "fixed-point")
+public class FixedPointApprovalSolver implements ApprovalSolver, ProductPrecomputation {
+
+    private static final long CENTS_PER_UNIT = 100;
+    private static final long AMOUNT_STEP_CENTS = BigDecimalApprovalSolver.AMOUNT_STEP * CENTS_PER_UNIT;
+    private static final long SCORE_UNIT = 10_000_000_000L;
+    private static final long DOUBLE_SCORE_CENTS = 2 * SCORE_UNIT * CENTS_PER_UNIT;
+    static final int MAX_FACTOR = 400_000_000;
+    private static final int MAX_PERIOD = 10_000;
+    private static final int MAX_INTEGER_DIGITS = 15;
+    private static final long UNREPRESENTABLE = Long.MIN_VALUE;
+
+    private final BigDecimalApprovalSolver fallback = new BigDecimalApprovalSolver();
+
+    private final ReentrantLock precomputedLock = new ReentrantLock();
+    private final Map<String, CentLimits> precomputedByProduct = new LinkedHashMap<>();
+
+    private volatile CentLimits[] precomputed = new CentLimits[0];
+    private volatile CentLimits centLimits;
+
+    @Override
+    public ApprovalOutcome solve(PurchaseLimits purchaseLimits, int financialFactor, BigDecimal requestedAmount,
+                                 int initialPeriod) {
+        CentLimits limits = centLimits(purchaseLimits);
+        long requestedCents = toCents(requestedAmount);
+        int maxPeriod = purchaseLimits.maxPeriod();
+
+        if (limits.minCents() <= 0 || limits.maxCents() <= 0 || requestedCents <= 0
+                || financialFactor > MAX_FACTOR || maxPeriod > MAX_PERIOD) {
+            return fallback.solve(purchaseLimits, financialFactor, requestedAmount, initialPeriod);
+        }
+
+        // Start from requested amount but do not exceed max limit
+        boolean cappedAtMax = requestedCents > limits.maxCents();
+        BigDecimal currentAmount = cappedAtMax ? limits.maxAmount() : requestedAmount;
+        long currentCents = cappedAtMax ? limits.maxCents() : requestedCents;
+
+        DecisionTrace trace = DecisionTrace.current();
+        int period = findShortestApprovedPeriod(trace, financialFactor, currentCents, initialPeriod, maxPeriod);
+        if (period > 0) {
+            // Try increasing the amount **ONLY IF the request was lower than possible approval**
+            long approvedCents = cappedAtMax
+                    ? currentCents
+                    : increaseApprovedAmount(financialFactor, currentCents, period, limits.maxCents());
+            return ApprovalOutcome.approved(toAmount(currentAmount, currentCents, approvedCents), period);
+        }
+
+        if (initialPeriod > maxPeriod) {
+            return ApprovalOutcome.REJECTED;
+        }
+
+        long shortfall = currentCents - maxApprovedCents(financialFactor, maxPeriod);
+        long reducedCents = currentCents - ceilDiv(shortfall, AMOUNT_STEP_CENTS) * AMOUNT_STEP_CENTS;
+        if (reducedCents < limits.minCents()) {
+            return ApprovalOutcome.REJECTED;
+        }
+        return ApprovalOutcome.approved(toAmount(currentAmount, currentCents, reducedCents),
+                findShortestApprovedPeriod(trace, financialFactor, reducedCents, initialPeriod, maxPeriod));
+    }
+
+    /**
+     * Returns the shortest period in {@code [fromPeriod, maxPeriod]} that approves the amount, or {@code -1}.
+     */
+    private static int findShortestApprovedPeriod(DecisionTrace trace, int financialFactor, long amountCents,
+                                                  int fromPeriod, int maxPeriod) {
+        if (fromPeriod > maxPeriod || !isApproved(trace, financialFactor, amountCents, maxPeriod)) {
+            return -1;
+        }
+
+        long centsPerPeriod = financialFactor * CENTS_PER_UNIT;
+        int period = (int) Math.max(fromPeriod, Math.min(maxPeriod, ceilDiv(amountCents, centsPerPeriod)));
+        while (period > fromPeriod && isApproved(trace, financialFactor, amountCents, period - 1)) {
+            period--;
+        }
+        while (!isApproved(trace, financialFactor, amountCents, period)) {
+            period++;
+        }
+        return period;
+    }
+
+    private static long increaseApprovedAmount(int financialFactor, long approvedCents, int period, long maxCents) {
+        long headroom = Math.min(maxCents, maxApprovedCents(financialFactor, period)) - approvedCents;
+        return approvedCents + headroom / AMOUNT_STEP_CENTS * AMOUNT_STEP_CENTS;
+    }
+
+    private static boolean isApproved(DecisionTrace trace, int financialFactor, long amountCents, int period) {
+        trace.step((double) amountCents / CENTS_PER_UNIT, period,
+                (double) financialFactor * CENTS_PER_UNIT * period / amountCents);
+        return amountCents <= maxApprovedCents(financialFactor, period);
+    }
+
+    /**
+     * Largest amount in cents whose approval score reaches the threshold for the given period.
+     */
+    static long maxApprovedCents(int financialFactor, int period) {
+        if (financialFactor <= 0 || period <= 0) {
+            return 0;
+        }
+        long divisor = 2 * ceilDiv(SCORE_UNIT, period) - 1;
+        long quotient = DOUBLE_SCORE_CENTS / divisor;
+        long remainder = DOUBLE_SCORE_CENTS % divisor;
+        return financialFactor * quotient + financialFactor * remainder / divisor;
+    }
+
+    private static long ceilDiv(long dividend, long divisor) {
+        return -Math.floorDiv(-dividend, divisor);
+    }
+
+    private static BigDecimal toAmount(BigDecimal currentAmount, long currentCents, long amountCents) {
+        if (amountCents == currentCents) {
+            return currentAmount;
+        }
+        if (currentAmount.scale() == 0 && amountCents % CENTS_PER_UNIT == 0) {
+            return BigDecimal.valueOf(amountCents / CENTS_PER_UNIT);
+        }
+        return BigDecimal.valueOf(amountCents, 2).setScale(Math.max(currentAmount.scale(), 0), RoundingMode.UNNECESSARY);
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount.precision() - amount.scale() > MAX_INTEGER_DIGITS) {
+            return UNREPRESENTABLE;
+        }
+        if (amount.scale() == 0) {
+            // Whole amounts, as most requests and limits are, without creating a rescaled BigDecimal
+            return amount.longValue() * CENTS_PER_UNIT;
+        }
+        if (amount.scale() > 2 && amount.stripTrailingZeros().scale() > 2) {
+            return UNREPRESENTABLE;
+        }
+        return amount.movePointRight(2).longValue();
+    }
+
+    @Override
+    public void precompute(ProductPolicy product) {
+        precomputedLock.lock();
+        try {
+            precomputedByProduct.put(product.code(), CentLimits.of(product.limits()));
+            precomputed = precomputedByProduct.values().toArray(new CentLimits[0]);
+        } finally {
+            precomputedLock.unlock();
+        }
+    }
+
+    @Override
+    public void discard(String productCode) {
+        precomputedLock.lock();
+        try {
+            precomputedByProduct.remove(productCode);
+            precomputed = precomputedByProduct.values().toArray(new CentLimits[0]);
+        } finally {
+            precomputedLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the limits of a policy snapshot converted when it was published, or converts them once and reuses the
+     * result for as long as the same snapshot keeps coming.
+     */
+    private CentLimits centLimits(PurchaseLimits purchaseLimits) {
+        for (CentLimits limits : precomputed) {
+            if (limits.source() == purchaseLimits) {
+                return limits;
+            }
+        }
+        CentLimits limits = centLimits;
+        if (limits == null || limits.source() != purchaseLimits) {
+            limits = CentLimits.of(purchaseLimits);
+            centLimits = limits;
+        }
+        return limits;
+    }
+
+    private record CentLimits(PurchaseLimits source, long minCents, long maxCents) {
+
+        static CentLimits of(PurchaseLimits limits) {
+            return new CentLimits(limits, toCents(limits.minAmount()), toCents(limits.maxAmount()));
+        }
+
+        BigDecimal maxAmount() {
+            return source.maxAmount();
+        }
+    }
+}
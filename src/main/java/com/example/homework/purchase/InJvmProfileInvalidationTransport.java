@@ -0,0 +1,42 @@
+package com.example.homework.purchase;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Delivers batches to every subscriber in the same JVM, on the publishing thread. The Spring bean shares its
+ * subscribers with every other application context in the JVM, so several contexts started by one test act as
+ * nodes of one cluster.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.profile-invalidation.transport", havingValue = "in-jvm")
+public class InJvmProfileInvalidationTransport implements ProfileInvalidationTransport {
+
+    private static final List<Listener> SHARED_LISTENERS = new CopyOnWriteArrayList<>();
+
+    private final List<Listener> listeners;
+
+    public InJvmProfileInvalidationTransport() {
+        this(SHARED_LISTENERS);
+    }
+
+    InJvmProfileInvalidationTransport(List<Listener> listeners) {
+        this.listeners = listeners;
+    }
+
+    @Override
+    public void publish(Batch batch) {
+        for (Listener listener : listeners) {
+            listener.onBatch(batch);
+        }
+    }
+
+    @Override
+    public Subscription subscribe(Listener listener) {
+        listeners.add(listener);
+        return () -> listeners.remove(listener);
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.ProfileIndexProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serves capacity factors from an in-memory {@link ProfileIndex} loaded at startup, selected with
+ * {@code purchase.profile-store=index}.
+ * <p>
+ * {@link #reload()} loads the source again into a new index next to the current one and then swaps a single volatile
+ * reference, so lookups never wait for a reload and each one sees either the old or the new dataset in full.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.profile-store", havingValue = "index")
+public class IndexedFinancialProfileStore implements FinancialProfileStore {
+
+    public static final int NOT_FOUND = Integer.MIN_VALUE;
+
+    private static final Logger logger = LoggerFactory.getLogger(IndexedFinancialProfileStore.class);
+
+    private final ProfileIndexProperties profileIndexProperties;
+    // Serializes reloads only; lookups read the volatile index without it
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile ProfileIndex profileIndex;
+
+    @Autowired
+    public IndexedFinancialProfileStore(ProfileIndexProperties profileIndexProperties) {
+        this(profileIndexProperties, load(profileIndexProperties));
+    }
+
+    IndexedFinancialProfileStore(ProfileIndex profileIndex) {
+        this(null, profileIndex);
+    }
+
+    private IndexedFinancialProfileStore(ProfileIndexProperties profileIndexProperties, ProfileIndex profileIndex) {
+        this.profileIndexProperties = profileIndexProperties;
+        this.profileIndex = profileIndex;
+    }
+
+    @Override
+    public Integer findCapacityFactor(String personalId) {
+        int capacityFactor = capacityFactor(personalId);
+        return capacityFactor == NOT_FOUND ? null : capacityFactor;
+    }
+
+    /**
+     * @return the capacity factor, or {@link #NOT_FOUND}
+     */
+    public int capacityFactor(String personalId) {
+        return profileIndex.capacityFactor(personalId, NOT_FOUND);
+    }
+
+    /**
+     * Loads {@code purchase.profile-index.source} again and swaps the new index in once it is complete. A failed load
+     * keeps the current index.
+     *
+     * @return the number of profiles in the new index
+     */
+    public int reload() {
+        if (profileIndexProperties == null) {
+            throw new IllegalStateException("Index was not loaded from purchase.profile-index.source");
+        }
+
+        reloadLock.lock();
+        try {
+            ProfileIndex next = load(profileIndexProperties);
+            replace(next);
+            return next.size();
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    void replace(ProfileIndex next) {
+        ProfileIndex previous = profileIndex;
+        profileIndex = next;
+        logger.info("Swapped financial profile index: {} profiles before, {} now", previous.size(), next.size());
+    }
+
+    public Path source() {
+        return profileIndexProperties == null ? null : profileIndexProperties.getSource();
+    }
+
+    private static ProfileIndex load(ProfileIndexProperties properties) {
+        if (properties.getSource() == null) {
+            throw new IllegalStateException("purchase.profile-index.source is required for purchase.profile-store=index");
+        }
+
+        long started = System.nanoTime();
+        ProfileIndex profileIndex = ProfileIndex.load(properties.getSource(), properties.getStorage());
+        logger.info("Loaded {} financial profiles ({} bytes, {}) from {} in {} ms", profileIndex.size(),
+                profileIndex.sizeInBytes(), profileIndex.storage(), properties.getSource(),
+                (System.nanoTime() - started) / 1_000_000);
+
+        if (properties.getSnapshot() != null && !ProfileIndex.isSnapshot(properties.getSource())) {
+            profileIndex.writeSnapshot(properties.getSnapshot());
+            logger.info("Wrote financial profile snapshot to {}", properties.getSnapshot());
+        }
+        return profileIndex;
+    }
+}
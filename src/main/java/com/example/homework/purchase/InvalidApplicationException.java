@@ -0,0 +1,11 @@
+package com.example.homework.purchase;
+
+/**
+ * Thrown for an application that lacks the personal ID or the requested amount.
+ */
+public class InvalidApplicationException extends IllegalArgumentException {
+
+    public InvalidApplicationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.homework.purchase;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.stream.Stream;
+
+@Component
+@ConditionalOnProperty(name = "purchase.profile-store", havingValue = "jpa", matchIfMissing = true)
+@RequiredArgsConstructor
+public class JpaFinancialProfileStore implements FinancialProfileStore {
+
+    // Room for profiles added between two rebuilds without exceeding the configured false positive rate
+    private static final double FILTER_HEADROOM = 1.25;
+
+    private final FinancialProfileRepository financialProfileRepository;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Integer findCapacityFactor(String personalId) {
+        return financialProfileRepository.findCapacityFactorByPersonalId(personalId).orElse(null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public VersionedCapacityFactor findVersionedCapacityFactor(String personalId) {
+        return financialProfileRepository.findVersionedCapacityFactorByPersonalId(personalId).orElse(null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long countProfiles() {
+        return financialProfileRepository.count();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProfileMembershipFilter loadMembershipFilter(double falsePositiveRate) {
+        long expectedInsertions = (long) Math.ceil(financialProfileRepository.count() * FILTER_HEADROOM);
+        ProfileMembershipFilter filter = ProfileMembershipFilter.create(expectedInsertions, falsePositiveRate);
+        try (Stream<String> personalIds = financialProfileRepository.streamPersonalIds()) {
+            personalIds.forEach(filter::put);
+        }
+        return filter;
+    }
+}
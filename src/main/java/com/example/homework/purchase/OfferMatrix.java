@@ -0,0 +1,72 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Every amount a customer can be approved for, as the largest approvable amount per payment period.
+ * <p>
+ * {@code maxApprovedAmounts.get(i)} is the largest amount, capped at {@code maxAmount}, whose approval score reaches
+ * the threshold for {@code minPeriod + i} months. Together with the limits and the amount step this is all a client
+ * needs to reproduce the decision for any requested amount and period without calling {@code /apply}.
+ */
+public record OfferMatrix(BigDecimal minAmount, BigDecimal maxAmount, long amountStep, int minPeriod, int maxPeriod,
+                          List<BigDecimal> maxApprovedAmounts, @JsonIgnore String productCode,
+                          @JsonIgnore int financialCapacityFactor) {
+
+    private static final int CENTS_SCALE = 2;
+    private static final int E_TAG_BYTES = 16;
+
+    static OfferMatrix of(String productCode, int financialCapacityFactor, PurchaseLimits limits) {
+        long maxCents = limits.maxAmount().movePointRight(CENTS_SCALE).longValue();
+        List<BigDecimal> maxApprovedAmounts = new ArrayList<>(Math.max(0, limits.maxPeriod() - limits.minPeriod() + 1));
+        for (int period = limits.minPeriod(); period <= limits.maxPeriod(); period++) {
+            // Above the exact range of the fixed-point arithmetic every amount up to the maximum is approvable
+            long approvableCents = financialCapacityFactor > FixedPointApprovalSolver.MAX_FACTOR
+                    ? maxCents
+                    : Math.min(maxCents, FixedPointApprovalSolver.maxApprovedCents(financialCapacityFactor, period));
+            maxApprovedAmounts.add(BigDecimal.valueOf(approvableCents, CENTS_SCALE));
+        }
+        return new OfferMatrix(limits.minAmount(), limits.maxAmount(), BigDecimalApprovalSolver.AMOUNT_STEP,
+                limits.minPeriod(), limits.maxPeriod(), List.copyOf(maxApprovedAmounts), productCode,
+                financialCapacityFactor);
+    }
+
+    /**
+     * Entity tag over the product, the capacity factor and every field of the matrix, approved amounts included, so it
+     * changes with anything that changes the representation, such as the scoring engine. It is the first 128 bits of a
+     * SHA-256 digest, so two different matrices practically never share one.
+     */
+    public String eTag() {
+        StringBuilder fields = new StringBuilder()
+                .append(productCode).append('\n')
+                .append(financialCapacityFactor).append('\n')
+                .append(minAmount.toPlainString()).append('\n')
+                .append(maxAmount.toPlainString()).append('\n')
+                .append(amountStep).append('\n')
+                .append(minPeriod).append('\n')
+                .append(maxPeriod).append('\n');
+        for (BigDecimal amount : maxApprovedAmounts) {
+            fields.append(amount.toPlainString()).append(',');
+        }
+        byte[] digest = sha256().digest(fields.toString().getBytes(StandardCharsets.UTF_8));
+        return '"' + HexFormat.of().formatHex(digest, 0, E_TAG_BYTES) + '"';
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.homework.purchase;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.OptionalInt;
+
+@Service
+@RequiredArgsConstructor
+public class OfferService {
+
+    private final FinancialProfileService financialProfileService;
+    private final PurchasePolicy purchasePolicy;
+    private final ApprovalSolver approvalSolver;
+
+    /**
+     * @return every approvable amount and period of the default product for the customer, or empty if there is no
+     * financial profile for the personal ID
+     */
+    public Optional<OfferMatrix> findOfferMatrix(String personalId) {
+        return findOfferMatrix(personalId, null);
+    }
+
+    /**
+     * @param productCode the product to offer, or {@code null} for the default product
+     * @return every approvable amount and period of the product for the customer, or empty if there is no financial
+     * profile for the personal ID
+     * @throws UnknownProductException if there is no product with the code
+     * @throws OffersUnavailableException if the active scoring engine decides by a configured rule
+     */
+    public Optional<OfferMatrix> findOfferMatrix(String personalId, String productCode) {
+        if (!approvalSolver.supportsOffers()) {
+            throw new OffersUnavailableException("Offers are not available with purchase.scoring-engine=rules");
+        }
+        ProductPolicy product = purchasePolicy.product(productCode);
+        OptionalInt financialCapacityFactor = financialProfileService.findFinancialCapacityFactor(personalId);
+        if (financialCapacityFactor.isEmpty()) {
+            return Optional.empty();
+        }
+        return Optional.of(OfferMatrix.of(product.code(), financialCapacityFactor.getAsInt(), product.limits()));
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.homework.purchase;
+
+/**
+ * Thrown for an offer request while the active {@link ApprovalSolver} decides in a way an {@link OfferMatrix} cannot
+ * reproduce.
+ */
+public class OffersUnavailableException extends IllegalStateException {
+
+    public OffersUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.BacktestProperties;
+import com.example.homework.config.PurchaseLimits;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Replays the applications stored in {@code approval_audit} against candidate limits, to see what a policy would have
+ * decided before it is put in force.
+ * <p>
+ * Applications are read by key in pages of {@code purchase.backtest.page-size} rows, so memory use does not depend on
+ * the size of the corpus. Each page is scored on a fork/join pool of {@code parallelism} threads of its own, in tasks
+ * of {@code leaf-size} rows, while the next page is read. Neither the common pool that batch approvals run on nor the
+ * decision tables of the live limits are used, so a backtest does not slow down or evict anything live traffic relies
+ * on. After every page the totals so far are passed on as a {@link BacktestReport}; the last one is marked complete.
+ * Only one backtest runs at a time.
+ * <p>
+ * Only the applications for the product being backtested are replayed; rows stored before the product was recorded
+ * were decided for the default product. Each application is decided by the rules of {@link PurchaseService} with the
+ * capacity factor stored with it.
+ * Applications rejected below the minimum amount were stored without a factor; those the candidate minimum would no
+ * longer reject cannot be scored and are counted as unscored.
+ * <p>
+ * Every scoring task keeps a histogram of approved amounts and one of approved periods sized by the candidate, so a
+ * candidate needing more than {@code purchase.backtest.max-buckets} buckets for either is rejected up front.
+ */
+@Component
+public class PolicyBacktester {
+
+    static final String PAGE_SQL = "SELECT id, requested_amount, payment_period, capacity_factor, approved, "
+            + "approved_amount FROM approval_audit WHERE id > ? "
+            + "AND COALESCE(product_code, '" + ProductPolicy.DEFAULT_CODE + "') = ? "
+            + "AND decided_at >= ? AND decided_at < ? ORDER BY id LIMIT ?";
+
+    private static final Logger logger = LoggerFactory.getLogger(PolicyBacktester.class);
+
+    private final ApprovalSolver approvalSolver;
+    private final JdbcTemplate jdbcTemplate;
+    private final BacktestProperties backtestProperties;
+    private final ObjectMapper objectMapper;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public PolicyBacktester(ApprovalSolver approvalSolver, JdbcTemplate jdbcTemplate,
+                            BacktestProperties backtestProperties, ObjectMapper objectMapper) {
+        if (backtestProperties.getAmountBucket() == null || backtestProperties.getAmountBucket().signum() <= 0) {
+            throw new IllegalArgumentException("Backtest amount bucket must be positive: "
+                    + backtestProperties.getAmountBucket());
+        }
+        this.approvalSolver = approvalSolver;
+        this.jdbcTemplate = jdbcTemplate;
+        this.backtestProperties = backtestProperties;
+        this.objectMapper = objectMapper;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * Runs a backtest and writes every report as one line of JSON, flushed as soon as it is computed.
+     *
+     * @see #run(String, PurchaseLimits, Instant, Instant, Consumer)
+     */
+    public void stream(String productCode, PurchaseLimits candidate, Instant from, Instant to, OutputStream output)
+            throws IOException {
+        try (JsonGenerator reports = objectMapper.getFactory().createGenerator(output)) {
+            reports.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            reports.setRootValueSeparator(null);
+            run(productCode, candidate, from, to, report -> {
+                try {
+                    reports.writeObject(report);
+                    reports.writeRaw('\n');
+                    reports.flush();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Scores the applications for a product decided in {@code [from, to)} against candidate limits for it.
+     *
+     * @param productCode the product whose applications are replayed, or {@code null} for the default product
+     * @param from        first decision time included, or {@code null} for the oldest application
+     * @param to          decision time excluded, or {@code null} for the time the backtest starts
+     * @param progress    receives the totals after every page and once more when all applications are scored
+     * @return the final totals
+     * @throws IllegalArgumentException if the candidate limits are inconsistent or need too many buckets
+     * @throws IllegalStateException    if another backtest is running
+     */
+    public BacktestReport run(String productCode, PurchaseLimits candidate, Instant from, Instant to,
+                              Consumer<BacktestReport> progress) {
+        validate(candidate);
+        String product = productCode == null ? ProductPolicy.DEFAULT_CODE : productCode;
+        if (!running.compareAndSet(false, true)) {
+            throw new IllegalStateException("A backtest is already running");
+        }
+
+        long started = System.nanoTime();
+        Timestamp since = Timestamp.from(from == null ? Instant.EPOCH : from);
+        // Applications decided while the backtest runs are left out, so the corpus does not grow under it
+        Timestamp until = Timestamp.from(to == null ? Instant.now() : to);
+        int pageSize = backtestProperties.getPageSize();
+
+        ForkJoinPool pool = new ForkJoinPool(backtestProperties.getParallelism());
+        try {
+            Aggregate total = new Aggregate(product, candidate, backtestProperties.getAmountBucket());
+            List<HistoricalApplication> page = readPage(0, product, since, until, pageSize);
+            while (!page.isEmpty()) {
+                ForkJoinTask<Aggregate> scored = pool.submit(new ScoreTask(product, candidate, page, 0, page.size()));
+                List<HistoricalApplication> next = page.size() < pageSize
+                        ? List.of()
+                        : readPage(page.get(page.size() - 1).id(), product, since, until, pageSize);
+                total.merge(scored.join());
+                progress.accept(total.report(System.nanoTime() - started, false));
+                page = next;
+            }
+
+            BacktestReport report = total.report(System.nanoTime() - started, true);
+            progress.accept(report);
+            logger.info("Backtested {} for {} against {} applications in {} ms: {} approved ({} before), {} unscored",
+                    candidate, product, report.applications(), report.elapsedMillis(), report.approved(),
+                    report.historicallyApproved(), report.unscored());
+            return report;
+        } finally {
+            pool.shutdownNow();
+            running.set(false);
+        }
+    }
+
+    /**
+     * Checks that the candidate limits are consistent and that their histograms fit in
+     * {@code purchase.backtest.max-buckets} buckets each.
+     *
+     * @throws IllegalArgumentException if they are not
+     */
+    public void validate(PurchaseLimits candidate) {
+        PurchasePolicy.validate(candidate);
+        int maxBuckets = backtestProperties.getMaxBuckets();
+        BigDecimal amountBucket = backtestProperties.getAmountBucket();
+        if (candidate.maxAmount().divideToIntegralValue(amountBucket).compareTo(BigDecimal.valueOf(maxBuckets)) >= 0) {
+            throw new IllegalArgumentException("Maximum amount " + candidate.maxAmount().toPlainString()
+                    + " needs more than " + maxBuckets + " backtest buckets of " + amountBucket.toPlainString());
+        }
+        if (candidate.maxPeriod() >= maxBuckets) {
+            throw new IllegalArgumentException("Maximum period " + candidate.maxPeriod() + " needs more than "
+                    + maxBuckets + " backtest buckets of one month");
+        }
+    }
+
+    private List<HistoricalApplication> readPage(long afterId, String product, Timestamp since, Timestamp until,
+                                                 int pageSize) {
+        return jdbcTemplate.query(PAGE_SQL, PolicyBacktester::mapApplication, afterId, product, since, until,
+                pageSize);
+    }
+
+    private static HistoricalApplication mapApplication(ResultSet row, int rowNumber) throws SQLException {
+        int capacityFactor = row.getInt("capacity_factor");
+        Integer storedFactor = row.wasNull() ? null : capacityFactor;
+        return new HistoricalApplication(row.getLong("id"), row.getBigDecimal("requested_amount"),
+                row.getInt("payment_period"), storedFactor, row.getBoolean("approved"),
+                row.getBigDecimal("approved_amount"));
+    }
+
+    /**
+     * Totals of a backtest so far. Approval rates are shares of the scored applications, which the current and the
+     * candidate policy both decided; {@code approvedAmounts} counts the approved amounts by bucket of
+     * {@code purchase.backtest.amount-bucket}, keyed by the lower bound, and {@code approvedPeriods} the payment
+     * periods they were approved for.
+     */
+    public record BacktestReport(String product, PurchaseLimits candidate, long applications, long scored,
+                                 long unscored, long approved, double approvalRate, BigDecimal approvedAmount,
+                                 BigDecimal averageApprovedAmount, long historicallyApproved,
+                                 double historicalApprovalRate, BigDecimal historicalApprovedAmount,
+                                 SortedMap<BigDecimal, Long> approvedAmounts, SortedMap<Integer, Long> approvedPeriods,
+                                 long elapsedMillis, boolean complete) {
+    }
+
+    /**
+     * One stored decision; {@code capacityFactor} is {@code null} if it was rejected before the profile was looked up.
+     */
+    record HistoricalApplication(long id, BigDecimal requestedAmount, int paymentPeriod, Integer capacityFactor,
+                                 boolean approved, BigDecimal approvedAmount) {
+    }
+
+    private final class ScoreTask extends RecursiveTask<Aggregate> {
+
+        private final String product;
+        private final PurchaseLimits candidate;
+        private final List<HistoricalApplication> applications;
+        private final int from;
+        private final int to;
+
+        ScoreTask(String product, PurchaseLimits candidate, List<HistoricalApplication> applications, int from,
+                  int to) {
+            this.product = product;
+            this.candidate = candidate;
+            this.applications = applications;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Aggregate compute() {
+            if (to - from <= backtestProperties.getLeafSize()) {
+                Aggregate aggregate = new Aggregate(product, candidate, backtestProperties.getAmountBucket());
+                for (int i = from; i < to; i++) {
+                    aggregate.add(applications.get(i), approvalSolver);
+                }
+                return aggregate;
+            }
+
+            int middle = (from + to) >>> 1;
+            ScoreTask left = new ScoreTask(product, candidate, applications, from, middle);
+            left.fork();
+            Aggregate right = new ScoreTask(product, candidate, applications, middle, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    static final class Aggregate {
+
+        private final String product;
+        private final PurchaseLimits candidate;
+        private final BigDecimal amountBucket;
+        private final long[] amountHistogram;
+        private final long[] periodHistogram;
+        private long applications;
+        private long unscored;
+        private long approved;
+        private long historicallyApproved;
+        private BigDecimal approvedAmount = BigDecimal.ZERO;
+        private BigDecimal historicalApprovedAmount = BigDecimal.ZERO;
+
+        Aggregate(String product, PurchaseLimits candidate, BigDecimal amountBucket) {
+            this.product = product;
+            this.candidate = candidate;
+            this.amountBucket = amountBucket;
+            this.amountHistogram = new long[bucketOf(candidate.maxAmount()) + 1];
+            this.periodHistogram = new long[candidate.maxPeriod() + 1];
+        }
+
+        void add(HistoricalApplication application, ApprovalSolver solver) {
+            applications++;
+            ApprovalOutcome outcome;
+            if (application.capacityFactor() != null) {
+                outcome = PurchaseService.score(solver, candidate, application.requestedAmount(),
+                        application.paymentPeriod(), application.capacityFactor());
+            } else if (PurchaseService.isBelowMinimumAmount(candidate, application.requestedAmount())) {
+                outcome = ApprovalOutcome.REJECTED;
+            } else {
+                unscored++;
+                return;
+            }
+
+            if (application.approved()) {
+                historicallyApproved++;
+                historicalApprovedAmount = historicalApprovedAmount.add(application.approvedAmount());
+            }
+            if (outcome.approved()) {
+                approved++;
+                approvedAmount = approvedAmount.add(outcome.approvedAmount());
+                amountHistogram[bucketOf(outcome.approvedAmount())]++;
+                periodHistogram[outcome.paymentPeriod()]++;
+            }
+        }
+
+        Aggregate merge(Aggregate other) {
+            applications += other.applications;
+            unscored += other.unscored;
+            approved += other.approved;
+            historicallyApproved += other.historicallyApproved;
+            approvedAmount = approvedAmount.add(other.approvedAmount);
+            historicalApprovedAmount = historicalApprovedAmount.add(other.historicalApprovedAmount);
+            for (int i = 0; i < amountHistogram.length; i++) {
+                amountHistogram[i] += other.amountHistogram[i];
+            }
+            for (int i = 0; i < periodHistogram.length; i++) {
+                periodHistogram[i] += other.periodHistogram[i];
+            }
+            return this;
+        }
+
+        BacktestReport report(long elapsedNanos, boolean complete) {
+            long scored = applications - unscored;
+            BigDecimal averageApprovedAmount = approved == 0
+                    ? BigDecimal.ZERO
+                    : approvedAmount.divide(BigDecimal.valueOf(approved), 2, RoundingMode.HALF_UP);
+
+            SortedMap<BigDecimal, Long> approvedAmounts = new TreeMap<>();
+            for (int i = 0; i < amountHistogram.length; i++) {
+                approvedAmounts.put(amountBucket.multiply(BigDecimal.valueOf(i)), amountHistogram[i]);
+            }
+            SortedMap<Integer, Long> approvedPeriods = new TreeMap<>();
+            for (int period = 0; period < periodHistogram.length; period++) {
+                if (periodHistogram[period] > 0) {
+                    approvedPeriods.put(period, periodHistogram[period]);
+                }
+            }
+
+            return new BacktestReport(product, candidate, applications, scored, unscored, approved,
+                    rate(approved, scored), approvedAmount, averageApprovedAmount, historicallyApproved, rate(historicallyApproved, scored),
+                    historicalApprovedAmount, approvedAmounts, approvedPeriods, elapsedNanos / 1_000_000, complete);
+        }
+
+        private int bucketOf(BigDecimal amount) {
+            return amount.divideToIntegralValue(amountBucket).intValueExact();
+        }
+
+        private static double rate(long count, long total) {
+            return total == 0 ? 0 : (double) count / total;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.ProfileInvalidationProperties;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Sends profile changes as Postgres notifications on {@code purchase.profile-invalidation.channel}, which every node
+ * listens to.
+ * <p>
+ * A batch is sent as one or more notifications of at most {@link #MAX_PAYLOAD_BYTES}, each a line with the origin
+ * followed by a {@code personalId,capacityFactor,version} line per change, the factor left empty for an eviction.
+ * Notifications are delivered to every listener connected when they are sent, including the sender.
+ * <p>
+ * Each subscription listens on a connection of its own, taken from the pool for as long as the application runs. When
+ * the connection is lost, it connects again every {@code reconnect-delay} and reports a gap once it is listening
+ * again, since changes sent in between are not delivered.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.profile-invalidation.transport", havingValue = "postgres")
+public class PostgresProfileInvalidationTransport implements ProfileInvalidationTransport {
+
+    // Postgres rejects payloads of 8000 bytes or more
+    static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private static final Pattern CHANNEL = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final int POLL_MILLIS = 500;
+    private static final String NOTIFY_SQL = "SELECT pg_notify(?, ?)";
+    private static final ResultSetExtractor<Void> IGNORE_RESULT = resultSet -> null;
+
+    private static final Logger logger = LoggerFactory.getLogger(PostgresProfileInvalidationTransport.class);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final ProfileInvalidationProperties properties;
+
+    public PostgresProfileInvalidationTransport(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                                ProfileInvalidationProperties properties) {
+        if (!CHANNEL.matcher(properties.getChannel()).matches()) {
+            throw new IllegalArgumentException("Invalid notification channel: " + properties.getChannel());
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.properties = properties;
+    }
+
+    @Override
+    public void publish(Batch batch) {
+        for (String payload : encode(batch)) {
+            jdbcTemplate.query(NOTIFY_SQL, IGNORE_RESULT, properties.getChannel(), payload);
+        }
+    }
+
+    @Override
+    public Subscription subscribe(Listener listener) {
+        NotificationListener notificationListener = new NotificationListener(listener);
+        Thread thread = new Thread(notificationListener, "profile-invalidation-listener");
+        thread.setDaemon(true);
+        thread.start();
+        return () -> {
+            notificationListener.running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    /**
+     * Splits a batch into notification payloads of at most {@link #MAX_PAYLOAD_BYTES} each.
+     */
+    static List<String> encode(Batch batch) {
+        int headerBytes = utf8Length(batch.origin());
+        List<String> payloads = new ArrayList<>();
+        StringBuilder payload = new StringBuilder(batch.origin());
+        int payloadBytes = headerBytes;
+        for (ProfileInvalidation invalidation : batch.invalidations()) {
+            String line = "\n" + invalidation.personalId() + ','
+                    + (invalidation.isEviction() ? "" : invalidation.capacityFactor()) + ','
+                    + invalidation.version();
+            int lineBytes = utf8Length(line);
+            if (payloadBytes > headerBytes && payloadBytes + lineBytes > MAX_PAYLOAD_BYTES) {
+                payloads.add(payload.toString());
+                payload.setLength(0);
+                payload.append(batch.origin());
+                payloadBytes = headerBytes;
+            }
+            payload.append(line);
+            payloadBytes += lineBytes;
+        }
+        if (payloadBytes > headerBytes) {
+            payloads.add(payload.toString());
+        }
+        return payloads;
+    }
+
+    static Batch decode(String payload) {
+        String[] lines = payload.split("\n");
+        List<ProfileInvalidation> invalidations = new ArrayList<>(lines.length - 1);
+        for (int i = 1; i < lines.length; i++) {
+            String[] fields = lines[i].split(",", -1);
+            if (fields.length != 3) {
+                throw new IllegalArgumentException("Malformed profile change: " + lines[i]);
+            }
+            invalidations.add(new ProfileInvalidation(fields[0],
+                    fields[1].isEmpty() ? null : Integer.valueOf(fields[1]), Long.parseLong(fields[2])));
+        }
+        return new Batch(lines[0], invalidations);
+    }
+
+    private static int utf8Length(String text) {
+        return text.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private final class NotificationListener implements Runnable {
+
+        private final Listener listener;
+        private volatile boolean running = true;
+
+        NotificationListener(Listener listener) {
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            boolean listenedBefore = false;
+            while (running) {
+                try (Connection connection = dataSource.getConnection()) {
+                    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("LISTEN " + properties.getChannel());
+                    }
+                    if (listenedBefore) {
+                        listener.onGap();
+                    }
+                    listenedBefore = true;
+                    logger.info("Listening for profile changes on channel {}", properties.getChannel());
+
+                    while (running) {
+                        PGNotification[] notifications = pgConnection.getNotifications(POLL_MILLIS);
+                        if (notifications != null) {
+                            deliver(notifications);
+                        }
+                    }
+                    // The connection goes back to the pool, where it must not collect notifications
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("UNLISTEN *");
+                    }
+                } catch (SQLException e) {
+                    logger.warn("Lost the connection listening for profile changes; reconnecting in {}",
+                            properties.getReconnectDelay(), e);
+                    sleep();
+                }
+            }
+        }
+
+        private void deliver(PGNotification[] notifications) {
+            for (PGNotification notification : notifications) {
+                try {
+                    listener.onBatch(decode(notification.getParameter()));
+                } catch (RuntimeException e) {
+                    logger.error("Could not apply profile changes from channel {}", notification.getName(), e);
+                    listener.onGap();
+                }
+            }
+        }
+
+        private void sleep() {
+            try {
+                Thread.sleep(properties.getReconnectDelay().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+    }
+}
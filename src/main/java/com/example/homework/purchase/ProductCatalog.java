@@ -0,0 +1,45 @@
+package com.example.homework.purchase;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable index of every product in force, from product code to {@link ProductPolicy}.
+ * <p>
+ * Built once per change of the products and never modified, so any number of threads resolve codes against one
+ * catalog without locks; the lookup is a probe of an immutable hash table and allocates nothing.
+ */
+final class ProductCatalog {
+
+    private final Map<String, ProductPolicy> products;
+    private final ProductPolicy defaultProduct;
+
+    ProductCatalog(Collection<ProductPolicy> products) {
+        Map<String, ProductPolicy> byCode = new HashMap<>();
+        for (ProductPolicy product : products) {
+            byCode.put(product.code(), product);
+        }
+        this.products = Map.copyOf(byCode);
+        this.defaultProduct = this.products.get(ProductPolicy.DEFAULT_CODE);
+        if (defaultProduct == null) {
+            throw new IllegalArgumentException("The default product is required");
+        }
+    }
+
+    /**
+     * @param code product code, or {@code null} for the default product
+     * @return the product, or {@code null} if there is no product with the code
+     */
+    ProductPolicy resolve(String code) {
+        return code == null ? defaultProduct : products.get(code);
+    }
+
+    ProductPolicy defaultProduct() {
+        return defaultProduct;
+    }
+
+    Collection<ProductPolicy> products() {
+        return products.values();
+    }
+}
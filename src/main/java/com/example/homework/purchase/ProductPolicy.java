@@ -0,0 +1,63 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The limits in force for one product, as resolved by {@link PurchasePolicy}.
+ * <p>
+ * A new instance with a higher {@link #version()} replaces it whenever the product's limits change, so anything
+ * precomputed for an instance stays valid for as long as a decision holds it. The decision counts are shared by every
+ * version of a product and published as {@code purchase.product.decisions}.
+ */
+public final class ProductPolicy {
+
+    /**
+     * The product configured directly under {@code purchase}, decided for applications without a product code.
+     */
+    public static final String DEFAULT_CODE = "default";
+
+    private final String code;
+    private final PurchaseLimits limits;
+    private final long version;
+    private final DecisionCounts decisionCounts;
+
+    ProductPolicy(String code, PurchaseLimits limits, long version, DecisionCounts decisionCounts) {
+        this.code = code;
+        this.limits = limits;
+        this.version = version;
+        this.decisionCounts = decisionCounts;
+    }
+
+    public String code() {
+        return code;
+    }
+
+    public PurchaseLimits limits() {
+        return limits;
+    }
+
+    long version() {
+        return version;
+    }
+
+    DecisionCounts decisionCounts() {
+        return decisionCounts;
+    }
+
+    void recordDecision(boolean approved) {
+        (approved ? decisionCounts.approved : decisionCounts.rejected).increment();
+    }
+
+    @Override
+    public String toString() {
+        return code + " " + limits;
+    }
+
+    static final class DecisionCounts {
+
+        final LongAdder approved = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+    }
+}
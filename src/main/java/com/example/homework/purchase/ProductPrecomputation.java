@@ -0,0 +1,19 @@
+package com.example.homework.purchase;
+
+/**
+ * Work done for a product when {@link PurchasePolicy} puts new limits for it in force, before any decision sees them.
+ * <p>
+ * Every bean implementing it is called on the thread that changes the products, once per product added or changed,
+ * while decisions still resolve the previous catalog. Implementations must not block for long, since further changes
+ * wait for them.
+ */
+interface ProductPrecomputation {
+
+    void precompute(ProductPolicy product);
+
+    /**
+     * Called once a product has been removed, to drop what was precomputed for it.
+     */
+    default void discard(String productCode) {
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.homework.purchase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Open-addressing table from 11-digit personal ID to capacity factor, packed into one {@code long} per slot.
+ * <p>
+ * A personal ID is below 10^11 &lt; 2^37, so a slot holds {@code personalId + 1} in its upper 37 bits and the factor
+ * as a signed 27-bit value in the lower bits; {@code 0} marks an empty slot. The table is sized for a 0.75 load
+ * factor; a million profiles keep about 10.3 bytes of heap each, against 116 in a {@code HashMap<String, Integer>}.
+ * A table is one buffer, so it holds at most {@code Integer.MAX_VALUE / 8} slots, about 200 million profiles.
+ * <p>
+ * Slots live in a {@link LongBuffer} that can be on the heap, off-heap, or mapped from a snapshot file written by
+ * {@link #writeSnapshot(Path)}. Lookups do not allocate.
+ */
+public final class ProfileIndex {
+
+    public enum Storage {
+        HEAP, DIRECT, MAPPED
+    }
+
+    public static final int MIN_FACTOR = -(1 << 26);
+    public static final int MAX_FACTOR = (1 << 26) - 1;
+
+    private static final int PERSONAL_ID_LENGTH = 11;
+    private static final int FACTOR_BITS = 27;
+    private static final long FACTOR_MASK = (1L << FACTOR_BITS) - 1;
+    private static final double LOAD_FACTOR = 0.75;
+    // One buffer holds the table, and a buffer's size in bytes is an int
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE / Long.BYTES;
+
+    private static final long SNAPSHOT_MAGIC = 0x5044_4958_0000_0001L; // "PDIX", version 1
+    private static final int SNAPSHOT_HEADER_BYTES = 2 * Long.BYTES;
+
+    private final LongBuffer slots;
+    private final int capacity;
+    private final int size;
+
+    private ProfileIndex(LongBuffer slots, int size) {
+        this.slots = slots;
+        this.capacity = slots.capacity();
+        this.size = size;
+    }
+
+    /**
+     * @return the capacity factor for the personal ID, or {@code missing} if the ID is not in the index or is not
+     * an 11-digit number
+     */
+    public int capacityFactor(String personalId, int missing) {
+        long id = parsePersonalId(personalId);
+        return id < 0 ? missing : capacityFactor(id, missing);
+    }
+
+    public int capacityFactor(long personalId, int missing) {
+        long key = personalId + 1;
+        int slot = slotOf(key);
+        while (true) {
+            long entry = slots.get(slot);
+            if (entry == 0) {
+                return missing;
+            }
+            if (entry >>> FACTOR_BITS == key) {
+                return (int) (entry << (Long.SIZE - FACTOR_BITS) >> (Long.SIZE - FACTOR_BITS));
+            }
+            slot = slot + 1 == capacity ? 0 : slot + 1;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long sizeInBytes() {
+        return (long) capacity * Long.BYTES;
+    }
+
+    public Storage storage() {
+        if (slots.hasArray()) {
+            return Storage.HEAP;
+        }
+        return slots.isReadOnly() ? Storage.MAPPED : Storage.DIRECT;
+    }
+
+    /**
+     * Writes the slots so that {@link #load(Path, Storage)} can map them without rebuilding the table. The snapshot is
+     * written next to the target and moved into place, so an index still mapping the previous snapshot keeps its data.
+     */
+    public void writeSnapshot(Path snapshot) {
+        Path partial = snapshot.resolveSibling(snapshot.getFileName() + ".partial");
+        try (FileChannel channel = FileChannel.open(partial, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(SNAPSHOT_MAGIC).putLong((long) size << 32 | capacity).flip();
+            channel.write(header);
+
+            ByteBuffer chunk = ByteBuffer.allocate(64 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int slot = 0; slot < capacity; slot++) {
+                if (!chunk.hasRemaining()) {
+                    writeFully(channel, chunk.flip());
+                    chunk.clear();
+                }
+                chunk.putLong(slots.get(slot));
+            }
+            writeFully(channel, chunk.flip());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write profile index snapshot " + snapshot, e);
+        }
+        try {
+            Files.move(partial, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not move profile index snapshot into place " + snapshot, e);
+        }
+    }
+
+    /**
+     * Loads an index from a snapshot written by {@link #writeSnapshot(Path)}, or builds it from a bulk export of
+     * {@code personalId,capacityFactor} lines for any other file.
+     */
+    public static ProfileIndex load(Path source, Storage storage) {
+        return isSnapshot(source) ? readSnapshot(source, storage) : readExport(source, storage);
+    }
+
+    public static boolean isSnapshot(Path source) {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            return channel.read(header) == Long.BYTES && header.getLong(0) == SNAPSHOT_MAGIC;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read profile source " + source, e);
+        }
+    }
+
+    private static ProfileIndex readSnapshot(Path snapshot, Storage storage) {
+        try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            long dimensions = mapped.getLong(Long.BYTES);
+            int size = (int) (dimensions >>> 32);
+            int capacity = checkCapacity(dimensions & 0xFFFF_FFFFL);
+            if (SNAPSHOT_HEADER_BYTES + slotBytes(capacity) > channel.size()) {
+                throw new IllegalArgumentException("Profile index snapshot " + snapshot + " is shorter than its "
+                        + capacity + " slots");
+            }
+
+            LongBuffer slots = mapped.slice(SNAPSHOT_HEADER_BYTES, slotBytes(capacity))
+                    .order(ByteOrder.LITTLE_ENDIAN)
+                    .asLongBuffer();
+            if (storage == Storage.MAPPED) {
+                return new ProfileIndex(slots.asReadOnlyBuffer(), size);
+            }
+
+            LongBuffer copy = allocate(capacity, storage);
+            copy.put(slots).clear();
+            return new ProfileIndex(copy, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read profile index snapshot " + snapshot, e);
+        }
+    }
+
+    private static ProfileIndex readExport(Path export, Storage storage) {
+        Builder builder = builder();
+        try (BufferedReader reader = Files.newBufferedReader(export, StandardCharsets.US_ASCII)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int separator = line.indexOf(',');
+                long personalId = separator < 0 ? -1 : parsePersonalId(line.substring(0, separator).trim());
+                if (personalId < 0) {
+                    continue; // header or blank line
+                }
+                builder.put(personalId, Integer.parseInt(line.substring(separator + 1).trim()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read profile export " + export, e);
+        }
+        return builder.build(storage == Storage.MAPPED ? Storage.DIRECT : storage);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return the personal ID as a number, or {@code -1} if it is not exactly 11 digits
+     */
+    static long parsePersonalId(CharSequence personalId) {
+        if (personalId == null || personalId.length() != PERSONAL_ID_LENGTH) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < PERSONAL_ID_LENGTH; i++) {
+            char digit = personalId.charAt(i);
+            if (digit < '0' || digit > '9') {
+                return -1;
+            }
+            id = id * 10 + (digit - '0');
+        }
+        return id;
+    }
+
+    private int slotOf(long key) {
+        return slotOf(key, capacity);
+    }
+
+    private static int slotOf(long key, int capacity) {
+        long hash = key * 0x9E37_79B9_7F4A_7C15L;
+        hash ^= hash >>> 32;
+        return (int) (((hash & 0xFFFF_FFFFL) * capacity) >>> 32);
+    }
+
+    private static LongBuffer allocate(int capacity, Storage storage) {
+        if (storage == Storage.HEAP) {
+            return LongBuffer.allocate(capacity);
+        }
+        return ByteBuffer.allocateDirect(slotBytes(capacity)).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private static int checkCapacity(long capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Profile index of " + capacity + " slots is larger than the "
+                    + MAX_CAPACITY + " slots of one buffer, about " + (long) (MAX_CAPACITY * LOAD_FACTOR)
+                    + " profiles");
+        }
+        return (int) capacity;
+    }
+
+    private static int slotBytes(int capacity) {
+        return Math.toIntExact(Math.multiplyExact((long) capacity, Long.BYTES));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Collects profiles before the table is sized; a personal ID added twice keeps its last factor.
+     */
+    public static final class Builder {
+        private long[] personalIds = new long[1024];
+        private int[] factors = new int[1024];
+        private int count;
+
+        private Builder() {
+        }
+
+        public Builder put(long personalId, int capacityFactor) {
+            if (personalId < 0 || personalId >= 100_000_000_000L) {
+                throw new IllegalArgumentException("Personal ID must have 11 digits: " + personalId);
+            }
+            if (capacityFactor < MIN_FACTOR || capacityFactor > MAX_FACTOR) {
+                throw new IllegalArgumentException("Capacity factor out of range: " + capacityFactor);
+            }
+            if (count == personalIds.length) {
+                personalIds = Arrays.copyOf(personalIds, count * 2);
+                factors = Arrays.copyOf(factors, count * 2);
+            }
+            personalIds[count] = personalId;
+            factors[count] = capacityFactor;
+            count++;
+            return this;
+        }
+
+        public ProfileIndex build(Storage storage) {
+            if (storage == Storage.MAPPED) {
+                throw new IllegalArgumentException("Mapped indexes are loaded from a snapshot");
+            }
+            int capacity = checkCapacity((long) Math.ceil(count / LOAD_FACTOR) + 1);
+            LongBuffer slots = allocate(capacity, storage);
+
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                long key = personalIds[i] + 1;
+                long entry = key << FACTOR_BITS | (factors[i] & FACTOR_MASK);
+                int slot = slotOf(key, capacity);
+                while (slots.get(slot) != 0 && slots.get(slot) >>> FACTOR_BITS != key) {
+                    slot = slot + 1 == capacity ? 0 : slot + 1;
+                }
+                if (slots.get(slot) == 0) {
+                    size++;
+                }
+                slots.put(slot, entry);
+            }
+            return new ProfileIndex(slots, size);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.homework.purchase;
+
+/**
+ * A change of one financial profile, sent to the other nodes so that they stop serving the cached factor.
+ * <p>
+ * A change with a capacity factor replaces a cached factor of an older version in place, so the other nodes need not
+ * query the store. A change without one, sent when the new factor is not known, drops the cached factor.
+ */
+public record ProfileInvalidation(String personalId, Integer capacityFactor, long version) {
+
+    static ProfileInvalidation evicted(String personalId) {
+        return new ProfileInvalidation(personalId, null, 0);
+    }
+
+    static ProfileInvalidation changed(String personalId, int capacityFactor, long version) {
+        return new ProfileInvalidation(personalId, capacityFactor, version);
+    }
+
+    boolean isEviction() {
+        return capacityFactor == null;
+    }
+
+    /**
+     * Combines two pending changes of the same profile into the one to send: an eviction, which makes every node read
+     * the store, or else the change of the newer version.
+     */
+    static ProfileInvalidation merge(ProfileInvalidation pending, ProfileInvalidation next) {
+        if (pending.isEviction()) {
+            return pending;
+        }
+        if (next.isEviction()) {
+            return next;
+        }
+        return next.version() >= pending.version() ? next : pending;
+    }
+}
@@ -0,0 +1,225 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.ProfileInvalidationProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Sends the profile changes of this node to the other nodes of the cluster and passes theirs on to the
+ * {@link FinancialProfileService}, over the configured {@link ProfileInvalidationTransport}.
+ * <p>
+ * Changes are collected per personal ID, so a profile changed many times between two sends is sent once, with the
+ * newest version. A single flusher thread sends them in batches of up to {@code max-batch-size} as soon as a batch is
+ * full or every {@code flush-interval}, whichever comes first, and once more before the application context closes.
+ * Batches sent by this node come back on some transports and are skipped.
+ * <p>
+ * Without a transport, changes are only applied on the node that made them.
+ */
+@Component
+public class ProfileInvalidationBroadcaster implements SmartLifecycle, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProfileInvalidationBroadcaster.class);
+
+    private final ProfileInvalidationTransport transport;
+    private final ProfileInvalidationProperties properties;
+    private final String origin = UUID.randomUUID().toString();
+
+    private final ConcurrentHashMap<String, ProfileInvalidation> pending = new ConcurrentHashMap<>();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong gaps = new AtomicLong();
+
+    private volatile Consumer<ProfileInvalidation> receiver = invalidation -> { };
+    private volatile Runnable resync = () -> { };
+    private volatile boolean running;
+    private volatile Thread flusher;
+    private ProfileInvalidationTransport.Subscription subscription;
+
+    public ProfileInvalidationBroadcaster(Optional<ProfileInvalidationTransport> transport,
+                                         ProfileInvalidationProperties properties) {
+        this.transport = transport.orElse(null);
+        this.properties = properties;
+    }
+
+    /**
+     * A broadcaster that keeps changes on this node.
+     */
+    static ProfileInvalidationBroadcaster local() {
+        return new ProfileInvalidationBroadcaster(Optional.empty(), new ProfileInvalidationProperties());
+    }
+
+    /**
+     * Sets where the changes of other nodes go.
+     *
+     * @param receiver applies one change to the local cache
+     * @param resync   called when changes may have been lost, to bring every cached entry up to date
+     */
+    void onReceive(Consumer<ProfileInvalidation> receiver, Runnable resync) {
+        this.receiver = receiver;
+        this.resync = resync;
+    }
+
+    /**
+     * Queues a change of this node for the other nodes.
+     */
+    void broadcast(ProfileInvalidation invalidation) {
+        if (transport == null) {
+            return;
+        }
+
+        pending.merge(invalidation.personalId(), invalidation, ProfileInvalidation::merge);
+        Thread currentFlusher = flusher;
+        if (currentFlusher != null && pending.size() >= properties.getMaxBatchSize()) {
+            LockSupport.unpark(currentFlusher);
+        }
+    }
+
+    private void runFlusher() {
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        while (running) {
+            if (pending.size() < properties.getMaxBatchSize()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            flush();
+        }
+        flush();
+    }
+
+    /**
+     * Sends every queued change, one batch at a time. A profile changed again while the batch is sent stays queued
+     * for the next one.
+     */
+    void flush() {
+        if (transport == null) {
+            return;
+        }
+
+        int maxBatchSize = properties.getMaxBatchSize();
+        List<ProfileInvalidation> batch = new ArrayList<>(Math.min(pending.size(), maxBatchSize));
+        for (String personalId : pending.keySet()) {
+            ProfileInvalidation invalidation = pending.remove(personalId);
+            if (invalidation == null) {
+                continue;
+            }
+            batch.add(invalidation);
+            if (batch.size() == maxBatchSize) {
+                publish(batch);
+                batch = new ArrayList<>(maxBatchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            publish(batch);
+        }
+    }
+
+    private void publish(List<ProfileInvalidation> batch) {
+        try {
+            transport.publish(new ProfileInvalidationTransport.Batch(origin, batch));
+            sent.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            // The other nodes catch up when their cached entries are refreshed
+            logger.error("Could not send {} profile changes to the other nodes", batch.size(), e);
+        }
+    }
+
+    int pending() {
+        return pending.size();
+    }
+
+    @Override
+    public void start() {
+        if (transport == null || running) {
+            return;
+        }
+        running = true;
+        subscription = transport.subscribe(new RemoteChanges());
+        Thread thread = new Thread(this::runFlusher, "profile-invalidation-flusher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = flusher;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+        subscription.cancel();
+        subscription = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, so profiles changed by requests still in flight during shutdown are sent too.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("purchase.profile.invalidation.pending", pending, ConcurrentHashMap::size)
+                .description("Profile changes waiting to be sent to the other nodes")
+                .register(registry);
+        FunctionCounter.builder("purchase.profile.invalidation.sent", sent, AtomicLong::get)
+                .description("Profile changes sent to the other nodes")
+                .register(registry);
+        FunctionCounter.builder("purchase.profile.invalidation.received", received, AtomicLong::get)
+                .description("Profile changes received from the other nodes")
+                .register(registry);
+        FunctionCounter.builder("purchase.profile.invalidation.gaps", gaps, AtomicLong::get)
+                .description("Times changes of other nodes may have been missed and cached profiles were refreshed")
+                .register(registry);
+    }
+
+    private final class RemoteChanges implements ProfileInvalidationTransport.Listener {
+
+        @Override
+        public void onBatch(ProfileInvalidationTransport.Batch batch) {
+            if (origin.equals(batch.origin())) {
+                return;
+            }
+            Consumer<ProfileInvalidation> currentReceiver = receiver;
+            for (ProfileInvalidation invalidation : batch.invalidations()) {
+                currentReceiver.accept(invalidation);
+            }
+            received.addAndGet(batch.invalidations().size());
+        }
+
+        @Override
+        public void onGap() {
+            gaps.incrementAndGet();
+            logger.warn("Profile changes of other nodes may have been missed; refreshing cached profiles");
+            resync.run();
+        }
+    }
+}
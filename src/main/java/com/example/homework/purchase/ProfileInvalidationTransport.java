@@ -0,0 +1,40 @@
+package com.example.homework.purchase;
+
+import java.util.List;
+
+/**
+ * Carries batches of {@link ProfileInvalidation}s between the nodes of a cluster. Selected with
+ * {@code purchase.profile-invalidation.transport}: {@code postgres} for LISTEN/NOTIFY on the shared database, or
+ * {@code in-jvm} for several application contexts in one JVM, as in tests. Without one, profile changes stay local.
+ * <p>
+ * Delivery is at most once. A transport that may have missed batches, for example after a lost connection, says so
+ * with {@link Listener#onGap()}.
+ */
+public interface ProfileInvalidationTransport {
+
+    void publish(Batch batch);
+
+    Subscription subscribe(Listener listener);
+
+    /**
+     * Changes sent together by the node {@code origin}.
+     */
+    record Batch(String origin, List<ProfileInvalidation> invalidations) {
+    }
+
+    interface Listener {
+
+        void onBatch(Batch batch);
+
+        /**
+         * Called when batches may have been lost.
+         */
+        void onGap();
+    }
+
+    @FunctionalInterface
+    interface Subscription {
+
+        void cancel();
+    }
+}
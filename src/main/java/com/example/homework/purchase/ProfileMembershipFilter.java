@@ -0,0 +1,91 @@
+package com.example.homework.purchase;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of the personal IDs that have a financial profile.
+ * <p>
+ * {@link #mightContain(String)} never answers {@code false} for an ID that was {@linkplain #put(String) put}, and
+ * answers {@code true} for an ID that was not with roughly the false positive rate the filter was sized for. Hashing
+ * works on the characters of the ID directly, so neither operation allocates; {@code put} is safe to call while other
+ * threads query the filter.
+ */
+public final class ProfileMembershipFilter {
+
+    private final AtomicLongArray words;
+    private final long bits;
+    private final int hashes;
+    private final long expectedInsertions;
+
+    private ProfileMembershipFilter(long bits, int hashes, long expectedInsertions) {
+        this.words = new AtomicLongArray(Math.toIntExact((bits + Long.SIZE - 1) / Long.SIZE));
+        this.bits = (long) words.length() * Long.SIZE;
+        this.hashes = hashes;
+        this.expectedInsertions = expectedInsertions;
+    }
+
+    public static ProfileMembershipFilter create(long expectedInsertions, double falsePositiveRate) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1: " + falsePositiveRate);
+        }
+        long insertions = Math.max(1, expectedInsertions);
+        long bits = Math.max(Long.SIZE,
+                (long) Math.ceil(-insertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2))));
+        int hashes = Math.max(1, (int) Math.round((double) bits / insertions * Math.log(2)));
+        return new ProfileMembershipFilter(bits, hashes, insertions);
+    }
+
+    public void put(String personalId) {
+        long hash = hash(personalId);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E37_79B9_7F4A_7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = bitOf(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current = words.get(word);
+            while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                current = words.get(word);
+            }
+        }
+    }
+
+    public boolean mightContain(String personalId) {
+        long hash = hash(personalId);
+        long h1 = mix(hash);
+        long h2 = mix(hash ^ 0x9E37_79B9_7F4A_7C15L) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = bitOf(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long expectedInsertions() {
+        return expectedInsertions;
+    }
+
+    public long sizeInBytes() {
+        return bits / Byte.SIZE;
+    }
+
+    private long bitOf(long combinedHash) {
+        return Math.floorMod(combinedHash, bits);
+    }
+
+    private static long hash(String personalId) {
+        long hash = 0xCBF2_9CE4_8422_2325L;
+        for (int i = 0; i < personalId.length(); i++) {
+            hash = (hash ^ personalId.charAt(i)) * 0x100_0000_01B3L;
+        }
+        return hash;
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xFF51_AFD7_ED55_8CCDL;
+        hash = (hash ^ (hash >>> 33)) * 0xC4CE_B9FE_1A85_EC53L;
+        return hash ^ (hash >>> 33);
+    }
+}
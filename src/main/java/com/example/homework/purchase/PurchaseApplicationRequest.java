@@ -2,6 +2,13 @@ package com.example.homework.purchase;
 
 import java.math.BigDecimal;
 
-public record PurchaseApplicationRequest(String personalId, BigDecimal requestedAmount, int paymentPeriodMonths) {
+/**
+ * @param productCode the product applied for, or {@code null} for the default product
+ */
+public record PurchaseApplicationRequest(String personalId, BigDecimal requestedAmount, int paymentPeriodMonths,
+                                         String productCode) {
 
-}
\ No newline at end of file
+    public PurchaseApplicationRequest(String personalId, BigDecimal requestedAmount, int paymentPeriodMonths) {
+        this(personalId, requestedAmount, paymentPeriodMonths, null);
+    }
+}
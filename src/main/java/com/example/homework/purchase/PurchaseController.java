@@ -1,11 +1,22 @@
 package com.example.homework.purchase;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ProblemDetail;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
 
 import static org.springframework.http.ResponseEntity.*;
 
@@ -13,15 +24,69 @@ import static org.springframework.http.ResponseEntity.*;
 @RequestMapping("/api/purchase")
 @RequiredArgsConstructor
 public class PurchaseController {
-    private final PurchaseService purchaseService;
+    private final CoalescingPurchaseService coalescingPurchaseService;
+    private final BatchApprovalProcessor batchApprovalProcessor;
+    private final OfferService offerService;
 
     @PostMapping("/apply")
     public ResponseEntity<ApprovalDecision> applyForPurchase(@RequestBody PurchaseApplicationRequest request) {
-        ApprovalDecision approvalDecision = purchaseService.findMaxApprovedAmount(
-                request.personalId(),
-                request.requestedAmount(),
-                request.paymentPeriodMonths()
-        );
-        return ok(approvalDecision);
+        return coalescingPurchaseService.findMaxApprovedAmount(
+                        request.personalId(),
+                        request.requestedAmount(),
+                        request.paymentPeriodMonths(),
+                        request.productCode()
+                )
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.of(profileNotFound(request.personalId())).build());
+    }
+
+    /**
+     * Every approvable amount and period of a product for one customer, for clients that quote offers locally. The
+     * entity tag is a digest of the product, the capacity factor and the whole matrix, so unchanged matrices are
+     * revalidated with a {@code 304}.
+     */
+    @GetMapping("/offers/{personalId}")
+    public ResponseEntity<OfferMatrix> getOffers(@PathVariable String personalId,
+                                                 @RequestParam(name = "product", required = false) String productCode) {
+        return offerService.findOfferMatrix(personalId, productCode)
+                .map(offers -> ok()
+                        .eTag(offers.eTag())
+                        .cacheControl(CacheControl.noCache().cachePrivate())
+                        .body(offers))
+                .orElseGet(() -> ResponseEntity.of(profileNotFound(personalId)).build());
+    }
+
+    @PostMapping(value = "/apply/batch", consumes = MediaType.APPLICATION_NDJSON_VALUE, produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> applyForPurchaseBatch(InputStream requests) {
+        StreamingResponseBody decisions = output -> batchApprovalProcessor.process(requests, output);
+        return ok().contentType(MediaType.APPLICATION_NDJSON).body(decisions);
+    }
+
+    @ExceptionHandler(UnknownProductException.class)
+    public ResponseEntity<Void> unknownProduct(UnknownProductException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+        problem.setTitle("Unknown product");
+        return ResponseEntity.of(problem).build();
+    }
+
+    @ExceptionHandler(OffersUnavailableException.class)
+    public ResponseEntity<Void> offersUnavailable(OffersUnavailableException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_IMPLEMENTED, e.getMessage());
+        problem.setTitle("Offers unavailable");
+        return ResponseEntity.of(problem).build();
+    }
+
+    @ExceptionHandler(InvalidApplicationException.class)
+    public ResponseEntity<Void> invalidApplication(InvalidApplicationException e) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.BAD_REQUEST, e.getMessage());
+        problem.setTitle("Invalid application");
+        return ResponseEntity.of(problem).build();
+    }
+
+    private static ProblemDetail profileNotFound(String personalId) {
+        ProblemDetail problem = ProblemDetail.forStatusAndDetail(HttpStatus.NOT_FOUND,
+                "No financial profile for personal ID " + DecisionTracer.maskPersonalId(personalId));
+        problem.setTitle("Financial profile not found");
+        return problem;
     }
 }
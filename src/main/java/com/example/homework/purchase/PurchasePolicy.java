@@ -0,0 +1,306 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * The products in force and their purchase limits, published as one immutable {@link ProductCatalog}.
+ * <p>
+ * Starts from {@link PurchaseProperties}: the limits directly under {@code purchase} are the default product, and each
+ * entry of {@code purchase.products} adds a product of its own. Products are added, replaced and removed at runtime
+ * from the admin endpoints or a watched policy file. Every change builds a new catalog and swaps it in, so a decision
+ * resolves its product with a volatile load and a hash lookup, without locks, and then passes that
+ * {@link ProductPolicy} down, never mixing the limits of two policies. Changes are serialized by a lock readers never
+ * take.
+ * <p>
+ * Before a new catalog is published, every {@link ProductPrecomputation} bean is run for each product it adds or
+ * changes, and afterwards every change is published as a {@link PurchasePolicyChangedEvent}. Decisions per product are
+ * published as {@code purchase.product.decisions}, tagged with the product code and the outcome.
+ */
+@Component
+public class PurchasePolicy implements MeterBinder {
+
+    private static final Pattern PRODUCT_CODE = Pattern.compile("[a-z0-9][a-z0-9_-]{0,63}");
+
+    private static final Logger logger = LoggerFactory.getLogger(PurchasePolicy.class);
+
+    private final ApplicationEventPublisher eventPublisher;
+    private final List<ProductPrecomputation> precomputations;
+    private final ReentrantLock updateLock = new ReentrantLock();
+    private final Map<String, ProductPolicy.DecisionCounts> decisionCounts = new HashMap<>();
+
+    private volatile ProductCatalog catalog;
+    private long version;
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    public PurchasePolicy(PurchaseProperties purchaseProperties, ApplicationEventPublisher eventPublisher,
+                          List<ProductPrecomputation> precomputations) {
+        this(limitsByProduct(purchaseProperties), eventPublisher, precomputations);
+    }
+
+    PurchasePolicy(PurchaseProperties purchaseProperties, ApplicationEventPublisher eventPublisher) {
+        this(purchaseProperties, eventPublisher, List.of());
+    }
+
+    PurchasePolicy(PurchaseLimits limits, ApplicationEventPublisher eventPublisher) {
+        this(Map.of(ProductPolicy.DEFAULT_CODE, limits), eventPublisher, List.of());
+    }
+
+    private PurchasePolicy(Map<String, PurchaseLimits> limitsByProduct, ApplicationEventPublisher eventPublisher,
+                           List<ProductPrecomputation> precomputations) {
+        this.eventPublisher = eventPublisher;
+        this.precomputations = List.copyOf(precomputations);
+
+        List<ProductPolicy> products = new ArrayList<>(limitsByProduct.size());
+        limitsByProduct.forEach((code, limits) -> products.add(nextVersion(validateCode(code), validate(limits))));
+        products.forEach(this::precompute);
+        this.catalog = new ProductCatalog(products);
+    }
+
+    private static Map<String, PurchaseLimits> limitsByProduct(PurchaseProperties purchaseProperties) {
+        PurchaseLimits defaults = PurchaseLimits.of(purchaseProperties);
+        Map<String, PurchaseLimits> limitsByProduct = new LinkedHashMap<>();
+        limitsByProduct.put(ProductPolicy.DEFAULT_CODE, defaults);
+        purchaseProperties.getProducts().forEach((code, product) -> {
+            if (ProductPolicy.DEFAULT_CODE.equals(code)) {
+                throw new IllegalArgumentException("The limits of the default product are configured directly under "
+                        + "purchase, not as purchase.products." + code);
+            }
+            limitsByProduct.put(code, PurchaseLimits.of(product, defaults));
+        });
+        return limitsByProduct;
+    }
+
+    /**
+     * The limits of the default product.
+     */
+    public PurchaseLimits current() {
+        return catalog.defaultProduct().limits();
+    }
+
+    /**
+     * Resolves a product code against the catalog in force.
+     *
+     * @param code product code, or {@code null} for the default product
+     * @throws UnknownProductException if there is no product with the code
+     */
+    public ProductPolicy product(String code) {
+        ProductPolicy product = catalog.resolve(code);
+        if (product == null) {
+            throw new UnknownProductException(code);
+        }
+        return product;
+    }
+
+    /**
+     * The catalog in force, for callers that resolve many applications against one snapshot.
+     */
+    ProductCatalog catalog() {
+        return catalog;
+    }
+
+    /**
+     * The limits of every product in force, by product code.
+     */
+    public SortedMap<String, PurchaseLimits> products() {
+        SortedMap<String, PurchaseLimits> products = new TreeMap<>();
+        for (ProductPolicy product : catalog.products()) {
+            products.put(product.code(), product.limits());
+        }
+        return products;
+    }
+
+    /**
+     * Replaces the limits of the default product. Decisions already in progress finish with the snapshot they started
+     * with.
+     *
+     * @throws IllegalArgumentException if the limits are inconsistent; the current policy is then kept
+     */
+    public PurchaseLimits update(PurchaseLimits next) {
+        return update(ProductPolicy.DEFAULT_CODE, next);
+    }
+
+    /**
+     * Adds a product or replaces its limits.
+     *
+     * @throws IllegalArgumentException if the code is invalid or the limits are inconsistent; the current products
+     *                                  are then kept
+     */
+    public PurchaseLimits update(String code, PurchaseLimits next) {
+        Map<String, PurchaseLimits> changes = new HashMap<>();
+        changes.put(code, next);
+        update(changes);
+        return next;
+    }
+
+    /**
+     * Adds or replaces several products at once; decisions see either none or all of the changes. Products not in
+     * {@code changes} are kept.
+     *
+     * @throws IllegalArgumentException if a code is invalid or some limits are inconsistent; no change is made then
+     */
+    public void update(Map<String, PurchaseLimits> changes) {
+        changes.forEach((code, limits) -> validate(validateCode(code), limits));
+
+        updateLock.lock();
+        try {
+            ProductCatalog previous = catalog;
+            Map<String, ProductPolicy> next = new LinkedHashMap<>();
+            previous.products().forEach(product -> next.put(product.code(), product));
+            List<ProductPolicy> changed = new ArrayList<>();
+            changes.forEach((code, limits) -> {
+                ProductPolicy current = next.get(code);
+                if (current == null || !current.limits().equals(limits)) {
+                    ProductPolicy product = nextVersion(code, limits);
+                    next.put(code, product);
+                    changed.add(product);
+                }
+            });
+            if (changed.isEmpty()) {
+                return;
+            }
+
+            changed.forEach(this::precompute);
+            catalog = new ProductCatalog(next.values());
+
+            for (ProductPolicy product : changed) {
+                ProductPolicy replaced = previous.resolve(product.code());
+                PurchaseLimits previousLimits = replaced == null ? null : replaced.limits();
+                logger.info("Purchase limits of product {} changed from {} to {}", product.code(), previousLimits,
+                        product.limits());
+                register(product);
+                eventPublisher.publishEvent(
+                        new PurchasePolicyChangedEvent(product.code(), previousLimits, product.limits()));
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a product; applications for it are rejected as an unknown product from now on.
+     *
+     * @return {@code false} if there was no product with the code
+     * @throws IllegalArgumentException for the default product, which cannot be removed
+     */
+    public boolean remove(String code) {
+        if (code == null || ProductPolicy.DEFAULT_CODE.equals(code)) {
+            throw new IllegalArgumentException("The default product cannot be removed");
+        }
+
+        updateLock.lock();
+        try {
+            ProductCatalog previous = catalog;
+            ProductPolicy removed = previous.resolve(code);
+            if (removed == null) {
+                return false;
+            }
+
+            List<ProductPolicy> remaining = new ArrayList<>(previous.products());
+            remaining.remove(removed);
+            catalog = new ProductCatalog(remaining);
+            precomputations.forEach(precomputation -> precomputation.discard(code));
+
+            logger.info("Product {} with limits {} removed", code, removed.limits());
+            eventPublisher.publishEvent(new PurchasePolicyChangedEvent(code, removed.limits(), null));
+            return true;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        updateLock.lock();
+        try {
+            meterRegistry = registry;
+            catalog.products().forEach(this::register);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void register(ProductPolicy product) {
+        if (meterRegistry == null) {
+            return;
+        }
+        // Registering a product again, with new limits or after it was removed, finds the meters of its counts
+        FunctionCounter.builder("purchase.product.decisions", product.decisionCounts().approved, LongAdder::sum)
+                .description("Decisions per product")
+                .tags("product", product.code(), "outcome", "approved")
+                .register(meterRegistry);
+        FunctionCounter.builder("purchase.product.decisions", product.decisionCounts().rejected, LongAdder::sum)
+                .description("Decisions per product")
+                .tags("product", product.code(), "outcome", "rejected")
+                .register(meterRegistry);
+    }
+
+    private ProductPolicy nextVersion(String code, PurchaseLimits limits) {
+        return new ProductPolicy(code, limits, ++version,
+                decisionCounts.computeIfAbsent(code, key -> new ProductPolicy.DecisionCounts()));
+    }
+
+    private void precompute(ProductPolicy product) {
+        for (ProductPrecomputation precomputation : precomputations) {
+            precomputation.precompute(product);
+        }
+    }
+
+    private static String validateCode(String code) {
+        if (code == null || !PRODUCT_CODE.matcher(code).matches()) {
+            throw new IllegalArgumentException("Product codes are 1 to 64 lowercase letters, digits, '-' and '_': "
+                    + code);
+        }
+        return code;
+    }
+
+    private static void validate(String code, PurchaseLimits limits) {
+        try {
+            validate(limits);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Product " + code + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if the limits are inconsistent
+     */
+    static PurchaseLimits validate(PurchaseLimits limits) {
+        if (limits == null || limits.minAmount() == null || limits.maxAmount() == null) {
+            throw new IllegalArgumentException("Minimum and maximum amount are required");
+        }
+        if (limits.minAmount().compareTo(BigDecimal.ZERO) <= 0) {
+            throw new IllegalArgumentException("Minimum amount must be positive: " + limits.minAmount());
+        }
+        if (limits.maxAmount().compareTo(limits.minAmount()) < 0) {
+            throw new IllegalArgumentException("Maximum amount " + limits.maxAmount()
+                    + " is below the minimum amount " + limits.minAmount());
+        }
+        if (limits.minPeriod() < 1 || limits.maxPeriod() < limits.minPeriod()) {
+            throw new IllegalArgumentException("Payment periods must satisfy 1 <= minimum <= maximum: "
+                    + limits.minPeriod() + ".." + limits.maxPeriod());
+        }
+        return limits;
+    }
+}
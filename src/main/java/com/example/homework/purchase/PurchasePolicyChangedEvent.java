@@ -0,0 +1,13 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+
+/**
+ * Published when {@link PurchasePolicy} adds a product, changes its limits or removes it.
+ *
+ * @param product  product code
+ * @param previous the limits before, or {@code null} if the product was added
+ * @param current  the limits now in force, or {@code null} if the product was removed
+ */
+public record PurchasePolicyChangedEvent(String product, PurchaseLimits previous, PurchaseLimits current) {
+}
@@ -1,163 +1,226 @@
 package com.example.homework.purchase;
 
-import com.example.homework.config.PurchaseProperties;
+import com.example.homework.config.PurchaseLimits;
 import lombok.RequiredArgsConstructor;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
-
-import static java.math.BigDecimal.*;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.OptionalInt;
 
 @Service
 @RequiredArgsConstructor
 public class PurchaseService {
 
     private final FinancialProfileService financialProfileService;
-    private final PurchaseProperties purchaseProperties;
+    private final PurchasePolicy purchasePolicy;
+    private final DecisionTableCache decisionTableCache;
+    private final ApprovalAuditLog approvalAuditLog;
+    private final ApprovalMetrics approvalMetrics;
+    private final DecisionTracer decisionTracer;
+    private final ApprovalStatistics approvalStatistics;
 
-    private static final BigDecimal REDUCTION_STEP = valueOf(100);
-    private static final BigDecimal APPROVAL_THRESHOLD = BigDecimal.ONE;
-    private static final BigDecimal APPROVED_AMOUNT_INCREMENT = valueOf(100);
     private static final int INELIGIBLE_CUSTOMER_FACTOR = -1;
 
-    private static final Logger logger = LoggerFactory.getLogger(PurchaseService.class);
+    /**
+     * Decides an application for the default product after looking up the customer's financial capacity factor.
+     *
+     * @return the decision, or empty if there is no financial profile for the personal ID
+     */
+    public Optional<ApprovalDecision> findMaxApprovedAmount(String personalId, BigDecimal requestedAmount,
+                                                            int initialPaymentPeriod) {
+        return findMaxApprovedAmount(personalId, requestedAmount, initialPaymentPeriod, (String) null);
+    }
 
-    public ApprovalDecision findMaxApprovedAmount(String personalId, BigDecimal requestedAmount, int initialPaymentPeriod) {
-        if (requestedAmount.compareTo(purchaseProperties.getMinAmount()) < 0) {
-            logFinalDecision(false, ZERO);
-            return ApprovalDecision.reject();
+    /**
+     * Decides an application for a product after looking up the customer's financial capacity factor.
+     *
+     * @param productCode the product applied for, or {@code null} for the default product
+     * @return the decision, or empty if there is no financial profile for the personal ID
+     * @throws UnknownProductException if there is no product with the code
+     * @throws InvalidApplicationException if the personal ID or the requested amount is missing
+     */
+    public Optional<ApprovalDecision> findMaxApprovedAmount(String personalId, BigDecimal requestedAmount,
+                                                            int initialPaymentPeriod, String productCode) {
+        validateApplication(personalId, requestedAmount);
+        long started = System.nanoTime();
+        ApprovalEvents.Decision event = new ApprovalEvents.Decision();
+        event.begin();
+        ProductPolicy product = purchasePolicy.product(productCode);
+        if (isBelowMinimumAmount(product.limits(), requestedAmount)) {
+            return Optional.of(rejectBelowMinimum(product, decisionTracer.begin(), event, personalId, requestedAmount,
+                    initialPaymentPeriod, null, started));
         }
 
-        Integer financialCapacityFactor = financialProfileService.getFinancialCapacityFactor(personalId);
-
-        if (isIneligibleCustomer(financialCapacityFactor)) {
-            return ApprovalDecision.reject();
+        // The trace begins after the lookup, so its buffer is not held while the profile store is read
+        OptionalInt financialCapacityFactor = financialProfileService.findFinancialCapacityFactor(personalId);
+        if (financialCapacityFactor.isEmpty()) {
+            approvalMetrics.recordUnknownProfile();
+            return Optional.empty();
         }
 
-        BigDecimal maxApprovedAmount = ZERO;
-        int selectedPeriod = initialPaymentPeriod;
-        boolean foundApproval = false;
-
-        // Start from requested amount but do not exceed max limit
-        BigDecimal currentAmount = requestedAmount.min(purchaseProperties.getMaxAmount());
+        return Optional.of(decide(product, decisionTracer.begin(), event, personalId, requestedAmount,
+                initialPaymentPeriod, financialCapacityFactor.getAsInt(), started));
+    }
 
-        logger.info("Starting Approval Process...");
-        logApprovalDetails(personalId, requestedAmount, initialPaymentPeriod, financialCapacityFactor);
+    /**
+     * Decides an application for the default product for a customer whose financial capacity factor has already been
+     * looked up.
+     */
+    public ApprovalDecision findMaxApprovedAmount(String personalId, BigDecimal requestedAmount, int initialPaymentPeriod,
+                                                  int financialCapacityFactor) {
+        return findMaxApprovedAmount(purchasePolicy.product(null), personalId, requestedAmount, initialPaymentPeriod,
+                financialCapacityFactor);
+    }
 
-        // Try increasing the period for the requested amount
-        for (int period = initialPaymentPeriod; period <= purchaseProperties.getMaxPeriod(); period++) {
-            BigDecimal approvalScore = calculateApprovalScore(financialCapacityFactor, currentAmount, period);
+    /**
+     * Decides an application against a product the caller has already resolved, for callers that also apply the
+     * minimum amount themselves.
+     */
+    ApprovalDecision findMaxApprovedAmount(ProductPolicy product, String personalId, BigDecimal requestedAmount,
+                                           int initialPaymentPeriod, int financialCapacityFactor) {
+        validateApplication(personalId, requestedAmount);
+        long started = System.nanoTime();
+        ApprovalEvents.Decision event = new ApprovalEvents.Decision();
+        event.begin();
+        return decide(product, decisionTracer.begin(), event, personalId, requestedAmount, initialPaymentPeriod,
+                financialCapacityFactor, started);
+    }
 
-            logApprovalAttempt(currentAmount, period, approvalScore);
+    /**
+     * Rejects an application below the minimum amount of its product without looking up the customer's profile.
+     */
+    ApprovalDecision rejectBelowMinimum(ProductPolicy product, String personalId, BigDecimal requestedAmount,
+                                        int initialPaymentPeriod) {
+        validateApplication(personalId, requestedAmount);
+        long started = System.nanoTime();
+        ApprovalEvents.Decision event = new ApprovalEvents.Decision();
+        event.begin();
+        return rejectBelowMinimum(product, decisionTracer.begin(), event, personalId, requestedAmount,
+                initialPaymentPeriod, null, started);
+    }
 
-            if (approvalScore.compareTo(ONE) >= 0) {
-                maxApprovedAmount = currentAmount;
-                selectedPeriod = period;
-                foundApproval = true;
+    /**
+     * Decides an application by the same rules as {@link #findMaxApprovedAmount}, without auditing, tracing or counting
+     * it, for re-scoring past applications.
+     */
+    ApprovalOutcome score(ProductPolicy product, BigDecimal requestedAmount, int initialPaymentPeriod,
+                          int financialCapacityFactor) {
+        return score((limits, financialFactor, amount, period) -> decisionTableCache.solve(product, financialFactor,
+                amount, period), product.limits(), requestedAmount, initialPaymentPeriod, financialCapacityFactor);
+    }
 
-                logApprovalSuccess(maxApprovedAmount, selectedPeriod);
-                break;
-            }
+    /**
+     * Decides an application by the same rules with the given solver, for limits that are not in force and should not
+     * take the place of the live ones in the decision tables.
+     */
+    static ApprovalOutcome score(ApprovalSolver solver, PurchaseLimits limits, BigDecimal requestedAmount,
+                                 int initialPaymentPeriod, int financialCapacityFactor) {
+        if (isBelowMinimumAmount(limits, requestedAmount) || isIneligibleCustomer(financialCapacityFactor)) {
+            return ApprovalOutcome.REJECTED;
         }
+        return solver.solve(limits, financialCapacityFactor, requestedAmount, initialPaymentPeriod);
+    }
 
-        // If no approval was found by increasing the period, start decreasing the amount
-        while (!foundApproval && currentAmount.compareTo(purchaseProperties.getMinAmount()) >= 0) {
-            for (int period = initialPaymentPeriod; period <= purchaseProperties.getMaxPeriod(); period++) {
-                BigDecimal approvalScore = calculateApprovalScore(financialCapacityFactor, currentAmount, period);
-
-                logApprovalAttempt(currentAmount, period, approvalScore);
-
-                if (approvalScore.compareTo(ONE) >= 0) {
-                    maxApprovedAmount = currentAmount;
-                    selectedPeriod = period;
-                    foundApproval = true;
-                    logApprovalSuccess(maxApprovedAmount, selectedPeriod);
-                    break;
-                }
-            }
-
-            if (!foundApproval) {
-                logReductionAttempt(currentAmount);
-                currentAmount = currentAmount.subtract(REDUCTION_STEP);
-            }
-        }
+    ProductCatalog currentCatalog() {
+        return purchasePolicy.catalog();
+    }
 
-        // If approval was found, try increasing the amount **ONLY IF the request was lower than possible approval**
-        if (foundApproval && maxApprovedAmount.compareTo(requestedAmount) >= 0) {
-            maxApprovedAmount = increaseApprovedAmount(financialCapacityFactor, maxApprovedAmount, selectedPeriod);
+    private ApprovalDecision decide(ProductPolicy product, DecisionTrace trace, ApprovalEvents.Decision event,
+                                    String personalId, BigDecimal requestedAmount, int initialPaymentPeriod,
+                                    int financialCapacityFactor, long started) {
+        PurchaseLimits limits = product.limits();
+        if (isBelowMinimumAmount(limits, requestedAmount)) {
+            return rejectBelowMinimum(product, trace, event, personalId, requestedAmount, initialPaymentPeriod,
+                    financialCapacityFactor, started);
         }
 
-        // If no valid amount was found, return failure
-        if (!foundApproval) {
-            logFinalDecision(false, ZERO);
-            return ApprovalDecision.reject();
+        if (isIneligibleCustomer(financialCapacityFactor)) {
+            approvalMetrics.recordIneligible();
+            return complete(product, trace, event, personalId, requestedAmount, initialPaymentPeriod,
+                    financialCapacityFactor, ApprovalOutcome.REJECTED, started);
         }
 
-        logFinalDecision(true, maxApprovedAmount);
-        return ApprovalDecision.approve(maxApprovedAmount);
-    }
-
-    private static boolean isIneligibleCustomer(Integer financialCapacityFactor) {
-        return financialCapacityFactor == INELIGIBLE_CUSTOMER_FACTOR;
-    }
-
-    private BigDecimal calculateApprovalScore(int financialFactor, BigDecimal amount, int period) {
-        if (amount.compareTo(BigDecimal.ZERO) <= 0) {
-            throw new IllegalArgumentException("Amount must be greater than zero for approval score calculation.");
+        ApprovalOutcome outcome;
+        try {
+            outcome = decisionTableCache.solve(product, financialCapacityFactor, requestedAmount, initialPaymentPeriod);
+        } catch (RuntimeException e) {
+            decisionTracer.failed(trace, personalId, requestedAmount, initialPaymentPeriod, financialCapacityFactor, e,
+                    started);
+            throw e;
         }
+        approvalMetrics.recordSearch(trace.steps(), outcome.approved(),
+                outcome.approvedAmount().compareTo(requestedAmount));
 
-        return BigDecimal.valueOf(financialFactor)
-                .divide(amount, 10, RoundingMode.HALF_UP)
-                .multiply(BigDecimal.valueOf(period));
-    }
-
-    private void logApprovalDetails(String personalId, BigDecimal requestedAmount, int initialPaymentPeriod, int financialCapacityFactor) {
-        logger.info("--------------------------------------------------");
-        logger.info("Personal ID: {}", personalId);
-        logger.info("Initial Requested Amount: {}", requestedAmount);
-        logger.info("Initial Payment Period: {}", initialPaymentPeriod);
-        logger.info("Financial Capacity Factor: {}", financialCapacityFactor);
-        logger.info("--------------------------------------------------");
+        if (!outcome.approved()) {
+            approvalMetrics.recordInsufficientCapacity();
+        }
+        return complete(product, trace, event, personalId, requestedAmount, initialPaymentPeriod,
+                financialCapacityFactor, outcome, started);
     }
 
-    private void logApprovalAttempt(BigDecimal amount, int period, BigDecimal score) {
-        logger.debug("Trying Amount: {} | Period: {} | Calculated Approval Score: {}", amount, period, score);
+    private ApprovalDecision rejectBelowMinimum(ProductPolicy product, DecisionTrace trace,
+                                                ApprovalEvents.Decision event, String personalId,
+                                                BigDecimal requestedAmount, int initialPaymentPeriod,
+                                                Integer financialCapacityFactor, long started) {
+        approvalMetrics.recordBelowMinimum();
+        return complete(product, trace, event, personalId, requestedAmount, initialPaymentPeriod,
+                financialCapacityFactor, ApprovalOutcome.REJECTED, started);
     }
 
-    private void logApprovalSuccess(BigDecimal amount, int period) {
-        logger.debug("APPROVED: Amount = {} | Period = {}", amount, period);
+    private ApprovalDecision complete(ProductPolicy product, DecisionTrace trace, ApprovalEvents.Decision event,
+                                      String personalId, BigDecimal requestedAmount, int initialPaymentPeriod,
+                                      Integer financialCapacityFactor, ApprovalOutcome outcome, long started) {
+        ApprovalDecision decision = outcome.toDecision();
+        product.recordDecision(outcome.approved());
+        approvalAuditLog.record(new ApprovalAuditEntry(personalId, product.code(), requestedAmount,
+                initialPaymentPeriod, financialCapacityFactor, decision, Instant.now()));
+        approvalMetrics.recordDecision(decision.isApproved(), started);
+        approvalStatistics.record(outcome.approved(), outcome.approvedAmount(), outcome.paymentPeriod(),
+                financialCapacityFactor);
+        decisionTracer.decided(trace, personalId, requestedAmount, initialPaymentPeriod, financialCapacityFactor,
+                decision, outcome.paymentPeriod(), started);
+        recordEvent(event, requestedAmount, initialPaymentPeriod, financialCapacityFactor, outcome);
+        return decision;
     }
 
-    private void logReductionAttempt(BigDecimal amount) {
-        logger.debug("NOT APPROVED: Reducing Amount by 100 to {}", amount.subtract(REDUCTION_STEP));
+    /**
+     * Commits the event begun with the decision, so its duration is the decision time.
+     */
+    private static void recordEvent(ApprovalEvents.Decision event, BigDecimal requestedAmount,
+                                    int initialPaymentPeriod, Integer financialCapacityFactor,
+                                    ApprovalOutcome outcome) {
+        if (event.shouldCommit()) {
+            event.approved = outcome.approved();
+            event.requestedAmount = requestedAmount.doubleValue();
+            event.requestedPeriod = initialPaymentPeriod;
+            event.approvedAmount = outcome.approvedAmount().doubleValue();
+            event.paymentPeriod = outcome.paymentPeriod();
+            event.capacityFactor = financialCapacityFactor == null ? Integer.MIN_VALUE : financialCapacityFactor;
+            event.commit();
+        }
     }
 
-    private void logFinalDecision(boolean approved, BigDecimal amount) {
-        if (approved) {
-            logger.info("✅ FINAL DECISION: APPROVED {}", amount);
-        } else {
-            logger.info("❌ FINAL DECISION: REJECTED");
+    /**
+     * Every decision is audited under the personal ID, so an application without one is not decided at all.
+     *
+     * @throws InvalidApplicationException if the personal ID or the requested amount is missing
+     */
+    static void validateApplication(String personalId, BigDecimal requestedAmount) {
+        if (personalId == null || personalId.isBlank()) {
+            throw new InvalidApplicationException("Personal ID is required");
+        }
+        if (requestedAmount == null) {
+            throw new InvalidApplicationException("Requested amount is required");
         }
     }
 
-    private BigDecimal increaseApprovedAmount(int financialFactor, BigDecimal approvedAmount, int period) {
-        while (approvedAmount.add(APPROVED_AMOUNT_INCREMENT).compareTo(purchaseProperties.getMaxAmount()) <= 0) {
-            BigDecimal newAmount = approvedAmount.add(APPROVED_AMOUNT_INCREMENT);
-            BigDecimal approvalScore = calculateApprovalScore(financialFactor, newAmount, period);
-
-            logger.debug("Trying to increase amount to {} | Approval Score: {}", newAmount, approvalScore);
+    static boolean isBelowMinimumAmount(PurchaseLimits limits, BigDecimal requestedAmount) {
+        return requestedAmount.compareTo(limits.minAmount()) < 0;
+    }
 
-            if (approvalScore.compareTo(APPROVAL_THRESHOLD) >= 0) {
-                approvedAmount = newAmount;
-                logger.debug("Increase successful! New approved amount: {}", approvedAmount);
-            } else {
-                logger.debug("Increase failed. Cannot approve amount: {}", newAmount);
-                break;
-            }
-        }
-        return approvedAmount;
+    private static boolean isIneligibleCustomer(int financialCapacityFactor) {
+        return financialCapacityFactor == INELIGIBLE_CUSTOMER_FACTOR;
     }
 }
@@ -0,0 +1,232 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PolicyProperties;
+import com.example.homework.config.ProfileIndexProperties;
+import com.example.homework.config.PurchaseLimits;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Applies {@code purchase.policy.file} to the {@link PurchasePolicy} at startup and whenever the file changes, and
+ * reloads the profile index when {@code purchase.profile-index.watch} is set and its source changes.
+ * <p>
+ * One daemon thread waits on a {@link WatchService} for the directories of both files. Editors and copy tools write a
+ * file in several steps, so changes are applied once the directory has been quiet for {@link #SETTLE_MILLIS}. A file
+ * that cannot be read or holds inconsistent limits is logged and the current policy or dataset stays in force.
+ * <p>
+ * The policy file sets the limits of the default product with {@code min-amount}, {@code max-amount},
+ * {@code min-period} and {@code max-period}, and those of other products with the same keys under
+ * {@code products.<code>.}. Products the file names are added or replaced together; products it leaves out are kept.
+ */
+@Component
+public class ReloadFileWatcher implements SmartLifecycle {
+
+    static final long SETTLE_MILLIS = 200;
+
+    private static final String PRODUCTS_PREFIX = "products.";
+
+    private static final Logger logger = LoggerFactory.getLogger(ReloadFileWatcher.class);
+
+    private final Map<Path, Runnable> reloads = new LinkedHashMap<>();
+    private final Path policyFile;
+
+    private volatile boolean running;
+    private volatile Thread watcher;
+    private volatile WatchService watchService;
+
+    public ReloadFileWatcher(PurchasePolicy purchasePolicy, PolicyProperties policyProperties,
+                             FinancialProfileService financialProfileService, FinancialProfileStore financialProfileStore,
+                             ProfileIndexProperties profileIndexProperties) {
+        this.policyFile = policyProperties.getFile() == null
+                ? null
+                : policyProperties.getFile().toAbsolutePath().normalize();
+        if (policyFile != null) {
+            reloads.put(policyFile, () -> purchasePolicy.update(readProducts(policyFile, purchasePolicy.products())));
+        }
+        if (profileIndexProperties.isWatch() && financialProfileStore instanceof IndexedFinancialProfileStore indexed
+                && indexed.source() != null) {
+            reloads.put(indexed.source().toAbsolutePath().normalize(), financialProfileService::reloadProfiles);
+        }
+    }
+
+    /**
+     * Reads the limits of the default product and of every product a policy file names. A product keeps the current
+     * value of every key the file leaves out; a product that is not in force yet takes it from the default product.
+     */
+    static Map<String, PurchaseLimits> readProducts(Path file, Map<String, PurchaseLimits> current) {
+        Properties policy = load(file);
+        PurchaseLimits defaults = limits(file, policy, "", current.get(ProductPolicy.DEFAULT_CODE));
+
+        Map<String, PurchaseLimits> products = new LinkedHashMap<>();
+        products.put(ProductPolicy.DEFAULT_CODE, defaults);
+        for (String key : new TreeSet<>(policy.stringPropertyNames())) {
+            int separator = key.lastIndexOf('.');
+            if (!key.startsWith(PRODUCTS_PREFIX) || separator <= PRODUCTS_PREFIX.length()) {
+                continue;
+            }
+            String code = key.substring(PRODUCTS_PREFIX.length(), separator);
+            if (ProductPolicy.DEFAULT_CODE.equals(code)) {
+                throw new IllegalArgumentException("The limits of the default product are set without a prefix, not as "
+                        + key + " in purchase policy " + file);
+            }
+            products.computeIfAbsent(code, product -> limits(file, policy, PRODUCTS_PREFIX + product + ".",
+                    current.getOrDefault(product, defaults)));
+        }
+        return products;
+    }
+
+    private static Properties load(Path file) {
+        Properties policy = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            policy.load(reader);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read purchase policy " + file, e);
+        }
+        return policy;
+    }
+
+    private static PurchaseLimits limits(Path file, Properties policy, String prefix, PurchaseLimits current) {
+        try {
+            return new PurchaseLimits(
+                    amount(policy, prefix + "min-amount", current.minAmount()),
+                    amount(policy, prefix + "max-amount", current.maxAmount()),
+                    period(policy, prefix + "min-period", current.minPeriod()),
+                    period(policy, prefix + "max-period", current.maxPeriod()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number in purchase policy " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static BigDecimal amount(Properties policy, String key, BigDecimal current) {
+        String value = policy.getProperty(key);
+        return value == null ? current : new BigDecimal(value.trim());
+    }
+
+    private static int period(Properties policy, String key, int current) {
+        String value = policy.getProperty(key);
+        return value == null ? current : Integer.parseInt(value.trim());
+    }
+
+    @Override
+    public void start() {
+        if (reloads.isEmpty() || running) {
+            return;
+        }
+
+        WatchService service;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            Set<Path> directories = new HashSet<>();
+            for (Path file : reloads.keySet()) {
+                if (directories.add(file.getParent())) {
+                    file.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not watch " + reloads.keySet(), e);
+        }
+
+        // A policy file present at startup overrides the configured limits; the profile index was loaded just now
+        if (policyFile != null && Files.isRegularFile(policyFile)) {
+            apply(policyFile, reloads.get(policyFile));
+        }
+
+        running = true;
+        watchService = service;
+        Thread thread = new Thread(() -> watch(service), "reload-file-watcher");
+        thread.setDaemon(true);
+        watcher = thread;
+        thread.start();
+        logger.info("Watching {} for changes", reloads.keySet());
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = watcher;
+        if (thread == null) {
+            return;
+        }
+        running = false;
+        try {
+            watchService.close();
+            thread.join();
+        } catch (IOException e) {
+            logger.warn("Could not close the file watch service", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        watcher = null;
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (running) {
+                Set<Path> changed = new HashSet<>();
+                WatchKey key = service.take();
+                // Collect until the directories are quiet, so a file is applied once it has been written completely
+                while (key != null) {
+                    collect(key, changed);
+                    key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+                reloads.forEach((file, reload) -> {
+                    if (changed.contains(file) && Files.isRegularFile(file)) {
+                        apply(file, reload);
+                    }
+                });
+            }
+        } catch (ClosedWatchServiceException e) {
+            // Stopped
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void collect(WatchKey key, Set<Path> changed) {
+        Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed.addAll(reloads.keySet());
+            } else {
+                changed.add(directory.resolve((Path) event.context()));
+            }
+        }
+        key.reset();
+    }
+
+    private static void apply(Path file, Runnable reload) {
+        try {
+            reload.run();
+        } catch (RuntimeException e) {
+            logger.warn("Could not apply {}, keeping the current state", file, e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.ScoringRuleProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Searches for the maximum approvable amount with the {@link ScoringRule} configured under
+ * {@code purchase.scoring-rule} instead of the built-in formula.
+ * <p>
+ * A configured rule need not grow with the period or shrink with the amount, so the search steps through periods and
+ * amounts one at a time, the way the original search did: the shortest approved period from the initial one, then
+ * lower amounts on the 100-unit grid until one is approved for some period, or higher amounts for the approved period
+ * as long as they stay approved. The default rule decides exactly as {@link BigDecimalApprovalSolver} does, with
+ * every score evaluated in {@code double} instead of {@link BigDecimal}.
+ */
+@Component
+@ConditionalOnProperty(name = "purchase.scoring-engine", havingValue = "rules")
+public class RuleBasedApprovalSolver implements ApprovalSolver {
+
+    private static final BigDecimal AMOUNT_STEP = BigDecimal.valueOf(BigDecimalApprovalSolver.AMOUNT_STEP);
+
+    private final ScoringRule rule;
+
+    @Autowired
+    public RuleBasedApprovalSolver(ScoringRuleProperties scoringRuleProperties) {
+        this(ScoringRule.compile(scoringRuleProperties.getScore(), scoringRuleProperties.getThreshold()));
+    }
+
+    RuleBasedApprovalSolver(ScoringRule rule) {
+        this.rule = rule;
+    }
+
+    @Override
+    public ApprovalOutcome solve(PurchaseLimits limits, int financialFactor, BigDecimal requestedAmount, int initialPeriod) {
+        DecisionTrace trace = DecisionTrace.current();
+        int maxPeriod = limits.maxPeriod();
+
+        // Start from requested amount but do not exceed max limit
+        BigDecimal currentAmount = requestedAmount.min(limits.maxAmount());
+
+        int period = findShortestApprovedPeriod(trace, financialFactor, currentAmount, initialPeriod, maxPeriod);
+        if (period > 0) {
+            // Try increasing the amount **ONLY IF the request was lower than possible approval**
+            BigDecimal approvedAmount = currentAmount.compareTo(requestedAmount) >= 0
+                    ? increaseApprovedAmount(trace, financialFactor, currentAmount, period, limits.maxAmount())
+                    : currentAmount;
+            return ApprovalOutcome.approved(approvedAmount, period);
+        }
+
+        BigDecimal amount = currentAmount.subtract(AMOUNT_STEP);
+        while (amount.compareTo(limits.minAmount()) >= 0) {
+            period = findShortestApprovedPeriod(trace, financialFactor, amount, initialPeriod, maxPeriod);
+            if (period > 0) {
+                return ApprovalOutcome.approved(amount, period);
+            }
+            amount = amount.subtract(AMOUNT_STEP);
+        }
+        return ApprovalOutcome.REJECTED;
+    }
+
+    /**
+     * A configured rule need not grow with the period or shrink with the amount, so no largest approvable amount per
+     * period describes its decisions, and the built-in formula the offer matrix is computed from may not be the rule.
+     */
+    @Override
+    public boolean supportsOffers() {
+        return false;
+    }
+
+    /**
+     * Returns the shortest period in {@code [fromPeriod, maxPeriod]} that approves the amount, or {@code -1}.
+     */
+    private int findShortestApprovedPeriod(DecisionTrace trace, int financialFactor, BigDecimal amount, int fromPeriod,
+                                           int maxPeriod) {
+        double amountValue = amount.doubleValue();
+        for (int period = fromPeriod; period <= maxPeriod; period++) {
+            if (isApproved(trace, financialFactor, amountValue, period)) {
+                return period;
+            }
+        }
+        return -1;
+    }
+
+    private BigDecimal increaseApprovedAmount(DecisionTrace trace, int financialFactor, BigDecimal approvedAmount,
+                                              int period, BigDecimal maxAmount) {
+        BigDecimal amount = approvedAmount;
+        BigDecimal increasedAmount = amount.add(AMOUNT_STEP);
+        while (increasedAmount.compareTo(maxAmount) <= 0
+                && isApproved(trace, financialFactor, increasedAmount.doubleValue(), period)) {
+            amount = increasedAmount;
+            increasedAmount = amount.add(AMOUNT_STEP);
+        }
+        return amount;
+    }
+
+    private boolean isApproved(DecisionTrace trace, int financialFactor, double amount, int period) {
+        if (amount <= 0) {
+            throw new IllegalArgumentException("Amount must be greater than zero for approval score calculation.");
+        }
+        double score = rule.score(financialFactor, amount, period);
+        trace.step(amount, period, score);
+        return score >= rule.threshold(financialFactor, amount, period);
+    }
+}
@@ -0,0 +1,412 @@
+package com.example.homework.purchase;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+
+/**
+ * An approval score and threshold read from configuration and compiled once into method handle trees.
+ * <p>
+ * Both are arithmetic expressions over {@code factor}, {@code amount} and {@code period}, evaluated in {@code double}:
+ * <pre>
+ *   expression := term (('+' | '-') term)*
+ *   term       := unary (('*' | '/') unary)*
+ *   unary      := '-' unary | number | variable | '(' expression ')'
+ *               | 'min(' expression ',' expression ')' | 'max(' expression ',' expression ')'
+ *               | 'round(' expression ',' digits ')'
+ *               | 'if(' expression ('&lt;' | '&lt;=' | '&gt;' | '&gt;=' | '==' | '!=') expression ','
+ *                       expression ',' expression ')'
+ * </pre>
+ * {@code round} rounds HALF_UP to the given number of decimal digits. For example, a threshold that rises for large
+ * amounts is {@code if(amount > 3000, 1.2, 1)} and a score that weighs long periods less is
+ * {@code factor / amount * min(period, 12 + (period - 12) / 2)}.
+ * <p>
+ * Every operator is a static method bound into a single {@link MethodHandle} of type {@code (int, double, int)double},
+ * with constant subexpressions folded while compiling. The handles are instance fields, which the JIT does not treat as
+ * constants, so they are not inlined into the search loop: every score and threshold is one indirect call. Once a
+ * handle is hot, the JDK customizes its lambda forms for that handle instance, so the tree behind the call compiles as
+ * a whole, without the per-node dispatch of an interpreter. {@code ApprovalScoreBenchmark} measures both calls against
+ * the same formula written in Java.
+ */
+final class ScoringRule {
+
+    private static final MethodType RULE = MethodType.methodType(double.class, int.class, double.class, int.class);
+    private static final List<String> VARIABLES = List.of("factor", "amount", "period");
+    private static final List<String> FUNCTIONS = List.of("min", "max", "round", "if");
+    private static final int MAX_DIGITS = 15;
+
+    private final String score;
+    private final String threshold;
+    private final MethodHandle scoreHandle;
+    private final MethodHandle thresholdHandle;
+
+    private ScoringRule(String score, String threshold) {
+        this.score = score;
+        this.threshold = threshold;
+        this.scoreHandle = new Parser(score).parse();
+        this.thresholdHandle = new Parser(threshold).parse();
+    }
+
+    /**
+     * Compiles a score and a threshold expression.
+     *
+     * @throws IllegalArgumentException if either is not a valid expression
+     */
+    static ScoringRule compile(String score, String threshold) {
+        return new ScoringRule(score, threshold);
+    }
+
+    double score(int financialFactor, double amount, int period) {
+        try {
+            return (double) scoreHandle.invokeExact(financialFactor, amount, period);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    double threshold(int financialFactor, double amount, int period) {
+        try {
+            return (double) thresholdHandle.invokeExact(financialFactor, amount, period);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        // The operators only do double arithmetic and declare no checked exceptions
+        return new IllegalStateException(e);
+    }
+
+    @Override
+    public String toString() {
+        return "score " + score + " >= " + threshold;
+    }
+
+    static double add(double left, double right) {
+        return left + right;
+    }
+
+    static double subtract(double left, double right) {
+        return left - right;
+    }
+
+    static double multiply(double left, double right) {
+        return left * right;
+    }
+
+    static double divide(double left, double right) {
+        return left / right;
+    }
+
+    static double negate(double value) {
+        return -value;
+    }
+
+    static double round(double value, double scale) {
+        return Math.copySign(Math.floor(Math.abs(value) * scale + 0.5), value) / scale;
+    }
+
+    static boolean lessThan(double left, double right) {
+        return left < right;
+    }
+
+    static boolean lessOrEqual(double left, double right) {
+        return left <= right;
+    }
+
+    static boolean greaterThan(double left, double right) {
+        return left > right;
+    }
+
+    static boolean greaterOrEqual(double left, double right) {
+        return left >= right;
+    }
+
+    static boolean equal(double left, double right) {
+        return left == right;
+    }
+
+    static boolean notEqual(double left, double right) {
+        return left != right;
+    }
+
+    /**
+     * A compiled subexpression: a handle over the rule arguments, or the value it always has.
+     */
+    private record Operand(MethodHandle handle, Object value) {
+
+        static Operand constant(Object value) {
+            return new Operand(null, value);
+        }
+
+        static Operand of(MethodHandle handle) {
+            return new Operand(handle, null);
+        }
+
+        boolean isConstant() {
+            return handle == null;
+        }
+
+        MethodHandle toHandle() {
+            if (handle != null) {
+                return handle;
+            }
+            Class<?> type = value instanceof Boolean ? boolean.class : double.class;
+            return MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, RULE.parameterList());
+        }
+    }
+
+    private static final class Parser {
+
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+        private static final MethodType BINARY = MethodType.methodType(double.class, double.class, double.class);
+        private static final MethodType COMPARISON = MethodType.methodType(boolean.class, double.class, double.class);
+
+        private final String source;
+        private int position;
+
+        Parser(String source) {
+            if (source == null || source.isBlank()) {
+                throw new IllegalArgumentException("Scoring rule expression must not be empty");
+            }
+            this.source = source;
+        }
+
+        MethodHandle parse() {
+            Operand operand = expression();
+            skipWhitespace();
+            if (position < source.length()) {
+                throw error("unexpected '" + source.charAt(position) + "'");
+            }
+            return operand.toHandle();
+        }
+
+        private Operand expression() {
+            Operand result = term();
+            while (true) {
+                if (accept('+')) {
+                    result = binary("add", BINARY, result, term());
+                } else if (accept('-')) {
+                    result = binary("subtract", BINARY, result, term());
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        private Operand term() {
+            Operand result = unary();
+            while (true) {
+                if (accept('*')) {
+                    result = binary("multiply", BINARY, result, unary());
+                } else if (accept('/')) {
+                    result = binary("divide", BINARY, result, unary());
+                } else {
+                    return result;
+                }
+            }
+        }
+
+        private Operand unary() {
+            if (accept('-')) {
+                Operand operand = unary();
+                if (operand.isConstant()) {
+                    return Operand.constant(-(double) operand.value());
+                }
+                return Operand.of(MethodHandles.collectArguments(
+                        operator("negate", MethodType.methodType(double.class, double.class)), 0, operand.handle()));
+            }
+            if (accept('(')) {
+                Operand operand = expression();
+                expect(')');
+                return operand;
+            }
+
+            skipWhitespace();
+            if (position < source.length()
+                    && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+                return Operand.constant(number());
+            }
+            String name = identifier();
+            int variable = VARIABLES.indexOf(name);
+            if (variable >= 0) {
+                return Operand.of(variable(variable));
+            }
+            if (!FUNCTIONS.contains(name)) {
+                throw error("unknown function or variable '" + name + "'");
+            }
+            expect('(');
+            Operand result = switch (name) {
+                case "min" -> binary("min", BINARY, Math.class, expression(), argument());
+                case "max" -> binary("max", BINARY, Math.class, expression(), argument());
+                case "round" -> round();
+                default -> conditional();
+            };
+            expect(')');
+            return result;
+        }
+
+        private Operand argument() {
+            expect(',');
+            return expression();
+        }
+
+        private Operand round() {
+            Operand value = expression();
+            expect(',');
+            int start = position;
+            double digits = number();
+            if (digits != Math.rint(digits) || digits < 0 || digits > MAX_DIGITS) {
+                position = start;
+                throw error("round takes 0 to " + MAX_DIGITS + " decimal digits");
+            }
+            return binary("round", BINARY, value, Operand.constant(Math.pow(10, digits)));
+        }
+
+        private Operand conditional() {
+            Operand left = expression();
+            String comparator = comparator();
+            Operand test = binary(comparator, COMPARISON, left, expression());
+            Operand whenTrue = argument();
+            Operand whenFalse = argument();
+            if (test.isConstant()) {
+                return (Boolean) test.value() ? whenTrue : whenFalse;
+            }
+            return Operand.of(MethodHandles.guardWithTest(test.handle(), whenTrue.toHandle(), whenFalse.toHandle()));
+        }
+
+        private String comparator() {
+            if (accept('<')) {
+                return accept('=') ? "lessOrEqual" : "lessThan";
+            }
+            if (accept('>')) {
+                return accept('=') ? "greaterOrEqual" : "greaterThan";
+            }
+            if (accept('=')) {
+                expect('=');
+                return "equal";
+            }
+            if (accept('!')) {
+                expect('=');
+                return "notEqual";
+            }
+            throw error("expected a comparison");
+        }
+
+        private Operand binary(String name, MethodType type, Operand left, Operand right) {
+            return binary(name, type, ScoringRule.class, left, right);
+        }
+
+        /**
+         * Applies a two-argument operator, calling it right away if both operands are constant and binding a constant
+         * operand into it otherwise.
+         */
+        private Operand binary(String name, MethodType type, Class<?> owner, Operand left, Operand right) {
+            MethodHandle operator = operator(owner, name, type);
+            if (left.isConstant() && right.isConstant()) {
+                try {
+                    return Operand.constant(operator.invoke(left.value(), right.value()));
+                } catch (Throwable e) {
+                    throw rethrow(e);
+                }
+            }
+            if (right.isConstant()) {
+                return Operand.of(MethodHandles.collectArguments(
+                        MethodHandles.insertArguments(operator, 1, right.value()), 0, left.handle()));
+            }
+            if (left.isConstant()) {
+                return Operand.of(MethodHandles.collectArguments(
+                        MethodHandles.insertArguments(operator, 0, left.value()), 0, right.handle()));
+            }
+            // (int, double, int, int, double, int) with both operands evaluated on the same three arguments
+            MethodHandle both = MethodHandles.collectArguments(
+                    MethodHandles.collectArguments(operator, 1, right.handle()), 0, left.handle());
+            return Operand.of(MethodHandles.permuteArguments(both,
+                    RULE.changeReturnType(type.returnType()), 0, 1, 2, 0, 1, 2));
+        }
+
+        private static MethodHandle operator(String name, MethodType type) {
+            return operator(ScoringRule.class, name, type);
+        }
+
+        private static MethodHandle operator(Class<?> owner, String name, MethodType type) {
+            try {
+                return LOOKUP.findStatic(owner, name, type);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Missing scoring rule operator " + name, e);
+            }
+        }
+
+        /**
+         * The rule argument at {@code index}, as a double.
+         */
+        private static MethodHandle variable(int index) {
+            Class<?> type = RULE.parameterType(index);
+            MethodHandle value = MethodHandles.explicitCastArguments(MethodHandles.identity(type),
+                    MethodType.methodType(double.class, type));
+            value = MethodHandles.dropArguments(value, 0, RULE.parameterList().subList(0, index));
+            return MethodHandles.dropArguments(value, index + 1,
+                    RULE.parameterList().subList(index + 1, RULE.parameterCount()));
+        }
+
+        private double number() {
+            skipWhitespace();
+            int start = position;
+            while (position < source.length()
+                    && (Character.isDigit(source.charAt(position)) || source.charAt(position) == '.')) {
+                position++;
+            }
+            try {
+                return Double.parseDouble(source.substring(start, position));
+            } catch (NumberFormatException e) {
+                position = start;
+                throw error("expected a number");
+            }
+        }
+
+        private String identifier() {
+            int start = position;
+            while (position < source.length() && Character.isLetter(source.charAt(position))) {
+                position++;
+            }
+            if (start == position) {
+                throw error(position < source.length() ? "unexpected '" + source.charAt(position) + "'"
+                        : "unexpected end");
+            }
+            return source.substring(start, position);
+        }
+
+        private boolean accept(char expected) {
+            skipWhitespace();
+            if (position < source.length() && source.charAt(position) == expected) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char expected) {
+            if (!accept(expected)) {
+                throw error("expected '" + expected + "'");
+            }
+        }
+
+        private void skipWhitespace() {
+            while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid scoring rule '" + source + "' at position " + position
+                    + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.homework.purchase;
+
+/**
+ * Thrown for an application whose product code matches no product in force.
+ */
+public class UnknownProductException extends IllegalArgumentException {
+
+    public UnknownProductException(String productCode) {
+        super("Unknown product code: " + productCode);
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.homework.purchase;
+
+/**
+ * A capacity factor together with the version of the profile it was read from, as held in the profile cache.
+ * <p>
+ * Versions only grow, so a change of a profile can be told apart from an older one that arrives late. Stores that do
+ * not keep versions report version 0.
+ */
+public record VersionedCapacityFactor(int capacityFactor, long version) {
+}
@@ -0,0 +1,272 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.AuditProperties;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Stores approval decisions in {@code approval_audit} without touching the database on the request path.
+ * <p>
+ * Decisions are appended to a lock-free queue bounded by {@code purchase.audit.queue-capacity} and inserted by a
+ * single flusher thread in JDBC batches of {@code batch-size}, as soon as a batch is full or every
+ * {@code flush-interval}, whichever comes first. When the queue is full the {@code overflow-policy} decides whether
+ * the decision is dropped or inserted on the calling thread. The queue is drained before the application context
+ * closes, and decisions recorded after that are inserted on the calling thread.
+ * <p>
+ * A batch is inserted in one transaction. If the database rejects it, its decisions are inserted again one at a time,
+ * so a single bad row costs only itself; the decisions that still fail are counted in {@code purchase.audit.failed}.
+ */
+@Component
+public class WriteBehindApprovalAuditLog implements ApprovalAuditLog, SmartLifecycle, MeterBinder {
+
+    static final String INSERT_SQL = "INSERT INTO approval_audit "
+            + "(personal_id, requested_amount, payment_period, capacity_factor, approved, approved_amount, decided_at, "
+            + "product_code) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindApprovalAuditLog.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditProperties auditProperties;
+
+    private final ConcurrentLinkedQueue<ApprovalAuditEntry> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    private volatile boolean running;
+    private volatile boolean stopped;
+    private volatile Thread flusher;
+    private long reportedDropped;
+
+    // Lazy: the database is only initialized for the audit once a decision is inserted, not when the audit is off
+    public WriteBehindApprovalAuditLog(@Lazy JdbcTemplate jdbcTemplate,
+                                       @Lazy PlatformTransactionManager transactionManager,
+                                       AuditProperties auditProperties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.auditProperties = auditProperties;
+    }
+
+    @Override
+    public void record(ApprovalAuditEntry entry) {
+        if (!auditProperties.isEnabled()) {
+            return;
+        }
+
+        if (!reserveSlot()) {
+            overflow(entry);
+            return;
+        }
+
+        queue.offer(entry);
+        if (stopped) {
+            // The flusher is gone; either its last drain saw this entry or the stopped flag is seen here
+            flush();
+            return;
+        }
+        Thread currentFlusher = flusher;
+        if (currentFlusher != null && queued.get() >= auditProperties.getBatchSize()) {
+            LockSupport.unpark(currentFlusher);
+        }
+    }
+
+    private boolean reserveSlot() {
+        int capacity = auditProperties.getQueueCapacity();
+        while (true) {
+            int current = queued.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (queued.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void overflow(ApprovalAuditEntry entry) {
+        switch (auditProperties.getOverflowPolicy()) {
+            case DROP -> dropped.incrementAndGet();
+            case CALLER_RUNS -> insert(List.of(entry));
+        }
+    }
+
+    private void runFlusher() {
+        long flushIntervalNanos = auditProperties.getFlushInterval().toNanos();
+        while (running) {
+            if (queued.get() < auditProperties.getBatchSize()) {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            flush();
+        }
+        flush();
+    }
+
+    /**
+     * Inserts everything queued so far, one JDBC batch at a time.
+     */
+    void flush() {
+        int batchSize = auditProperties.getBatchSize();
+        List<ApprovalAuditEntry> batch = new ArrayList<>(batchSize);
+        ApprovalAuditEntry entry;
+        while ((entry = queue.poll()) != null) {
+            batch.add(entry);
+            if (batch.size() == batchSize) {
+                queued.addAndGet(-batch.size());
+                insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            queued.addAndGet(-batch.size());
+            insert(batch);
+        }
+        reportDropped();
+    }
+
+    private void insert(List<ApprovalAuditEntry> entries) {
+        if (entries.size() > 1) {
+            try {
+                // One transaction, so a failed batch leaves no rows behind to be inserted twice below
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_SQL, entries,
+                        entries.size(), WriteBehindApprovalAuditLog::bind));
+                written.addAndGet(entries.size());
+                return;
+            } catch (DataAccessException | TransactionException e) {
+                logger.warn("Could not store a batch of {} approval decisions, storing them one at a time",
+                        entries.size(), e);
+            }
+        }
+
+        for (ApprovalAuditEntry entry : entries) {
+            try {
+                jdbcTemplate.update(INSERT_SQL, statement -> bind(statement, entry));
+                written.incrementAndGet();
+            } catch (DataAccessException e) {
+                failed.incrementAndGet();
+                logger.error("Could not store the approval decision for personal ID {} made at {}",
+                        DecisionTracer.maskPersonalId(entry.getPersonalId()), entry.getDecidedAt(), e);
+            }
+        }
+    }
+
+    private static void bind(PreparedStatement statement, ApprovalAuditEntry entry) throws SQLException {
+        statement.setString(1, entry.getPersonalId());
+        statement.setBigDecimal(2, entry.getRequestedAmount());
+        statement.setInt(3, entry.getPaymentPeriod());
+        if (entry.getCapacityFactor() == null) {
+            statement.setNull(4, Types.INTEGER);
+        } else {
+            statement.setInt(4, entry.getCapacityFactor());
+        }
+        statement.setBoolean(5, entry.isApproved());
+        statement.setBigDecimal(6, entry.getApprovedAmount());
+        statement.setTimestamp(7, Timestamp.from(entry.getDecidedAt()));
+        statement.setString(8, entry.getProductCode());
+    }
+
+    private void reportDropped() {
+        long total = dropped.get();
+        if (total > reportedDropped) {
+            logger.warn("Audit queue full: dropped {} approval decisions ({} in total)", total - reportedDropped, total);
+            reportedDropped = total;
+        }
+    }
+
+    int queued() {
+        return queued.get();
+    }
+
+    long dropped() {
+        return dropped.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    @Override
+    public void start() {
+        if (!auditProperties.isEnabled() || running) {
+            return;
+        }
+        running = true;
+        stopped = false;
+        Thread thread = new Thread(this::runFlusher, "approval-audit-flusher");
+        thread.setDaemon(true);
+        flusher = thread;
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        Thread thread = flusher;
+        if (thread == null) {
+            return;
+        }
+        stopped = true;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flusher = null;
+        // Decisions queued while the flusher was finishing its last drain
+        flush();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, so decisions from requests still in flight during shutdown are drained too.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("purchase.audit.queue.size", queued, AtomicInteger::get)
+                .description("Approval decisions waiting to be stored")
+                .register(registry);
+        FunctionCounter.builder("purchase.audit.written", written, AtomicLong::get)
+                .description("Approval decisions stored")
+                .register(registry);
+        FunctionCounter.builder("purchase.audit.dropped", dropped, AtomicLong::get)
+                .description("Approval decisions dropped because the queue was full")
+                .register(registry);
+        FunctionCounter.builder("purchase.audit.failed", failed, AtomicLong::get)
+                .description("Approval decisions that could not be stored")
+                .register(registry);
+    }
+}
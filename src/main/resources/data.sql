@@ -0,0 +1,10 @@
+-- Sample profiles for the embedded database
+INSERT INTO financial_profile (personal_id, capacity_factor) VALUES
+    ('12345678901', -1),   -- Ineligible customer
+    ('99999999999', 8),    -- Low capacity, cannot approve high requests
+    ('12345678923', 10),   -- Low capacity, cannot approve high requests
+    ('12345678999', 40),   -- Lower than requested, but still approvable
+    ('12345678912', 50),   -- Profile with moderate capacity
+    ('12345678956', 378),  -- Strong profile, large approvals
+    ('12345678934', 500),  -- Strong profile, large approvals
+    ('12345678945', 100);  -- Can approve higher than requested amounts
@@ -0,0 +1,44 @@
+package com.example.homework;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the virtual-thread mode: a virtual thread that blocks inside a {@code synchronized} section pins its carrier
+ * thread on Java 21, so request-path code locks with {@link java.util.concurrent.locks.ReentrantLock} instead.
+ */
+class VirtualThreadPinningTest {
+
+    private static final Pattern COMMENTS = Pattern.compile("//[^\\n]*|/\\*.*?\\*/", Pattern.DOTALL);
+    private static final Pattern SYNCHRONIZED = Pattern.compile("\\bsynchronized\\b");
+
+    @Test
+    void shouldNotUseSynchronizedInApplicationCode() throws IOException {
+        List<Path> offenders;
+        try (Stream<Path> sources = Files.walk(Path.of("src/main/java"))) {
+            offenders = sources
+                    .filter(path -> path.toString().endsWith(".java"))
+                    .filter(VirtualThreadPinningTest::usesSynchronized)
+                    .toList();
+        }
+
+        assertTrue(offenders.isEmpty(), "synchronized pins virtual threads, use a ReentrantLock in " + offenders);
+    }
+
+    private static boolean usesSynchronized(Path source) {
+        try {
+            String code = COMMENTS.matcher(Files.readString(source)).replaceAll("");
+            return SYNCHRONIZED.matcher(code).find();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + source, e);
+        }
+    }
+}
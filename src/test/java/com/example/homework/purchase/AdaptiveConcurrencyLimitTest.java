@@ -0,0 +1,191 @@
+package com.example.homework.purchase;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(2);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(20);
+
+    @Test
+    void shouldRejectOverLimitUntilReleased() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, false);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.inFlight());
+
+        limit.release(FAST);
+        assertTrue(limit.tryAcquire());
+        assertEquals(2, limit.limit());
+    }
+
+    @Test
+    void shouldGrowWhileLatencyIsSteady() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 5, 200, true);
+
+        for (int round = 0; round < 40; round++) {
+            saturate(limit, FAST);
+        }
+
+        assertTrue(limit.limit() > 50, "limit " + limit.limit());
+        assertEquals(0, limit.inFlight());
+    }
+
+    @Test
+    void shouldShrinkWhenLatencyRises() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 5, 100, true);
+        for (int round = 0; round < 10; round++) {
+            saturate(limit, FAST);
+        }
+        assertEquals(100, limit.limit());
+
+        for (int round = 0; round < 5; round++) {
+            saturate(limit, SLOW);
+        }
+
+        assertTrue(limit.limit() < 30, "limit " + limit.limit());
+    }
+
+    @Test
+    void shouldNotGrowWhileMostPermitsAreUnused() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 5, 200, true);
+
+        for (int request = 0; request < 1000; request++) {
+            assertTrue(limit.tryAcquire());
+            limit.release(FAST);
+        }
+
+        assertEquals(10, limit.limit());
+    }
+
+    /**
+     * Twice as many clients as the backend serves without queueing, each sending again as soon as it is answered: an
+     * unprotected backend answers all of them in twice its usual latency.
+     */
+    @Test
+    void shouldBoundLatencyUnderSustainedOverload() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 5, 400, true);
+
+        List<Long> rtts = serve(limit, 100, 50, FAST, 3000);
+
+        long p99 = rtts.get(rtts.size() * 99 / 100);
+        assertTrue(p99 < 1.8 * FAST, "p99 " + p99 + " ns");
+        assertTrue(limit.limit() < 100, "limit " + limit.limit());
+    }
+
+    /**
+     * Latency doubles however many requests are in flight: the limit shrinks at first, then grows back once the
+     * long-term average has caught up with the slower backend.
+     */
+    @Test
+    void shouldRecoverWhenBackendGetsSlower() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(20, 5, 400, true);
+        serve(limit, 100, 50, FAST, 500);
+
+        serve(limit, 100, 50, 2 * FAST, 2500);
+
+        assertTrue(limit.limit() >= 40, "limit " + limit.limit());
+    }
+
+    /**
+     * Round-trip times released concurrently are all folded into the estimate, but for less than one window.
+     */
+    @Test
+    void shouldRecordEveryRoundTripUnderContention() throws InterruptedException {
+        int threads = 8;
+        int releasesPerThread = 20_000;
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(threads, 1, threads, true);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int release = 0; release < releasesPerThread; release++) {
+                    assertTrue(limit.tryAcquire());
+                    limit.release(FAST);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long released = (long) threads * releasesPerThread;
+        assertTrue(limit.recordedRtts() > released - AdaptiveConcurrencyLimit.WINDOW_SAMPLES,
+                limit.recordedRtts() + " of " + released);
+    }
+
+    @Test
+    void shouldKeepNonAdaptiveLimit() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 100, false);
+
+        for (int round = 0; round < 20; round++) {
+            saturate(limit, FAST);
+        }
+
+        assertEquals(4, limit.limit());
+    }
+
+    @Test
+    void shouldRejectInconsistentLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(10, 20, 100, true));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(0, 0, 100, true));
+    }
+
+    /**
+     * Serves rounds of up to {@code clients} requests, each answered in {@code rtt} up to {@code capacity} requests in
+     * flight and proportionally slower beyond.
+     *
+     * @return the sorted round-trip times of the admitted requests in the second half of the rounds
+     */
+    private static List<Long> serve(AdaptiveConcurrencyLimit limit, int clients, int capacity, long rtt, int rounds) {
+        List<Long> rtts = new ArrayList<>();
+        for (int round = 0; round < rounds; round++) {
+            int admitted = 0;
+            while (admitted < clients && limit.tryAcquire()) {
+                admitted++;
+            }
+            long latency = (long) (rtt * Math.max(1.0, (double) admitted / capacity));
+            for (int request = 0; request < admitted; request++) {
+                limit.release(latency);
+                if (round >= rounds / 2) {
+                    rtts.add(latency);
+                }
+            }
+        }
+        Collections.sort(rtts);
+        return rtts;
+    }
+
+    /**
+     * Takes every permit, then returns them all with the same latency.
+     */
+    private static void saturate(AdaptiveConcurrencyLimit limit, long rttNanos) {
+        int permits = 0;
+        while (limit.tryAcquire()) {
+            permits++;
+        }
+        for (int permit = 0; permit < permits; permit++) {
+            limit.release(rttNanos);
+        }
+    }
+}
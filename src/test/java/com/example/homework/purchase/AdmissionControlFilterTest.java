@@ -0,0 +1,104 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.AdmissionProperties;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.ServletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionControlFilterTest {
+
+    private AdmissionProperties admissionProperties;
+
+    @BeforeEach
+    void setUp() {
+        admissionProperties = new AdmissionProperties();
+        admissionProperties.getInteractive().setInitialLimit(1);
+        admissionProperties.getInteractive().setMinLimit(1);
+        admissionProperties.getInteractive().setAdaptive(false);
+        admissionProperties.getBatch().setInitialLimit(1);
+        admissionProperties.getBatch().setMinLimit(1);
+    }
+
+    @Test
+    void shouldShedApplicationOverLimitWithRetryAfter() throws ServletException, IOException {
+        AdmissionControlFilter filter = new AdmissionControlFilter(admissionProperties);
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        MockHttpServletResponse admitted = new MockHttpServletResponse();
+
+        filter.doFilter(post(AdmissionControlFilter.APPLY_PATH), admitted,
+                (request, response) -> filter.doFilter(post(AdmissionControlFilter.APPLY_PATH), shed,
+                        new MockFilterChain()));
+
+        assertEquals(200, admitted.getStatus());
+        assertEquals(503, shed.getStatus());
+        assertEquals("1", shed.getHeader("Retry-After"));
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON_VALUE, shed.getContentType());
+        assertTrue(shed.getContentAsString().contains("\"status\":503"));
+        assertEquals(0, filter.interactiveLimit().inFlight());
+
+        MockHttpServletResponse retried = new MockHttpServletResponse();
+        filter.doFilter(post(AdmissionControlFilter.APPLY_PATH), retried, new MockFilterChain());
+        assertEquals(200, retried.getStatus());
+    }
+
+    @Test
+    void shouldKeepBatchAndInteractiveBudgetsApart() throws ServletException, IOException {
+        AdmissionControlFilter filter = new AdmissionControlFilter(admissionProperties);
+        MockHttpServletResponse batch = new MockHttpServletResponse();
+        MockHttpServletResponse offers = new MockHttpServletResponse();
+
+        filter.doFilter(post(AdmissionControlFilter.APPLY_PATH), new MockHttpServletResponse(),
+                (request, response) -> {
+                    filter.doFilter(post(AdmissionControlFilter.BATCH_PATH), batch, new MockFilterChain());
+                    filter.doFilter(new MockHttpServletRequest("GET", "/api/purchase/offers/12345678945"), offers,
+                            new MockFilterChain());
+                });
+
+        assertEquals(200, batch.getStatus());
+        assertEquals(503, offers.getStatus());
+    }
+
+    @Test
+    void shouldHoldPermitUntilStreamedBatchCompletes() throws ServletException, IOException {
+        AdmissionControlFilter filter = new AdmissionControlFilter(admissionProperties);
+        MockHttpServletRequest streamed = post(AdmissionControlFilter.BATCH_PATH);
+        streamed.setAsyncSupported(true);
+
+        filter.doFilter(streamed, new MockHttpServletResponse(), (request, response) -> request.startAsync());
+        assertEquals(1, filter.batchLimit().inFlight());
+
+        MockHttpServletResponse shed = new MockHttpServletResponse();
+        filter.doFilter(post(AdmissionControlFilter.BATCH_PATH), shed, new MockFilterChain());
+        assertEquals(503, shed.getStatus());
+
+        AsyncContext asyncContext = streamed.getAsyncContext();
+        asyncContext.complete();
+        assertEquals(0, filter.batchLimit().inFlight());
+    }
+
+    @Test
+    void shouldAdmitEverythingWhenDisabled() throws ServletException, IOException {
+        admissionProperties.setEnabled(false);
+        AdmissionControlFilter filter = new AdmissionControlFilter(admissionProperties);
+        MockHttpServletResponse second = new MockHttpServletResponse();
+
+        filter.doFilter(post(AdmissionControlFilter.APPLY_PATH), new MockHttpServletResponse(),
+                (request, response) -> filter.doFilter(post(AdmissionControlFilter.APPLY_PATH), second,
+                        new MockFilterChain()));
+
+        assertEquals(200, second.getStatus());
+    }
+
+    private static MockHttpServletRequest post(String path) {
+        return new MockHttpServletRequest("POST", path);
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.homework.purchase;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.example.homework.config.AuditProperties;
+import com.example.homework.config.DecisionTableProperties;
+import com.example.homework.config.DecisionTraceProperties;
+import com.example.homework.config.ProfileCacheProperties;
+import com.example.homework.config.ProfileIndexProperties;
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.StatisticsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import com.sun.management.ThreadMXBean;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedThread;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fails when deciding an application allocates more than its budget.
+ * <p>
+ * A fixed workload of decisions, from the profile lookup to the audit entry, is run once to warm up and once more
+ * under a flight recording. The bytes allocated by the test thread are the difference between its
+ * {@code jdk.ThreadAllocationStatistics} at the start and the end of the recording. The approval events are recorded
+ * as well, as when a recording is attached in production.
+ * <p>
+ * Decisions are queued by a running {@link WriteBehindApprovalAuditLog} whose JDBC calls do nothing, so the budget
+ * covers recording the audit entry on the request thread; inserting it happens on the flusher thread and is not
+ * counted. The per-decision INFO line of {@link DecisionTracer} is excluded: it is switched off here, and a decision
+ * that writes it allocates its formatted line and the logging event on top of the budget.
+ * <p>
+ * Tagged {@code allocation}, so it runs in the {@code allocationTest} task rather than {@code test}: an agent such as a
+ * coverage tool instruments the code under test and defeats the escape analysis the budget relies on.
+ */
+@Tag("allocation")
+class ApprovalAllocationBudgetTest {
+
+    private static final int WARMUP_DECISIONS = 200_000;
+    private static final int DECISIONS = 100_000;
+
+    // Measured: about 890 bytes per decision with BigDecimal and 270 with fixed point on JDK 17, 930 and 300 on JDK 21
+    private static final long BIG_DECIMAL_BYTES_PER_DECISION = 1536;
+    private static final long FIXED_POINT_BYTES_PER_DECISION = 640;
+    // An ApprovalOutcome of 24 bytes plus a BigDecimal of 40 when the amount changes; measured 55 on JDK 17 and 21
+    private static final long FIXED_POINT_BYTES_PER_SEARCH = 64;
+
+    private static final int[] CAPACITY_FACTORS = {50, 100, 300, 1000};
+    private static final String[] PERSONAL_IDS = {"12345678912", "12345678923", "12345678934", "12345678945",
+            "12345678956", "12345678999"};
+    private static final BigDecimal[] AMOUNTS = {BigDecimal.valueOf(150), BigDecimal.valueOf(500),
+            BigDecimal.valueOf(2000), BigDecimal.valueOf(4500), BigDecimal.valueOf(6000)};
+
+    @TempDir
+    private Path directory;
+
+    private Logger tracerLogger;
+    private Level tracerLevel;
+    private WriteBehindApprovalAuditLog auditLog;
+
+    @BeforeEach
+    void setUp() {
+        tracerLogger = (Logger) LoggerFactory.getLogger(DecisionTracer.class);
+        tracerLevel = tracerLogger.getLevel();
+        tracerLogger.setLevel(Level.WARN);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (auditLog != null) {
+            auditLog.stop();
+        }
+        tracerLogger.setLevel(tracerLevel);
+    }
+
+    @Test
+    void bigDecimalDecisionsShouldStayWithinAllocationBudget() throws IOException {
+        assertWithinBudget(new BigDecimalApprovalSolver(), BIG_DECIMAL_BYTES_PER_DECISION);
+    }
+
+    @Test
+    void fixedPointDecisionsShouldStayWithinAllocationBudget() throws IOException {
+        assertWithinBudget(new FixedPointApprovalSolver(), FIXED_POINT_BYTES_PER_DECISION);
+    }
+
+    /**
+     * The fixed-point search compares longs only, so for whole amounts it allocates no more than its outcome and an
+     * approved amount that differs from the request.
+     */
+    @Test
+    void fixedPointSearchShouldAllocateOnlyItsOutcome() {
+        FixedPointApprovalSolver solver = new FixedPointApprovalSolver();
+        PurchaseLimits limits = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24);
+        solve(solver, limits, WARMUP_DECISIONS);
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        long approvedPeriods = solve(solver, limits, DECISIONS);
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+
+        assertTrue(approvedPeriods > 0);
+        long bytesPerSearch = allocated / DECISIONS;
+        assertTrue(bytesPerSearch <= FIXED_POINT_BYTES_PER_SEARCH, "FixedPointApprovalSolver allocated "
+                + bytesPerSearch + " bytes per search, over the budget of " + FIXED_POINT_BYTES_PER_SEARCH);
+    }
+
+    private void assertWithinBudget(ApprovalSolver solver, long budget) throws IOException {
+        PurchaseService purchaseService = purchaseService(solver);
+        decide(purchaseService, WARMUP_DECISIONS);
+
+        Path file = directory.resolve("decisions.jfr");
+        long decisions;
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.ThreadAllocationStatistics").with("period", "everyChunk");
+            recording.start();
+            decisions = decide(purchaseService, DECISIONS);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedAtStart = Long.MAX_VALUE;
+        long allocatedAtEnd = Long.MIN_VALUE;
+        long decisionEvents = 0;
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            String type = event.getEventType().getName();
+            if (type.equals("jdk.ThreadAllocationStatistics")) {
+                RecordedThread thread = event.getThread("thread");
+                if (thread != null && thread.getJavaThreadId() == threadId) {
+                    allocatedAtStart = Math.min(allocatedAtStart, event.getLong("allocated"));
+                    allocatedAtEnd = Math.max(allocatedAtEnd, event.getLong("allocated"));
+                }
+            } else if (type.equals("com.example.homework.purchase.Decision")) {
+                decisionEvents++;
+            }
+        }
+
+        assertEquals(decisions, decisionEvents);
+        assertTrue(allocatedAtEnd > allocatedAtStart, "No allocation statistics for the test thread");
+        long bytesPerDecision = (allocatedAtEnd - allocatedAtStart) / decisions;
+        assertTrue(bytesPerDecision <= budget, solver.getClass().getSimpleName() + " allocated " + bytesPerDecision
+                + " bytes per decision, over the budget of " + budget);
+    }
+
+    /**
+     * @return the decisions made; applications from the unknown personal ID above the minimum end without one
+     */
+    private static long decide(PurchaseService purchaseService, int applications) {
+        long decisions = 0;
+        for (int i = 0; i < applications; i++) {
+            if (purchaseService.findMaxApprovedAmount(PERSONAL_IDS[i % PERSONAL_IDS.length],
+                    AMOUNTS[i / PERSONAL_IDS.length % AMOUNTS.length], 6 + i % 12).isPresent()) {
+                decisions++;
+            }
+        }
+        return decisions;
+    }
+
+    private static long solve(ApprovalSolver solver, PurchaseLimits limits, int searches) {
+        long approvedPeriods = 0;
+        for (int i = 0; i < searches; i++) {
+            approvedPeriods += solver.solve(limits, CAPACITY_FACTORS[i % CAPACITY_FACTORS.length],
+                    AMOUNTS[i / CAPACITY_FACTORS.length % AMOUNTS.length], 6 + i % 12).paymentPeriod();
+        }
+        return approvedPeriods;
+    }
+
+    private PurchaseService purchaseService(ApprovalSolver solver) throws IOException {
+        Path profiles = Files.write(directory.resolve("profiles.csv"), List.of("12345678912,50", "12345678923,100",
+                "12345678934,300", "12345678945,1000", "12345678956,-1"));
+        ProfileIndexProperties profileIndexProperties = new ProfileIndexProperties();
+        profileIndexProperties.setSource(profiles);
+        FinancialProfileService financialProfileService = new FinancialProfileService(
+                new IndexedFinancialProfileStore(profileIndexProperties), new ProfileCacheProperties());
+
+        DecisionTableProperties decisionTableProperties = new DecisionTableProperties();
+        decisionTableProperties.setEnabled(false);
+        DecisionTraceProperties decisionTraceProperties = new DecisionTraceProperties();
+        decisionTraceProperties.setSampleRate(0);
+
+        auditLog = new WriteBehindApprovalAuditLog(new NoOpJdbcTemplate(), new NoOpTransactionManager(),
+                new AuditProperties());
+        auditLog.start();
+
+        PurchasePolicy purchasePolicy = new PurchasePolicy(
+                new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24), event -> { });
+        return new PurchaseService(financialProfileService,
+                purchasePolicy,
+                new DecisionTableCache(solver, decisionTableProperties),
+                auditLog,
+                new ApprovalMetrics(new SimpleMeterRegistry()),
+                new DecisionTracer(decisionTraceProperties),
+                new ApprovalStatistics(purchasePolicy, new StatisticsProperties()));
+    }
+
+    /**
+     * Accepts every insert without a database.
+     */
+    private static final class NoOpJdbcTemplate extends JdbcTemplate {
+
+        @Override
+        public <T> int[][] batchUpdate(String sql, Collection<T> batchArgs, int batchSize,
+                                       ParameterizedPreparedStatementSetter<T> setter) {
+            return new int[0][];
+        }
+
+        @Override
+        public int update(String sql, PreparedStatementSetter setter) {
+            return 1;
+        }
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
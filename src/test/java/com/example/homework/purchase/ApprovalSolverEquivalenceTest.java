@@ -0,0 +1,130 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import com.example.homework.config.ScoringRuleProperties;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.math.BigDecimal.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs every {@link ApprovalSolver} against the original step-by-step search over a factor × amount × period grid.
+ */
+class ApprovalSolverEquivalenceTest {
+
+    private static final int[] FACTORS = {-1, 0, 1, 7, 8, 9, 10, 33, 40, 50, 99, 100, 101, 250, 378, 500, 1000, 5000};
+
+    private static final List<BigDecimal> IRREGULAR_AMOUNTS = List.of(
+            new BigDecimal("200.00"), new BigDecimal("200.01"), new BigDecimal("299.99"), new BigDecimal("899.995"),
+            new BigDecimal("1234.56"), new BigDecimal("4500.00"), new BigDecimal("4999.5"), new BigDecimal("5E+3"),
+            new BigDecimal("5000.000"), new BigDecimal("7500.25")
+    );
+
+    @Test
+    void shouldMatchIterativeSearchWithDefaultLimits() {
+        assertEquivalent(properties(valueOf(200), valueOf(5000), 6, 24));
+    }
+
+    @Test
+    void shouldMatchIterativeSearchWithCustomLimits() {
+        assertEquivalent(properties(new BigDecimal("350.50"), valueOf(2000), 12, 36));
+    }
+
+    private static void assertEquivalent(PurchaseProperties properties) {
+        assertEquivalent(properties, new BigDecimalApprovalSolver());
+        assertEquivalent(properties, new FixedPointApprovalSolver());
+        assertEquivalent(properties, new RuleBasedApprovalSolver(new ScoringRuleProperties()));
+    }
+
+    private static void assertEquivalent(PurchaseProperties properties, ApprovalSolver solver) {
+        PurchaseLimits limits = PurchaseLimits.of(properties);
+        for (int factor : FACTORS) {
+            for (BigDecimal amount : amounts(properties)) {
+                for (int period = 0; period <= properties.getMaxPeriod() + 2; period++) {
+                    ApprovalOutcome expected = iterativeSearch(properties, factor, amount, period);
+                    ApprovalOutcome actual = solver.solve(limits, factor, amount, period);
+
+                    String scenario = solver.getClass().getSimpleName()
+                            + ": factor=" + factor + ", amount=" + amount + ", period=" + period;
+                    assertEquals(expected.toDecision(), actual.toDecision(), scenario);
+                    assertEquals(expected.paymentPeriod(), actual.paymentPeriod(), scenario);
+                }
+            }
+        }
+    }
+
+    private static List<BigDecimal> amounts(PurchaseProperties properties) {
+        List<BigDecimal> amounts = new ArrayList<>(IRREGULAR_AMOUNTS);
+        for (int amount = properties.getMinAmount().intValue(); amount <= 6000; amount += 50) {
+            amounts.add(valueOf(amount));
+        }
+        return amounts;
+    }
+
+    private static PurchaseProperties properties(BigDecimal minAmount, BigDecimal maxAmount, int minPeriod, int maxPeriod) {
+        PurchaseProperties properties = new PurchaseProperties();
+        properties.setMinAmount(minAmount);
+        properties.setMaxAmount(maxAmount);
+        properties.setMinPeriod(minPeriod);
+        properties.setMaxPeriod(maxPeriod);
+        return properties;
+    }
+
+    /**
+     * The search as it was implemented in {@code PurchaseService} before the closed-form solver, minus logging.
+     */
+    private static ApprovalOutcome iterativeSearch(PurchaseProperties properties, int factor, BigDecimal requestedAmount, int initialPeriod) {
+        BigDecimal maxApprovedAmount = ZERO;
+        int selectedPeriod = initialPeriod;
+        boolean foundApproval = false;
+
+        BigDecimal currentAmount = requestedAmount.min(properties.getMaxAmount());
+
+        for (int period = initialPeriod; period <= properties.getMaxPeriod(); period++) {
+            if (score(factor, currentAmount, period).compareTo(ONE) >= 0) {
+                maxApprovedAmount = currentAmount;
+                selectedPeriod = period;
+                foundApproval = true;
+                break;
+            }
+        }
+
+        while (!foundApproval && currentAmount.compareTo(properties.getMinAmount()) >= 0) {
+            for (int period = initialPeriod; period <= properties.getMaxPeriod(); period++) {
+                if (score(factor, currentAmount, period).compareTo(ONE) >= 0) {
+                    maxApprovedAmount = currentAmount;
+                    selectedPeriod = period;
+                    foundApproval = true;
+                    break;
+                }
+            }
+
+            if (!foundApproval) {
+                currentAmount = currentAmount.subtract(valueOf(100));
+            }
+        }
+
+        if (foundApproval && maxApprovedAmount.compareTo(requestedAmount) >= 0) {
+            while (maxApprovedAmount.add(valueOf(100)).compareTo(properties.getMaxAmount()) <= 0) {
+                BigDecimal newAmount = maxApprovedAmount.add(valueOf(100));
+                if (score(factor, newAmount, selectedPeriod).compareTo(ONE) >= 0) {
+                    maxApprovedAmount = newAmount;
+                } else {
+                    break;
+                }
+            }
+        }
+
+        return foundApproval ? ApprovalOutcome.approved(maxApprovedAmount, selectedPeriod) : ApprovalOutcome.REJECTED;
+    }
+
+    private static BigDecimal score(int factor, BigDecimal amount, int period) {
+        return valueOf(factor).divide(amount, 10, RoundingMode.HALF_UP).multiply(valueOf(period));
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import com.example.homework.config.StatisticsProperties;
+import com.example.homework.purchase.ApprovalStatistics.ApprovalStatisticsReport;
+import com.example.homework.purchase.ApprovalStatistics.MinuteStatistics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApprovalStatisticsTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T10:00:00Z");
+
+    private final MutableClock clock = new MutableClock(START);
+    private final StatisticsProperties statisticsProperties = new StatisticsProperties();
+    private final PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> { });
+
+    @Test
+    void shouldReportApprovalRateAndAverageApprovedAmount() {
+        ApprovalStatistics statistics = statistics();
+        statistics.record(true, BigDecimal.valueOf(1000), 12, 100);
+        statistics.record(true, BigDecimal.valueOf(2000.50), 18, 300);
+        statistics.record(false, BigDecimal.ZERO, 0, 10);
+        statistics.record(false, BigDecimal.ZERO, 0, null);
+
+        MinuteStatistics total = statistics.report(1).total();
+
+        assertEquals(4, total.decisions());
+        assertEquals(2, total.approved());
+        assertEquals(0.5, total.approvalRate());
+        assertEquals(new BigDecimal("1500.25"), total.averageApprovedAmount());
+        assertEquals(START, total.start());
+        assertEquals(START.plusSeconds(60), total.end());
+    }
+
+    /**
+     * Amounts between 200 and 5000 in 20 buckets of 240, periods 6 to 24, capacity factors from the default bounds.
+     */
+    @Test
+    void shouldCountDistributionsClampedToConfiguredRanges() {
+        ApprovalStatistics statistics = statistics();
+        statistics.record(true, BigDecimal.valueOf(200), 6, -1);
+        statistics.record(true, BigDecimal.valueOf(439.99), 12, 0);
+        statistics.record(true, BigDecimal.valueOf(440), 24, 9);
+        statistics.record(true, BigDecimal.valueOf(5000), 24, 1000);
+        statistics.record(true, BigDecimal.valueOf(8000), 36, 5000);
+        statistics.record(true, BigDecimal.valueOf(100), 3, -7);
+
+        MinuteStatistics total = statistics.report(1).total();
+
+        assertEquals(20, total.approvedAmounts().size());
+        assertEquals(3, total.approvedAmounts().get(BigDecimal.valueOf(200).setScale(2)));
+        assertEquals(1, total.approvedAmounts().get(BigDecimal.valueOf(440).setScale(2)));
+        assertEquals(2, total.approvedAmounts().get(BigDecimal.valueOf(4760).setScale(2)));
+        assertEquals(19, total.paymentPeriods().size());
+        assertEquals(2, total.paymentPeriods().get(6));
+        assertEquals(1, total.paymentPeriods().get(12));
+        assertEquals(3, total.paymentPeriods().get(24));
+        assertEquals(2, total.capacityFactors().get(-1));
+        assertEquals(2, total.capacityFactors().get(0));
+        assertEquals(2, total.capacityFactors().get(1000));
+    }
+
+    /**
+     * Once a product up to 20000 and 60 months is added, amounts are counted in 20 buckets of 990 from 200 and periods
+     * up to 60 months, from the first minute not yet opened on.
+     */
+    @Test
+    void shouldLayOutBucketsAgainWhenPolicyChanges() {
+        ApprovalStatistics statistics = statistics();
+        statistics.record(true, BigDecimal.valueOf(15000), 48, 100);
+
+        purchasePolicy.update("furniture",
+                new PurchaseLimits(BigDecimal.valueOf(1000), BigDecimal.valueOf(20000), 12, 60));
+        statistics.policyChanged();
+        clock.advance(Duration.ofMinutes(2));
+        statistics.record(true, BigDecimal.valueOf(15000), 48, 100);
+
+        List<MinuteStatistics> minutes = statistics.report(3).minutes();
+        MinuteStatistics before = minutes.get(0);
+        MinuteStatistics after = minutes.get(2);
+        assertEquals(1, before.approvedAmounts().get(BigDecimal.valueOf(4760).setScale(2)));
+        assertEquals(1, before.paymentPeriods().get(24));
+        assertEquals(20, statistics.report(1).total().approvedAmounts().size());
+        assertEquals(55, statistics.report(1).total().paymentPeriods().size());
+        assertEquals(1, after.approvedAmounts().get(BigDecimal.valueOf(14060).setScale(2)));
+        assertEquals(1, after.paymentPeriods().get(48));
+    }
+
+    /**
+     * A product up to 100000 months is counted in 60 buckets of 1667 months, from the lowest minimum period of 6.
+     */
+    @Test
+    void shouldBoundPeriodBucketsForLongPeriods() {
+        ApprovalStatistics statistics = statistics();
+        purchasePolicy.update("lease", new PurchaseLimits(BigDecimal.valueOf(1000), BigDecimal.valueOf(20000), 12,
+                100_000));
+        statistics.policyChanged();
+        clock.advance(Duration.ofMinutes(2));
+        statistics.record(true, BigDecimal.valueOf(15000), 12, 100);
+        statistics.record(true, BigDecimal.valueOf(15000), 1673, 100);
+        statistics.record(true, BigDecimal.valueOf(15000), 100_000, 100);
+
+        MinuteStatistics total = statistics.report(1).total();
+
+        assertEquals(60, total.paymentPeriods().size());
+        assertEquals(1, total.paymentPeriods().get(6));
+        assertEquals(1, total.paymentPeriods().get(1673));
+        assertEquals(1, total.paymentPeriods().get(6 + 59 * 1667));
+    }
+
+    @Test
+    void shouldPublishWindowTotalsAsGauges() {
+        ApprovalStatistics statistics = statistics();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        statistics.bindTo(registry);
+        statistics.record(true, BigDecimal.valueOf(1000), 12, 100);
+        statistics.record(false, BigDecimal.ZERO, 0, 10);
+
+        assertEquals(2, registry.get("purchase.statistics.decisions").gauge().value());
+        assertEquals(0.5, registry.get("purchase.statistics.approval.rate").gauge().value());
+        assertEquals(1000, registry.get("purchase.statistics.approved.amount.average").gauge().value());
+    }
+
+    @Test
+    void shouldSumGaugeTotalsOncePerSecond() {
+        ApprovalStatistics statistics = statistics();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        statistics.bindTo(registry);
+        statistics.record(true, BigDecimal.valueOf(1000), 12, 100);
+        assertEquals(1, registry.get("purchase.statistics.decisions").gauge().value());
+
+        statistics.record(false, BigDecimal.ZERO, 0, 10);
+        assertEquals(1, registry.get("purchase.statistics.decisions").gauge().value());
+        assertEquals(1, registry.get("purchase.statistics.approval.rate").gauge().value());
+
+        clock.advance(Duration.ofSeconds(1));
+        assertEquals(2, registry.get("purchase.statistics.decisions").gauge().value());
+        assertEquals(0.5, registry.get("purchase.statistics.approval.rate").gauge().value());
+    }
+
+    @Test
+    void shouldReportEveryMinuteOfWindow() {
+        statisticsProperties.setWindow(Duration.ofMinutes(3));
+        ApprovalStatistics statistics = statistics();
+        statistics.record(true, BigDecimal.valueOf(1000), 12, 100);
+        clock.advance(Duration.ofMinutes(2));
+        statistics.record(false, BigDecimal.ZERO, 0, -1);
+        statistics.record(false, BigDecimal.ZERO, 0, -1);
+
+        ApprovalStatisticsReport report = statistics.report(10);
+
+        assertEquals(List.of(1L, 0L, 2L), report.minutes().stream().map(MinuteStatistics::decisions).toList());
+        assertEquals(START, report.minutes().get(0).start());
+        assertEquals(START, report.total().start());
+        assertEquals(START.plusSeconds(180), report.total().end());
+        assertEquals(3, report.total().decisions());
+        assertEquals(List.of(2L), statistics.report(1).minutes().stream().map(MinuteStatistics::decisions).toList());
+    }
+
+    @Test
+    void shouldForgetMinutesOutsideWindow() {
+        statisticsProperties.setWindow(Duration.ofMinutes(3));
+        ApprovalStatistics statistics = statistics();
+        for (int minute = 0; minute < 5; minute++) {
+            for (int i = 0; i <= minute; i++) {
+                statistics.record(true, BigDecimal.valueOf(1000), 12, 100);
+            }
+            clock.advance(Duration.ofMinutes(1));
+        }
+        clock.advance(Duration.ofMinutes(-1));
+
+        ApprovalStatisticsReport report = statistics.report(3);
+
+        assertEquals(List.of(3L, 4L, 5L), report.minutes().stream().map(MinuteStatistics::decisions).toList());
+    }
+
+    /**
+     * Nothing is recorded in the minute before the slot is reused, so the slot is not cleared ahead of time.
+     */
+    @Test
+    void shouldClearSlotReusedAfterIdleMinutes() {
+        statisticsProperties.setWindow(Duration.ofMinutes(3));
+        ApprovalStatistics statistics = statistics();
+        statistics.record(true, BigDecimal.valueOf(1000), 12, 100);
+        clock.advance(Duration.ofMinutes(4));
+
+        statistics.record(false, BigDecimal.ZERO, 0, -1);
+
+        MinuteStatistics total = statistics.report(3).total();
+        assertEquals(1, total.decisions());
+        assertEquals(0, total.approved());
+    }
+
+    @Test
+    void shouldCountConcurrentDecisionsWithoutLosingAny() throws Exception {
+        ApprovalStatistics statistics = statistics();
+        int threads = 8;
+        int decisionsPerThread = 100_000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<CompletableFuture<Void>> recorders = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                recorders.add(CompletableFuture.runAsync(() -> {
+                    for (int i = 0; i < decisionsPerThread; i++) {
+                        statistics.record(i % 2 == 0, BigDecimal.valueOf(1000), 12, 100);
+                    }
+                }, executor));
+            }
+            for (CompletableFuture<Void> recorder : recorders) {
+                recorder.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        MinuteStatistics total = statistics.report(1).total();
+        assertEquals((long) threads * decisionsPerThread, total.decisions());
+        assertEquals((long) threads * decisionsPerThread / 2, total.approved());
+        assertEquals(new BigDecimal("1000.00"), total.averageApprovedAmount());
+    }
+
+    @Test
+    void shouldRecordNothingWhenDisabled() {
+        statisticsProperties.setEnabled(false);
+        ApprovalStatistics statistics = statistics();
+
+        statistics.record(true, BigDecimal.valueOf(1000), 12, 100);
+
+        assertEquals(0, statistics.report(1).total().decisions());
+    }
+
+    @Test
+    void shouldRejectUnorderedCapacityFactorBounds() {
+        statisticsProperties.setCapacityFactorBounds(List.of(0, 100, 50));
+
+        assertThrows(IllegalArgumentException.class, this::statistics);
+    }
+
+    private ApprovalStatistics statistics() {
+        return new ApprovalStatistics(purchasePolicy, statisticsProperties, clock);
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        void advance(Duration duration) {
+            instant = instant.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.homework.purchase;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApprovalWireFormatTest {
+
+    private final ByteBuffer buffer = ByteBuffer.allocate(ApprovalWireFormat.MAX_MESSAGE_BYTES);
+
+    @Test
+    void shouldRoundTripRequestInTwentyBytes() {
+        PurchaseApplicationRequest request =
+                new PurchaseApplicationRequest("38001085718", new BigDecimal("4500.50"), 12);
+
+        ApprovalWireFormat.writeRequest(request, buffer);
+
+        assertEquals(20, buffer.position());
+        assertEquals(38001085718L, buffer.getLong(0));
+        assertEquals(450050, buffer.getLong(8));
+        assertEquals(12, buffer.getInt(16));
+        assertEquals(request, ApprovalWireFormat.readRequest(buffer.flip()));
+    }
+
+    @Test
+    void shouldKeepLeadingZerosAndWholeAmounts() {
+        PurchaseApplicationRequest request = new PurchaseApplicationRequest("00000000042", BigDecimal.valueOf(500), 6);
+
+        ApprovalWireFormat.writeRequest(request, buffer);
+
+        // Decoded exactly as Jackson reads {"requestedAmount":500}, so both forms share cached decisions
+        assertEquals(request, ApprovalWireFormat.readRequest(buffer.flip()));
+    }
+
+    @Test
+    void shouldRoundTripDecisionsInNineBytes() {
+        ApprovalWireFormat.writeDecision(ApprovalDecision.approve(BigDecimal.valueOf(1100)), buffer);
+        assertEquals(9, buffer.position());
+        assertEquals(1, buffer.get(0));
+        assertEquals(ApprovalDecision.approve(BigDecimal.valueOf(1100)),
+                ApprovalWireFormat.readDecision(buffer.flip()));
+
+        ApprovalWireFormat.writeDecision(ApprovalDecision.reject(), buffer.clear());
+        assertEquals(0, buffer.get(0));
+        assertEquals(ApprovalDecision.reject(), ApprovalWireFormat.readDecision(buffer.flip()));
+    }
+
+    @Test
+    void shouldRejectUnencodableRequests() {
+        assertThrows(IllegalArgumentException.class, () -> ApprovalWireFormat.writeRequest(
+                new PurchaseApplicationRequest("1234567894", BigDecimal.valueOf(500), 12), buffer.clear()));
+        assertThrows(IllegalArgumentException.class, () -> ApprovalWireFormat.writeRequest(
+                new PurchaseApplicationRequest("1234567894x", BigDecimal.valueOf(500), 12), buffer.clear()));
+        assertThrows(IllegalArgumentException.class, () -> ApprovalWireFormat.writeRequest(
+                new PurchaseApplicationRequest("12345678945", new BigDecimal("500.001"), 12), buffer.clear()));
+        assertThrows(IllegalArgumentException.class, () -> ApprovalWireFormat.writeRequest(
+                new PurchaseApplicationRequest("12345678945", BigDecimal.valueOf(500), 12, "mortgage"),
+                buffer.clear()));
+    }
+
+    @Test
+    void shouldRejectMalformedMessages() {
+        assertThrows(IllegalArgumentException.class,
+                () -> ApprovalWireFormat.readRequest(ByteBuffer.allocate(ApprovalWireFormat.REQUEST_BYTES - 1)));
+        ByteBuffer unknownStatus = ByteBuffer.allocate(ApprovalWireFormat.DECISION_BYTES).put(0, (byte) 7);
+        assertThrows(IllegalArgumentException.class, () -> ApprovalWireFormat.readDecision(unknownStatus));
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.homework.purchase;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BoundedPoolTest {
+
+    @Test
+    void shouldReuseBufferGivenBack() {
+        BoundedPool<int[]> pool = new BoundedPool<>(2, () -> new int[1]);
+        int[] buffer = pool.take();
+
+        pool.giveBack(buffer);
+
+        assertSame(buffer, pool.take());
+    }
+
+    @Test
+    void shouldCreateBufferWhenEmptyAndDropBufferWhenFull() {
+        AtomicInteger created = new AtomicInteger();
+        BoundedPool<int[]> pool = new BoundedPool<>(1, () -> new int[created.incrementAndGet()]);
+        int[] first = pool.take();
+        int[] second = pool.take();
+
+        pool.giveBack(first);
+        pool.giveBack(second);
+
+        assertEquals(2, created.get());
+        assertSame(first, pool.take());
+        assertNotSame(second, pool.take());
+        assertEquals(3, created.get());
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.DecisionTableProperties;
+import com.example.homework.config.DecisionTraceProperties;
+import com.example.homework.config.ProfileCacheProperties;
+import com.example.homework.config.PurchaseProperties;
+import com.example.homework.config.RescoreProperties;
+import com.example.homework.config.StatisticsProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkRescorerTest {
+
+    private static final Map<String, Integer> PROFILES = Map.of(
+            "12345678945", 100, "12345678901", -1, "12345678934", 500, "12345678999", 40);
+    // Looking up this personal ID fails, as a profile store that is down would
+    private static final String FAILING_PERSONAL_ID = "99999999999";
+
+    @TempDir
+    private Path directory;
+
+    private RescoreProperties rescoreProperties;
+    private BulkRescorer bulkRescorer;
+
+    @BeforeEach
+    void setUp() {
+        DecisionTableProperties decisionTableProperties = new DecisionTableProperties();
+        decisionTableProperties.setEnabled(false);
+        DecisionTableCache decisionTableCache =
+                new DecisionTableCache(new BigDecimalApprovalSolver(), decisionTableProperties);
+        FinancialProfileService financialProfileService =
+                new FinancialProfileService(personalId -> {
+                    if (FAILING_PERSONAL_ID.equals(personalId)) {
+                        throw new IllegalStateException("Profile store unavailable");
+                    }
+                    return PROFILES.get(personalId);
+                }, new ProfileCacheProperties());
+        PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> { });
+        PurchaseService purchaseService = new PurchaseService(financialProfileService, purchasePolicy,
+                decisionTableCache, entry -> { }, new ApprovalMetrics(new SimpleMeterRegistry()),
+                new DecisionTracer(new DecisionTraceProperties()),
+                new ApprovalStatistics(purchasePolicy, new StatisticsProperties()));
+
+        rescoreProperties = new RescoreProperties();
+        rescoreProperties.setParallelism(4);
+        bulkRescorer = new BulkRescorer(purchaseService, financialProfileService, rescoreProperties, new ObjectMapper());
+    }
+
+    @Test
+    void shouldRescoreCsvAndJsonLines() throws IOException {
+        Path input = write("applications.csv", List.of(
+                "personalId,requestedAmount,paymentPeriodMonths",
+                "12345678945,500,12",
+                "12345678945,100,12",
+                "12345678901,3000,12",
+                "",
+                "00000000000,1000,12",
+                "not a request",
+                "{\"personalId\":\"12345678999\",\"requestedAmount\":1000,\"paymentPeriodMonths\":12}\r"));
+        Path output = directory.resolve("rescored.csv");
+
+        BulkRescorer.RescoreSummary summary = bulkRescorer.rescore(input, output);
+
+        assertEquals(List.of(
+                BulkRescorer.HEADER.strip(),
+                "12345678945,500,12,APPROVED,1100,12",
+                "12345678945,100,12,DENIED,0,",
+                "12345678901,3000,12,DENIED,0,",
+                "00000000000,1000,12,UNKNOWN_PROFILE,,",
+                ",,,INVALID,,",
+                "12345678999,1000,12,APPROVED,900,23"), Files.readAllLines(output));
+        assertEquals(6, summary.records());
+        assertEquals(2, summary.approved());
+        assertEquals(2, summary.denied());
+        assertEquals(1, summary.unknownProfile());
+        assertEquals(1, summary.invalid());
+        assertEquals(2, summary.skipped());
+        assertEquals(BigDecimal.valueOf(2000), summary.approvedAmount());
+        assertTrue(Files.exists(BulkRescorer.summaryFile(output)));
+    }
+
+    /**
+     * Only a header naming the input columns is skipped; another first line is scored like every other line.
+     */
+    @Test
+    void shouldScoreFirstLineThatIsNotTheHeader() throws IOException {
+        Path indented = write("indented.csv", List.of(" 12345678945,500,12", "12345678945,600,12"));
+        Path unnamed = write("unnamed.csv", List.of("id,amount,period", "12345678945,600,12"));
+
+        BulkRescorer.RescoreSummary indentedSummary = bulkRescorer.rescore(indented, directory.resolve("indented.out"));
+        BulkRescorer.RescoreSummary unnamedSummary = bulkRescorer.rescore(unnamed, directory.resolve("unnamed.out"));
+
+        assertEquals(2, indentedSummary.approved());
+        assertEquals(0, indentedSummary.skipped());
+        assertEquals(2, unnamedSummary.records());
+        assertEquals(1, unnamedSummary.invalid());
+        assertEquals(0, unnamedSummary.skipped());
+    }
+
+    @Test
+    void shouldDeletePartFilesWhenSegmentFails() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            lines.add((i == 100 ? FAILING_PERSONAL_ID : "12345678945") + ",500,12");
+        }
+        Path input = write("applications.csv", lines);
+        rescoreProperties.setSegmentSize(DataSize.ofBytes(100));
+
+        assertThrows(RuntimeException.class, () -> rescore(input, "rescored.csv"));
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().contains(".part-")));
+        }
+    }
+
+    @Test
+    void shouldKeepInputOrderAcrossSegments() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String personalId = List.copyOf(PROFILES.keySet()).get(i % PROFILES.size());
+            lines.add(personalId + "," + (200 + i * 7 % 5000) + "," + (6 + i % 19));
+        }
+        Path input = write("applications.csv", lines);
+
+        rescoreProperties.setSegmentSize(DataSize.ofMegabytes(64));
+        List<String> expected = Files.readAllLines(rescore(input, "single.csv"));
+        rescoreProperties.setSegmentSize(DataSize.ofBytes(100));
+        List<String> segmented = Files.readAllLines(rescore(input, "segmented.csv"));
+
+        assertEquals(1_001, segmented.size());
+        assertEquals(expected, segmented);
+        try (Stream<Path> files = Files.list(directory)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().contains(".part-")));
+        }
+    }
+
+    @Test
+    void shouldSplitAtLineBoundaries() throws IOException {
+        Path input = write("applications.csv", List.of("12345678945,500,12", "12345678945,600,12", "12345678945,700,12"));
+
+        List<BulkRescorer.Segment> segments = BulkRescorer.split(input, 10);
+
+        assertEquals(3, segments.size());
+        long next = 0;
+        for (BulkRescorer.Segment segment : segments) {
+            assertEquals(next, segment.start());
+            assertEquals(19, segment.length());
+            next = segment.start() + segment.length();
+        }
+        assertEquals(Files.size(input), next);
+    }
+
+    private Path rescore(Path input, String output) throws IOException {
+        Path file = directory.resolve(output);
+        bulkRescorer.rescore(input, file);
+        return file;
+    }
+
+    private Path write(String name, List<String> lines) throws IOException {
+        return Files.write(directory.resolve(name), lines);
+    }
+}
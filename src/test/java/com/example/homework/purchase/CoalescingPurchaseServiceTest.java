@@ -0,0 +1,153 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.DecisionCacheProperties;
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CoalescingPurchaseServiceTest {
+
+    private static final BigDecimal AMOUNT = BigDecimal.valueOf(500);
+    private static final ApprovalDecision APPROVED = ApprovalDecision.approve(BigDecimal.valueOf(1100));
+
+    @Mock
+    private PurchaseService purchaseService;
+
+    private SimpleMeterRegistry registry;
+    private CoalescingPurchaseService coalescingPurchaseService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(purchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12)).thenReturn(Optional.of(APPROVED));
+
+        registry = new SimpleMeterRegistry();
+        coalescingPurchaseService = new CoalescingPurchaseService(purchaseService, new DecisionCacheProperties(),
+                new ApprovalMetrics(registry));
+    }
+
+    @Test
+    void shouldDecideConcurrentIdenticalApplicationsOnce() throws Exception {
+        CountDownLatch decisionReleased = new CountDownLatch(1);
+        when(purchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12)).thenAnswer(invocation -> {
+            decisionReleased.await();
+            return Optional.of(APPROVED);
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Optional<ApprovalDecision>>> applications = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                applications.add(CompletableFuture.supplyAsync(
+                        () -> coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12), executor));
+            }
+            Thread.sleep(100);
+            decisionReleased.countDown();
+
+            for (CompletableFuture<Optional<ApprovalDecision>> application : applications) {
+                assertSame(APPROVED, application.get(5, TimeUnit.SECONDS).orElseThrow());
+            }
+            verify(purchaseService, times(1)).findMaxApprovedAmount("12345678945", AMOUNT, 12);
+            assertEquals(7, sharedCount("approved", "in_flight") + sharedCount("approved", "cached"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldAnswerRetryFromCache() {
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+
+        verify(purchaseService, times(1)).findMaxApprovedAmount("12345678945", AMOUNT, 12);
+        assertEquals(1, sharedCount("approved", "cached"));
+        assertEquals(0, sharedCount("approved", "in_flight"));
+    }
+
+    @Test
+    void shouldCountSharedDecisionOfUnknownCustomer() {
+        when(purchaseService.findMaxApprovedAmount("12345678956", AMOUNT, 12)).thenReturn(Optional.empty());
+
+        coalescingPurchaseService.findMaxApprovedAmount("12345678956", AMOUNT, 12);
+        coalescingPurchaseService.findMaxApprovedAmount("12345678956", AMOUNT, 12);
+
+        assertEquals(1, sharedCount("unknown_profile", "cached"));
+        assertEquals(0, sharedCount("rejected", "cached"));
+    }
+
+    @Test
+    void shouldDecideAgainAfterProfileChanged() {
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+
+        coalescingPurchaseService.onFinancialProfileChanged(new FinancialProfileChangedEvent("12345678945"));
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+
+        verify(purchaseService, times(2)).findMaxApprovedAmount("12345678945", AMOUNT, 12);
+    }
+
+    @Test
+    void shouldDecideAgainAfterProfileChangedWithApplicationWithoutIdCached() {
+        when(purchaseService.findMaxApprovedAmount(null, AMOUNT, 12)).thenReturn(Optional.of(APPROVED));
+        coalescingPurchaseService.findMaxApprovedAmount(null, AMOUNT, 12);
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+
+        coalescingPurchaseService.onFinancialProfileChanged(new FinancialProfileChangedEvent("12345678945"));
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+        coalescingPurchaseService.findMaxApprovedAmount(null, AMOUNT, 12);
+
+        verify(purchaseService, times(2)).findMaxApprovedAmount("12345678945", AMOUNT, 12);
+        verify(purchaseService, times(1)).findMaxApprovedAmount(null, AMOUNT, 12);
+    }
+
+    @Test
+    void shouldDecideAgainAfterLimitsChanged() {
+        PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> {
+            if (event instanceof PurchasePolicyChangedEvent) {
+                coalescingPurchaseService.dropAllDecisions();
+            }
+        });
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+
+        PurchaseLimits limits = purchasePolicy.current();
+        purchasePolicy.update(new PurchaseLimits(limits.minAmount(), BigDecimal.valueOf(1000), limits.minPeriod(),
+                limits.maxPeriod()));
+        coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12);
+
+        verify(purchaseService, times(2)).findMaxApprovedAmount("12345678945", AMOUNT, 12);
+    }
+
+    @Test
+    void shouldNotCacheFailedDecision() {
+        when(purchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12))
+                .thenThrow(new IllegalStateException("Profile store unavailable"))
+                .thenReturn(Optional.of(APPROVED));
+
+        assertThrows(IllegalStateException.class,
+                () -> coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12));
+
+        assertSame(APPROVED, coalescingPurchaseService.findMaxApprovedAmount("12345678945", AMOUNT, 12).orElseThrow());
+    }
+
+    private double sharedCount(String outcome, String source) {
+        return registry.get(ApprovalMetrics.SHARED).tag("outcome", outcome).tag("source", source).counter().count();
+    }
+}
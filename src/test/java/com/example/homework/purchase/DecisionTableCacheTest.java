@@ -0,0 +1,143 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.DecisionTableProperties;
+import com.example.homework.config.PurchaseLimits;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionTableCacheTest {
+
+    private PurchaseLimits limits;
+    private DecisionTableProperties decisionTableProperties;
+    private ApprovalSolver approvalSolver;
+    private DecisionTableCache decisionTableCache;
+
+    @BeforeEach
+    void setUp() {
+        limits = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24);
+        decisionTableProperties = new DecisionTableProperties();
+        approvalSolver = new FixedPointApprovalSolver();
+
+        // Build tables on the calling thread so the second request for a factor is served from its table
+        decisionTableCache = new DecisionTableCache(approvalSolver, decisionTableProperties, Runnable::run);
+    }
+
+    @Test
+    void shouldAnswerFromTablesExactlyAsTheSolver() {
+        for (int factor : new int[]{8, 40, 100, 378}) {
+            decisionTableCache.solve(limits, factor, BigDecimal.valueOf(1000), 12);
+
+            for (int amount = 200; amount <= 6000; amount += 7) {
+                for (int period = 6; period <= 24; period++) {
+                    assertSameOutcome(factor, BigDecimal.valueOf(amount), period);
+                }
+            }
+        }
+
+        assertEquals(4, decisionTableCache.tableCount());
+    }
+
+    @Test
+    void shouldFallBackToSolverForRequestsOutsideTheTables() {
+        decisionTableCache.solve(limits, 100, BigDecimal.valueOf(1000), 12);
+
+        assertSameOutcome(100, new BigDecimal("1234.56"), 12);
+        assertSameOutcome(100, new BigDecimal("4500.00"), 12);
+        assertSameOutcome(100, BigDecimal.valueOf(1000), 3);
+        assertSameOutcome(100, BigDecimal.valueOf(1000), 30);
+    }
+
+    @Test
+    void shouldRebuildTablesWhenLimitsChange() {
+        decisionTableCache.solve(limits, 100, BigDecimal.valueOf(500), 12);
+        assertEquals(BigDecimal.valueOf(1100), decisionTableCache.solve(limits, 100, BigDecimal.valueOf(500), 12).approvedAmount());
+
+        limits = new PurchaseLimits(limits.minAmount(), BigDecimal.valueOf(800), limits.minPeriod(), limits.maxPeriod());
+
+        assertEquals(BigDecimal.valueOf(800), decisionTableCache.solve(limits, 100, BigDecimal.valueOf(500), 12).approvedAmount());
+        assertEquals(1, decisionTableCache.tableCount());
+        assertSameOutcome(100, BigDecimal.valueOf(700), 12);
+    }
+
+    @Test
+    void shouldKeepTablesPerProductAndLeaveThemToCurrentSnapshots() {
+        ProductPolicy standard = product(ProductPolicy.DEFAULT_CODE, limits, 1);
+        ProductPolicy furniture = product("furniture",
+                new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(800), 6, 24), 2);
+        decisionTableCache.solve(standard, 100, BigDecimal.valueOf(500), 12);
+        decisionTableCache.solve(furniture, 100, BigDecimal.valueOf(500), 12);
+
+        assertEquals(BigDecimal.valueOf(1100),
+                decisionTableCache.solve(standard, 100, BigDecimal.valueOf(500), 12).approvedAmount());
+        assertEquals(BigDecimal.valueOf(800),
+                decisionTableCache.solve(furniture, 100, BigDecimal.valueOf(500), 12).approvedAmount());
+        assertEquals(2, decisionTableCache.tableCount());
+
+        ProductPolicy widened = product("furniture",
+                new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(2000), 6, 24), 3);
+        decisionTableCache.precompute(widened);
+
+        // A decision still holding the replaced snapshot is answered by the solver and keeps the rebuilt table
+        assertEquals(BigDecimal.valueOf(800),
+                decisionTableCache.solve(furniture, 100, BigDecimal.valueOf(500), 12).approvedAmount());
+        assertEquals(BigDecimal.valueOf(1100),
+                decisionTableCache.solve(widened, 100, BigDecimal.valueOf(500), 12).approvedAmount());
+        assertEquals(2, decisionTableCache.tableCount());
+
+        decisionTableCache.discard("furniture");
+        assertEquals(1, decisionTableCache.tableCount());
+    }
+
+    @Test
+    void shouldEvictColdTablesOverMemoryBound() {
+        decisionTableProperties.setMaxMemory(DataSize.ofKilobytes(800));
+
+        for (int factor = 1; factor <= 5; factor++) {
+            decisionTableCache.solve(limits, factor, BigDecimal.valueOf(1000), 12);
+        }
+
+        assertEquals(2, decisionTableCache.tableCount());
+        assertTrue(decisionTableCache.memoryUsage() <= DataSize.ofKilobytes(800).toBytes());
+    }
+
+    /**
+     * One table of these limits takes about 365 kB, so it would be built and evicted again on every miss.
+     */
+    @Test
+    void shouldLeaveDecisionsToSolverWhenOneTableExceedsMemoryBound() {
+        decisionTableProperties.setMaxMemory(DataSize.ofKilobytes(100));
+
+        decisionTableCache.solve(limits, 100, BigDecimal.valueOf(1000), 12);
+        assertSameOutcome(100, BigDecimal.valueOf(1000), 12);
+
+        assertEquals(0, decisionTableCache.tableCount());
+        assertEquals(0.0, decisionTableCache.hitRatio());
+    }
+
+    @Test
+    void shouldNotBuildTablesWhenDisabled() {
+        decisionTableProperties.setEnabled(false);
+
+        decisionTableCache.solve(limits, 100, BigDecimal.valueOf(1000), 12);
+
+        assertEquals(0, decisionTableCache.tableCount());
+    }
+
+    private static ProductPolicy product(String code, PurchaseLimits limits, long version) {
+        return new ProductPolicy(code, limits, version, new ProductPolicy.DecisionCounts());
+    }
+
+    private void assertSameOutcome(int factor, BigDecimal amount, int period) {
+        ApprovalOutcome expected = approvalSolver.solve(limits, factor, amount, period);
+        ApprovalOutcome actual = decisionTableCache.solve(limits, factor, amount, period);
+
+        String scenario = "factor=" + factor + ", amount=" + amount + ", period=" + period;
+        assertEquals(expected.toDecision(), actual.toDecision(), scenario);
+        assertEquals(expected.paymentPeriod(), actual.paymentPeriod(), scenario);
+    }
+}
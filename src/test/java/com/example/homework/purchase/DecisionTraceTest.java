@@ -0,0 +1,123 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DecisionTraceTest {
+
+    private static final PurchaseLimits LIMITS =
+            new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24);
+
+    private DecisionTrace trace;
+
+    @BeforeEach
+    void setUp() {
+        trace = DecisionTrace.current();
+        trace.begin(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        trace.end();
+    }
+
+    @Test
+    void shouldKeepStepsInOrder() {
+        trace.step(500, 12, 2.4);
+        trace.step(1100, 12, 1.0909090909);
+
+        StringBuilder line = new StringBuilder();
+        trace.appendSteps(line);
+
+        assertEquals(2, trace.steps());
+        assertEquals("500.00/12/2.4000 1100.00/12/1.0909", line.toString());
+    }
+
+    @Test
+    void shouldKeepOnlyTheLatestStepsWhenFull() {
+        for (int period = 1; period <= DecisionTrace.CAPACITY + 3; period++) {
+            trace.step(1000, period, 1);
+        }
+
+        StringBuilder line = new StringBuilder();
+        trace.appendSteps(line);
+        String[] steps = line.toString().split(" ");
+
+        assertEquals(DecisionTrace.CAPACITY + 3, trace.steps());
+        assertEquals(DecisionTrace.CAPACITY, steps.length);
+        assertEquals("1000.00/4/1.0000", steps[0]);
+        assertEquals("1000.00/" + (DecisionTrace.CAPACITY + 3) + "/1.0000", steps[steps.length - 1]);
+    }
+
+    @Test
+    void shouldResetWhenNextDecisionBegins() {
+        trace.step(500, 12, 2.4);
+        DecisionTrace.fromTable();
+
+        trace.begin(false);
+
+        assertEquals(0, trace.steps());
+        assertFalse(trace.isFromTable());
+    }
+
+    @Test
+    void shouldRecordStepsOfDecisionThatIsNotSampled() {
+        trace.begin(false);
+
+        new FixedPointApprovalSolver().solve(LIMITS, 100, BigDecimal.valueOf(500), 12);
+
+        StringBuilder line = new StringBuilder();
+        trace.appendSteps(line);
+        assertTrue(trace.steps() > 0);
+        assertEquals(trace.steps(), line.toString().split(" ").length);
+        assertFalse(trace.isSampled());
+    }
+
+    @Test
+    void shouldOnlyCountStepsOutsideDecision() {
+        trace.end();
+
+        new FixedPointApprovalSolver().solve(LIMITS, 100, BigDecimal.valueOf(500), 12);
+
+        StringBuilder line = new StringBuilder();
+        trace.appendSteps(line);
+        assertTrue(trace.steps() > 0);
+        assertEquals("", line.toString());
+    }
+
+    /**
+     * A ring given back by a decision on one thread is taken by the next decision on another thread, with none of the
+     * steps of the decision that used it before.
+     */
+    @Test
+    void shouldKeepStepsOfEndedDecisionOutOfNextDecision() throws Exception {
+        trace.step(500, 12, 2.4);
+        trace.end();
+
+        StringBuilder line = new StringBuilder();
+        Thread other = new Thread(() -> {
+            DecisionTrace otherTrace = DecisionTrace.current();
+            otherTrace.begin(false);
+            otherTrace.step(1100, 12, 1.0909090909);
+            otherTrace.appendSteps(line);
+            otherTrace.end();
+        });
+        other.start();
+        other.join();
+
+        assertEquals("1100.00/12/1.0909", line.toString());
+    }
+
+    @Test
+    void shouldMaskAllButLastDigitsOfPersonalId() {
+        assertEquals("*******8956", DecisionTracer.maskPersonalId("12345678956"));
+        assertEquals("123", DecisionTracer.maskPersonalId("123"));
+        assertEquals("null", DecisionTracer.maskPersonalId(null));
+    }
+}
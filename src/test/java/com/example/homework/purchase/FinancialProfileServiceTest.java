@@ -0,0 +1,200 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.ProfileCacheProperties;
+import com.example.homework.config.ProfileFilterProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FinancialProfileServiceTest {
+
+    private final Map<String, Integer> profiles = new ConcurrentHashMap<>(Map.of("12345678945", 100, "12345678901", -1));
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private FinancialProfileService financialProfileService;
+
+    @BeforeEach
+    void setUp() {
+        financialProfileService = new FinancialProfileService(personalId -> {
+            loads.incrementAndGet();
+            return profiles.get(personalId);
+        }, new ProfileCacheProperties());
+    }
+
+    @Test
+    void shouldLoadProfileOnceAndServeRepeatsFromCache() {
+        assertEquals(100, financialProfileService.findFinancialCapacityFactor("12345678945").getAsInt());
+        assertEquals(100, financialProfileService.findFinancialCapacityFactor("12345678945").getAsInt());
+        assertEquals(-1, financialProfileService.findFinancialCapacityFactor("12345678901").getAsInt());
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldReturnEmptyForUnknownPersonalId() {
+        assertTrue(financialProfileService.findFinancialCapacityFactor("00000000000").isEmpty());
+    }
+
+    @Test
+    void shouldReloadEvictedProfile() {
+        financialProfileService.findFinancialCapacityFactor("12345678945");
+        profiles.put("12345678945", -1);
+
+        financialProfileService.evict("12345678945");
+
+        assertEquals(-1, financialProfileService.findFinancialCapacityFactor("12345678945").getAsInt());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldPublishProfileChangeOnEvict() {
+        List<Object> events = new ArrayList<>();
+        financialProfileService = new FinancialProfileService(profiles::get, new ProfileCacheProperties(),
+                new ProfileFilterProperties(), Runnable::run, events::add);
+
+        financialProfileService.evict("12345678945");
+
+        assertEquals(List.of(new FinancialProfileChangedEvent("12345678945")), events);
+    }
+
+    @Test
+    void shouldQueryStoreOnceForConcurrentMisses() throws Exception {
+        CountDownLatch storeReleased = new CountDownLatch(1);
+        financialProfileService = new FinancialProfileService(personalId -> {
+            loads.incrementAndGet();
+            awaitUninterruptibly(storeReleased);
+            return profiles.get(personalId);
+        }, new ProfileCacheProperties());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<Integer>> lookups = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(CompletableFuture.supplyAsync(
+                        () -> financialProfileService.findFinancialCapacityFactor("12345678945").getAsInt(), executor));
+            }
+            Thread.sleep(100);
+            storeReleased.countDown();
+
+            for (CompletableFuture<Integer> lookup : lookups) {
+                assertEquals(100, lookup.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldAnswerUnknownPersonalIdsFromMembershipFilter() {
+        financialProfileService = new FinancialProfileService(new FilteredStore(), new ProfileCacheProperties());
+        financialProfileService.rebuildMembershipFilter();
+
+        for (int i = 0; i < 1_000; i++) {
+            financialProfileService.findFinancialCapacityFactor(String.format("%011d", i));
+        }
+
+        // Only false positives of the 1% filter reach the store
+        assertTrue(loads.get() < 50, "Store queried " + loads.get() + " times");
+        assertEquals(100, financialProfileService.findFinancialCapacityFactor("12345678945").getAsInt());
+    }
+
+    @Test
+    void shouldFindProfileSavedAfterMembershipFilterWasBuilt() {
+        financialProfileService = new FinancialProfileService(new FilteredStore(), new ProfileCacheProperties());
+        financialProfileService.rebuildMembershipFilter();
+
+        profiles.put("98765432101", 250);
+        financialProfileService.evict("98765432101");
+
+        assertEquals(250, financialProfileService.findFinancialCapacityFactor("98765432101").getAsInt());
+    }
+
+    @Test
+    void shouldFindProfileInsertedIntoStoreDirectlyOnceCountChanged() {
+        ProfileFilterProperties profileFilterProperties = new ProfileFilterProperties();
+        profileFilterProperties.setChangeCheckInterval(Duration.ZERO);
+        Queue<Runnable> backgroundTasks = new ArrayDeque<>();
+        financialProfileService = new FinancialProfileService(new FilteredStore(), new ProfileCacheProperties(),
+                profileFilterProperties, backgroundTasks::add, event -> { });
+        financialProfileService.rebuildMembershipFilter();
+
+        // Inserted without evict(): the filter still answers it as unknown until the count has been checked
+        profiles.put("98765432101", 250);
+        assertTrue(financialProfileService.findFinancialCapacityFactor("98765432101").isEmpty());
+
+        // The check sees the new count and schedules a rebuild; lookups go to the store until it has run
+        backgroundTasks.remove().run();
+        assertEquals(250, financialProfileService.findFinancialCapacityFactor("98765432101").getAsInt());
+
+        // Once rebuilt, the filter answers unknown IDs again
+        runAll(backgroundTasks);
+        int loadsAfterRebuild = loads.get();
+        assertTrue(financialProfileService.findFinancialCapacityFactor("00000000000").isEmpty());
+        assertEquals(loadsAfterRebuild, loads.get());
+    }
+
+    @Test
+    void shouldPublishCacheMetrics() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        financialProfileService.bindTo(registry);
+
+        financialProfileService.findFinancialCapacityFactor("12345678945");
+        financialProfileService.findFinancialCapacityFactor("12345678945");
+
+        assertEquals(1, registry.get("cache.gets").tag("result", "hit").functionCounter().count());
+        assertEquals(1, registry.get("cache.gets").tag("result", "miss").functionCounter().count());
+    }
+
+    private class FilteredStore implements FinancialProfileStore {
+
+        @Override
+        public Integer findCapacityFactor(String personalId) {
+            loads.incrementAndGet();
+            return profiles.get(personalId);
+        }
+
+        @Override
+        public ProfileMembershipFilter loadMembershipFilter(double falsePositiveRate) {
+            ProfileMembershipFilter filter = ProfileMembershipFilter.create(profiles.size(), falsePositiveRate);
+            profiles.keySet().forEach(filter::put);
+            return filter;
+        }
+
+        @Override
+        public long countProfiles() {
+            return profiles.size();
+        }
+    }
+
+    private static void runAll(Queue<Runnable> tasks) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
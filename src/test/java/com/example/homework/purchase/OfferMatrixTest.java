@@ -0,0 +1,89 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import com.example.homework.config.ScoringRuleProperties;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OfferMatrixTest {
+
+    private static final PurchaseLimits LIMITS = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24);
+    private static final String DEFAULT = ProductPolicy.DEFAULT_CODE;
+    private static final BigDecimal CENT = new BigDecimal("0.01");
+
+    @Test
+    void shouldListLargestApprovableAmountForEveryPeriod() {
+        for (int factor : new int[]{1, 8, 40, 99, 100, 375, 378, 500, 833, 5000}) {
+            OfferMatrix offers = OfferMatrix.of(DEFAULT, factor, LIMITS);
+
+            assertEquals(LIMITS.maxPeriod() - LIMITS.minPeriod() + 1, offers.maxApprovedAmounts().size());
+            for (int period = LIMITS.minPeriod(); period <= LIMITS.maxPeriod(); period++) {
+                BigDecimal amount = offers.maxApprovedAmounts().get(period - LIMITS.minPeriod());
+                String context = "factor " + factor + ", period " + period;
+
+                assertTrue(amount.compareTo(LIMITS.maxAmount()) <= 0, context);
+                assertTrue(isApproved(factor, amount, period), context);
+                if (amount.compareTo(LIMITS.maxAmount()) < 0) {
+                    assertFalse(isApproved(factor, amount.add(CENT), period), context);
+                }
+            }
+        }
+    }
+
+    @Test
+    void shouldOfferNothingToIneligibleCustomer() {
+        OfferMatrix offers = OfferMatrix.of(DEFAULT, -1, LIMITS);
+
+        assertTrue(offers.maxApprovedAmounts().stream().allMatch(amount -> amount.signum() == 0));
+    }
+
+    @Test
+    void shouldChangeEntityTagWithFactorAndLimits() {
+        String eTag = OfferMatrix.of(DEFAULT, 100, LIMITS).eTag();
+
+        assertEquals(eTag, OfferMatrix.of(DEFAULT, 100, LIMITS).eTag());
+        assertNotEquals(eTag, OfferMatrix.of(DEFAULT, 101, LIMITS).eTag());
+        assertNotEquals(eTag, OfferMatrix.of(DEFAULT, 100,
+                new PurchaseLimits(LIMITS.minAmount(), BigDecimal.valueOf(6000), 6, 24)).eTag());
+        assertNotEquals(eTag, OfferMatrix.of("furniture", 100, LIMITS).eTag());
+        assertTrue(eTag.matches("\"[0-9a-f]{32}\""), eTag);
+    }
+
+    @Test
+    void shouldChangeEntityTagWithApprovedAmounts() {
+        OfferMatrix offers = OfferMatrix.of(DEFAULT, 100, LIMITS);
+        List<BigDecimal> otherAmounts = new ArrayList<>(offers.maxApprovedAmounts());
+        otherAmounts.set(0, otherAmounts.get(0).subtract(CENT));
+        OfferMatrix otherEngine = new OfferMatrix(offers.minAmount(), offers.maxAmount(), offers.amountStep(),
+                offers.minPeriod(), offers.maxPeriod(), otherAmounts, DEFAULT, 100);
+
+        assertNotEquals(offers.eTag(), otherEngine.eTag());
+    }
+
+    @Test
+    void shouldRefuseOffersUnderScoringRules() {
+        FinancialProfileService financialProfileService = mock(FinancialProfileService.class);
+        when(financialProfileService.findFinancialCapacityFactor("12345678945")).thenReturn(OptionalInt.of(100));
+        PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> { });
+
+        assertTrue(new OfferService(financialProfileService, purchasePolicy, new FixedPointApprovalSolver())
+                .findOfferMatrix("12345678945").isPresent());
+        OfferService rules = new OfferService(financialProfileService, purchasePolicy,
+                new RuleBasedApprovalSolver(new ScoringRuleProperties()));
+        assertThrows(OffersUnavailableException.class, () -> rules.findOfferMatrix("12345678945"));
+    }
+
+    private static boolean isApproved(int factor, BigDecimal amount, int period) {
+        return amount.signum() > 0 && BigDecimalApprovalSolver.calculateApprovalScore(factor, amount, period)
+                .compareTo(BigDecimalApprovalSolver.APPROVAL_THRESHOLD) >= 0;
+    }
+}
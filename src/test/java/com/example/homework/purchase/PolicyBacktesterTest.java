@@ -0,0 +1,204 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.BacktestProperties;
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.purchase.PolicyBacktester.BacktestReport;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolicyBacktesterTest {
+
+    private static final PurchaseLimits CANDIDATE =
+            new PurchaseLimits(BigDecimal.valueOf(100), BigDecimal.valueOf(1000), 6, 24);
+    private static final Instant DECIDED_AT = Instant.parse("2026-01-01T10:00:00Z");
+
+    private JdbcTemplate jdbcTemplate;
+    private BacktestProperties backtestProperties;
+    private PolicyBacktester backtester;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL", "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE approval_audit (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "personal_id VARCHAR(255) NOT NULL, requested_amount NUMERIC(19, 2) NOT NULL, "
+                + "payment_period INT NOT NULL, capacity_factor INT, approved BOOLEAN NOT NULL, "
+                + "approved_amount NUMERIC(19, 2) NOT NULL, decided_at TIMESTAMP WITH TIME ZONE NOT NULL, "
+                + "product_code VARCHAR(255))");
+
+        backtestProperties = new BacktestProperties();
+        backtestProperties.setParallelism(2);
+        backtestProperties.setLeafSize(1);
+        backtester = new PolicyBacktester(new BigDecimalApprovalSolver(), jdbcTemplate, backtestProperties,
+                new ObjectMapper());
+    }
+
+    /**
+     * Approved under the candidate: both eligible customers, capped at its maximum amount. Rejected: the ineligible
+     * customer and the application below even the candidate minimum. Unscored: the application rejected below the
+     * configured minimum without a factor, which the candidate minimum no longer rejects.
+     */
+    @Test
+    void shouldScoreStoredApplicationsAgainstCandidateLimits() {
+        store(500, 12, 100, 1100, DECIDED_AT);
+        store(2000, 12, -1, 0, DECIDED_AT);
+        store(150, 12, null, 0, DECIDED_AT);
+        store(50, 12, null, 0, DECIDED_AT);
+        store(4000, 12, 1000, 4000, DECIDED_AT);
+
+        BacktestReport report = backtester.run(null, CANDIDATE, null, null, ignored -> {
+        });
+
+        assertTrue(report.complete());
+        assertEquals(CANDIDATE, report.candidate());
+        assertEquals(5, report.applications());
+        assertEquals(4, report.scored());
+        assertEquals(1, report.unscored());
+        assertEquals(2, report.approved());
+        assertEquals(0.5, report.approvalRate());
+        assertEquals(0, BigDecimal.valueOf(2000).compareTo(report.approvedAmount()));
+        assertEquals(0, BigDecimal.valueOf(1000).compareTo(report.averageApprovedAmount()));
+        assertEquals(2, report.historicallyApproved());
+        assertEquals(0.5, report.historicalApprovalRate());
+        assertEquals(0, BigDecimal.valueOf(5100).compareTo(report.historicalApprovedAmount()));
+        assertEquals(3, report.approvedAmounts().size());
+        assertEquals(2, report.approvedAmounts().get(BigDecimal.valueOf(1000)));
+        assertEquals(Map.of(12, 2L), report.approvedPeriods());
+    }
+
+    @Test
+    void shouldReportTotalsAfterEveryPage() {
+        backtestProperties.setPageSize(2);
+        for (int i = 0; i < 5; i++) {
+            store(500, 12, 100, 1100, DECIDED_AT);
+        }
+
+        List<BacktestReport> reports = new ArrayList<>();
+        BacktestReport last = backtester.run(null, CANDIDATE, null, null, reports::add);
+
+        assertEquals(List.of(2L, 4L, 5L, 5L), reports.stream().map(BacktestReport::applications).toList());
+        assertEquals(List.of(false, false, false, true), reports.stream().map(BacktestReport::complete).toList());
+        assertSame(last, reports.get(reports.size() - 1));
+        assertEquals(5, last.approved());
+    }
+
+    @Test
+    void shouldReplayOnlyApplicationsDecidedInRange() {
+        store(500, 12, 100, 1100, DECIDED_AT.minusSeconds(1));
+        store(500, 12, 100, 1100, DECIDED_AT);
+        store(500, 12, 100, 1100, DECIDED_AT.plusSeconds(60));
+
+        BacktestReport report = backtester.run(null, CANDIDATE, DECIDED_AT, DECIDED_AT.plusSeconds(60), ignored -> {
+        });
+
+        assertEquals(1, report.applications());
+    }
+
+    /**
+     * Rows stored before the product was recorded were decided for the default product.
+     */
+    @Test
+    void shouldReplayOnlyApplicationsOfBacktestedProduct() {
+        store(null, 500, 12, 100, 1100, DECIDED_AT);
+        store(ProductPolicy.DEFAULT_CODE, 500, 12, 100, 1100, DECIDED_AT);
+        store("mortgage", 500, 12, 100, 1100, DECIDED_AT);
+
+        BacktestReport defaults = backtester.run(null, CANDIDATE, null, null, ignored -> {
+        });
+        BacktestReport mortgage = backtester.run("mortgage", CANDIDATE, null, null, ignored -> {
+        });
+
+        assertEquals(ProductPolicy.DEFAULT_CODE, defaults.product());
+        assertEquals(2, defaults.applications());
+        assertEquals("mortgage", mortgage.product());
+        assertEquals(1, mortgage.applications());
+    }
+
+    @Test
+    void shouldRejectInconsistentCandidate() {
+        PurchaseLimits inconsistent = new PurchaseLimits(BigDecimal.valueOf(2000), BigDecimal.valueOf(1000), 6, 24);
+
+        assertThrows(IllegalArgumentException.class, () -> backtester.run(null, inconsistent, null, null, ignored -> {
+        }));
+        assertFalse(backtester.isRunning());
+    }
+
+    @Test
+    void shouldRejectCandidateNeedingTooManyBuckets() {
+        PurchaseLimits amounts = new PurchaseLimits(BigDecimal.valueOf(100), new BigDecimal("1E+12"), 6, 24);
+        PurchaseLimits periods = new PurchaseLimits(BigDecimal.valueOf(100), BigDecimal.valueOf(1000), 6, 100_000);
+
+        assertThrows(IllegalArgumentException.class, () -> backtester.run(null, amounts, null, null, ignored -> {
+        }));
+        assertThrows(IllegalArgumentException.class, () -> backtester.run(null, periods, null, null, ignored -> {
+        }));
+        assertFalse(backtester.isRunning());
+    }
+
+    @Test
+    void shouldRequirePositiveAmountBucket() {
+        backtestProperties.setAmountBucket(BigDecimal.ZERO);
+
+        assertThrows(IllegalArgumentException.class, () -> new PolicyBacktester(new BigDecimalApprovalSolver(),
+                jdbcTemplate, backtestProperties, new ObjectMapper()));
+    }
+
+    @Test
+    void shouldRunOneBacktestAtATime() {
+        store(500, 12, 100, 1100, DECIDED_AT);
+
+        backtester.run(null, CANDIDATE, null, null, report -> {
+            assertTrue(backtester.isRunning());
+            assertThrows(IllegalStateException.class, () -> backtester.run(null, CANDIDATE, null, null, ignored -> {
+            }));
+        });
+
+        assertFalse(backtester.isRunning());
+    }
+
+    @Test
+    void shouldStreamReportsAsJsonLines() throws IOException {
+        backtestProperties.setPageSize(1);
+        store(500, 12, 100, 1100, DECIDED_AT);
+        store(4000, 12, 1000, 4000, DECIDED_AT);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        backtester.stream(null, CANDIDATE, null, null, output);
+
+        String[] lines = output.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertTrue(lines[0].contains("\"applications\":1"));
+        assertTrue(lines[0].contains("\"complete\":false"));
+        assertTrue(lines[2].contains("\"applications\":2"));
+        assertTrue(lines[2].contains("\"complete\":true"));
+    }
+
+    private void store(int requestedAmount, int paymentPeriod, Integer capacityFactor, int approvedAmount,
+                       Instant decidedAt) {
+        store(ProductPolicy.DEFAULT_CODE, requestedAmount, paymentPeriod, capacityFactor, approvedAmount, decidedAt);
+    }
+
+    private void store(String productCode, int requestedAmount, int paymentPeriod, Integer capacityFactor,
+                       int approvedAmount, Instant decidedAt) {
+        jdbcTemplate.update("INSERT INTO approval_audit (personal_id, product_code, requested_amount, payment_period, "
+                        + "capacity_factor, approved, approved_amount, decided_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                "12345678945", productCode, BigDecimal.valueOf(requestedAmount), paymentPeriod, capacityFactor,
+                approvedAmount > 0, BigDecimal.valueOf(approvedAmount), Timestamp.from(decidedAt));
+    }
+}
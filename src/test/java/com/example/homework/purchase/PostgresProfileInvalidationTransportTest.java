@@ -0,0 +1,53 @@
+package com.example.homework.purchase;
+
+import com.example.homework.purchase.ProfileInvalidationTransport.Batch;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PostgresProfileInvalidationTransportTest {
+
+    private static final String ORIGIN = "4f3c2a1e-9d8b-4c7a-8e6f-5b4a3c2d1e0f";
+
+    @Test
+    void shouldDecodeEncodedChanges() {
+        Batch batch = new Batch(ORIGIN, List.of(ProfileInvalidation.changed("12345678945", -1, 7),
+                ProfileInvalidation.evicted("12345678901")));
+
+        List<String> payloads = PostgresProfileInvalidationTransport.encode(batch);
+
+        assertEquals(1, payloads.size());
+        assertEquals(batch, PostgresProfileInvalidationTransport.decode(payloads.get(0)));
+    }
+
+    @Test
+    void shouldSplitLargeBatchesIntoNotificationsPostgresAccepts() {
+        List<ProfileInvalidation> invalidations = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            invalidations.add(ProfileInvalidation.changed(String.format("%011d", i), 1000, Long.MAX_VALUE));
+        }
+
+        List<String> payloads = PostgresProfileInvalidationTransport.encode(new Batch(ORIGIN, invalidations));
+
+        assertTrue(payloads.size() > 1);
+        List<ProfileInvalidation> decoded = new ArrayList<>();
+        for (String payload : payloads) {
+            int bytes = payload.getBytes(StandardCharsets.UTF_8).length;
+            assertTrue(bytes <= PostgresProfileInvalidationTransport.MAX_PAYLOAD_BYTES, bytes + " bytes");
+            Batch batch = PostgresProfileInvalidationTransport.decode(payload);
+            assertEquals(ORIGIN, batch.origin());
+            decoded.addAll(batch.invalidations());
+        }
+        assertEquals(invalidations, decoded);
+    }
+
+    @Test
+    void shouldRejectMalformedChange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> PostgresProfileInvalidationTransport.decode(ORIGIN + "\n12345678945,100"));
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.homework.purchase;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.ref.Reference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the heap kept by the same profiles held in a {@code HashMap<String, Integer>} and in a {@link ProfileIndex}.
+ * <p>
+ * Each representation is built for {@link #PROFILES} profiles, and the heap used after a full collection is compared
+ * with the heap used before it was built. Tagged {@code allocation}, so it runs in a JVM of its own where no other test
+ * allocates while the heap is measured.
+ */
+@Tag("allocation")
+class ProfileIndexFootprintTest {
+
+    private static final int PROFILES = 1_000_000;
+
+    // Measured: about 116 bytes per profile in a HashMap and 10.3 in a ProfileIndex on JDK 17 and 21
+    private static final double HASH_MAP_MIN_BYTES_PER_PROFILE = 80;
+    private static final double PROFILE_INDEX_MAX_BYTES_PER_PROFILE = 12;
+
+    @Test
+    void profileIndexShouldKeepAnEighthOfTheHeapOfAHashMap() {
+        long[] personalIds = new long[PROFILES];
+        int[] factors = new int[PROFILES];
+        Random random = new Random(42);
+        for (int i = 0; i < PROFILES; i++) {
+            personalIds[i] = 10_000_000_000L + i * 7L;
+            factors[i] = random.nextInt(1000) - 1;
+        }
+
+        double hashMapBytes = retainedBytes(() -> {
+            Map<String, Integer> profiles = new HashMap<>();
+            for (int i = 0; i < PROFILES; i++) {
+                profiles.put(Long.toString(personalIds[i]), factors[i]);
+            }
+            return profiles;
+        }) / (double) PROFILES;
+        double profileIndexBytes = retainedBytes(() -> {
+            ProfileIndex.Builder builder = ProfileIndex.builder();
+            for (int i = 0; i < PROFILES; i++) {
+                builder.put(personalIds[i], factors[i]);
+            }
+            return builder.build(ProfileIndex.Storage.HEAP);
+        }) / (double) PROFILES;
+
+        assertTrue(hashMapBytes > HASH_MAP_MIN_BYTES_PER_PROFILE, "HashMap bytes per profile: " + hashMapBytes);
+        assertTrue(profileIndexBytes < PROFILE_INDEX_MAX_BYTES_PER_PROFILE,
+                "ProfileIndex bytes per profile: " + profileIndexBytes);
+        assertTrue(profileIndexBytes * 8 < hashMapBytes, hashMapBytes + " against " + profileIndexBytes);
+    }
+
+    private static long retainedBytes(Supplier<Object> build) {
+        long before = usedHeap();
+        Object built = build.get();
+        long after = usedHeap();
+        Reference.reachabilityFence(built);
+        return after - before;
+    }
+
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.ProfileIndexProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileIndexTest {
+
+    private static final int MISSING = Integer.MIN_VALUE;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReturnFactorsForKnownPersonalIds() {
+        ProfileIndex profileIndex = ProfileIndex.builder()
+                .put(12345678901L, -1)
+                .put(12345678956L, 378)
+                .put(99999999999L, 8)
+                .put(1L, ProfileIndex.MAX_FACTOR)
+                .put(0L, ProfileIndex.MIN_FACTOR)
+                .build(ProfileIndex.Storage.HEAP);
+
+        assertEquals(-1, profileIndex.capacityFactor("12345678901", MISSING));
+        assertEquals(378, profileIndex.capacityFactor("12345678956", MISSING));
+        assertEquals(8, profileIndex.capacityFactor("99999999999", MISSING));
+        assertEquals(ProfileIndex.MAX_FACTOR, profileIndex.capacityFactor("00000000001", MISSING));
+        assertEquals(ProfileIndex.MIN_FACTOR, profileIndex.capacityFactor("00000000000", MISSING));
+        assertEquals(5, profileIndex.size());
+    }
+
+    @Test
+    void shouldReturnMissingForUnknownOrMalformedPersonalIds() {
+        ProfileIndex profileIndex = ProfileIndex.builder().put(12345678901L, 50).build(ProfileIndex.Storage.HEAP);
+
+        assertEquals(MISSING, profileIndex.capacityFactor("12345678902", MISSING));
+        assertEquals(MISSING, profileIndex.capacityFactor("1234567890", MISSING));
+        assertEquals(MISSING, profileIndex.capacityFactor("123456789012", MISSING));
+        assertEquals(MISSING, profileIndex.capacityFactor("1234567890a", MISSING));
+        assertEquals(MISSING, profileIndex.capacityFactor(null, MISSING));
+    }
+
+    @Test
+    void shouldMatchHashMapForRandomProfiles() {
+        Random random = new Random(42);
+        Map<Long, Integer> expected = new HashMap<>();
+        ProfileIndex.Builder builder = ProfileIndex.builder();
+        for (int i = 0; i < 200_000; i++) {
+            long personalId = Math.floorMod(random.nextLong(), 100_000_000_000L);
+            int factor = random.nextInt(1000) - 1;
+            expected.put(personalId, factor);
+            builder.put(personalId, factor);
+        }
+
+        for (ProfileIndex.Storage storage : List.of(ProfileIndex.Storage.HEAP, ProfileIndex.Storage.DIRECT)) {
+            ProfileIndex profileIndex = builder.build(storage);
+
+            assertEquals(expected.size(), profileIndex.size());
+            expected.forEach((personalId, factor) -> assertEquals(factor, profileIndex.capacityFactor(personalId, MISSING)));
+            for (int i = 0; i < 10_000; i++) {
+                long personalId = Math.floorMod(random.nextLong(), 100_000_000_000L);
+                assertEquals(expected.getOrDefault(personalId, MISSING), profileIndex.capacityFactor(personalId, MISSING));
+            }
+        }
+    }
+
+    @Test
+    void shouldBuildFromBulkExportAndMapWrittenSnapshot() throws IOException {
+        Path export = tempDir.resolve("profiles.csv");
+        Files.write(export, List.of("personal_id,capacity_factor", "12345678901,-1", "12345678945,100", "", "01234567890,40"));
+
+        ProfileIndex fromExport = ProfileIndex.load(export, ProfileIndex.Storage.HEAP);
+        Path snapshot = tempDir.resolve("profiles.pidx");
+        fromExport.writeSnapshot(snapshot);
+
+        for (ProfileIndex.Storage storage : ProfileIndex.Storage.values()) {
+            ProfileIndex fromSnapshot = ProfileIndex.load(snapshot, storage);
+
+            assertEquals(storage, fromSnapshot.storage());
+            assertEquals(3, fromSnapshot.size());
+            assertEquals(-1, fromSnapshot.capacityFactor("12345678901", MISSING));
+            assertEquals(100, fromSnapshot.capacityFactor("12345678945", MISSING));
+            assertEquals(40, fromSnapshot.capacityFactor("01234567890", MISSING));
+            assertEquals(MISSING, fromSnapshot.capacityFactor("12345678999", MISSING));
+        }
+    }
+
+    @Test
+    void shouldSwapReloadedIndexWhileMappedSnapshotStaysReadable() throws IOException {
+        Path export = tempDir.resolve("profiles.csv");
+        Path snapshot = tempDir.resolve("profiles.pidx");
+        Files.write(export, List.of("12345678901,50"));
+        ProfileIndexProperties properties = new ProfileIndexProperties();
+        properties.setSource(export);
+        properties.setSnapshot(snapshot);
+        IndexedFinancialProfileStore store = new IndexedFinancialProfileStore(properties);
+        ProfileIndex mapped = ProfileIndex.load(snapshot, ProfileIndex.Storage.MAPPED);
+
+        Files.write(export, List.of("12345678901,60", "12345678945,100"));
+
+        assertEquals(2, store.reload());
+        assertEquals(60, store.capacityFactor("12345678901"));
+        assertEquals(100, store.capacityFactor("12345678945"));
+        // The new snapshot was moved over the old file, so an index still mapping it reads the previous profiles
+        assertEquals(50, mapped.capacityFactor("12345678901", MISSING));
+        assertEquals(2, ProfileIndex.load(snapshot, ProfileIndex.Storage.HEAP).size());
+    }
+
+    @Test
+    void shouldUseAboutElevenBytesPerProfile() {
+        ProfileIndex.Builder builder = ProfileIndex.builder();
+        for (long personalId = 0; personalId < 1_000_000; personalId++) {
+            builder.put(10_000_000_000L + personalId * 7, 100);
+        }
+
+        ProfileIndex profileIndex = builder.build(ProfileIndex.Storage.HEAP);
+
+        assertTrue(profileIndex.sizeInBytes() / (double) profileIndex.size() < 11, "bytes per profile");
+    }
+
+    @Test
+    void shouldRejectFactorsThatDoNotFitInASlot() {
+        ProfileIndex.Builder builder = ProfileIndex.builder();
+
+        assertThrows(IllegalArgumentException.class, () -> builder.put(12345678901L, ProfileIndex.MAX_FACTOR + 1));
+        assertThrows(IllegalArgumentException.class, () -> builder.put(100_000_000_000L, 1));
+    }
+
+    @Test
+    void shouldRejectSnapshotsLargerThanOneBufferOrShorterThanTheirSlots() throws IOException {
+        Path oversized = tempDir.resolve("oversized.idx");
+        Files.write(oversized, snapshotHeader(1, Integer.MAX_VALUE));
+        Path truncated = tempDir.resolve("truncated.idx");
+        Files.write(truncated, snapshotHeader(1, 16));
+
+        IllegalArgumentException tooLarge = assertThrows(IllegalArgumentException.class,
+                () -> ProfileIndex.load(oversized, ProfileIndex.Storage.MAPPED));
+        assertTrue(tooLarge.getMessage().contains("larger than the 268435455 slots of one buffer"),
+                tooLarge.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> ProfileIndex.load(truncated, ProfileIndex.Storage.HEAP));
+    }
+
+    private static byte[] snapshotHeader(int size, int capacity) {
+        return ByteBuffer.allocate(2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putLong(0x5044_4958_0000_0001L)
+                .putLong((long) size << 32 | capacity)
+                .array();
+    }
+}
@@ -0,0 +1,255 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.ProfileCacheProperties;
+import com.example.homework.config.ProfileFilterProperties;
+import com.example.homework.config.ProfileInvalidationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes with a profile cache each, connected by an in-JVM transport and reading one shared store.
+ */
+class ProfileInvalidationBroadcasterTest {
+
+    private static final String PERSONAL_ID = "12345678945";
+
+    private final Map<String, VersionedCapacityFactor> profiles =
+            new ConcurrentHashMap<>(Map.of(PERSONAL_ID, new VersionedCapacityFactor(100, 3)));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final RecordingTransport transport = new RecordingTransport();
+    private final ProfileInvalidationProperties properties = new ProfileInvalidationProperties();
+    private final List<ProfileInvalidationBroadcaster> broadcasters = new ArrayList<>();
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+
+    private ProfileInvalidationBroadcaster broadcasterA;
+    private ProfileInvalidationBroadcaster broadcasterB;
+    private FinancialProfileService nodeA;
+    private FinancialProfileService nodeB;
+
+    @BeforeEach
+    void setUp() {
+        // Sent by flush() unless a test waits for the flusher
+        properties.setFlushInterval(Duration.ofHours(1));
+        broadcasterA = broadcaster(properties);
+        broadcasterB = broadcaster(properties);
+        nodeA = node(broadcasterA, event -> { });
+        nodeB = node(broadcasterB, events::add);
+        broadcasters.forEach(ProfileInvalidationBroadcaster::start);
+    }
+
+    @AfterEach
+    void tearDown() {
+        broadcasters.forEach(ProfileInvalidationBroadcaster::stop);
+    }
+
+    @Test
+    void shouldReplaceCachedFactorOnOtherNodesWithoutQueryingStore() {
+        assertEquals(100, nodeA.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        assertEquals(100, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+
+        profiles.put(PERSONAL_ID, new VersionedCapacityFactor(-1, 4));
+        nodeA.update(new FinancialProfile(PERSONAL_ID, -1, 4));
+        broadcasterA.flush();
+
+        assertEquals(-1, nodeA.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        assertEquals(-1, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        assertEquals(2, loads.get());
+        assertEquals(List.of(new FinancialProfileChangedEvent(PERSONAL_ID)), events);
+    }
+
+    @Test
+    void shouldSkipOwnChanges() {
+        SimpleMeterRegistry registryA = new SimpleMeterRegistry();
+        SimpleMeterRegistry registryB = new SimpleMeterRegistry();
+        broadcasterA.bindTo(registryA);
+        broadcasterB.bindTo(registryB);
+
+        nodeA.update(new FinancialProfile(PERSONAL_ID, -1, 4));
+        broadcasterA.flush();
+
+        assertEquals(1, registryA.get("purchase.profile.invalidation.sent").functionCounter().count());
+        assertEquals(0, registryA.get("purchase.profile.invalidation.received").functionCounter().count());
+        assertEquals(1, registryB.get("purchase.profile.invalidation.received").functionCounter().count());
+    }
+
+    @Test
+    void shouldKeepCachedFactorWhenOlderChangeArrivesLate() {
+        profiles.put(PERSONAL_ID, new VersionedCapacityFactor(-1, 5));
+        assertEquals(-1, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+
+        nodeA.update(new FinancialProfile(PERSONAL_ID, 100, 4));
+        broadcasterA.flush();
+
+        assertEquals(-1, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldNotCacheChangedFactorOfUncachedProfile() {
+        nodeA.update(new FinancialProfile(PERSONAL_ID, -1, 2));
+        broadcasterA.flush();
+
+        // Read from the store, which already holds a later version
+        assertEquals(100, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    void shouldSendNewestChangeOfProfileOnce() {
+        nodeA.update(new FinancialProfile(PERSONAL_ID, 50, 4));
+        nodeA.update(new FinancialProfile(PERSONAL_ID, -1, 6));
+        nodeA.update(new FinancialProfile(PERSONAL_ID, 10, 5));
+        nodeA.update(new FinancialProfile("12345678901", 300, 1));
+        broadcasterA.flush();
+        broadcasterA.flush();
+
+        assertEquals(1, transport.batches.size());
+        assertEquals(Set.of(ProfileInvalidation.changed(PERSONAL_ID, -1, 6),
+                        ProfileInvalidation.changed("12345678901", 300, 1)),
+                Set.copyOf(transport.batches.get(0).invalidations()));
+    }
+
+    @Test
+    void shouldPreferEvictionToChangesOfSameProfile() {
+        nodeA.update(new FinancialProfile(PERSONAL_ID, 50, 4));
+        nodeA.evict(PERSONAL_ID);
+        nodeA.update(new FinancialProfile(PERSONAL_ID, -1, 5));
+        broadcasterA.flush();
+
+        assertEquals(List.of(ProfileInvalidation.evicted(PERSONAL_ID)), transport.batches.get(0).invalidations());
+    }
+
+    @Test
+    void shouldSplitChangesIntoBatchesOfMaximumSize() {
+        ProfileInvalidationProperties small = new ProfileInvalidationProperties();
+        small.setMaxBatchSize(2);
+        // Not started, so no flusher sends a full batch in between
+        ProfileInvalidationBroadcaster broadcasterC = broadcaster(small);
+        FinancialProfileService nodeC = node(broadcasterC, event -> { });
+        for (int i = 0; i < 5; i++) {
+            nodeC.evict(String.format("%011d", i));
+        }
+        broadcasterC.flush();
+
+        assertEquals(List.of(2, 2, 1), transport.batches.stream().map(batch -> batch.invalidations().size()).toList());
+    }
+
+    @Test
+    void shouldReloadProfileEvictedOnOtherNode() {
+        assertEquals(100, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        profiles.put(PERSONAL_ID, new VersionedCapacityFactor(-1, 3));
+
+        nodeA.evict(PERSONAL_ID);
+        broadcasterA.flush();
+
+        assertEquals(-1, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void shouldRefreshCachedProfilesAfterGap() {
+        assertEquals(100, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        profiles.put(PERSONAL_ID, new VersionedCapacityFactor(-1, 4));
+
+        transport.signalGap();
+
+        assertEquals(-1, nodeB.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+    }
+
+    @Test
+    void shouldSendChangesEveryFlushInterval() throws InterruptedException {
+        ProfileInvalidationProperties frequent = new ProfileInvalidationProperties();
+        frequent.setFlushInterval(Duration.ofMillis(10));
+        ProfileInvalidationBroadcaster broadcasterC = broadcaster(frequent);
+        FinancialProfileService nodeC = node(broadcasterC, event -> { });
+        broadcasterC.start();
+
+        nodeC.evict(PERSONAL_ID);
+
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (events.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(List.of(new FinancialProfileChangedEvent(PERSONAL_ID)), events);
+        assertEquals(0, broadcasterC.pending());
+    }
+
+    @Test
+    void shouldKeepChangesLocalWithoutTransport() {
+        FinancialProfileService local = new FinancialProfileService(new VersionedStore(), new ProfileCacheProperties());
+        local.findFinancialCapacityFactor(PERSONAL_ID);
+
+        local.update(new FinancialProfile(PERSONAL_ID, -1, 4));
+
+        assertEquals(-1, local.findFinancialCapacityFactor(PERSONAL_ID).getAsInt());
+        assertTrue(transport.batches.isEmpty());
+    }
+
+    private ProfileInvalidationBroadcaster broadcaster(ProfileInvalidationProperties properties) {
+        ProfileInvalidationBroadcaster broadcaster =
+                new ProfileInvalidationBroadcaster(Optional.of(transport), properties);
+        broadcasters.add(broadcaster);
+        return broadcaster;
+    }
+
+    private FinancialProfileService node(ProfileInvalidationBroadcaster broadcaster,
+                                         ApplicationEventPublisher eventPublisher) {
+        return new FinancialProfileService(new VersionedStore(), new ProfileCacheProperties(),
+                new ProfileFilterProperties(), Runnable::run, eventPublisher, broadcaster);
+    }
+
+    private class VersionedStore implements FinancialProfileStore {
+
+        @Override
+        public Integer findCapacityFactor(String personalId) {
+            VersionedCapacityFactor capacityFactor = findVersionedCapacityFactor(personalId);
+            return capacityFactor == null ? null : capacityFactor.capacityFactor();
+        }
+
+        @Override
+        public VersionedCapacityFactor findVersionedCapacityFactor(String personalId) {
+            loads.incrementAndGet();
+            return profiles.get(personalId);
+        }
+    }
+
+    /**
+     * In-JVM transport that keeps the batches sent over it and can report a gap to its subscribers.
+     */
+    private static class RecordingTransport implements ProfileInvalidationTransport {
+
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+        private final InJvmProfileInvalidationTransport delegate = new InJvmProfileInvalidationTransport(listeners);
+        private final List<Batch> batches = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void publish(Batch batch) {
+            batches.add(batch);
+            delegate.publish(batch);
+        }
+
+        @Override
+        public Subscription subscribe(Listener listener) {
+            return delegate.subscribe(listener);
+        }
+
+        void signalGap() {
+            listeners.forEach(Listener::onGap);
+        }
+    }
+}
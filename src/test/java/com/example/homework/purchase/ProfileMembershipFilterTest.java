@@ -0,0 +1,56 @@
+package com.example.homework.purchase;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ProfileMembershipFilterTest {
+
+    private static final int PROFILES = 100_000;
+
+    @Test
+    void shouldContainEveryPutPersonalId() {
+        ProfileMembershipFilter filter = ProfileMembershipFilter.create(PROFILES, 0.01);
+        for (long i = 0; i < PROFILES; i++) {
+            filter.put(personalId(i));
+        }
+
+        for (long i = 0; i < PROFILES; i++) {
+            assertTrue(filter.mightContain(personalId(i)), personalId(i));
+        }
+    }
+
+    @Test
+    void shouldKeepFalsePositivesNearConfiguredRate() {
+        ProfileMembershipFilter filter = ProfileMembershipFilter.create(PROFILES, 0.01);
+        for (long i = 0; i < PROFILES; i++) {
+            filter.put(personalId(i));
+        }
+
+        int falsePositives = 0;
+        for (long i = PROFILES; i < 2 * PROFILES; i++) {
+            if (filter.mightContain(personalId(i))) {
+                falsePositives++;
+            }
+        }
+
+        assertTrue(falsePositives < PROFILES * 0.015, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void shouldUseAboutTenBitsPerProfileForOnePercent() {
+        ProfileMembershipFilter filter = ProfileMembershipFilter.create(PROFILES, 0.01);
+
+        assertTrue(filter.sizeInBytes() < PROFILES * 10 / 8 + Long.BYTES, "Size: " + filter.sizeInBytes());
+    }
+
+    @Test
+    void shouldRejectInvalidFalsePositiveRate() {
+        assertThrows(IllegalArgumentException.class, () -> ProfileMembershipFilter.create(PROFILES, 0));
+        assertThrows(IllegalArgumentException.class, () -> ProfileMembershipFilter.create(PROFILES, 1));
+    }
+
+    private static String personalId(long i) {
+        return String.format("%011d", 30_000_000_000L + i * 7919);
+    }
+}
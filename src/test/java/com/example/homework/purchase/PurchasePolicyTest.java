@@ -0,0 +1,124 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PurchasePolicyTest {
+
+    private static final PurchaseLimits FURNITURE =
+            new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(800), 6, 12);
+    private static final PurchaseLimits WIDER_FURNITURE =
+            new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(2000), 6, 18);
+
+    private final List<Object> events = new ArrayList<>();
+    private PurchasePolicy purchasePolicy;
+
+    @Test
+    void shouldResolveConfiguredProductsWithDefaultsForOmittedLimits() {
+        PurchaseProperties purchaseProperties = new PurchaseProperties();
+        PurchaseProperties.Product furniture = new PurchaseProperties.Product();
+        furniture.setMaxAmount(BigDecimal.valueOf(2000));
+        furniture.setMaxPeriod(12);
+        purchaseProperties.getProducts().put("furniture", furniture);
+
+        purchasePolicy = new PurchasePolicy(purchaseProperties, events::add);
+
+        assertEquals(new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(2000), 6, 12),
+                purchasePolicy.product("furniture").limits());
+        assertSame(purchasePolicy.product(ProductPolicy.DEFAULT_CODE), purchasePolicy.product(null));
+        assertEquals(PurchaseLimits.of(purchaseProperties), purchasePolicy.current());
+        assertThrows(UnknownProductException.class, () -> purchasePolicy.product("garden"));
+        assertEquals(List.of("default", "furniture"), List.copyOf(purchasePolicy.products().keySet()));
+    }
+
+    @Test
+    void shouldPrecomputeChangedProductsBeforePublishingThem() {
+        List<ProductPolicy> precomputed = new ArrayList<>();
+        List<PurchaseLimits> inForceMeanwhile = new ArrayList<>();
+        purchasePolicy = new PurchasePolicy(new PurchaseProperties(), events::add, List.of(product -> {
+            precomputed.add(product);
+            inForceMeanwhile.add(purchasePolicy == null ? null : purchasePolicy.products().get(product.code()));
+        }));
+
+        purchasePolicy.update("furniture", FURNITURE);
+        // Unchanged limits are neither precomputed nor published again
+        purchasePolicy.update("furniture", FURNITURE);
+        purchasePolicy.update("furniture", WIDER_FURNITURE);
+
+        assertEquals(List.of("default", "furniture", "furniture"),
+                precomputed.stream().map(ProductPolicy::code).toList());
+        assertEquals(Arrays.asList(null, null, FURNITURE), inForceMeanwhile);
+        assertTrue(precomputed.get(1).version() < precomputed.get(2).version());
+        assertSame(precomputed.get(2), purchasePolicy.product("furniture"));
+        assertEquals(List.of(new PurchasePolicyChangedEvent("furniture", null, FURNITURE),
+                new PurchasePolicyChangedEvent("furniture", FURNITURE, WIDER_FURNITURE)), events);
+    }
+
+    @Test
+    void shouldKeepProductsWhenAnyChangeIsInvalid() {
+        purchasePolicy = new PurchasePolicy(new PurchaseProperties(), events::add);
+        Map<String, PurchaseLimits> changes = new LinkedHashMap<>();
+        changes.put("furniture", FURNITURE);
+        changes.put("garden", new PurchaseLimits(BigDecimal.valueOf(2000), BigDecimal.valueOf(1000), 6, 24));
+
+        assertThrows(IllegalArgumentException.class, () -> purchasePolicy.update(changes));
+        assertThrows(IllegalArgumentException.class, () -> purchasePolicy.update("Garden Tools", FURNITURE));
+
+        assertEquals(Set.of("default"), purchasePolicy.products().keySet());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void shouldRemoveProductsButNotTheDefault() {
+        List<String> discarded = new ArrayList<>();
+        purchasePolicy = new PurchasePolicy(new PurchaseProperties(), events::add, List.of(new ProductPrecomputation() {
+            @Override
+            public void precompute(ProductPolicy product) {
+            }
+
+            @Override
+            public void discard(String productCode) {
+                discarded.add(productCode);
+            }
+        }));
+        purchasePolicy.update("furniture", FURNITURE);
+
+        assertTrue(purchasePolicy.remove("furniture"));
+        assertFalse(purchasePolicy.remove("furniture"));
+        assertThrows(IllegalArgumentException.class, () -> purchasePolicy.remove(ProductPolicy.DEFAULT_CODE));
+
+        assertThrows(UnknownProductException.class, () -> purchasePolicy.product("furniture"));
+        assertEquals(List.of("furniture"), discarded);
+        assertEquals(new PurchasePolicyChangedEvent("furniture", FURNITURE, null), events.get(events.size() - 1));
+    }
+
+    @Test
+    void shouldCountDecisionsPerProductAcrossLimitChanges() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        purchasePolicy = new PurchasePolicy(new PurchaseProperties(), events::add);
+        purchasePolicy.bindTo(meterRegistry);
+        purchasePolicy.update("furniture", FURNITURE);
+
+        purchasePolicy.product("furniture").recordDecision(true);
+        purchasePolicy.update("furniture", WIDER_FURNITURE);
+        purchasePolicy.product("furniture").recordDecision(true);
+        purchasePolicy.product(null).recordDecision(false);
+
+        assertEquals(2, meterRegistry.get("purchase.product.decisions")
+                .tags("product", "furniture", "outcome", "approved").functionCounter().count());
+        assertEquals(1, meterRegistry.get("purchase.product.decisions")
+                .tags("product", "default", "outcome", "rejected").functionCounter().count());
+    }
+}
@@ -1,15 +1,23 @@
 package com.example.homework.purchase;
 
+import com.example.homework.config.DecisionTableProperties;
+import com.example.homework.config.DecisionTraceProperties;
+import com.example.homework.config.PurchaseLimits;
 import com.example.homework.config.PurchaseProperties;
+import com.example.homework.config.StatisticsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.math.BigDecimal;
+import java.util.OptionalInt;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 class PurchaseServiceTest {
@@ -20,7 +28,11 @@ class PurchaseServiceTest {
     @Mock
     private PurchaseProperties purchaseProperties;
 
-    @InjectMocks
+    @Mock
+    private ApprovalAuditLog approvalAuditLog;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PurchasePolicy purchasePolicy;
     private PurchaseService purchaseService;
 
     @BeforeEach
@@ -31,15 +43,27 @@ class PurchaseServiceTest {
         when(purchaseProperties.getMaxAmount()).thenReturn(BigDecimal.valueOf(5000));
         when(purchaseProperties.getMinPeriod()).thenReturn(6);
         when(purchaseProperties.getMaxPeriod()).thenReturn(24);
+
+        DecisionTableProperties decisionTableProperties = new DecisionTableProperties();
+        decisionTableProperties.setEnabled(false);
+        DecisionTableCache decisionTableCache =
+                new DecisionTableCache(new BigDecimalApprovalSolver(), decisionTableProperties);
+
+        meterRegistry = new SimpleMeterRegistry();
+        purchasePolicy = new PurchasePolicy(purchaseProperties, event -> { });
+        purchaseService = new PurchaseService(financialProfileService, purchasePolicy, decisionTableCache,
+                approvalAuditLog, new ApprovalMetrics(meterRegistry), new DecisionTracer(new DecisionTraceProperties()),
+                new ApprovalStatistics(purchasePolicy, new StatisticsProperties()));
     }
 
     @Test
     void shouldApproveHigherThanRequestedAmount() {
         // Given: Profile 1, financial factor = 100
-        when(financialProfileService.getFinancialCapacityFactor("12345678912")).thenReturn(100);
+        when(financialProfileService.findFinancialCapacityFactor("12345678912")).thenReturn(OptionalInt.of(100));
 
         // When: Finding the max approval
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678912", BigDecimal.valueOf(500), 12);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678912", BigDecimal.valueOf(500), 12)
+                .orElseThrow();
 
         assertTrue(decision.isApproved());
 
@@ -50,10 +74,11 @@ class PurchaseServiceTest {
     @Test
     void shouldIncreaseApprovedAmountBeyondRequested() {
         // Given: Profile with a higher financial factor (100)
-        when(financialProfileService.getFinancialCapacityFactor("12345678945")).thenReturn(100);
+        when(financialProfileService.findFinancialCapacityFactor("12345678945")).thenReturn(OptionalInt.of(100));
 
         // When: Finding the max approval
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678945", BigDecimal.valueOf(500), 12);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678945", BigDecimal.valueOf(500), 12)
+                .orElseThrow();
 
         assertTrue(decision.isApproved());
 
@@ -64,10 +89,11 @@ class PurchaseServiceTest {
     @Test
     void shouldApproveLowerAmountIfRequestedIsTooHigh() {
         // Given: Even lower financial factor (40) to ensure reduction is necessary
-        when(financialProfileService.getFinancialCapacityFactor("12345678999")).thenReturn(40);
+        when(financialProfileService.findFinancialCapacityFactor("12345678999")).thenReturn(OptionalInt.of(40));
 
         // When: Finding the maximum approval
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678999", BigDecimal.valueOf(1000), 12);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678999", BigDecimal.valueOf(1000), 12)
+                .orElseThrow();
 
         // Then: The system **should approve a lower amount**, since the requested is too high.
         assertTrue(decision.isApproved());
@@ -78,9 +104,10 @@ class PurchaseServiceTest {
 
     @Test
     void shouldRejectIfCustomerIsIneligible() {
-        when(financialProfileService.getFinancialCapacityFactor("12345678901")).thenReturn(-1);
+        when(financialProfileService.findFinancialCapacityFactor("12345678901")).thenReturn(OptionalInt.of(-1));
 
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678901", BigDecimal.valueOf(3000), 12);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678901", BigDecimal.valueOf(3000), 12)
+                .orElseThrow();
 
         assertFalse(decision.isApproved());
         assertEquals(BigDecimal.ZERO, decision.getApprovedAmount());
@@ -89,10 +116,11 @@ class PurchaseServiceTest {
     @Test
     void shouldRejectIfRequestedAmountIsTooHigh() {
         // Given: Very low financial factor (8)
-        when(financialProfileService.getFinancialCapacityFactor("12345678923")).thenReturn(8);
+        when(financialProfileService.findFinancialCapacityFactor("12345678923")).thenReturn(OptionalInt.of(8));
 
         //  When: Finding approval for **€5000**, which is too high
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678923", BigDecimal.valueOf(5000), 24);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678923", BigDecimal.valueOf(5000), 24)
+                .orElseThrow();
 
         //  Expect system rejected **too high an amount**, which cannot be approved.
         assertEquals(BigDecimal.ZERO, decision.getApprovedAmount());
@@ -100,10 +128,11 @@ class PurchaseServiceTest {
 
     @Test
     void shouldApproveExactlyRequestedAmountIfValid() {
-        when(financialProfileService.getFinancialCapacityFactor("12345678934")).thenReturn(378);
+        when(financialProfileService.findFinancialCapacityFactor("12345678934")).thenReturn(OptionalInt.of(378));
 
         // When: Finding approval for **exactly** requested amount
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678934", BigDecimal.valueOf(4500), 12);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678934", BigDecimal.valueOf(4500), 12)
+                .orElseThrow();
 
         // Then: Approval should be exactly as requested (no increase)
         assertTrue(decision.isApproved());
@@ -113,10 +142,11 @@ class PurchaseServiceTest {
     @Test
     void shouldCapApprovedAmountAtMaxLimit() {
 
-        when(financialProfileService.getFinancialCapacityFactor("12345678934")).thenReturn(5000);
+        when(financialProfileService.findFinancialCapacityFactor("12345678934")).thenReturn(OptionalInt.of(5000));
 
         // When: The customer requests an amount exceeding the system's max limit
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678934", BigDecimal.valueOf(6000), 12);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678934", BigDecimal.valueOf(6000), 12)
+                .orElseThrow();
 
         // Then: The system should cap the approved amount at the max allowed limit (5000)
         assertTrue(decision.isApproved(), "Approval should be granted within the max limit.");
@@ -126,13 +156,103 @@ class PurchaseServiceTest {
     @Test
     void shouldRejectIfRequestedAmountIsBelowMinimum() {
         // Given: A customer with a financial capacity factor of 500
-        when(financialProfileService.getFinancialCapacityFactor("12345678934")).thenReturn(500);
+        when(financialProfileService.findFinancialCapacityFactor("12345678934")).thenReturn(OptionalInt.of(500));
 
         // When: The customer requests an amount below the system's minimum threshold (€100 < €200)
-        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678934", BigDecimal.valueOf(100), 12);
+        ApprovalDecision decision = purchaseService.findMaxApprovedAmount("12345678934", BigDecimal.valueOf(100), 12)
+                .orElseThrow();
 
         // Then: The system should reject the request
         assertFalse(decision.isApproved(), "Approval should be denied for requests below the minimum threshold.");
         assertEquals(BigDecimal.ZERO, decision.getApprovedAmount(), "Approved amount should be €0 since the request is below the minimum.");
     }
+
+    @Test
+    void shouldDecideWithUpdatedPolicy() {
+        when(financialProfileService.findFinancialCapacityFactor("12345678945")).thenReturn(OptionalInt.of(100));
+
+        purchasePolicy.update(new PurchaseLimits(BigDecimal.valueOf(600), BigDecimal.valueOf(1000), 6, 24));
+
+        // 1100 would be approvable for 12 months, but the new maximum is 1000
+        assertEquals(BigDecimal.valueOf(1000), purchaseService.findMaxApprovedAmount("12345678945",
+                BigDecimal.valueOf(700), 12).orElseThrow().getApprovedAmount());
+        // 500 is now below the minimum
+        assertFalse(purchaseService.findMaxApprovedAmount("12345678945", BigDecimal.valueOf(500), 12)
+                .orElseThrow().isApproved());
+    }
+
+    @Test
+    void shouldDecideWithLimitsOfRequestedProduct() {
+        when(financialProfileService.findFinancialCapacityFactor("12345678945")).thenReturn(OptionalInt.of(100));
+
+        purchasePolicy.update("furniture", new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(800), 6, 12));
+
+        // 1100 would be approvable for 12 months, but furniture is capped at 800
+        assertEquals(BigDecimal.valueOf(800), purchaseService.findMaxApprovedAmount("12345678945",
+                BigDecimal.valueOf(500), 12, "furniture").orElseThrow().getApprovedAmount());
+        assertEquals(BigDecimal.valueOf(1100), purchaseService.findMaxApprovedAmount("12345678945",
+                BigDecimal.valueOf(500), 12).orElseThrow().getApprovedAmount());
+        assertThrows(UnknownProductException.class, () -> purchaseService.findMaxApprovedAmount("12345678945",
+                BigDecimal.valueOf(500), 12, "garden"));
+    }
+
+    @Test
+    void shouldKeepPolicyWhenUpdateIsInconsistent() {
+        PurchaseLimits current = purchasePolicy.current();
+
+        assertThrows(IllegalArgumentException.class, () -> purchasePolicy.update(
+                new PurchaseLimits(BigDecimal.valueOf(1000), BigDecimal.valueOf(500), 6, 24)));
+        assertThrows(IllegalArgumentException.class, () -> purchasePolicy.update(
+                new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 0, 24)));
+
+        assertSame(current, purchasePolicy.current());
+    }
+
+    @Test
+    void shouldAuditEveryDecision() {
+        when(financialProfileService.findFinancialCapacityFactor("12345678945")).thenReturn(OptionalInt.of(100));
+
+        purchaseService.findMaxApprovedAmount("12345678945", BigDecimal.valueOf(500), 12);
+        purchaseService.findMaxApprovedAmount("12345678945", BigDecimal.valueOf(100), 12);
+
+        verify(approvalAuditLog).record(argThat(entry -> entry.isApproved()
+                && entry.getApprovedAmount().equals(BigDecimal.valueOf(1100))
+                && Integer.valueOf(100).equals(entry.getCapacityFactor())));
+        verify(approvalAuditLog).record(argThat(entry -> !entry.isApproved()
+                && entry.getRequestedAmount().equals(BigDecimal.valueOf(100))
+                && entry.getCapacityFactor() == null));
+    }
+
+    @Test
+    void shouldNotDecideOrAuditApplicationWithoutPersonalId() {
+        // Below the minimum, so it would be rejected without looking up the profile
+        assertThrows(InvalidApplicationException.class,
+                () -> purchaseService.findMaxApprovedAmount(null, BigDecimal.valueOf(100), 12));
+        assertThrows(InvalidApplicationException.class,
+                () -> purchaseService.findMaxApprovedAmount(" ", BigDecimal.valueOf(500), 12));
+
+        verifyNoInteractions(approvalAuditLog, financialProfileService);
+    }
+
+    @Test
+    void shouldRecordDecisionMetrics() {
+        when(financialProfileService.findFinancialCapacityFactor("12345678945")).thenReturn(OptionalInt.of(100));
+        when(financialProfileService.findFinancialCapacityFactor("12345678901")).thenReturn(OptionalInt.of(-1));
+
+        purchaseService.findMaxApprovedAmount("12345678945", BigDecimal.valueOf(500), 12);
+        purchaseService.findMaxApprovedAmount("12345678945", BigDecimal.valueOf(100), 12);
+        purchaseService.findMaxApprovedAmount("12345678901", BigDecimal.valueOf(3000), 12);
+        assertTrue(purchaseService.findMaxApprovedAmount("00000000000", BigDecimal.valueOf(1000), 12).isEmpty());
+
+        assertEquals(1, meterRegistry.get(ApprovalMetrics.DECISION_TIMER).tag("outcome", "approved").timer().count());
+        assertEquals(2, meterRegistry.get(ApprovalMetrics.DECISION_TIMER).tag("outcome", "rejected").timer().count());
+        assertEquals(1, meterRegistry.get(ApprovalMetrics.REJECTIONS).tag("reason", "below_minimum").counter().count());
+        assertEquals(1, meterRegistry.get(ApprovalMetrics.REJECTIONS).tag("reason", "ineligible").counter().count());
+        assertEquals(1, meterRegistry.get(ApprovalMetrics.REJECTIONS).tag("reason", "unknown_profile").counter().count());
+        // 500 raised to 1100 for the requested 12 months, the only decision that reached the engine
+        assertEquals(1, meterRegistry.get(ApprovalMetrics.SCORE_EVALUATIONS).summary().count());
+        assertEquals(5, meterRegistry.get(ApprovalMetrics.SCORE_EVALUATIONS).summary().totalAmount());
+        assertEquals(1, meterRegistry.get(ApprovalMetrics.AMOUNT_RAISES).counter().count());
+        assertEquals(1, meterRegistry.get(ApprovalMetrics.AMOUNT_ADJUSTMENTS).tag("direction", "increased").counter().count());
+    }
 }
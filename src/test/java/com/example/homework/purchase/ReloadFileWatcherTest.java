@@ -0,0 +1,108 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PolicyProperties;
+import com.example.homework.config.ProfileCacheProperties;
+import com.example.homework.config.ProfileIndexProperties;
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.config.PurchaseProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReloadFileWatcherTest {
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void shouldApplyPolicyKeepingOmittedLimits() throws IOException {
+        Path file = Files.writeString(directory.resolve("policy.properties"), "min-amount=300.50\nmax-period = 36\n");
+        PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> { });
+        PurchaseLimits current = purchasePolicy.current();
+        ReloadFileWatcher watcher = watcher(purchasePolicy, file);
+
+        watcher.start();
+        try {
+            assertEquals(new PurchaseLimits(new BigDecimal("300.50"), current.maxAmount(), current.minPeriod(), 36),
+                    purchasePolicy.current());
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    @Test
+    void shouldKeepPolicyWhenFileHasInvalidNumber() throws IOException {
+        Path file = Files.writeString(directory.resolve("policy.properties"), "max-period=two years\n");
+        PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> { });
+        PurchaseLimits current = purchasePolicy.current();
+        ReloadFileWatcher watcher = watcher(purchasePolicy, file);
+
+        watcher.start();
+        try {
+            assertEquals(current, purchasePolicy.current());
+        } finally {
+            watcher.stop();
+        }
+    }
+
+    @Test
+    void shouldReadProductsKeepingOmittedLimits() throws IOException {
+        Path file = Files.writeString(directory.resolve("policy.properties"),
+                "max-amount=4000\nproducts.furniture.max-period=12\nproducts.garden.min-amount=500\n");
+        PurchaseLimits current = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24);
+        PurchaseLimits garden = new PurchaseLimits(BigDecimal.valueOf(300), BigDecimal.valueOf(3000), 6, 18);
+
+        // A product not in force yet starts from the default product as read from the same file
+        assertEquals(Map.of(
+                        "default", new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(4000), 6, 24),
+                        "furniture", new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(4000), 6, 12),
+                        "garden", new PurchaseLimits(BigDecimal.valueOf(500), BigDecimal.valueOf(3000), 6, 18)),
+                ReloadFileWatcher.readProducts(file, Map.of("default", current, "garden", garden)));
+    }
+
+    @Test
+    void shouldApplyPolicyFileAtStartAndWhenReplaced() throws IOException {
+        Path file = Files.writeString(directory.resolve("policy.properties"), "max-amount=4000\n");
+        PurchasePolicy purchasePolicy = new PurchasePolicy(new PurchaseProperties(), event -> { });
+        ReloadFileWatcher watcher = watcher(purchasePolicy, file);
+
+        watcher.start();
+        try {
+            assertEquals(BigDecimal.valueOf(4000), purchasePolicy.current().maxAmount());
+
+            Path next = Files.writeString(directory.resolve("policy.next"), "max-amount=3000\nmin-period=3\n");
+            Files.move(next, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            awaitMaxAmount(purchasePolicy, BigDecimal.valueOf(3000));
+            assertEquals(3, purchasePolicy.current().minPeriod());
+        } finally {
+            watcher.stop();
+        }
+        assertFalse(watcher.isRunning());
+    }
+
+    private static ReloadFileWatcher watcher(PurchasePolicy purchasePolicy, Path policyFile) {
+        PolicyProperties policyProperties = new PolicyProperties();
+        policyProperties.setFile(policyFile);
+        return new ReloadFileWatcher(purchasePolicy, policyProperties,
+                new FinancialProfileService(personalId -> null, new ProfileCacheProperties()), personalId -> null,
+                new ProfileIndexProperties());
+    }
+
+    private static void awaitMaxAmount(PurchasePolicy purchasePolicy, BigDecimal expected) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!expected.equals(purchasePolicy.current().maxAmount()) && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(expected, purchasePolicy.current().maxAmount());
+    }
+}
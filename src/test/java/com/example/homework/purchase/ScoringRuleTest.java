@@ -0,0 +1,80 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.PurchaseLimits;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScoringRuleTest {
+
+    private static final PurchaseLimits LIMITS = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24);
+
+    @Test
+    void shouldScoreLikeBuiltInFormulaWithDefaultRule() {
+        ScoringRule rule = ScoringRule.compile("round(factor / amount, 10) * period", "1");
+
+        for (int factor : new int[]{1, 40, 100, 378}) {
+            for (int amount = 200; amount <= 5000; amount += 300) {
+                for (int period = 6; period <= 24; period++) {
+                    double expected = BigDecimalApprovalSolver
+                            .calculateApprovalScore(factor, BigDecimal.valueOf(amount), period).doubleValue();
+                    assertEquals(expected, rule.score(factor, amount, period), 1e-12,
+                            "factor " + factor + ", amount " + amount + ", period " + period);
+                }
+            }
+        }
+        // 100 / 1200 rounds down to 0.0833333333 and falls just short of the threshold
+        assertTrue(rule.score(100, 1200, 12) < rule.threshold(100, 1200, 12));
+    }
+
+    @Test
+    void shouldApplyOperatorPrecedenceAndFunctions() {
+        assertEquals(9, score("1 + 2 * 3 - -4 / 2"));
+        assertEquals(-3, score("(1 + 2) * (3 - 4)"));
+        assertEquals(2, score("min(2, max(1, 3))"));
+        assertEquals(3, score("round(2.5, 0)"));
+        assertEquals(-3, score("round(-2.5, 0)"));
+        assertEquals(0.13, score("round(0.125, 2)"));
+        assertEquals(1, score("if(1 < 2, 1, 0)"));
+        assertEquals(0, score("if(2 <= 1, 1, 0)"));
+    }
+
+    @Test
+    void shouldReadFactorAmountAndPeriod() {
+        ScoringRule rule = ScoringRule.compile("factor * 100000 + amount * 10 + period", "if(amount >= 100, period, -period)");
+
+        assertEquals(4_012_345.5 + 12, rule.score(40, 1234.55, 12), 1e-6);
+        assertEquals(12, rule.threshold(40, 100, 12));
+        assertEquals(-12, rule.threshold(40, 99.99, 12));
+    }
+
+    @Test
+    void shouldRejectInvalidExpressions() {
+        for (String expression : new String[]{"", "factor +", "income / amount", "round(amount, 2.5)",
+                "round(amount, 16)", "if(amount, 1, 2)", "min(1)", "(factor", "factor period", "1.2.3"}) {
+            assertThrows(IllegalArgumentException.class, () -> ScoringRule.compile(expression, "1"), expression);
+        }
+    }
+
+    @Test
+    void shouldSearchWithTieredThreshold() {
+        ApprovalSolver builtIn = new BigDecimalApprovalSolver();
+        ApprovalSolver tiered = new RuleBasedApprovalSolver(
+                ScoringRule.compile("factor / amount * period", "if(amount > 3000, 2, 1)"));
+
+        assertEquals(ApprovalOutcome.approved(BigDecimal.valueOf(5000), 12),
+                builtIn.solve(LIMITS, 500, BigDecimal.valueOf(4000), 12));
+        // 4000 needs twice the score, reached after 16 months, and 4100 is no longer approved for 16 months
+        assertEquals(ApprovalOutcome.approved(BigDecimal.valueOf(4000), 16),
+                tiered.solve(LIMITS, 500, BigDecimal.valueOf(4000), 12));
+        // Nothing above 3000 is approved within 24 months, so the amount drops below the higher tier
+        assertEquals(ApprovalOutcome.approved(BigDecimal.valueOf(3000), 24),
+                tiered.solve(LIMITS, 200, BigDecimal.valueOf(4500), 24));
+    }
+
+    private static double score(String expression) {
+        return ScoringRule.compile(expression, "1").score(0, 1, 0);
+    }
+}
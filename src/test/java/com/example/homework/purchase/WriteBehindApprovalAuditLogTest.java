@@ -0,0 +1,165 @@
+package com.example.homework.purchase;
+
+import com.example.homework.config.AuditProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WriteBehindApprovalAuditLogTest {
+
+    private JdbcTemplate jdbcTemplate;
+    private AuditProperties auditProperties;
+    private WriteBehindApprovalAuditLog auditLog;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=PostgreSQL", "sa", "");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE approval_audit (id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "personal_id VARCHAR(255) NOT NULL, requested_amount NUMERIC(19, 2) NOT NULL, "
+                + "payment_period INT NOT NULL, capacity_factor INT, approved BOOLEAN NOT NULL, "
+                + "approved_amount NUMERIC(19, 2) NOT NULL, decided_at TIMESTAMP WITH TIME ZONE NOT NULL, "
+                + "product_code VARCHAR(255))");
+
+        auditProperties = new AuditProperties();
+        auditProperties.setFlushInterval(Duration.ofHours(1));
+        auditLog = new WriteBehindApprovalAuditLog(jdbcTemplate, new DataSourceTransactionManager(dataSource),
+                auditProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        auditLog.stop();
+    }
+
+    @Test
+    void shouldFlushAsSoonAsABatchIsFull() {
+        auditProperties.setBatchSize(3);
+        auditLog.start();
+
+        for (int i = 0; i < 3; i++) {
+            auditLog.record(entry(100));
+        }
+
+        awaitStored(3);
+    }
+
+    @Test
+    void shouldFlushPartialBatchAfterInterval() {
+        auditProperties.setFlushInterval(Duration.ofMillis(20));
+        auditLog.start();
+
+        auditLog.record(entry(null));
+
+        awaitStored(1);
+        assertNull(jdbcTemplate.queryForObject("SELECT capacity_factor FROM approval_audit", Integer.class));
+        assertEquals(ProductPolicy.DEFAULT_CODE,
+                jdbcTemplate.queryForObject("SELECT product_code FROM approval_audit", String.class));
+    }
+
+    @Test
+    void shouldDrainQueueOnStop() {
+        auditLog.start();
+        for (int i = 0; i < 5; i++) {
+            auditLog.record(entry(100));
+        }
+
+        auditLog.stop();
+
+        assertEquals(5, storedRows());
+        assertEquals(0, auditLog.queued());
+    }
+
+    @Test
+    void shouldStoreDecisionsRecordedAfterStop() {
+        auditLog.start();
+        auditLog.stop();
+
+        auditLog.record(entry(100));
+
+        assertEquals(1, storedRows());
+        assertEquals(0, auditLog.queued());
+    }
+
+    @Test
+    void shouldStoreRestOfBatchWhenOneDecisionIsRejected() {
+        auditLog.record(entry(100));
+        auditLog.record(new ApprovalAuditEntry(null, ProductPolicy.DEFAULT_CODE, BigDecimal.valueOf(100), 12, null,
+                ApprovalDecision.reject(), Instant.now()));
+        auditLog.record(entry(100));
+
+        auditLog.flush();
+
+        assertEquals(2, storedRows());
+        assertEquals(1, auditLog.failed());
+    }
+
+    @Test
+    void shouldDropDecisionsWhenQueueIsFull() {
+        auditProperties.setQueueCapacity(2);
+        auditProperties.setOverflowPolicy(AuditProperties.OverflowPolicy.DROP);
+
+        for (int i = 0; i < 3; i++) {
+            auditLog.record(entry(100));
+        }
+
+        assertEquals(2, auditLog.queued());
+        assertEquals(1, auditLog.dropped());
+        assertEquals(0, storedRows());
+    }
+
+    @Test
+    void shouldInsertOnCallerThreadWhenQueueIsFull() {
+        auditProperties.setQueueCapacity(1);
+        auditProperties.setOverflowPolicy(AuditProperties.OverflowPolicy.CALLER_RUNS);
+
+        auditLog.record(entry(100));
+        auditLog.record(entry(100));
+
+        assertEquals(1, auditLog.queued());
+        assertEquals(1, storedRows());
+
+        auditLog.flush();
+
+        assertEquals(2, storedRows());
+    }
+
+    @Test
+    void shouldIgnoreDecisionsWhenDisabled() {
+        auditProperties.setEnabled(false);
+        auditLog.start();
+
+        auditLog.record(entry(100));
+
+        assertFalse(auditLog.isRunning());
+        assertEquals(0, auditLog.queued());
+    }
+
+    private static ApprovalAuditEntry entry(Integer capacityFactor) {
+        return new ApprovalAuditEntry("12345678945", ProductPolicy.DEFAULT_CODE, BigDecimal.valueOf(500), 12,
+                capacityFactor, ApprovalDecision.approve(BigDecimal.valueOf(1100)), Instant.now());
+    }
+
+    private int storedRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM approval_audit", Integer.class);
+    }
+
+    private void awaitStored(int expected) {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (storedRows() < expected && System.nanoTime() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertEquals(expected, storedRows());
+    }
+}
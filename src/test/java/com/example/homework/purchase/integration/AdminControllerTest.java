@@ -0,0 +1,226 @@
+package com.example.homework.purchase.integration;
+
+import com.example.homework.PurchaseApprovalApplication;
+import com.example.homework.config.PurchaseLimits;
+import com.example.homework.purchase.ApprovalDecision;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.NO_CONTENT;
+import static org.springframework.http.HttpStatus.OK;
+
+@SpringBootTest(classes = PurchaseApprovalApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = "purchase.admin.enabled=true")
+class AdminControllerTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    private PurchaseLimits configured;
+
+    private String getBaseUrl() {
+        return "http://localhost:" + port + "/api/admin";
+    }
+
+    @BeforeEach
+    void rememberPolicy() {
+        configured = restTemplate.getForObject(getBaseUrl() + "/policy", PurchaseLimits.class);
+    }
+
+    @AfterEach
+    void restorePolicy() {
+        putPolicy(configured, PurchaseLimits.class);
+    }
+
+    /**
+     * The limits come from the configuration until replaced, and applications decided afterwards use the new ones,
+     * including one answered from the decision cache before the change.
+     */
+    @Test
+    void shouldDecideWithReplacedPolicy() {
+        assertEquals(new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(5000), 6, 24), configured);
+        assertEquals(BigDecimal.valueOf(1100), apply().getApprovedAmount());
+
+        PurchaseLimits replaced = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(1000), 6, 24);
+        ResponseEntity<PurchaseLimits> response = putPolicy(replaced, PurchaseLimits.class);
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(replaced, restTemplate.getForObject(getBaseUrl() + "/policy", PurchaseLimits.class));
+        assertEquals(BigDecimal.valueOf(1000), apply().getApprovedAmount());
+    }
+
+    @Test
+    void shouldRejectInconsistentPolicy() {
+        ResponseEntity<String> response = putPolicy(
+                new PurchaseLimits(BigDecimal.valueOf(2000), BigDecimal.valueOf(1000), 6, 24), String.class);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+        assertNotNull(response.getBody());
+        assertTrue(response.getBody().contains("Invalid purchase policy"));
+        assertEquals(configured, restTemplate.getForObject(getBaseUrl() + "/policy", PurchaseLimits.class));
+    }
+
+    /**
+     * A product added at runtime is decided with its own limits until it is removed; the default product is kept.
+     */
+    @Test
+    void shouldDecideWithLimitsOfAddedProduct() {
+        PurchaseLimits furniture = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(800), 6, 12);
+        ResponseEntity<PurchaseLimits> response = restTemplate.exchange(getBaseUrl() + "/products/furniture",
+                HttpMethod.PUT, new HttpEntity<>(furniture), PurchaseLimits.class);
+
+        assertEquals(OK, response.getStatusCode());
+        JsonNode products = restTemplate.getForObject(getBaseUrl() + "/products", JsonNode.class);
+        assertEquals(800, products.get("furniture").get("maxAmount").asInt());
+        assertEquals(5000, products.get("default").get("maxAmount").asInt());
+        assertEquals(BigDecimal.valueOf(800), apply(BigDecimal.valueOf(500), "furniture").getApprovedAmount());
+        assertEquals(BigDecimal.valueOf(1100), apply().getApprovedAmount());
+
+        assertEquals(NO_CONTENT, deleteProduct("furniture").getStatusCode());
+        assertEquals(NOT_FOUND, deleteProduct("furniture").getStatusCode());
+        assertEquals(BAD_REQUEST, deleteProduct("default").getStatusCode());
+        assertFalse(restTemplate.getForObject(getBaseUrl() + "/products", JsonNode.class).has("furniture"));
+    }
+
+    @Test
+    void shouldRejectProductWithInvalidCode() {
+        ResponseEntity<String> response = restTemplate.exchange(getBaseUrl() + "/products/Garden Tools",
+                HttpMethod.PUT, new HttpEntity<>(configured), String.class);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+    }
+
+    @Test
+    void shouldKeepDecidingAcrossProfileReload() {
+        ResponseEntity<Void> response = restTemplate.postForEntity(getBaseUrl() + "/profiles/reload", null, Void.class);
+
+        assertEquals(NO_CONTENT, response.getStatusCode());
+        assertEquals(BigDecimal.valueOf(1100), apply().getApprovedAmount());
+    }
+
+    /**
+     * Decisions reach the audit table write-behind, so the backtest is repeated until the application is stored.
+     */
+    @Test
+    void shouldBacktestStoredApplicationsWithoutChangingPolicy() throws Exception {
+        apply();
+        PurchaseLimits candidate = new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(1000), 6, 24);
+
+        JsonNode report = backtest(candidate);
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (report.get("applications").asLong() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(100);
+            report = backtest(candidate);
+        }
+
+        assertTrue(report.get("complete").asBoolean());
+        assertEquals(1000, report.get("candidate").get("maxAmount").asInt());
+        assertTrue(report.get("approved").asLong() > 0);
+        long histogram = 0;
+        for (JsonNode count : report.get("approvedAmounts")) {
+            histogram += count.asLong();
+        }
+        assertEquals(report.get("approved").asLong(), histogram);
+        assertFalse(report.get("approvedAmounts").has("1500"));
+        assertEquals(configured, restTemplate.getForObject(getBaseUrl() + "/policy", PurchaseLimits.class));
+    }
+
+    @Test
+    void shouldRejectInconsistentBacktestCandidate() {
+        ResponseEntity<String> response = restTemplate.postForEntity(getBaseUrl() + "/policy/backtest",
+                new PurchaseLimits(BigDecimal.valueOf(200), BigDecimal.valueOf(1000), 24, 6), String.class);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+    }
+
+    @Test
+    void shouldReportApprovalStatisticsByMinute() {
+        // An amount no other test applies for, so the decision is not answered from the decision cache
+        apply(BigDecimal.valueOf(650));
+
+        JsonNode statistics = restTemplate.getForObject(getBaseUrl() + "/statistics", JsonNode.class);
+
+        JsonNode total = statistics.get("total");
+        assertTrue(total.get("decisions").asLong() > 0);
+        assertTrue(total.get("approved").asLong() > 0);
+        long histogram = 0;
+        for (JsonNode count : total.get("approvedAmounts")) {
+            histogram += count.asLong();
+        }
+        assertEquals(total.get("approved").asLong(), histogram);
+        assertEquals(19, total.get("paymentPeriods").size());
+        assertEquals(60, statistics.get("minutes").size());
+        assertEquals(2, restTemplate.getForObject(getBaseUrl() + "/statistics?minutes=2", JsonNode.class)
+                .get("minutes").size());
+    }
+
+    /**
+     * @return the last, complete report of the streamed backtest
+     */
+    private JsonNode backtest(PurchaseLimits candidate) throws Exception {
+        ResponseEntity<String> response = restTemplate.postForEntity(getBaseUrl() + "/policy/backtest", candidate,
+                String.class);
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        assertNotNull(response.getBody());
+        String[] lines = response.getBody().split("\n");
+        return new ObjectMapper().readTree(lines[lines.length - 1]);
+    }
+
+    private ApprovalDecision apply() {
+        return apply(BigDecimal.valueOf(500));
+    }
+
+    private ApprovalDecision apply(BigDecimal requestedAmount) {
+        return apply(requestedAmount, null);
+    }
+
+    private ApprovalDecision apply(BigDecimal requestedAmount, String productCode) {
+        Map<String, Object> request = new HashMap<>();
+        request.put("personalId", "12345678945");
+        request.put("requestedAmount", requestedAmount);
+        request.put("paymentPeriodMonths", 12);
+        request.put("productCode", productCode);
+        ResponseEntity<ApprovalDecision> response = restTemplate.postForEntity(
+                "http://localhost:" + port + "/api/purchase/apply", request, ApprovalDecision.class);
+        assertEquals(OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        return response.getBody();
+    }
+
+    private ResponseEntity<Void> deleteProduct(String code) {
+        return restTemplate.exchange(getBaseUrl() + "/products/" + code, HttpMethod.DELETE, null, Void.class);
+    }
+
+    private <T> ResponseEntity<T> putPolicy(PurchaseLimits limits, Class<T> responseType) {
+        return restTemplate.exchange(getBaseUrl() + "/policy", HttpMethod.PUT, new HttpEntity<>(limits), responseType);
+    }
+}
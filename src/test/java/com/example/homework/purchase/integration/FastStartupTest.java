@@ -0,0 +1,53 @@
+package com.example.homework.purchase.integration;
+
+import com.example.homework.PurchaseApprovalApplication;
+import com.example.homework.purchase.ApprovalDecision;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * The {@code fast-startup} profile defers beans to first use but still starts the database the approval path reads
+ * profiles from, with its sample data.
+ */
+@SpringBootTest(classes = PurchaseApprovalApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"test", "fast-startup"})
+class FastStartupTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void shouldDecideFirstApplicationFromDatabase() {
+        assertTrue(applicationContext.getBeanFactory().containsSingleton("entityManagerFactory"));
+
+        Map<String, Object> request = Map.of(
+                "personalId", "12345678945",
+                "requestedAmount", BigDecimal.valueOf(500),
+                "paymentPeriodMonths", 12
+        );
+        ResponseEntity<ApprovalDecision> response = restTemplate.postForEntity(
+                "http://localhost:" + port + "/api/purchase/apply", request, ApprovalDecision.class);
+
+        assertEquals(OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(BigDecimal.valueOf(1100), response.getBody().getApprovedAmount());
+    }
+}
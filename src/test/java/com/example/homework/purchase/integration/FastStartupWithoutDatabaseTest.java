@@ -0,0 +1,67 @@
+package com.example.homework.purchase.integration;
+
+import com.example.homework.PurchaseApprovalApplication;
+import com.example.homework.purchase.ApprovalDecision;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.OK;
+
+/**
+ * With profiles from the index and the audit off, the {@code fast-startup} profile answers applications without ever
+ * starting Hibernate.
+ */
+@SpringBootTest(classes = PurchaseApprovalApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"test", "fast-startup"})
+@TestPropertySource(properties = {"purchase.profile-store=index", "purchase.audit.enabled=false"})
+class FastStartupWithoutDatabaseTest {
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ConfigurableApplicationContext applicationContext;
+
+    @LocalServerPort
+    private int port;
+
+    @DynamicPropertySource
+    static void profileIndex(DynamicPropertyRegistry registry) throws IOException {
+        Path source = Files.createTempFile("profiles", ".csv");
+        source.toFile().deleteOnExit();
+        Files.writeString(source, "personalId,capacityFactor\n12345678945,100\n");
+        registry.add("purchase.profile-index.source", source::toString);
+    }
+
+    @Test
+    void shouldDecideWithoutStartingPersistence() {
+        Map<String, Object> request = Map.of(
+                "personalId", "12345678945",
+                "requestedAmount", BigDecimal.valueOf(500),
+                "paymentPeriodMonths", 12
+        );
+        ResponseEntity<ApprovalDecision> response = restTemplate.postForEntity(
+                "http://localhost:" + port + "/api/purchase/apply", request, ApprovalDecision.class);
+
+        assertEquals(OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        assertEquals(BigDecimal.valueOf(1100), response.getBody().getApprovedAmount());
+        assertFalse(applicationContext.getBeanFactory().containsSingleton("entityManagerFactory"));
+    }
+}
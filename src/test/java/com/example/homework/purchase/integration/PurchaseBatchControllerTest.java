@@ -0,0 +1,177 @@
+package com.example.homework.purchase.integration;
+
+import com.example.homework.PurchaseApprovalApplication;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.OK;
+
+@SpringBootTest(classes = PurchaseApprovalApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@TestPropertySource(properties = {
+        "purchase.batch.chunk-size=4",
+        "spring.task.execution.pool.core-size=" + PurchaseBatchControllerTest.TASK_THREADS,
+        "purchase.admission.batch.initial-limit=" + PurchaseBatchControllerTest.CONCURRENT_BATCHES,
+        "purchase.admission.batch.max-limit=" + PurchaseBatchControllerTest.CONCURRENT_BATCHES
+})
+class PurchaseBatchControllerTest {
+
+    static final int TASK_THREADS = 2;
+    static final int CONCURRENT_BATCHES = 6;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @LocalServerPort
+    private int port;
+
+    private String getBaseUrl() {
+        return "http://localhost:" + port + "/api/purchase/apply/batch";
+    }
+
+    /**
+     * The batch answers every line in input order, across several chunks, with the same decisions as /apply.
+     */
+    @Test
+    void shouldDecideEveryLineInInputOrder() throws Exception {
+        String requests = String.join("\n",
+                "{\"personalId\": \"12345678956\", \"requestedAmount\": 4500, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"12345678945\", \"requestedAmount\": 500, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"12345678999\", \"requestedAmount\": 1000, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"12345678901\", \"requestedAmount\": 3000, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"99999999999\", \"requestedAmount\": 5000, \"paymentPeriodMonths\": 24}",
+                "{\"personalId\": \"12345678934\", \"requestedAmount\": 6000, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"12345678934\", \"requestedAmount\": 100, \"paymentPeriodMonths\": 12}"
+        );
+
+        List<JsonNode> decisions = postBatch(requests);
+
+        assertEquals(List.of(4500, 1100, 900, 0, 0, 5000, 0),
+                decisions.stream().map(decision -> decision.get("approvedAmount").intValue()).toList());
+        assertEquals(List.of(true, true, true, false, false, true, false),
+                decisions.stream().map(decision -> decision.get("approved").booleanValue()).toList());
+    }
+
+    /**
+     * An unknown personal ID produces an error line without failing the rest of the batch.
+     */
+    @Test
+    void shouldReportUnknownProfileWithoutFailingTheBatch() throws Exception {
+        String requests = String.join("\n",
+                "{\"personalId\": \"00000000000\", \"requestedAmount\": 1000, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"12345678945\", \"requestedAmount\": 500, \"paymentPeriodMonths\": 12}"
+        );
+
+        List<JsonNode> decisions = postBatch(requests);
+
+        assertEquals(2, decisions.size());
+        assertEquals("No financial profile for personal ID *******0000", decisions.get(0).get("error").asText());
+        assertEquals(1, decisions.get(0).get("line").intValue());
+        assertEquals(1100, decisions.get(1).get("approvedAmount").intValue());
+    }
+
+    /**
+     * A line that is not JSON or lacks the requested amount gets an error line naming it; the lines after it, in the
+     * same chunk and the next, are still decided.
+     */
+    @Test
+    void shouldReportMalformedLinesWithoutFailingTheBatch() throws Exception {
+        String requests = String.join("\n",
+                "{\"personalId\": \"12345678945\", \"requestedAmount\": 500, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"12345678945\", \"requestedAmount\": ",
+                "{\"personalId\": \"12345678945\", \"paymentPeriodMonths\": 12}",
+                "",
+                "{\"personalId\": \"12345678945\", \"requestedAmount\": 500, \"paymentPeriodMonths\": 12}",
+                "{\"personalId\": \"12345678945\", \"requestedAmount\": 500, \"paymentPeriodMonths\": 12}"
+        );
+
+        List<JsonNode> decisions = postBatch(requests);
+
+        assertEquals(5, decisions.size());
+        assertEquals(1100, decisions.get(0).get("approvedAmount").intValue());
+        assertEquals(2, decisions.get(1).get("line").intValue());
+        assertTrue(decisions.get(1).get("error").asText().startsWith("Malformed application"));
+        assertEquals(3, decisions.get(2).get("line").intValue());
+        assertEquals("Requested amount is required", decisions.get(2).get("error").asText());
+        assertEquals(1100, decisions.get(3).get("approvedAmount").intValue());
+        assertEquals(1100, decisions.get(4).get("approvedAmount").intValue());
+    }
+
+    @Test
+    void shouldStreamLargeBatches() throws Exception {
+        String requests = IntStream.range(0, 1000)
+                .mapToObj(i -> "{\"personalId\": \"12345678945\", \"requestedAmount\": " + (200 + i) + ", \"paymentPeriodMonths\": 12}")
+                .collect(Collectors.joining("\n"));
+
+        List<JsonNode> decisions = postBatch(requests);
+
+        assertEquals(1000, decisions.size());
+        assertTrue(decisions.stream().allMatch(decision -> decision.get("approved").booleanValue()));
+    }
+
+    /**
+     * Batches are streamed from the application task executor; more of them than it has threads must all complete
+     * rather than wait for profile lookups queued behind them.
+     */
+    @Test
+    void shouldCompleteMoreConcurrentBatchesThanTaskExecutorThreads() throws Exception {
+        String requests = IntStream.range(0, 40)
+                .mapToObj(i -> "{\"personalId\": \"" + (i % 2 == 0 ? "12345678945" : "12345678934")
+                        + "\", \"requestedAmount\": 500, \"paymentPeriodMonths\": 12}")
+                .collect(Collectors.joining("\n"));
+
+        ExecutorService clients = Executors.newFixedThreadPool(CONCURRENT_BATCHES);
+        try {
+            List<Future<List<JsonNode>>> batches = new ArrayList<>();
+            for (int i = 0; i < CONCURRENT_BATCHES; i++) {
+                batches.add(clients.submit(() -> postBatch(requests)));
+            }
+            for (Future<List<JsonNode>> batch : batches) {
+                assertEquals(40, batch.get(30, TimeUnit.SECONDS).size());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    private List<JsonNode> postBatch(String requests) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_NDJSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_NDJSON));
+
+        ResponseEntity<String> response = restTemplate.postForEntity(getBaseUrl(), new HttpEntity<>(requests, headers), String.class);
+
+        assertEquals(OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+
+        List<JsonNode> decisions = new ArrayList<>();
+        for (String line : response.getBody().split("\n")) {
+            decisions.add(objectMapper.readTree(line));
+        }
+        return decisions;
+    }
+}
@@ -2,18 +2,31 @@ package com.example.homework.purchase.integration;
 
 import com.example.homework.PurchaseApprovalApplication;
 import com.example.homework.purchase.ApprovalDecision;
+import com.example.homework.purchase.ApprovalWireFormat;
+import com.example.homework.purchase.PurchaseApplicationRequest;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.NOT_MODIFIED;
 import static org.springframework.http.HttpStatus.OK;
 
 @SpringBootTest(classes = PurchaseApprovalApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
@@ -23,6 +36,9 @@ class PurchaseControllerTest {
     @Autowired
     private TestRestTemplate restTemplate;
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @LocalServerPort
     private int port;
 
@@ -177,4 +193,176 @@ class PurchaseControllerTest {
         assertFalse(response.getBody().isApproved());
         assertEquals(BigDecimal.ZERO, response.getBody().getApprovedAmount());
     }
+
+    /**
+     *  Case 8: Every decision is written to the audit table shortly after the response.
+     */
+    @Test
+    void shouldAuditDecision() throws InterruptedException {
+        int auditedBefore = auditedDecisions("12345678923");
+        Map<String, Object> request = Map.of(
+                "personalId", "12345678923",
+                "requestedAmount", BigDecimal.valueOf(1000),
+                "paymentPeriodMonths", 12
+        );
+
+        ResponseEntity<ApprovalDecision> response = restTemplate.postForEntity(getBaseUrl(), request, ApprovalDecision.class);
+
+        assertEquals(OK, response.getStatusCode());
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (auditedDecisions("12345678923") == auditedBefore && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(auditedBefore + 1, auditedDecisions("12345678923"));
+    }
+
+    /**
+     *  Case 9: Unknown personal ID is answered with **404** and a problem detail.
+     */
+    @Test
+    void shouldReturnNotFoundForUnknownPersonalId() {
+        Map<String, Object> request = Map.of(
+                "personalId", "00000000000",
+                "requestedAmount", BigDecimal.valueOf(1000),
+                "paymentPeriodMonths", 12
+        );
+
+        ResponseEntity<String> response = restTemplate.postForEntity(getBaseUrl(), request, String.class);
+
+        assertEquals(NOT_FOUND, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+        assertNotNull(response.getBody());
+        assertTrue(response.getBody().contains("Financial profile not found"));
+    }
+
+    /**
+     *  Case 10: Offer matrix lists the largest approvable amount per period and is revalidated with its ETag.
+     */
+    @Test
+    void shouldReturnOfferMatrixWithEntityTag() {
+        String offersUrl = "http://localhost:" + port + "/api/purchase/offers/12345678945";
+
+        ResponseEntity<Map> response = restTemplate.getForEntity(offersUrl, Map.class);
+
+        assertEquals(OK, response.getStatusCode());
+        assertNotNull(response.getBody());
+        List<?> maxApprovedAmounts = (List<?>) response.getBody().get("maxApprovedAmounts");
+        assertEquals(19, maxApprovedAmounts.size());
+        assertEquals(1199.99, ((Number) maxApprovedAmounts.get(12 - 6)).doubleValue());
+        assertFalse(response.getBody().containsKey("financialCapacityFactor"));
+        assertFalse(response.getBody().containsKey("productCode"));
+        String eTag = response.getHeaders().getETag();
+        assertNotNull(eTag);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setIfNoneMatch(eTag);
+        ResponseEntity<String> revalidated =
+                restTemplate.exchange(offersUrl, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+
+        assertEquals(NOT_MODIFIED, revalidated.getStatusCode());
+    }
+
+    @Test
+    void shouldReturnNotFoundForOffersOfUnknownPersonalId() {
+        ResponseEntity<String> response = restTemplate.getForEntity(
+                "http://localhost:" + port + "/api/purchase/offers/00000000000", String.class);
+
+        assertEquals(NOT_FOUND, response.getStatusCode());
+    }
+
+    /**
+     *  Case 11: Binary application is answered with a binary decision.
+     */
+    @Test
+    void shouldDecideBinaryApplication() {
+        ByteBuffer request = ByteBuffer.allocate(ApprovalWireFormat.REQUEST_BYTES);
+        ApprovalWireFormat.writeRequest(
+                new PurchaseApplicationRequest("12345678945", BigDecimal.valueOf(500), 12), request);
+
+        ResponseEntity<byte[]> response = postBinary(request.array());
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(ApprovalWireFormat.MEDIA_TYPE, response.getHeaders().getContentType());
+        assertNotNull(response.getBody());
+        assertEquals(ApprovalWireFormat.DECISION_BYTES, response.getBody().length);
+        assertEquals(ApprovalDecision.approve(BigDecimal.valueOf(1100)),
+                ApprovalWireFormat.readDecision(ByteBuffer.wrap(response.getBody())));
+    }
+
+    @Test
+    void shouldRejectTruncatedBinaryApplication() {
+        ResponseEntity<byte[]> response = postBinary(new byte[ApprovalWireFormat.REQUEST_BYTES - 1]);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+    }
+
+    /**
+     *  Case 12: Clients accepting any media type keep getting JSON.
+     */
+    @Test
+    void shouldAnswerJsonWhenAnyMediaTypeIsAccepted() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.ALL));
+        Map<String, Object> request = Map.of(
+                "personalId", "12345678945",
+                "requestedAmount", BigDecimal.valueOf(500),
+                "paymentPeriodMonths", 12
+        );
+
+        ResponseEntity<String> response =
+                restTemplate.exchange(getBaseUrl(), HttpMethod.POST, new HttpEntity<>(request, headers), String.class);
+
+        assertEquals(OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+    }
+
+    /**
+     *  Case 13: Application for a product that is not in force is answered with **400** and a problem detail.
+     */
+    @Test
+    void shouldRejectApplicationForUnknownProduct() {
+        Map<String, Object> request = Map.of(
+                "personalId", "12345678945",
+                "requestedAmount", BigDecimal.valueOf(500),
+                "paymentPeriodMonths", 12,
+                "productCode", "no-such-product"
+        );
+
+        ResponseEntity<String> response = restTemplate.postForEntity(getBaseUrl(), request, String.class);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+        assertNotNull(response.getBody());
+        assertTrue(response.getBody().contains("Unknown product"));
+    }
+
+    /**
+     *  Case 14: Application without a personal ID is answered with **400** and a problem detail, not decided.
+     */
+    @Test
+    void shouldRejectApplicationWithoutPersonalId() {
+        Map<String, Object> request = Map.of(
+                "requestedAmount", BigDecimal.valueOf(100),
+                "paymentPeriodMonths", 12
+        );
+
+        ResponseEntity<String> response = restTemplate.postForEntity(getBaseUrl(), request, String.class);
+
+        assertEquals(BAD_REQUEST, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_PROBLEM_JSON, response.getHeaders().getContentType());
+        assertNotNull(response.getBody());
+        assertTrue(response.getBody().contains("Invalid application"));
+    }
+
+    private ResponseEntity<byte[]> postBinary(byte[] body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(ApprovalWireFormat.MEDIA_TYPE);
+        headers.setAccept(List.of(ApprovalWireFormat.MEDIA_TYPE));
+        return restTemplate.exchange(getBaseUrl(), HttpMethod.POST, new HttpEntity<>(body, headers), byte[].class);
+    }
+
+    private int auditedDecisions(String personalId) {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM approval_audit WHERE personal_id = ?", Integer.class, personalId);
+    }
 }